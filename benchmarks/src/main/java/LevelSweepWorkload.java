@@ -0,0 +1,171 @@
+import benchmarks.SweepOperations;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * The operations benchmarked by benchmarks.LevelSweepBenchmark, over one book of numeric orders held by the given
+ * engine: an OrderBookManager with TreeMap backed, PriceLadder backed or pooled PriceLadder backed books, or a
+ * CompactOrderBookManager keeping its records in an OffHeapOrderStore or an ArrayOrderStore. Both kinds of manager
+ * match incoming orders.
+ * <p>
+ * Setup fills the book with levelsPerSide bid and ask levels of ordersPerLevel orders of quantity 1.
+ * <ul>
+ * <li>sweep adds a buy order that completely fills the best sweepLevels ask levels, then adds their orders back
+ * with the same ids, so the book keeps its shape. It measures the sweep and as many adds as orders filled.</li>
+ * <li>scanLevel walks the queue of a bid level, summing the quantities of its orders: RestingOrder nodes for an
+ * OrderBookManager, handle links through the OrderStore for a CompactOrderBookManager.</li>
+ * <li>getOrdersAtLevel reads the queue of a bid level through the public API: getOrdersAtLevel, which returns a
+ * new List of the orders, or getOrderIdsAtLevel, which copies their ids into a reused array.</li>
+ * </ul>
+ * Bids are never swept, so they stay the same levels for the whole trial. Scans rotate over them.
+ */
+public class LevelSweepWorkload implements SweepOperations {
+    private static final int INSTRUMENT_ID = 1;
+    private static final long BEST_BID = 100_000;
+    private static final long BEST_ASK = BEST_BID + 1;
+    private static final long AGGRESSOR_ID = -1; // completely filled, so never rests
+    private static final long FIRST_ASK_ID = 1L << 40;
+
+    private OrderBookManager orderBookManager;
+    private CompactOrderBookManager compactOrderBookManager;
+
+    private final int ordersPerLevel;
+    private final int sweepLevels;
+    private long fills; // counted by the fill listeners
+
+    /**
+     * bid levels, best first, for scans
+     */
+    private OrderList[] levels;
+    private HandleOrderList[] handleLevels;
+    private int cursor; // next bid level to scan
+    private final long[] ids;
+
+    /**
+     * @param levelsPerSide  number of bid and ask levels of the book
+     * @param ordersPerLevel number of orders of every level
+     * @param sweepLevels    number of ask levels each sweep fills, at most levelsPerSide
+     * @param engine         treemap, ladder, pooledLadder, compactOffHeap or compactArray
+     */
+    public LevelSweepWorkload(int levelsPerSide, int ordersPerLevel, int sweepLevels, String engine) {
+        if (sweepLevels > levelsPerSide) {
+            throw new IllegalArgumentException("sweepLevels must be at most levelsPerSide");
+        }
+        this.ordersPerLevel = ordersPerLevel;
+        this.sweepLevels = sweepLevels;
+        int ticks = 4 * levelsPerSide + 64;
+        switch (engine) {
+            case "treemap":
+                orderBookManager = new OrderBookManager();
+                break;
+            case "ladder":
+                orderBookManager = new OrderBookManager(1, ticks);
+                break;
+            case "pooledLadder":
+                orderBookManager = new OrderBookManager(1, ticks, true);
+                break;
+            case "compactOffHeap":
+                compactOrderBookManager = new CompactOrderBookManager(new OffHeapOrderStore(), 0);
+                break;
+            case "compactArray":
+                int orders = 2 * levelsPerSide * ordersPerLevel;
+                compactOrderBookManager = new CompactOrderBookManager(new ArrayOrderStore(orders), orders);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown engine " + engine);
+        }
+        if (orderBookManager != null) {
+            orderBookManager.setFillListener((aggressor, resting, price, quantity) -> fills++);
+        } else {
+            compactOrderBookManager.setFillListener((aggressorId, restingId, price, quantity) -> fills++);
+        }
+        long bidId = 0;
+        for (int level = 0; level < levelsPerSide; level++) {
+            for (int order = 0; order < ordersPerLevel; order++) {
+                add(bidId++, Side.buy, BEST_BID - level);
+            }
+            addAskLevel(level);
+        }
+        levels = new OrderList[levelsPerSide];
+        handleLevels = new HandleOrderList[levelsPerSide];
+        for (int level = 0; level < levelsPerSide; level++) {
+            if (orderBookManager != null) {
+                levels[level] = orderBookManager.getOrderBookByInstrumentIdMap().get(INSTRUMENT_ID).getBids()
+                        .get(BEST_BID - level);
+            } else {
+                handleLevels[level] = compactOrderBookManager.getOrderBook(INSTRUMENT_ID)
+                        .getLevel(Side.buy, BEST_BID - level);
+            }
+        }
+        ids = new long[ordersPerLevel];
+    }
+
+    private void add(long id, Side side, long price) {
+        if (orderBookManager != null) {
+            orderBookManager.addOrder(id, INSTRUMENT_ID, side, price, 1);
+        } else {
+            compactOrderBookManager.addOrder(id, INSTRUMENT_ID, side, price, 1);
+        }
+    }
+
+    /**
+     * Adds the orders of the given ask level, which must be empty, in the same order and with the same ids as ever
+     */
+    private void addAskLevel(int level) {
+        long id = FIRST_ASK_ID + (long) level * ordersPerLevel;
+        for (int order = 0; order < ordersPerLevel; order++) {
+            add(id + order, Side.sell, BEST_ASK + level);
+        }
+    }
+
+    private int nextLevel() {
+        int level = cursor;
+        cursor = cursor + 1 == levels.length ? 0 : cursor + 1;
+        return level;
+    }
+
+    @Override
+    public long sweep() {
+        long before = fills;
+        long quantity = (long) sweepLevels * ordersPerLevel;
+        if (orderBookManager != null) {
+            orderBookManager.addOrder(AGGRESSOR_ID, INSTRUMENT_ID, Side.buy, BEST_ASK + sweepLevels - 1, quantity);
+        } else {
+            compactOrderBookManager.addOrder(AGGRESSOR_ID, INSTRUMENT_ID, Side.buy, BEST_ASK + sweepLevels - 1,
+                    quantity);
+        }
+        for (int level = 0; level < sweepLevels; level++) {
+            addAskLevel(level);
+        }
+        return fills - before;
+    }
+
+    @Override
+    public long scanLevel() {
+        int level = nextLevel();
+        long quantity = 0;
+        if (orderBookManager != null) {
+            for (RestingOrder restingOrder = levels[level].getHead(); restingOrder != null;
+                 restingOrder = restingOrder.getNext()) {
+                quantity += restingOrder.getOrder().getQuantity();
+            }
+        } else {
+            OrderStore store = compactOrderBookManager.getStore();
+            for (int handle = handleLevels[level].getHead(); handle != OrderStore.NULL;
+                 handle = store.getNext(handle)) {
+                quantity += store.getQuantity(handle);
+            }
+        }
+        return quantity;
+    }
+
+    @Override
+    public Object getOrdersAtLevel() {
+        long price = BEST_BID - nextLevel();
+        if (orderBookManager != null) {
+            return orderBookManager.getOrdersAtLevel(INSTRUMENT_ID, Side.buy, price);
+        }
+        compactOrderBookManager.getOrderIdsAtLevel(INSTRUMENT_ID, Side.buy, price, ids);
+        return ids;
+    }
+}
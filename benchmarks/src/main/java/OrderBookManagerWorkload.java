@@ -0,0 +1,248 @@
+import benchmarks.BookOperations;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * The operations benchmarked by benchmarks.OrderBookManagerBenchmark, over books of a given shape. JMH only runs
+ * benchmarks in a named package, which cannot see the classes of this project, so the operations live here and
+ * the benchmark calls them through the BookOperations interface.
+ * <p>
+ * Setup fills instruments books with levelsPerSide bid and ask levels of ordersPerLevel orders each, using the
+ * given engine: TreeMap backed books, PriceLadder backed books, or pooled PriceLadder backed books. Operations then
+ * rotate over the bid levels of every instrument, so they do not all hit the same cache lines.
+ * <p>
+ * The book keeps its shape: every benchmark that deletes an order adds it back, so delete benchmarks measure a
+ * delete and an add. Comparing deleteFront, deleteMiddle and deleteBack isolates the cost of the position of the
+ * deleted order. Orders and their ids are created during setup and reused, so gc.alloc.rate.norm only counts what
+ * the manager itself allocates.
+ */
+public class OrderBookManagerWorkload implements BookOperations {
+    private static final long BEST_BID = 100_000;
+    private static final long INITIAL_QUANTITY = 1_000_000_000L; // large enough to be decreased for a whole trial
+    private static final int RANDOMS = 1 << 16; // number of precomputed random choices. a power of two
+
+    private OrderBookManager orderBookManager;
+    private String[] instrumentNames;
+
+    /**
+     * bid levels of every instrument, instrument by instrument. They are never emptied, so they stay the same
+     * OrderList objects for the whole trial
+     */
+    private OrderList[] levels;
+    private long[] levelPrices;
+    private String[] levelInstruments;
+
+    /**
+     * node at the middle of each level, kept up to date by deleteMiddle
+     */
+    private RestingOrder[] middles;
+
+    private int cursor; // next level to operate on
+
+    // precomputed choices of orderFlow
+    private boolean[] randomCancels;
+    private int[] randomLevels;
+    private int[] randomOrders;
+    private int random;
+
+    /**
+     * orders of orderFlow currently resting, and orders ready to be added
+     */
+    private Order[] live;
+    private int liveCount;
+    private Order[] spare;
+    private int spareCount;
+
+    private final long[] depthPrices = new long[10];
+    private final long[] depthQuantities = new long[10];
+    private final int[] depthCounts = new int[10];
+
+    /**
+     * @param levelsPerSide  number of bid and ask levels of every book
+     * @param ordersPerLevel number of orders of every level
+     * @param instruments    number of books
+     * @param cancelRatio    share of deletes in orderFlow
+     * @param engine         treemap, ladder or pooledLadder
+     */
+    public OrderBookManagerWorkload(int levelsPerSide, int ordersPerLevel, int instruments, double cancelRatio,
+                                    String engine) {
+        int ticks = 4 * levelsPerSide + 64;
+        switch (engine) {
+            case "treemap":
+                orderBookManager = new OrderBookManager();
+                break;
+            case "ladder":
+                orderBookManager = new OrderBookManager(1, ticks);
+                break;
+            case "pooledLadder":
+                orderBookManager = new OrderBookManager(1, ticks, true);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown engine " + engine);
+        }
+        instrumentNames = new String[instruments];
+        levels = new OrderList[instruments * levelsPerSide];
+        levelPrices = new long[levels.length];
+        levelInstruments = new String[levels.length];
+        middles = new RestingOrder[levels.length];
+        long orderId = 0;
+        for (int instrument = 0; instrument < instruments; instrument++) {
+            instrumentNames[instrument] = "I" + instrument;
+            for (int level = 0; level < levelsPerSide; level++) {
+                for (int order = 0; order < ordersPerLevel; order++) {
+                    orderBookManager.addOrder(new Order("o" + orderId++, instrumentNames[instrument], Side.buy,
+                            BEST_BID - level, INITIAL_QUANTITY));
+                    orderBookManager.addOrder(new Order("o" + orderId++, instrumentNames[instrument], Side.sell,
+                            BEST_BID + 1 + level, INITIAL_QUANTITY));
+                }
+            }
+            OrderBook orderBook = orderBookManager.getOrderBookByInstrumentMap().get(instrumentNames[instrument]);
+            for (int level = 0; level < levelsPerSide; level++) {
+                int index = instrument * levelsPerSide + level;
+                levels[index] = orderBook.getBids().get(BEST_BID - level);
+                levelPrices[index] = BEST_BID - level;
+                levelInstruments[index] = instrumentNames[instrument];
+                RestingOrder middle = levels[index].getHead();
+                for (int i = 0; i < ordersPerLevel / 2; i++) {
+                    middle = middle.getNext();
+                }
+                middles[index] = middle;
+            }
+        }
+
+        Random rnd = new Random(42);
+        randomCancels = new boolean[RANDOMS];
+        randomLevels = new int[RANDOMS];
+        randomOrders = new int[RANDOMS];
+        for (int i = 0; i < RANDOMS; i++) {
+            randomCancels[i] = rnd.nextDouble() < cancelRatio;
+            randomLevels[i] = rnd.nextInt(levels.length);
+            randomOrders[i] = rnd.nextInt(Integer.MAX_VALUE);
+        }
+        live = new Order[1024];
+        spare = new Order[1024];
+        for (int i = 0; i < spare.length; i++) {
+            spare[spareCount++] = new Order("flow" + i, null, Side.buy, 0, 0);
+        }
+    }
+
+    private int nextLevel() {
+        int level = cursor;
+        cursor = cursor + 1 == levels.length ? 0 : cursor + 1;
+        return level;
+    }
+
+    @Override
+    public Order addAndDelete() {
+        // adds an order at the back of a level, then deletes it: the cheapest way to keep the book's shape
+        Order order = levels[nextLevel()].getTail().getOrder();
+        orderBookManager.deleteOrder(order.getOrderId());
+        orderBookManager.addOrder(order);
+        return order;
+    }
+
+    @Override
+    public Order deleteFront() {
+        OrderList orderList = levels[nextLevel()];
+        Order order = orderList.getHead().getOrder();
+        orderBookManager.deleteOrder(order.getOrderId());
+        orderBookManager.addOrder(order); // the next order is now the front of the level
+        return order;
+    }
+
+    @Override
+    public Order deleteMiddle() {
+        int level = nextLevel();
+        RestingOrder middle = middles[level];
+        RestingOrder next = middle.getNext(); // moves up to the middle once this order is gone
+        Order order = middle.getOrder();
+        orderBookManager.deleteOrder(order.getOrderId());
+        orderBookManager.addOrder(order);
+        middles[level] = next != null ? next : levels[level].getTail(); // a level of one order is its own middle
+        return order;
+    }
+
+    @Override
+    public Order deleteBack() {
+        return addAndDelete(); // same operations: the back of a level is where orders are added
+    }
+
+    @Override
+    public Order modifyIncrease() {
+        // moves the order to the back of its level
+        Order order = levels[nextLevel()].getHead().getOrder();
+        orderBookManager.modifyOrder(order.getOrderId(), order.getQuantity() + 1);
+        return order;
+    }
+
+    @Override
+    public Order modifyDecrease() {
+        // keeps the order in place
+        Order order = levels[nextLevel()].getHead().getOrder();
+        orderBookManager.modifyOrder(order.getOrderId(), order.getQuantity() - 1);
+        return order;
+    }
+
+    /**
+     * Random adds and deletes over every level of every instrument, cancelRatio of them deletes
+     */
+    @Override
+    public int orderFlow() {
+        int choice = random;
+        random = (random + 1) & (RANDOMS - 1);
+        if (randomCancels[choice] && liveCount > 0) {
+            int index = randomOrders[choice] % liveCount;
+            Order order = live[index];
+            live[index] = live[--liveCount]; // the last order takes its place
+            orderBookManager.deleteOrder(order.getOrderId());
+            spare[spareCount++] = order;
+        } else if (spareCount > 0) {
+            int level = randomLevels[choice];
+            Order order = spare[--spareCount];
+            order.setInstrument(levelInstruments[level]);
+            order.setPrice(levelPrices[level]);
+            order.setQuantity(10);
+            orderBookManager.addOrder(order);
+            live[liveCount++] = order;
+        }
+        return liveCount;
+    }
+
+    @Override
+    public long getBestPrice() {
+        return orderBookManager.getBestPrice(levelInstruments[nextLevel()], Side.buy);
+    }
+
+    @Override
+    public long getOrderNumAtLevel() {
+        int level = nextLevel();
+        return orderBookManager.getOrderNumAtLevel(levelInstruments[level], Side.buy, levelPrices[level]);
+    }
+
+    @Override
+    public long getTotalQuantityAtLevel() {
+        int level = nextLevel();
+        return orderBookManager.getTotalQuantityAtLevel(levelInstruments[level], Side.buy, levelPrices[level]);
+    }
+
+    @Override
+    public long getTotalVolumeAtLevel() {
+        int level = nextLevel();
+        return orderBookManager.getTotalVolumeAtLevel(levelInstruments[level], Side.buy, levelPrices[level]);
+    }
+
+    @Override
+    public List<Order> getOrdersAtLevel() {
+        int level = nextLevel();
+        return orderBookManager.getOrdersAtLevel(levelInstruments[level], Side.buy, levelPrices[level]);
+    }
+
+    @Override
+    public int getDepth() {
+        return orderBookManager.getDepth(levelInstruments[nextLevel()], Side.buy, 10, depthPrices, depthQuantities,
+                depthCounts);
+    }
+}
@@ -0,0 +1,26 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Runs the benchmarks selected on the command line, with the usual JMH options, always adding the GC profiler so
+ * every result comes with gc.alloc.rate.norm: the bytes allocated per operation.
+ * <pre>
+ * java -jar target/benchmarks.jar OrderBookManagerBenchmark.addAndDelete -p engine=treemap,ladder
+ * </pre>
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,35 @@
+package benchmarks;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * The operations benchmarked by OrderBookManagerBenchmark, implemented by OrderBookManagerWorkload. Every call
+ * performs one operation and returns something derived from it, for the benchmark to consume.
+ */
+public interface BookOperations {
+    Object addAndDelete();
+
+    Object deleteFront();
+
+    Object deleteMiddle();
+
+    Object deleteBack();
+
+    Object modifyIncrease();
+
+    Object modifyDecrease();
+
+    int orderFlow();
+
+    long getBestPrice();
+
+    long getOrderNumAtLevel();
+
+    long getTotalQuantityAtLevel();
+
+    long getTotalVolumeAtLevel();
+
+    Object getOrdersAtLevel();
+
+    int getDepth();
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Benchmarks of matching sweeps and level scans, comparing the levels of OrderBookManager, linked RestingOrder
+ * objects, with the levels of CompactOrderBookManager, linked handles into an OrderStore. See LevelSweepWorkload for
+ * what each benchmark does.
+ * <pre>
+ * java -jar target/benchmarks.jar LevelSweepBenchmark -p engine=pooledLadder,compactArray
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevelSweepBenchmark {
+    @Param({"10", "100"})
+    public int levelsPerSide;
+
+    @Param({"10", "100"})
+    public int ordersPerLevel;
+
+    /**
+     * number of ask levels each sweep fills completely, at most levelsPerSide
+     */
+    @Param({"1", "10"})
+    public int sweepLevels;
+
+    @Param({"treemap", "ladder", "pooledLadder", "compactOffHeap", "compactArray"})
+    public String engine;
+
+    private SweepOperations operations;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        operations = (SweepOperations) Class.forName("LevelSweepWorkload")
+                .getConstructor(int.class, int.class, int.class, String.class)
+                .newInstance(levelsPerSide, ordersPerLevel, sweepLevels, engine);
+    }
+
+    @Benchmark
+    public long sweep() {
+        return operations.sweep();
+    }
+
+    @Benchmark
+    public long scanLevel() {
+        return operations.scanLevel();
+    }
+
+    @Benchmark
+    public Object getOrdersAtLevel() {
+        return operations.getOrdersAtLevel();
+    }
+}
@@ -0,0 +1,125 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Benchmarks of every OrderBookManager operation over books of a given shape. See OrderBookManagerWorkload for
+ * what each benchmark does.
+ * <p>
+ * The workload is created reflectively once per trial, since classes of the default package cannot be named from
+ * here. Benchmarks then call it through an interface with a single implementation, which the JIT inlines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderBookManagerBenchmark {
+    @Param({"10", "100"})
+    public int levelsPerSide;
+
+    @Param({"10", "100"})
+    public int ordersPerLevel;
+
+    @Param({"1", "100"})
+    public int instruments;
+
+    /**
+     * share of deletes in orderFlow
+     */
+    @Param({"0.5"})
+    public double cancelRatio;
+
+    @Param({"treemap", "ladder", "pooledLadder"})
+    public String engine;
+
+    private BookOperations operations;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        operations = (BookOperations) Class.forName("OrderBookManagerWorkload")
+                .getConstructor(int.class, int.class, int.class, double.class, String.class)
+                .newInstance(levelsPerSide, ordersPerLevel, instruments, cancelRatio, engine);
+    }
+
+    @Benchmark
+    public Object addAndDelete() {
+        return operations.addAndDelete();
+    }
+
+    @Benchmark
+    public Object deleteFront() {
+        return operations.deleteFront();
+    }
+
+    @Benchmark
+    public Object deleteMiddle() {
+        return operations.deleteMiddle();
+    }
+
+    @Benchmark
+    public Object deleteBack() {
+        return operations.deleteBack();
+    }
+
+    @Benchmark
+    public Object modifyIncrease() {
+        return operations.modifyIncrease();
+    }
+
+    @Benchmark
+    public Object modifyDecrease() {
+        return operations.modifyDecrease();
+    }
+
+    @Benchmark
+    public int orderFlow() {
+        return operations.orderFlow();
+    }
+
+    @Benchmark
+    public long getBestPrice() {
+        return operations.getBestPrice();
+    }
+
+    @Benchmark
+    public long getOrderNumAtLevel() {
+        return operations.getOrderNumAtLevel();
+    }
+
+    @Benchmark
+    public long getTotalQuantityAtLevel() {
+        return operations.getTotalQuantityAtLevel();
+    }
+
+    @Benchmark
+    public long getTotalVolumeAtLevel() {
+        return operations.getTotalVolumeAtLevel();
+    }
+
+    @Benchmark
+    public Object getOrdersAtLevel() {
+        return operations.getOrdersAtLevel();
+    }
+
+    @Benchmark
+    public int getDepth() {
+        return operations.getDepth();
+    }
+}
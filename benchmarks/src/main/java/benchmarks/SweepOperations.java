@@ -0,0 +1,15 @@
+package benchmarks;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * The operations benchmarked by LevelSweepBenchmark, implemented by LevelSweepWorkload. Every call performs one
+ * operation and returns something derived from it, for the benchmark to consume.
+ */
+public interface SweepOperations {
+    long sweep();
+
+    long scanLevel();
+
+    Object getOrdersAtLevel();
+}
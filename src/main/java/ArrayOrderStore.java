@@ -0,0 +1,153 @@
+import java.util.Arrays;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * On heap OrderStore laid out as a struct of arrays: one primitive array per field of the order records, all
+ * indexed by handle. A record costs 41 bytes spread over seven arrays instead of an Order, a RestingOrder and their
+ * headers, and the garbage collector sees seven arrays whatever the number of orders. Walking a level reads ids,
+ * quantities and links out of a few dense arrays instead of chasing scattered objects.
+ * <p>
+ * The arrays double when full and never shrink. Freed handles are chained into a free list through the next
+ * array and reused first, so the store stays as dense as its peak number of orders.
+ */
+public class ArrayOrderStore implements OrderStore {
+    private static final int MIN_CAPACITY = 16;
+    private static final Side[] SIDES = Side.values();
+
+    private long[] ids;
+    private long[] prices;
+    private long[] quantities;
+    private int[] prevs;
+    private int[] nexts;
+    private int[] instrumentIds;
+    private byte[] sides;
+
+    private int unusedHandle; // handles from this one onwards have never been allocated
+    private int freeHandle = NULL; // head of the free list
+    private int size;
+
+    public ArrayOrderStore() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity number of orders the store holds before growing
+     */
+    public ArrayOrderStore(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, MIN_CAPACITY);
+        ids = new long[capacity];
+        prices = new long[capacity];
+        quantities = new long[capacity];
+        prevs = new int[capacity];
+        nexts = new int[capacity];
+        instrumentIds = new int[capacity];
+        sides = new byte[capacity];
+    }
+
+    @Override
+    public int allocate(long id, int instrumentId, Side side, long price, long quantity) {
+        int handle;
+        if (freeHandle != NULL) {
+            handle = freeHandle;
+            freeHandle = nexts[handle];
+        } else {
+            if (unusedHandle == ids.length) {
+                grow();
+            }
+            handle = unusedHandle++;
+        }
+        ids[handle] = id;
+        prices[handle] = price;
+        quantities[handle] = quantity;
+        prevs[handle] = NULL;
+        nexts[handle] = NULL;
+        instrumentIds[handle] = instrumentId;
+        sides[handle] = (byte) side.ordinal();
+        size++;
+        return handle;
+    }
+
+    @Override
+    public void free(int handle) {
+        nexts[handle] = freeHandle;
+        freeHandle = handle;
+        size--;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of orders the store can hold without growing
+     */
+    public int getCapacity() {
+        return ids.length;
+    }
+
+    @Override
+    public long getId(int handle) {
+        return ids[handle];
+    }
+
+    @Override
+    public int getInstrumentId(int handle) {
+        return instrumentIds[handle];
+    }
+
+    @Override
+    public Side getSide(int handle) {
+        return SIDES[sides[handle]];
+    }
+
+    @Override
+    public long getPrice(int handle) {
+        return prices[handle];
+    }
+
+    @Override
+    public long getQuantity(int handle) {
+        return quantities[handle];
+    }
+
+    @Override
+    public void setQuantity(int handle, long quantity) {
+        quantities[handle] = quantity;
+    }
+
+    @Override
+    public int getPrev(int handle) {
+        return prevs[handle];
+    }
+
+    @Override
+    public void setPrev(int handle, int prev) {
+        prevs[handle] = prev;
+    }
+
+    @Override
+    public int getNext(int handle) {
+        return nexts[handle];
+    }
+
+    @Override
+    public void setNext(int handle, int next) {
+        nexts[handle] = next;
+    }
+
+    private void grow() {
+        if (ids.length == Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("ArrayOrderStore is full");
+        }
+        int capacity = (int) Math.min((long) ids.length << 1, Integer.MAX_VALUE - 8);
+        ids = Arrays.copyOf(ids, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        prevs = Arrays.copyOf(prevs, capacity);
+        nexts = Arrays.copyOf(nexts, capacity);
+        instrumentIds = Arrays.copyOf(instrumentIds, capacity);
+        sides = Arrays.copyOf(sides, capacity);
+    }
+}
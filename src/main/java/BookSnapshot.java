@@ -0,0 +1,107 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Immutable, consistent view of a whole OrderBook at one point in time: every level of both sides, best price first,
+ * with immutable copies of their orders. Safe to keep and iterate from any thread.
+ * <p>
+ * Taking a snapshot only copies the levels that changed since the previous one; the others are shared with it.
+ * A book that did not change at all returns the same BookSnapshot again, so readers can compare snapshots by
+ * reference to find out whether anything changed.
+ */
+public final class BookSnapshot {
+    private final String instrument; // null for books identified by number
+    private final int instrumentId;
+    private final List<LevelSnapshot> bids; // unmodifiable, descending order of price
+    private final List<LevelSnapshot> asks; // unmodifiable, ascending order of price
+
+    BookSnapshot(String instrument, int instrumentId, LevelSnapshot[] bids, LevelSnapshot[] asks) {
+        this.instrument = instrument;
+        this.instrumentId = instrumentId;
+        this.bids = Collections.unmodifiableList(Arrays.asList(bids));
+        this.asks = Collections.unmodifiableList(Arrays.asList(asks));
+    }
+
+    /**
+     * @return a snapshot of a book without any order
+     */
+    static BookSnapshot empty(String instrument, int instrumentId) {
+        return new BookSnapshot(instrument, instrumentId, new LevelSnapshot[0], new LevelSnapshot[0]);
+    }
+
+    public String getInstrument() {
+        return instrument;
+    }
+
+    public int getInstrumentId() {
+        return instrumentId;
+    }
+
+    /**
+     * @return the bid levels, in descending order of price
+     */
+    public List<LevelSnapshot> getBids() {
+        return bids;
+    }
+
+    /**
+     * @return the ask levels, in ascending order of price
+     */
+    public List<LevelSnapshot> getAsks() {
+        return asks;
+    }
+
+    /**
+     * @return the levels of the given side, best price first
+     */
+    public List<LevelSnapshot> getLevels(Side side) {
+        return side == Side.buy ? bids : asks;
+    }
+
+    /**
+     * @return the best price of the given side. -1 if the side was empty
+     */
+    public long getBestPrice(Side side) {
+        List<LevelSnapshot> levels = getLevels(side);
+        return levels.isEmpty() ? -1 : levels.get(0).getPrice();
+    }
+
+    /**
+     * @return the level of the given side at the given price. null if there was no such level. O(log n)
+     */
+    public LevelSnapshot getLevel(Side side, long price) {
+        List<LevelSnapshot> levels = getLevels(side);
+        int low = 0;
+        int high = levels.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middlePrice = levels.get(middle).getPrice();
+            if (middlePrice == price) {
+                return levels.get(middle);
+            }
+            // bids are sorted in descending order, asks in ascending order
+            if (side == Side.buy ? middlePrice > price : middlePrice < price) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return bids.isEmpty() && asks.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "BookSnapshot{" +
+                "instrument=" + (instrument != null ? instrument : String.valueOf(instrumentId)) +
+                ", bids=" + bids +
+                ", asks=" + asks +
+                '}';
+    }
+}
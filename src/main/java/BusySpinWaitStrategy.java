@@ -0,0 +1,12 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Checks again straight away. Lowest latency, but burns a whole core, so there should be a core for every waiting
+ * thread.
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+    @Override
+    public void idle(int attempt) {
+        // nothing to do. the caller spins
+    }
+}
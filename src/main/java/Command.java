@@ -0,0 +1,237 @@
+import java.util.function.Consumer;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * A mutable add, modify or delete operation on an OrderBookManager, to be applied later, possibly on another thread.
+ * Commands are meant to be reused: add, modify and delete reset every field before filling in the operation.
+ * <p>
+ * Orders identified by String use orderId and instrument (an add carries the Order itself), orders identified by
+ * number use id and instrumentId. Modify and delete commands may also carry the instrument, which is needed to
+ * route them to the right shard of a ShardedOrderBookManager.
+ * <p>
+ * A task command runs arbitrary code against the manager, e.g. a query, on the thread applying commands.
+ */
+public class Command {
+    private CommandType type;
+    private Order order;
+    private String orderId;
+    private String instrument;
+    private long id;
+    private int instrumentId;
+    private Side side;
+    private long price;
+    private long quantity;
+    private long expiryTime;
+    private Consumer<OrderBookManager> task;
+
+    /**
+     * Makes this command add the given order
+     */
+    public Command add(Order order) {
+        reset(CommandType.add);
+        this.order = order;
+        this.orderId = order.getOrderId();
+        this.instrument = order.getInstrument();
+        this.side = order.getSide();
+        this.price = order.getPrice();
+        this.quantity = order.getQuantity();
+        this.expiryTime = order.getExpiryTime();
+        return this;
+    }
+
+    /**
+     * Makes this command add an order identified by number
+     */
+    public Command add(long id, int instrumentId, Side side, long price, long quantity) {
+        return add(id, instrumentId, side, price, quantity, 0);
+    }
+
+    /**
+     * Makes this command add an order identified by number, which expires at the given time
+     *
+     * @param expiryTime time at which the order expires, in the unit of the TimerWheel. 0 if it never expires
+     */
+    public Command add(long id, int instrumentId, Side side, long price, long quantity, long expiryTime) {
+        reset(CommandType.add);
+        this.id = id;
+        this.instrumentId = instrumentId;
+        this.side = side;
+        this.price = price;
+        this.quantity = quantity;
+        this.expiryTime = expiryTime;
+        return this;
+    }
+
+    /**
+     * Makes this command change the quantity of an order
+     *
+     * @param instrument instrument of the order, only needed for routing. May be null
+     */
+    public Command modify(String instrument, String orderId, long newQuantity) {
+        reset(CommandType.modify);
+        this.instrument = instrument;
+        this.orderId = orderId;
+        this.quantity = newQuantity;
+        return this;
+    }
+
+    /**
+     * Makes this command change the quantity of an order identified by number
+     */
+    public Command modify(int instrumentId, long id, long newQuantity) {
+        reset(CommandType.modify);
+        this.instrumentId = instrumentId;
+        this.id = id;
+        this.quantity = newQuantity;
+        return this;
+    }
+
+    /**
+     * Makes this command delete an order
+     *
+     * @param instrument instrument of the order, only needed for routing. May be null
+     */
+    public Command delete(String instrument, String orderId) {
+        reset(CommandType.delete);
+        this.instrument = instrument;
+        this.orderId = orderId;
+        return this;
+    }
+
+    /**
+     * Makes this command delete an order identified by number
+     */
+    public Command delete(int instrumentId, long id) {
+        reset(CommandType.delete);
+        this.instrumentId = instrumentId;
+        this.id = id;
+        return this;
+    }
+
+    /**
+     * Makes this command run the given code against the manager it is applied to
+     */
+    public Command task(Consumer<OrderBookManager> task) {
+        reset(CommandType.task);
+        this.task = task;
+        return this;
+    }
+
+    /**
+     * Performs the operation of this command on the given manager
+     */
+    public void applyTo(OrderBookManager orderBookManager) {
+        switch (type) {
+            case add:
+                if (order != null) {
+                    orderBookManager.addOrder(order);
+                } else {
+                    orderBookManager.addOrder(id, instrumentId, side, price, quantity, expiryTime);
+                }
+                break;
+            case modify:
+                if (orderId != null) {
+                    orderBookManager.modifyOrder(orderId, quantity);
+                } else {
+                    orderBookManager.modifyOrder(id, quantity);
+                }
+                break;
+            case delete:
+                if (orderId != null) {
+                    orderBookManager.deleteOrder(orderId);
+                } else {
+                    orderBookManager.deleteOrder(id);
+                }
+                break;
+            case task:
+                task.accept(orderBookManager);
+                break; // no need for default case. every CommandType is handled
+        }
+    }
+
+    /**
+     * Copies every field of the given command into this one
+     */
+    public void copyFrom(Command command) {
+        this.type = command.type;
+        this.order = command.order;
+        this.orderId = command.orderId;
+        this.instrument = command.instrument;
+        this.id = command.id;
+        this.instrumentId = command.instrumentId;
+        this.side = command.side;
+        this.price = command.price;
+        this.quantity = command.quantity;
+        this.expiryTime = command.expiryTime;
+        this.task = command.task;
+    }
+
+    private void reset(CommandType type) {
+        this.type = type;
+        this.order = null;
+        this.orderId = null;
+        this.instrument = null;
+        this.id = 0;
+        this.instrumentId = 0;
+        this.side = null;
+        this.price = 0;
+        this.quantity = 0;
+        this.expiryTime = 0;
+        this.task = null;
+    }
+
+    public CommandType getType() {
+        return type;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public String getInstrument() {
+        return instrument;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getInstrumentId() {
+        return instrumentId;
+    }
+
+    public Side getSide() {
+        return side;
+    }
+
+    public long getPrice() {
+        return price;
+    }
+
+    public long getExpiryTime() {
+        return expiryTime;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    @Override
+    public String toString() {
+        return "Command{" +
+                "type=" + type +
+                ", orderId='" + orderId + '\'' +
+                ", instrument='" + instrument + '\'' +
+                ", id=" + id +
+                ", instrumentId=" + instrumentId +
+                ", side=" + side +
+                ", price=" + price +
+                ", quantity=" + quantity +
+                '}';
+    }
+}
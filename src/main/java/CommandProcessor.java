@@ -0,0 +1,104 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * The consumer of a CommandRingBuffer. Run on its own thread, it applies every published command to an
+ * OrderBookManager, which is never touched by any other thread, so no locking is needed around the books.
+ * <p>
+ * Whenever it wakes up the processor takes every command published so far, up to maxBatchSize, applies them in
+ * sequence order and only then frees their slots with a single write. Commands that throw are counted and skipped.
+ */
+public class CommandProcessor implements Runnable {
+    private final CommandRingBuffer ringBuffer;
+    private final OrderBookManager orderBookManager;
+    private final WaitStrategy waitStrategy;
+    private final int maxBatchSize;
+
+    private volatile boolean running = true;
+    private volatile long failedCommands; // only written by the processor thread
+    private volatile long batches; // only written by the processor thread
+
+    public CommandProcessor(CommandRingBuffer ringBuffer, OrderBookManager orderBookManager, WaitStrategy waitStrategy) {
+        this(ringBuffer, orderBookManager, waitStrategy, ringBuffer.getCapacity());
+    }
+
+    /**
+     * @param ringBuffer       buffer to take commands from
+     * @param orderBookManager manager to apply commands to
+     * @param waitStrategy     how to wait for commands when none are published
+     * @param maxBatchSize     most commands applied before their slots are freed
+     */
+    public CommandProcessor(CommandRingBuffer ringBuffer, OrderBookManager orderBookManager, WaitStrategy waitStrategy,
+                            int maxBatchSize) {
+        this.ringBuffer = ringBuffer;
+        this.orderBookManager = orderBookManager;
+        this.waitStrategy = waitStrategy;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public void run() {
+        long next = ringBuffer.getConsumedSequence() + 1;
+        int attempt = 0;
+        while (running) {
+            if (!ringBuffer.isPublished(next)) {
+                waitStrategy.idle(attempt);
+                if (attempt < Integer.MAX_VALUE) {
+                    attempt++; // saturates, so a long idle spell never wraps back to spinning
+                }
+                continue;
+            }
+            attempt = 0;
+            next = processBatch(next);
+        }
+        // apply whatever was published before halt, so nothing published before halt is lost
+        while (ringBuffer.isPublished(next)) {
+            next = processBatch(next);
+        }
+    }
+
+    /**
+     * Applies the contiguous run of published commands starting at the given sequence and frees their slots
+     *
+     * @return the sequence following the last one applied
+     */
+    private long processBatch(long first) {
+        long last = first;
+        while (last + 1 - first < maxBatchSize && ringBuffer.isPublished(last + 1)) {
+            last++;
+        }
+        long failed = 0;
+        for (long sequence = first; sequence <= last; sequence++) {
+            try {
+                ringBuffer.get(sequence).applyTo(orderBookManager);
+            } catch (RuntimeException e) {
+                failed++; // one bad command must not stop the processor
+            }
+        }
+        orderBookManager.endBatch(); // e.g. forces the journal once per batch
+        if (failed != 0) {
+            failedCommands += failed;
+        }
+        batches++;
+        ringBuffer.setConsumedSequence(last);
+        return last + 1;
+    }
+
+    /**
+     * Asks the processor to stop once it has applied every command already published
+     */
+    public void halt() {
+        running = false;
+    }
+
+    public OrderBookManager getOrderBookManager() {
+        return orderBookManager;
+    }
+
+    public long getFailedCommands() {
+        return failedCommands;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+}
@@ -0,0 +1,171 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * A bounded queue of Commands between any number of producer threads and a single consumer (a CommandProcessor).
+ * <p>
+ * The slots are Command objects allocated once, up front, and reused: producers fill a slot in place instead of
+ * handing over a new object, so publishing allocates nothing. Every command gets a sequence number. Sequence s lives
+ * in slot s & (capacity - 1), which is why the capacity must be a power of two.
+ * <p>
+ * A producer claims the next sequence with a single atomic increment (no lock), waits until the consumer has freed
+ * that slot, fills it and publishes it. Since producers finish filling in any order, each slot records the sequence
+ * last published into it, and the consumer only goes as far as the published sequences are contiguous.
+ * <p>
+ * The publish methods (publishAdd, publishModify, publishDelete...) do all three steps. next, get and publish can be
+ * used directly to fill a slot in some other way; every claimed sequence must then be published, or the consumer
+ * will wait on it forever.
+ */
+public class CommandRingBuffer {
+    private final Command[] slots;
+    private final int mask; // capacity - 1. sequence & mask is the index of its slot
+
+    /**
+     * the sequence last published into each slot. -1 until the slot is first published
+     */
+    private final AtomicLongArray publishedSequences;
+
+    /**
+     * next sequence to hand out to a producer
+     */
+    private final AtomicLong claimSequence = new AtomicLong();
+
+    /**
+     * last sequence the consumer is done with. slots up to it can be reused
+     */
+    private final AtomicLong consumedSequence = new AtomicLong(-1);
+
+    /**
+     * how producers wait for a slot when the buffer is full
+     */
+    private final WaitStrategy producerWaitStrategy;
+
+    /**
+     * @param capacity number of slots. Must be a power of two.
+     */
+    public CommandRingBuffer(int capacity) {
+        this(capacity, new YieldingWaitStrategy());
+    }
+
+    /**
+     * @param capacity             number of slots. Must be a power of two.
+     * @param producerWaitStrategy how producers wait for a slot when the buffer is full
+     */
+    public CommandRingBuffer(int capacity, WaitStrategy producerWaitStrategy) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        this.slots = new Command[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Command();
+        }
+        this.mask = capacity - 1;
+        this.publishedSequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            publishedSequences.set(i, -1);
+        }
+        this.producerWaitStrategy = producerWaitStrategy;
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Claims the next sequence, waiting while its slot still holds a command the consumer has not applied.
+     *
+     * @return the claimed sequence. Its slot is given by get and must be published once filled.
+     */
+    public long next() {
+        long sequence = claimSequence.getAndIncrement();
+        long wrapPoint = sequence - slots.length; // the sequence that used the slot last time round
+        int attempt = 0;
+        while (wrapPoint > consumedSequence.get()) {
+            producerWaitStrategy.idle(attempt);
+            if (attempt < Integer.MAX_VALUE) {
+                attempt++; // saturates, so a long wait never wraps back to spinning
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * @return the slot of the given sequence
+     */
+    public Command get(long sequence) {
+        return slots[(int) sequence & mask];
+    }
+
+    /**
+     * Makes the command in the slot of the given sequence visible to the consumer
+     */
+    public void publish(long sequence) {
+        publishedSequences.lazySet((int) sequence & mask, sequence); // ordered store. the slot's fields are visible first
+    }
+
+    public void publishAdd(Order order) {
+        long sequence = next();
+        get(sequence).add(order);
+        publish(sequence);
+    }
+
+    public void publishAdd(long id, int instrumentId, Side side, long price, long quantity) {
+        long sequence = next();
+        get(sequence).add(id, instrumentId, side, price, quantity);
+        publish(sequence);
+    }
+
+    public void publishModify(String orderId, long newQuantity) {
+        long sequence = next();
+        get(sequence).modify(null, orderId, newQuantity);
+        publish(sequence);
+    }
+
+    public void publishModify(long id, long newQuantity) {
+        long sequence = next();
+        get(sequence).modify(0, id, newQuantity);
+        publish(sequence);
+    }
+
+    public void publishDelete(String orderId) {
+        long sequence = next();
+        get(sequence).delete(null, orderId);
+        publish(sequence);
+    }
+
+    public void publishDelete(long id) {
+        long sequence = next();
+        get(sequence).delete(0, id);
+        publish(sequence);
+    }
+
+    /**
+     * @return true if the command with the given sequence has been published
+     */
+    boolean isPublished(long sequence) {
+        return publishedSequences.get((int) sequence & mask) == sequence;
+    }
+
+    /**
+     * @return the last sequence the consumer is done with. -1 if none
+     */
+    public long getConsumedSequence() {
+        return consumedSequence.get();
+    }
+
+    /**
+     * Frees the slots of every sequence up to the given one. Only called by the consumer
+     */
+    void setConsumedSequence(long sequence) {
+        consumedSequence.lazySet(sequence);
+    }
+
+    /**
+     * @return the next sequence a producer will claim. Every sequence below it has been claimed
+     */
+    public long getClaimSequence() {
+        return claimSequence.get();
+    }
+}
@@ -0,0 +1,7 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * The operations a Command can carry.
+ */
+public enum CommandType {
+    add, modify, delete, task;
+}
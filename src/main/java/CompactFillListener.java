@@ -0,0 +1,17 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Receives the fills of a matching CompactOrderBookManager, as FillListener does for OrderBookManager. Orders are
+ * given by id, since their records are not objects. Called once per resting order an incoming order trades with,
+ * in the order in which they trade. Implementations must not modify the book.
+ */
+public interface CompactFillListener {
+
+    /**
+     * @param aggressorId id of the incoming order
+     * @param restingId   id of the resting order it trades with
+     * @param price       price of the fill, always the price of the resting order
+     * @param quantity    quantity of the fill
+     */
+    void onFill(long aggressorId, long restingId, long price, long quantity);
+}
@@ -0,0 +1,223 @@
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * OrderBook of orders identified by number whose records live in an OrderStore. Each side is a TreeMap of
+ * price -> HandleOrderList, sorted with the same comparators as OrderBook, so the only objects per book are its
+ * levels; orders are int handles into the store.
+ * <p>
+ * The book does not look orders up by id. CompactOrderBookManager resolves ids to handles and hands them over.
+ * Matching removes the resting orders it fills from the id index of the manager, which the book shares.
+ */
+public class CompactOrderBook {
+    private final OrderStore store;
+    private final int instrumentId;
+
+    /**
+     * id -> handle of every resting order, shared with every other CompactOrderBook of the same manager
+     */
+    private final LongIntHashMap handleByIdMap;
+
+    /**
+     * Levels of buy orders. Entries are sorted in descending order of price.
+     */
+    private final TreeMap<Long, HandleOrderList> bids = new TreeMap<>(new BidLevelComparator());
+
+    /**
+     * Levels of sell orders. Entries are sorted in ascending order of price.
+     */
+    private final TreeMap<Long, HandleOrderList> asks = new TreeMap<>(new AskLevelComparator());
+
+    public CompactOrderBook(OrderStore store, int instrumentId) {
+        this(store, instrumentId, new LongIntHashMap(0));
+    }
+
+    /**
+     * @param handleByIdMap id index of the manager, which matching removes the orders it fills from
+     */
+    CompactOrderBook(OrderStore store, int instrumentId, LongIntHashMap handleByIdMap) {
+        this.store = store;
+        this.instrumentId = instrumentId;
+        this.handleByIdMap = handleByIdMap;
+    }
+
+    public int getInstrumentId() {
+        return instrumentId;
+    }
+
+    private TreeMap<Long, HandleOrderList> getLevels(Side side) {
+        return side == Side.buy ? bids : asks;
+    }
+
+    /**
+     * Appends the order of the given handle to the level of its side and price, creating the level if needed
+     */
+    public void addOrder(int handle) {
+        long price = store.getPrice(handle);
+        TreeMap<Long, HandleOrderList> levels = getLevels(store.getSide(handle));
+        HandleOrderList orderList = levels.get(price);
+        if (orderList == null) {
+            orderList = new HandleOrderList(store);
+            levels.put(price, orderList);
+        }
+        orderList.addOrder(handle);
+    }
+
+    /**
+     * Trades an incoming order against the opposite side, best level first and in order of arrival within a level,
+     * as OrderBook does, until it no longer crosses or is completely filled. Reports every fill. Resting orders
+     * completely filled are unlinked, removed from the id index and freed; the others are reduced in place.
+     * The sweep follows the handle links of each level, reading the records out of the store.
+     *
+     * @param id       id of the incoming order
+     * @param side     side of the incoming order
+     * @param price    limit price of the incoming order
+     * @param quantity quantity of the incoming order
+     * @return quantity of the incoming order left. 0 if it was completely filled
+     */
+    long match(long id, Side side, long price, long quantity, CompactFillListener fillListener) {
+        boolean buy = side == Side.buy;
+        TreeMap<Long, HandleOrderList> opposite = getLevels(buy ? Side.sell : Side.buy);
+        long remaining = quantity;
+        while (remaining > 0 && !opposite.isEmpty()) {
+            Long bestPrice = opposite.firstKey();
+            if (buy ? bestPrice > price : bestPrice < price) {
+                break; // opposite side no longer crosses
+            }
+            HandleOrderList orderList = opposite.get(bestPrice);
+            int handle = orderList.getHead();
+            while (remaining > 0 && handle != OrderStore.NULL) {
+                int next = store.getNext(handle);
+                long restingQuantity = store.getQuantity(handle);
+                long fillQuantity = Math.min(remaining, restingQuantity);
+                fillListener.onFill(id, store.getId(handle), bestPrice, fillQuantity);
+                remaining -= fillQuantity;
+                if (fillQuantity == restingQuantity) {
+                    orderList.deleteOrder(handle);
+                    handleByIdMap.remove(store.getId(handle));
+                    store.free(handle);
+                } else {
+                    orderList.modifyOrder(handle, restingQuantity - fillQuantity); // keeps its position
+                }
+                handle = next;
+            }
+            if (orderList.getNumberOfOrders() == 0) {
+                opposite.remove(bestPrice); // no more orders in this side for this level
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * Modifies the quantity of the order of the given handle, which must rest in this book
+     */
+    public void modifyOrder(int handle, long newQuantity) {
+        getLevels(store.getSide(handle)).get(store.getPrice(handle)).modifyOrder(handle, newQuantity);
+    }
+
+    /**
+     * Unlinks the order of the given handle, which must rest in this book, removing its level if it becomes empty.
+     * The record is not freed
+     */
+    public void deleteOrder(int handle) {
+        long price = store.getPrice(handle);
+        TreeMap<Long, HandleOrderList> levels = getLevels(store.getSide(handle));
+        HandleOrderList orderList = levels.get(price);
+        orderList.deleteOrder(handle);
+        if (orderList.getNumberOfOrders() == 0) {
+            levels.remove(price); // no more orders in this side for this level
+        }
+    }
+
+    /**
+     * @return the level of the given side at the given price. null if there is no such level
+     */
+    public HandleOrderList getLevel(Side side, long price) {
+        return getLevels(side).get(price);
+    }
+
+    /**
+     * @return The best price for the given side, -1 if there are no orders on the given side
+     */
+    public long getBestPrice(Side side) {
+        TreeMap<Long, HandleOrderList> levels = getLevels(side);
+        return levels.isEmpty() ? -1 : levels.firstKey();
+    }
+
+    /**
+     * @return the number of orders at the given level, -1 if there is no such level
+     */
+    public long getOrderNumAtLevel(Side side, long price) {
+        HandleOrderList orderList = getLevels(side).get(price);
+        return orderList == null ? -1 : orderList.getNumberOfOrders();
+    }
+
+    /**
+     * @return the total quantity at the given level, -1 if there is no such level
+     */
+    public long getTotalQuantityAtLevel(Side side, long price) {
+        HandleOrderList orderList = getLevels(side).get(price);
+        return orderList == null ? -1 : orderList.getTotalTradeableQuantity();
+    }
+
+    /**
+     * @return the total volume at the given level, -1 if there is no such level
+     */
+    public long getTotalVolumeAtLevel(Side side, long price) {
+        HandleOrderList orderList = getLevels(side).get(price);
+        return orderList == null ? -1 : orderList.getTotalTradeableVolume();
+    }
+
+    /**
+     * Copies the ids of the orders at the given level into the given array, in the order in which they are queued
+     *
+     * @return number of ids copied, at most ids.length. 0 if there is no such level
+     */
+    public int getOrderIdsAtLevel(Side side, long price, long[] ids) {
+        HandleOrderList orderList = getLevels(side).get(price);
+        if (orderList == null) {
+            return 0;
+        }
+        int count = 0;
+        for (int handle = orderList.getHead(); handle != OrderStore.NULL && count < ids.length;
+             handle = store.getNext(handle)) {
+            ids[count++] = store.getId(handle);
+        }
+        return count;
+    }
+
+    /**
+     * Copies the price, total quantity and number of orders of the best n levels of the given side into the given
+     * arrays, best level first. The arrays must hold at least n entries.
+     *
+     * @return number of levels copied, at most n
+     */
+    public int getDepth(Side side, int n, long[] prices, long[] quantities, int[] counts) {
+        int count = 0;
+        for (Map.Entry<Long, HandleOrderList> level : getLevels(side).entrySet()) {
+            if (count == n) {
+                break;
+            }
+            prices[count] = level.getKey();
+            quantities[count] = level.getValue().getTotalTradeableQuantity();
+            counts[count] = (int) level.getValue().getNumberOfOrders();
+            count++;
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return bids.isEmpty() && asks.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "CompactOrderBook{" +
+                "instrumentId=" + instrumentId +
+                ", bids=" + bids +
+                ", asks=" + asks +
+                '}';
+    }
+}
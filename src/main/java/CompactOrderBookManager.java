@@ -0,0 +1,184 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Manager of CompactOrderBooks, for books holding tens of millions of orders identified by number. Order records
+ * live in an OrderStore, an OffHeapOrderStore by default, and the order id index maps ids to handles in primitive
+ * arrays. Per resting order, nothing is left on the heap for the garbage collector to trace.
+ * <p>
+ * Offers the numeric API of OrderBookManager: add, modify and delete by order id, and the level queries by
+ * instrument id. Books are created with their first order and dropped with their last. With a CompactFillListener,
+ * adds match against the opposite side first, as they do in an OrderBookManager with a FillListener.
+ * Like OrderBookManager, it is meant to be used by a single thread.
+ */
+public class CompactOrderBookManager {
+    private final OrderStore store;
+
+    /**
+     * Maintains instrumentId->orderBook pairs
+     */
+    private final LongObjectHashMap<CompactOrderBook> orderBookByInstrumentIdMap = new LongObjectHashMap<>();
+
+    /**
+     * Maps the id of every resting order to the handle of its record
+     */
+    private final LongIntHashMap handleByIdMap;
+
+    /**
+     * Receives the fills of incoming orders. null if orders are not matched
+     */
+    private CompactFillListener fillListener;
+
+    /**
+     * Keeps orders in an OffHeapOrderStore
+     */
+    public CompactOrderBookManager() {
+        this(new OffHeapOrderStore(), 0);
+    }
+
+    /**
+     * @param store          store to keep the order records in
+     * @param expectedOrders number of resting orders the id index should hold without growing
+     */
+    public CompactOrderBookManager(OrderStore store, int expectedOrders) {
+        this.store = store;
+        this.handleByIdMap = new LongIntHashMap(expectedOrders);
+    }
+
+    public OrderStore getStore() {
+        return store;
+    }
+
+    public CompactFillListener getFillListener() {
+        return fillListener;
+    }
+
+    /**
+     * @param fillListener receives fills once incoming orders are matched. null to stop matching
+     */
+    public void setFillListener(CompactFillListener fillListener) {
+        this.fillListener = fillListener;
+    }
+
+    /**
+     * @return the book of the given instrument. null if it has no order
+     */
+    public CompactOrderBook getOrderBook(int instrumentId) {
+        return orderBookByInstrumentIdMap.get(instrumentId);
+    }
+
+    /**
+     * @return number of resting orders across all books
+     */
+    public int getNumberOfOrders() {
+        return handleByIdMap.size();
+    }
+
+    /**
+     * Adds an order to the book of its instrument, creating the book if needed. If orders are matched, it first
+     * trades with the opposite side, and only rests if some quantity is left
+     *
+     * @throws IllegalArgumentException if an order with the given id is already resting. Nothing is changed
+     */
+    public void addOrder(long id, int instrumentId, Side side, long price, long quantity) {
+        if (handleByIdMap.containsKey(id)) {
+            throw new IllegalArgumentException("order " + id + " is already resting");
+        }
+        CompactOrderBook orderBook = orderBookByInstrumentIdMap.get(instrumentId);
+        if (orderBook == null) {
+            orderBook = new CompactOrderBook(store, instrumentId, handleByIdMap);
+            orderBookByInstrumentIdMap.put(instrumentId, orderBook);
+        } else if (fillListener != null) {
+            quantity = orderBook.match(id, side, price, quantity, fillListener); // a new book has nothing to match
+            if (quantity == 0) {
+                if (orderBook.isEmpty()) {
+                    orderBookByInstrumentIdMap.remove(instrumentId); // filled the last orders of the book
+                }
+                return;
+            }
+        }
+        int handle = store.allocate(id, instrumentId, side, price, quantity);
+        handleByIdMap.put(id, handle);
+        orderBook.addOrder(handle);
+    }
+
+    /**
+     * Given the id of an existing order, modifies its quantity. Does nothing if there is no order with the given id
+     */
+    public void modifyOrder(long id, long newQuantity) {
+        int handle = handleByIdMap.get(id);
+        if (handle == LongIntHashMap.MISSING) {
+            return; // do nothing if this order id does not match any existing order
+        }
+        orderBookByInstrumentIdMap.get(store.getInstrumentId(handle)).modifyOrder(handle, newQuantity);
+    }
+
+    /**
+     * Permanently removes the order with the given id, and its book if it was the last order of the book.
+     * Does nothing if there is no order with the given id
+     */
+    public void deleteOrder(long id) {
+        int handle = handleByIdMap.remove(id);
+        if (handle == LongIntHashMap.MISSING) {
+            return; // do nothing if there is no matching order for the given order id
+        }
+        int instrumentId = store.getInstrumentId(handle);
+        CompactOrderBook orderBook = orderBookByInstrumentIdMap.get(instrumentId);
+        orderBook.deleteOrder(handle);
+        store.free(handle);
+        if (orderBook.isEmpty()) {
+            orderBookByInstrumentIdMap.remove(instrumentId);
+        }
+    }
+
+    /**
+     * @return the best price for the given side, -1 if there is no order on that side
+     */
+    public long getBestPrice(int instrumentId, Side side) {
+        CompactOrderBook orderBook = orderBookByInstrumentIdMap.get(instrumentId);
+        return orderBook == null ? -1 : orderBook.getBestPrice(side);
+    }
+
+    /**
+     * @return the number of orders at the given level, -1 if there is no such level
+     */
+    public long getOrderNumAtLevel(int instrumentId, Side side, long price) {
+        CompactOrderBook orderBook = orderBookByInstrumentIdMap.get(instrumentId);
+        return orderBook == null ? -1 : orderBook.getOrderNumAtLevel(side, price);
+    }
+
+    /**
+     * @return the total quantity at the given level, -1 if there is no such level
+     */
+    public long getTotalQuantityAtLevel(int instrumentId, Side side, long price) {
+        CompactOrderBook orderBook = orderBookByInstrumentIdMap.get(instrumentId);
+        return orderBook == null ? -1 : orderBook.getTotalQuantityAtLevel(side, price);
+    }
+
+    /**
+     * @return the total volume at the given level, -1 if there is no such level
+     */
+    public long getTotalVolumeAtLevel(int instrumentId, Side side, long price) {
+        CompactOrderBook orderBook = orderBookByInstrumentIdMap.get(instrumentId);
+        return orderBook == null ? -1 : orderBook.getTotalVolumeAtLevel(side, price);
+    }
+
+    /**
+     * Copies the ids of the orders at the given level into the given array, in the order in which they are queued
+     *
+     * @return number of ids copied, at most ids.length. 0 if there is no such level
+     */
+    public int getOrderIdsAtLevel(int instrumentId, Side side, long price, long[] ids) {
+        CompactOrderBook orderBook = orderBookByInstrumentIdMap.get(instrumentId);
+        return orderBook == null ? 0 : orderBook.getOrderIdsAtLevel(side, price, ids);
+    }
+
+    /**
+     * Same as OrderBookManager.getDepth
+     *
+     * @return number of levels copied, at most n
+     */
+    public int getDepth(int instrumentId, Side side, int n, long[] prices, long[] quantities, int[] counts) {
+        CompactOrderBook orderBook = orderBookByInstrumentIdMap.get(instrumentId);
+        return orderBook == null ? 0 : orderBook.getDepth(side, n, prices, quantities, counts);
+    }
+}
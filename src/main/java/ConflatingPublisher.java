@@ -0,0 +1,185 @@
+import java.util.Arrays;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * LevelUpdateListener that conflates level updates before passing them on. Set on an OrderBookManager, it marks
+ * every level that changes as dirty, keeping only its latest state, and publish() sends downstream one update per
+ * dirty level: its net change since the previous publish. However hot an instrument is, consumers receive at most
+ * one update per level and per publish, e.g. per interval with publishIfDue.
+ * <p>
+ * The dirty set is fixed size: entries live in preallocated arrays, indexed by an open addressing table, so marking
+ * a level is O(1) and allocates nothing. When the set is full, it is published early to make room.
+ * <p>
+ * Like the books it listens to, a ConflatingPublisher must only be used by the thread mutating them, which also
+ * calls publish and publishIfDue. Updates reach the downstream listener on that thread.
+ */
+public class ConflatingPublisher implements LevelUpdateListener {
+    private static final int NONE = -1;
+
+    private final LevelUpdateListener downstream;
+    private final long intervalNanos;
+    private final LevelUpdate levelUpdate = new LevelUpdate(); // flyweight for published updates
+
+    /**
+     * Dirty levels, in the order they were first marked since the last publish. Entry i is the level of instrument
+     * (or instrumentId), side and price, with its latest quantity and order count. firstActions holds the action
+     * that first marked it, and lastActions the latest one: together they give the net change.
+     */
+    private final String[] instruments;
+    private final int[] instrumentIds;
+    private final Side[] sides;
+    private final long[] prices;
+    private final long[] quantities;
+    private final long[] orderCounts;
+    private final LevelAction[] firstActions;
+    private final LevelAction[] lastActions;
+    private final int[] tableSlots; // slot of the table pointing at each entry, to clear it on publish
+    private int size;
+
+    /**
+     * open addressing table of entry indexes, NONE for a free slot. At most half full
+     */
+    private final int[] table;
+    private final int mask;
+
+    private long lastPublishNanos;
+    private long publishCount; // number of publishes that sent at least one update
+
+    /**
+     * @param downstream    receives the conflated updates
+     * @param capacity      number of dirty levels held before publishing early
+     * @param intervalNanos minimum time between two publishes through publishIfDue
+     */
+    public ConflatingPublisher(LevelUpdateListener downstream, int capacity, long intervalNanos) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.downstream = downstream;
+        this.intervalNanos = intervalNanos;
+        instruments = new String[capacity];
+        instrumentIds = new int[capacity];
+        sides = new Side[capacity];
+        prices = new long[capacity];
+        quantities = new long[capacity];
+        orderCounts = new long[capacity];
+        firstActions = new LevelAction[capacity];
+        lastActions = new LevelAction[capacity];
+        tableSlots = new int[capacity];
+        int tableSize = Integer.highestOneBit(capacity) << 2; // between 2 and 4 times the capacity
+        table = new int[tableSize];
+        Arrays.fill(table, NONE);
+        mask = tableSize - 1;
+    }
+
+    /**
+     * Marks the level of the given update as dirty and records its new state. O(1)
+     */
+    @Override
+    public void onLevelUpdate(LevelUpdate update) {
+        int slot = slotOf(update.getInstrument(), update.getInstrumentId(), update.getSide(), update.getPrice());
+        int entry = table[slot];
+        if (entry == NONE) {
+            if (size == instruments.length) {
+                publish(); // full: make room
+                slot = slotOf(update.getInstrument(), update.getInstrumentId(), update.getSide(), update.getPrice());
+            }
+            entry = size++;
+            table[slot] = entry;
+            tableSlots[entry] = slot;
+            instruments[entry] = update.getInstrument();
+            instrumentIds[entry] = update.getInstrumentId();
+            sides[entry] = update.getSide();
+            prices[entry] = update.getPrice();
+            firstActions[entry] = update.getAction();
+        }
+        quantities[entry] = update.getQuantity();
+        orderCounts[entry] = update.getOrderCount();
+        lastActions[entry] = update.getAction();
+    }
+
+    /**
+     * Sends downstream the net change of every dirty level since the last publish, in the order they were first
+     * marked, and clears the dirty set. A level added then removed in between is not sent at all; one removed then
+     * added again is sent as changed.
+     *
+     * @return number of updates sent
+     */
+    public int publish() {
+        int sent = 0;
+        for (int entry = 0; entry < size; entry++) {
+            LevelAction action = netAction(firstActions[entry], lastActions[entry]);
+            if (action != null) {
+                levelUpdate.set(instruments[entry], instrumentIds[entry], sides[entry], prices[entry],
+                        quantities[entry], orderCounts[entry], action);
+                downstream.onLevelUpdate(levelUpdate);
+                sent++;
+            }
+            table[tableSlots[entry]] = NONE;
+            instruments[entry] = null; // let go of the instrument
+        }
+        size = 0;
+        if (sent > 0) {
+            publishCount++;
+        }
+        return sent;
+    }
+
+    /**
+     * Publishes if at least intervalNanos have passed since the last publish through this method
+     *
+     * @param nowNanos current time, e.g. System.nanoTime()
+     * @return number of updates sent. 0 if it was not time to publish
+     */
+    public int publishIfDue(long nowNanos) {
+        if (nowNanos - lastPublishNanos < intervalNanos) {
+            return 0;
+        }
+        lastPublishNanos = nowNanos;
+        return publish();
+    }
+
+    /**
+     * @return number of levels currently dirty
+     */
+    public int getDirtyCount() {
+        return size;
+    }
+
+    /**
+     * @return number of publishes that sent at least one update
+     */
+    public long getPublishCount() {
+        return publishCount;
+    }
+
+    /**
+     * @return the net action of a level first marked by first and last marked by last. null if there is nothing
+     * to send
+     */
+    private static LevelAction netAction(LevelAction first, LevelAction last) {
+        if (last == LevelAction.removed) {
+            return first == LevelAction.added ? null : LevelAction.removed; // added and gone before anyone saw it
+        }
+        return first == LevelAction.added ? LevelAction.added : LevelAction.changed;
+    }
+
+    /**
+     * @return the slot of the table holding the entry of the given level, or the free slot where it belongs
+     */
+    private int slotOf(String instrument, int instrumentId, Side side, long price) {
+        long hash = (price * 31 + side.ordinal()) * 31 + (instrument != null ? instrument.hashCode() : instrumentId);
+        hash *= 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        int entry;
+        while ((entry = table[slot]) != NONE) {
+            if (prices[entry] == price && sides[entry] == side && (instrument != null
+                    ? instrument.equals(instruments[entry])
+                    : instruments[entry] == null && instrumentIds[entry] == instrumentId)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
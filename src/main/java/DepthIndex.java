@@ -0,0 +1,283 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Prefix sums of the total quantity and volume of the levels of one side of a book, in order of priority, kept in
+ * two Fenwick trees. Updating a level, the quantity and volume at or better than a price, and the level reached by
+ * sweeping a quantity are all O(log n) in the number of ticks covered.
+ * <p>
+ * Like a PriceLadder, the index covers a band of ticks starting at basePrice. Position 0 is the best end of the
+ * band: the highest price for bids, the lowest for asks. When a level falls outside the band, the index is
+ * re-centred around the occupied prices and rebuilt, growing if the band no longer fits. The band never grows
+ * beyond MAX_CAPACITY ticks, so a far away price cannot make it allocate more: fits tells whether a price can be
+ * recorded, and callers check it before changing the level.
+ */
+public class DepthIndex {
+    /**
+     * most ticks a band covers
+     */
+    public static final int MAX_CAPACITY = 1 << 20;
+
+    private final Side side;
+    private final long tickSize;
+
+    /**
+     * quantity and volume of the level at each position, 0 if there is no level
+     */
+    private long[] quantities;
+    private long[] volumes;
+
+    /**
+     * Fenwick trees over quantities and volumes. Entry i, 1 based, sums the positions (i - lowbit(i), i]
+     */
+    private long[] quantityTree;
+    private long[] volumeTree;
+
+    /**
+     * price of the lowest tick of the band
+     */
+    private long basePrice;
+    private int occupied; // number of positions holding a level
+
+    /**
+     * @param side     side of the book this index covers
+     * @param tickSize smallest price increment, always positive. Prices must be multiples of it
+     * @param capacity initial number of ticks covered, always positive
+     */
+    public DepthIndex(Side side, long tickSize, int capacity) {
+        if (tickSize <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("tickSize and capacity must be positive");
+        }
+        this.side = side;
+        this.tickSize = tickSize;
+        allocate(capacity);
+    }
+
+    /**
+     * Records the new totals of the level at the given price. O(log n)
+     *
+     * @param quantity total quantity of the level. 0 if it was removed
+     * @param volume   total volume of the level. 0 if it was removed
+     */
+    public void set(long price, long quantity, long volume) {
+        int position = positionOf(price);
+        if (position < 0) {
+            if (quantity == 0) {
+                return; // nothing to remove
+            }
+            if (!fits(price)) {
+                throw new IllegalStateException("price " + price + " does not fit in a depth index");
+            }
+            recenter(price);
+            position = positionOf(price);
+        }
+        if (quantities[position] == 0 && quantity != 0) {
+            occupied++;
+        } else if (quantities[position] != 0 && quantity == 0) {
+            occupied--;
+        }
+        add(quantityTree, position, quantity - quantities[position]);
+        add(volumeTree, position, volume - volumes[position]);
+        quantities[position] = quantity;
+        volumes[position] = volume;
+    }
+
+    /**
+     * @return true if a level at the given price can be recorded: the price is in the band, or the band can be
+     * re-centred to cover it along with every occupied price in at most MAX_CAPACITY ticks. O(1) if the price is
+     * in the band, O(n) otherwise
+     */
+    public boolean fits(long price) {
+        if (positionOf(price) >= 0) {
+            return true;
+        }
+        if (price % tickSize != 0) {
+            return false;
+        }
+        long low = price;
+        long high = price;
+        for (int position = 0; position < quantities.length; position++) {
+            if (quantities[position] != 0) {
+                low = Math.min(low, priceOf(position));
+                high = Math.max(high, priceOf(position));
+            }
+        }
+        return (high - low) / tickSize < MAX_CAPACITY;
+    }
+
+    /**
+     * @return total quantity of the levels at or better than the given price. O(log n)
+     */
+    public long getCumulativeQuantity(long price) {
+        return sum(quantityTree, positionsUpTo(price));
+    }
+
+    /**
+     * @return total volume of the levels at or better than the given price. O(log n)
+     */
+    public long getCumulativeVolume(long price) {
+        return sum(volumeTree, positionsUpTo(price));
+    }
+
+    /**
+     * @return total quantity of the side
+     */
+    public long getTotalQuantity() {
+        return sum(quantityTree, quantities.length);
+    }
+
+    /**
+     * Finds what sweeping the levels from the best price outwards with the given quantity would fill and cost.
+     * O(log n)
+     *
+     * @param quantity quantity to sweep, positive
+     * @param result   receives the quantity filled, its cost and the price of the last level reached
+     * @return the given result
+     */
+    public SweepCost sweep(long quantity, SweepCost result) {
+        long total = getTotalQuantity();
+        if (total == 0 || quantity <= 0) {
+            result.set(0, 0, -1);
+            return result;
+        }
+        long filled = Math.min(quantity, total);
+        // the levels before the last one reached hold less than filled, the last one completes it
+        int before = positionsBelow(filled);
+        long quantityBefore = sum(quantityTree, before);
+        long price = priceOf(before);
+        result.set(filled, sum(volumeTree, before) + (filled - quantityBefore) * price, price);
+        return result;
+    }
+
+    /**
+     * @return the largest number of leading positions whose quantities sum to less than the given quantity, by
+     * descending the quantity tree. Quantities are never negative, so prefix sums only grow
+     */
+    private int positionsBelow(long quantity) {
+        int count = 0;
+        long sum = 0;
+        for (int step = Integer.highestOneBit(quantities.length); step > 0; step >>= 1) {
+            int next = count + step;
+            if (next <= quantities.length && sum + quantityTree[next] < quantity) {
+                count = next;
+                sum += quantityTree[next];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return number of leading positions holding prices at or better than the given price, which may be outside
+     * the band or between ticks
+     */
+    private int positionsUpTo(long price) {
+        int capacity = quantities.length;
+        if (side == Side.buy) {
+            // bids at or above the price: ticks from ceil((price - basePrice) / tickSize) upwards
+            long lowest = -Math.floorDiv(basePrice - price, tickSize);
+            return (int) Math.max(0, Math.min(capacity, capacity - lowest));
+        }
+        // asks at or below the price: ticks up to floor((price - basePrice) / tickSize)
+        long highest = Math.floorDiv(price - basePrice, tickSize);
+        return (int) Math.max(0, Math.min(capacity, highest + 1));
+    }
+
+    /**
+     * @return the position of the given price. -1 if the price is not covered by the band or not on a tick
+     */
+    private int positionOf(long price) {
+        long offset = price - basePrice;
+        if (offset < 0 || offset % tickSize != 0 || offset / tickSize >= quantities.length) {
+            return -1;
+        }
+        int tick = (int) (offset / tickSize);
+        return side == Side.buy ? quantities.length - 1 - tick : tick;
+    }
+
+    private long priceOf(int position) {
+        int tick = side == Side.buy ? quantities.length - 1 - position : position;
+        return basePrice + tick * tickSize;
+    }
+
+    /**
+     * Adds delta to the given position of a Fenwick tree
+     */
+    private static void add(long[] tree, int position, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        for (int i = position + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * @return sum of the first count positions of a Fenwick tree
+     */
+    private static long sum(long[] tree, int count) {
+        long sum = 0;
+        for (int i = count; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private void allocate(int capacity) {
+        quantities = new long[capacity];
+        volumes = new long[capacity];
+        quantityTree = new long[capacity + 1];
+        volumeTree = new long[capacity + 1];
+    }
+
+    /**
+     * Moves the levels into a new band covering both the occupied prices and the given price, leaving equal room
+     * on both ends, and rebuilds the trees. The band doubles until it fits. O(n)
+     */
+    private void recenter(long price) {
+        long low = price;
+        long high = price;
+        for (int position = 0; position < quantities.length; position++) {
+            if (quantities[position] != 0) {
+                low = Math.min(low, priceOf(position));
+                high = Math.max(high, priceOf(position));
+            }
+        }
+        long span = (high - low) / tickSize + 1; // ticks between the lowest and highest price, inclusive
+        int capacity = quantities.length;
+        while (capacity < span) {
+            capacity = Math.min(capacity * 2, MAX_CAPACITY); // fits has checked span is at most MAX_CAPACITY
+        }
+        long[] oldQuantities = quantities;
+        long[] oldVolumes = volumes;
+        long[] oldPrices = new long[occupied];
+        int[] oldPositions = new int[occupied];
+        int count = 0;
+        for (int position = 0; position < oldQuantities.length; position++) {
+            if (oldQuantities[position] != 0) {
+                oldPrices[count] = priceOf(position);
+                oldPositions[count++] = position;
+            }
+        }
+        allocate(capacity);
+        basePrice = Math.max(0, low - ((capacity - span) / 2) * tickSize); // prices are always positive
+        for (int i = 0; i < count; i++) {
+            int position = positionOf(oldPrices[i]);
+            quantities[position] = oldQuantities[oldPositions[i]];
+            volumes[position] = oldVolumes[oldPositions[i]];
+        }
+        build(quantityTree, quantities);
+        build(volumeTree, volumes);
+    }
+
+    /**
+     * Fills a Fenwick tree from the values of its positions. O(n)
+     */
+    private static void build(long[] tree, long[] values) {
+        for (int i = 1; i < tree.length; i++) {
+            tree[i] += values[i - 1];
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+}
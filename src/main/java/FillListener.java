@@ -0,0 +1,17 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Receives the fills of a matching OrderBook. Called once per resting order an incoming order trades with, in the
+ * order in which they trade, before the book is updated for the fill. Implementations must not modify the book
+ * and must not retain the orders, which may be recycled once the call returns.
+ */
+public interface FillListener {
+
+    /**
+     * @param aggressor incoming order, its quantity is not yet reduced by this fill
+     * @param resting   resting order it trades with, its quantity is not yet reduced by this fill
+     * @param price     price of the fill, always the price of the resting order
+     * @param quantity  quantity of the fill
+     */
+    void onFill(Order aggressor, Order resting, long price, long quantity);
+}
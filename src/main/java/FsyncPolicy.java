@@ -0,0 +1,9 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * When a Journal forces its writes to disk.
+ * none leaves it to the operating system, periodic forces at most once per interval as records are appended,
+ * batch forces at the end of every batch of operations.
+ */
+public enum FsyncPolicy {
+    none, periodic, batch;
+}
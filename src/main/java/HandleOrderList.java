@@ -0,0 +1,121 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * A level of a CompactOrderBook: the FIFO of the orders resting at one price, as a doubly linked list of OrderStore
+ * handles. The links live in the order records themselves, so the list is only its two ends and its totals.
+ * Like OrderList, deleting an order, reducing its quantity in place or moving it to the back are all O(1).
+ */
+public class HandleOrderList {
+    private final OrderStore store;
+
+    /**
+     * handles of the first (oldest) and last (newest) orders. OrderStore.NULL if the list is empty
+     */
+    private int head = OrderStore.NULL;
+    private int tail = OrderStore.NULL;
+
+    private long numberOfOrders; // number of orders in the list
+    private long totalTradeableQuantity; // sum of the quantity of orders in the list
+    private long totalTradeableVolume; // sum of the volume of orders in the list. order volume = price*quantity
+
+    /**
+     * @param store store holding the records of the orders of this list
+     */
+    public HandleOrderList(OrderStore store) {
+        this.store = store;
+    }
+
+    public int getHead() {
+        return head;
+    }
+
+    public int getTail() {
+        return tail;
+    }
+
+    public long getNumberOfOrders() {
+        return numberOfOrders;
+    }
+
+    public long getTotalTradeableQuantity() {
+        return totalTradeableQuantity;
+    }
+
+    public long getTotalTradeableVolume() {
+        return totalTradeableVolume;
+    }
+
+    /**
+     * Appends the order of the given handle to the list and updates the totals. The order must not be in any list
+     */
+    public void addOrder(int handle) {
+        linkLast(handle);
+        long quantity = store.getQuantity(handle);
+        numberOfOrders++;
+        totalTradeableQuantity += quantity;
+        totalTradeableVolume += store.getPrice(handle) * quantity;
+    }
+
+    /**
+     * Unlinks the order of the given handle from the list and updates the totals. The record is not freed
+     */
+    public void deleteOrder(int handle) {
+        unlink(handle);
+        long quantity = store.getQuantity(handle);
+        numberOfOrders--;
+        totalTradeableQuantity -= quantity;
+        totalTradeableVolume -= store.getPrice(handle) * quantity;
+    }
+
+    /**
+     * Changes the quantity of the order of the given handle and updates the totals.
+     * Moves the order to the end of the list if the quantity increases.
+     */
+    public void modifyOrder(int handle, long newQuantity) {
+        long currentQuantity = store.getQuantity(handle);
+        totalTradeableQuantity += newQuantity - currentQuantity;
+        totalTradeableVolume += store.getPrice(handle) * (newQuantity - currentQuantity);
+        store.setQuantity(handle, newQuantity);
+
+        // order has to be placed at the end of the list if its quantity increased, otherwise it keeps its position
+        if (newQuantity > currentQuantity && handle != tail) {
+            unlink(handle);
+            linkLast(handle);
+        }
+    }
+
+    private void linkLast(int handle) {
+        store.setPrev(handle, tail);
+        store.setNext(handle, OrderStore.NULL);
+        if (tail == OrderStore.NULL) {
+            head = handle; // list was empty
+        } else {
+            store.setNext(tail, handle);
+        }
+        tail = handle;
+    }
+
+    private void unlink(int handle) {
+        int prev = store.getPrev(handle);
+        int next = store.getNext(handle);
+        if (prev == OrderStore.NULL) {
+            head = next;
+        } else {
+            store.setNext(prev, next);
+        }
+        if (next == OrderStore.NULL) {
+            tail = prev;
+        } else {
+            store.setPrev(next, prev);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HandleOrderList{" +
+                "numberOfOrders=" + numberOfOrders +
+                ", totalTradeableQuantity=" + totalTradeableQuantity +
+                ", totalTradeableVolume=" + totalTradeableVolume +
+                '}';
+    }
+}
@@ -0,0 +1,552 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Append-only binary log of the operations applied to an OrderBookManager, so its books can be rebuilt after a
+ * restart by replaying it.
+ * <p>
+ * The journal is a sequence of segment files of a fixed size in a directory, named journal-&lt;index&gt;.log.
+ * The current segment is memory mapped, so appending a record is a handful of writes to memory with no system
+ * call. When a record does not fit in what is left of a segment, the next segment is created and mapped.
+ * <p>
+ * A record is its length (an int) followed by its type (a byte) and its fields. Strings are written as their number
+ * of chars (a short, -1 for null) followed by the chars, so nothing is allocated to encode them. The length is
+ * written last, so a record cut short by a crash reads as the end of the journal. A length of 0 marks the end of a
+ * segment; mapped files start zeroed.
+ * <p>
+ * Since format 2, adds are written as ADD_EXPIRING and ADD_NUMERIC_EXPIRING records, which end with the expiry time
+ * of the order. ADD and ADD_NUMERIC records of format 1 journals are still replayed, as orders that never expire.
+ * <p>
+ * Stop orders are journaled as they are added and cancelled. The orders they turn into once triggered are not:
+ * replaying the stops and the operations that moved the best prices triggers them again, at the same points.
+ * <p>
+ * Fills are not journaled: matching is deterministic, so replaying the same adds into a manager that matches
+ * produces the same fills and the same books. A MATCHING record notes whether the manager matched from then on, and
+ * replay matches (or not) accordingly.
+ * <p>
+ * Writes reach the page cache straight away and survive the process dying. How often they are forced to disk, to
+ * also survive the machine dying, is set by the FsyncPolicy.
+ */
+public class Journal implements AutoCloseable {
+    private static final byte ADD = 1; // format 1, no expiry time
+    private static final byte ADD_NUMERIC = 2; // format 1, no expiry time
+    private static final byte MODIFY = 3;
+    private static final byte MODIFY_NUMERIC = 4;
+    private static final byte DELETE = 5;
+    private static final byte DELETE_NUMERIC = 6;
+    private static final byte MATCHING = 7;
+    private static final byte ADD_EXPIRING = 8;
+    private static final byte ADD_NUMERIC_EXPIRING = 9;
+    private static final byte ADD_STOP = 10;
+    private static final byte ADD_STOP_NUMERIC = 11;
+    private static final byte CANCEL_STOP = 12;
+    private static final byte CANCEL_STOP_NUMERIC = 13;
+
+    /**
+     * Makes a manager match while replaying, without reporting the fills it replays
+     */
+    private static final FillListener REPLAYED_FILLS = (aggressor, resting, price, quantity) -> {
+    };
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+
+    private FileChannel channel; // channel of the current segment
+    private MappedByteBuffer buffer; // the current segment, positioned after its last record
+    private long segmentIndex;
+    private long lastFsyncNanos;
+
+    /**
+     * Opens the journal in the given directory with 64MB segments, leaving writes to the operating system
+     */
+    public Journal(Path directory) throws IOException {
+        this(directory, 64 << 20, FsyncPolicy.none, 0);
+    }
+
+    /**
+     * Opens the journal in the given directory, creating it if needed. Records are appended after the last
+     * complete record of the last segment.
+     *
+     * @param directory           directory holding the segments
+     * @param segmentSize         size of each segment file, in bytes
+     * @param fsyncPolicy         when writes are forced to disk
+     * @param fsyncIntervalMillis least time between two forces with the periodic policy
+     */
+    public Journal(Path directory, int segmentSize, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis)
+            throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = fsyncIntervalMillis * 1_000_000L;
+        Files.createDirectories(directory);
+
+        List<Path> segments = listSegments(directory);
+        if (segments.isEmpty()) {
+            openSegment(0);
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            openSegment(segmentIndexOf(last));
+            int end = 0;
+            while (end + 4 <= segmentSize) {
+                int length = buffer.getInt(end);
+                if (length <= 0 || end + 4 + length > segmentSize) {
+                    break; // end of the segment, or a record cut short
+                }
+                end += 4 + length; // skip complete records
+            }
+            for (int i = end; i < segmentSize; i++) {
+                buffer.put(i, (byte) 0); // clear what a record cut short may have left behind
+            }
+            buffer.position(end);
+        }
+        lastFsyncNanos = System.nanoTime();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    public long getSegmentIndex() {
+        return segmentIndex;
+    }
+
+    /**
+     * Appends the operation of the given add, modify or delete command. Task commands are not journaled.
+     */
+    public void append(Command command) {
+        switch (command.getType()) {
+            case add:
+                if (command.getOrder() != null) {
+                    appendAdd(command.getOrder());
+                } else {
+                    appendAdd(command.getId(), command.getInstrumentId(), command.getSide(), command.getPrice(),
+                            command.getQuantity(), command.getExpiryTime());
+                }
+                break;
+            case modify:
+                if (command.getOrderId() != null) {
+                    appendModify(command.getOrderId(), command.getQuantity());
+                } else {
+                    appendModify(command.getId(), command.getQuantity());
+                }
+                break;
+            case delete:
+                if (command.getOrderId() != null) {
+                    appendDelete(command.getOrderId());
+                } else {
+                    appendDelete(command.getId());
+                }
+                break;
+            case task:
+                break; // not an operation on the books
+        }
+    }
+
+    public void appendAdd(Order order) {
+        int start = begin(1 + sizeOf(order.getOrderId()) + sizeOf(order.getInstrument()) + 1 + 8 + 8 + 8);
+        buffer.put(ADD_EXPIRING);
+        putString(order.getOrderId());
+        putString(order.getInstrument());
+        buffer.put((byte) order.getSide().ordinal());
+        buffer.putLong(order.getPrice());
+        buffer.putLong(order.getQuantity());
+        buffer.putLong(order.getExpiryTime());
+        end(start);
+    }
+
+    public void appendAdd(long id, int instrumentId, Side side, long price, long quantity) {
+        appendAdd(id, instrumentId, side, price, quantity, 0);
+    }
+
+    /**
+     * @param expiryTime time at which the order expires. 0 if it never expires
+     */
+    public void appendAdd(long id, int instrumentId, Side side, long price, long quantity, long expiryTime) {
+        int start = begin(1 + 8 + 4 + 1 + 8 + 8 + 8);
+        buffer.put(ADD_NUMERIC_EXPIRING);
+        buffer.putLong(id);
+        buffer.putInt(instrumentId);
+        buffer.put((byte) side.ordinal());
+        buffer.putLong(price);
+        buffer.putLong(quantity);
+        buffer.putLong(expiryTime);
+        end(start);
+    }
+
+    /**
+     * @param order        order of the stop, with its limit price and expiry time
+     * @param triggerPrice price that triggers the order
+     */
+    public void appendAddStop(Order order, long triggerPrice) {
+        int start = begin(1 + sizeOf(order.getOrderId()) + sizeOf(order.getInstrument()) + 1 + 8 + 8 + 8 + 8);
+        buffer.put(ADD_STOP);
+        putString(order.getOrderId());
+        putString(order.getInstrument());
+        buffer.put((byte) order.getSide().ordinal());
+        buffer.putLong(order.getPrice());
+        buffer.putLong(order.getQuantity());
+        buffer.putLong(order.getExpiryTime());
+        buffer.putLong(triggerPrice);
+        end(start);
+    }
+
+    public void appendAddStop(long id, int instrumentId, Side side, long price, long quantity, long triggerPrice,
+                              long expiryTime) {
+        int start = begin(1 + 8 + 4 + 1 + 8 + 8 + 8 + 8);
+        buffer.put(ADD_STOP_NUMERIC);
+        buffer.putLong(id);
+        buffer.putInt(instrumentId);
+        buffer.put((byte) side.ordinal());
+        buffer.putLong(price);
+        buffer.putLong(quantity);
+        buffer.putLong(expiryTime);
+        buffer.putLong(triggerPrice);
+        end(start);
+    }
+
+    public void appendCancelStop(String instrument, String orderId) {
+        int start = begin(1 + sizeOf(instrument) + sizeOf(orderId));
+        buffer.put(CANCEL_STOP);
+        putString(instrument);
+        putString(orderId);
+        end(start);
+    }
+
+    public void appendCancelStop(int instrumentId, long id) {
+        int start = begin(1 + 4 + 8);
+        buffer.put(CANCEL_STOP_NUMERIC);
+        buffer.putInt(instrumentId);
+        buffer.putLong(id);
+        end(start);
+    }
+
+    public void appendModify(String orderId, long newQuantity) {
+        int start = begin(1 + sizeOf(orderId) + 8);
+        buffer.put(MODIFY);
+        putString(orderId);
+        buffer.putLong(newQuantity);
+        end(start);
+    }
+
+    public void appendModify(long id, long newQuantity) {
+        int start = begin(1 + 8 + 8);
+        buffer.put(MODIFY_NUMERIC);
+        buffer.putLong(id);
+        buffer.putLong(newQuantity);
+        end(start);
+    }
+
+    public void appendDelete(String orderId) {
+        int start = begin(1 + sizeOf(orderId));
+        buffer.put(DELETE);
+        putString(orderId);
+        end(start);
+    }
+
+    public void appendDelete(long id) {
+        int start = begin(1 + 8);
+        buffer.put(DELETE_NUMERIC);
+        buffer.putLong(id);
+        end(start);
+    }
+
+    /**
+     * Records whether the manager matches incoming orders from now on, so replay matches them the same way
+     *
+     * @param matching true if the manager has a FillListener
+     */
+    public void appendMatching(boolean matching) {
+        int start = begin(1 + 1);
+        buffer.put(MATCHING);
+        buffer.put((byte) (matching ? 1 : 0));
+        end(start);
+    }
+
+    /**
+     * Marks the end of a batch of operations. Forces the journal to disk with the batch policy
+     */
+    public void endBatch() {
+        if (fsyncPolicy == FsyncPolicy.batch) {
+            force();
+        }
+    }
+
+    /**
+     * Forces every record appended so far to disk
+     */
+    public void force() {
+        buffer.force();
+        lastFsyncNanos = System.nanoTime();
+    }
+
+    /**
+     * Applies every record of the journal to the given manager, oldest first. Meant to rebuild the manager on
+     * startup, before it is given this journal and before listeners are set. Operations are journaled before they
+     * are applied, so those the books rejected, e.g. for an off-tick price, are rejected again and skipped.
+     * <p>
+     * Fills are not journaled, so orders that were matched are matched again: where the journal records that the
+     * manager matched, replay gives the manager a FillListener that ignores the fills, unless it already has one,
+     * and where it records that it did not, replay removes its FillListener. The manager thus ends up matching as
+     * the journaled one last did, and a FillListener set before replay would be told about every replayed fill.
+     *
+     * @return number of records applied
+     */
+    public long replay(OrderBookManager orderBookManager) throws IOException {
+        return replay(orderBookManager, 0);
+    }
+
+    /**
+     * Same as replay(OrderBookManager), starting from the given position instead of the start of the journal,
+     * e.g. the position at which a Snapshot was taken.
+     *
+     * @param fromPosition a position returned by getPosition
+     * @return number of records applied
+     */
+    public long replay(OrderBookManager orderBookManager, long fromPosition) throws IOException {
+        long fromSegment = fromPosition >>> 32;
+        int fromOffset = (int) fromPosition;
+        long records = 0;
+        for (Path segment : listSegments(directory)) {
+            long index = segmentIndexOf(segment);
+            if (index < fromSegment) {
+                continue;
+            }
+            try (FileChannel segmentChannel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                MappedByteBuffer segmentBuffer = segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0,
+                        segmentChannel.size());
+                segmentBuffer.position(index == fromSegment ? fromOffset : 0);
+                while (segmentBuffer.remaining() >= 4) {
+                    int length = segmentBuffer.getInt();
+                    if (length <= 0 || length > segmentBuffer.remaining()) {
+                        break; // end of the segment, or a record cut short
+                    }
+                    int next = segmentBuffer.position() + length;
+                    try {
+                        apply(segmentBuffer, orderBookManager);
+                    } catch (IllegalArgumentException e) {
+                        // rejected by the books, as it was when it was journaled
+                    }
+                    segmentBuffer.position(next);
+                    records++;
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * @return the position following the last record appended: the index of the current segment in the high 32
+     * bits, the offset in it in the low 32 bits
+     */
+    public long getPosition() {
+        return segmentIndex << 32 | buffer.position();
+    }
+
+    /**
+     * Reads the record at the position of the given buffer and applies it to the given manager
+     */
+    private static void apply(MappedByteBuffer records, OrderBookManager orderBookManager) {
+        byte type = records.get();
+        switch (type) {
+            case ADD:
+            case ADD_EXPIRING:
+                String orderId = getString(records);
+                String instrument = getString(records);
+                Side side = Side.values()[records.get()];
+                Order order = new Order(orderId, instrument, side, records.getLong(), records.getLong());
+                if (type == ADD_EXPIRING) {
+                    order.setExpiryTime(records.getLong());
+                }
+                orderBookManager.addOrder(order);
+                break;
+            case ADD_NUMERIC:
+            case ADD_NUMERIC_EXPIRING:
+                long id = records.getLong();
+                int instrumentId = records.getInt();
+                Side numericSide = Side.values()[records.get()];
+                long price = records.getLong();
+                long quantity = records.getLong();
+                long expiryTime = type == ADD_NUMERIC_EXPIRING ? records.getLong() : 0;
+                orderBookManager.addOrder(id, instrumentId, numericSide, price, quantity, expiryTime);
+                break;
+            case ADD_STOP:
+                String stopOrderId = getString(records);
+                String stopInstrument = getString(records);
+                Side stopSide = Side.values()[records.get()];
+                Order stopOrder = new Order(stopOrderId, stopInstrument, stopSide, records.getLong(),
+                        records.getLong());
+                stopOrder.setExpiryTime(records.getLong());
+                orderBookManager.addStopOrder(stopOrder, records.getLong());
+                break;
+            case ADD_STOP_NUMERIC:
+                long stopId = records.getLong();
+                int stopInstrumentId = records.getInt();
+                Side numericStopSide = Side.values()[records.get()];
+                long stopPrice = records.getLong();
+                long stopQuantity = records.getLong();
+                long stopExpiryTime = records.getLong();
+                orderBookManager.addStopOrder(stopId, stopInstrumentId, numericStopSide, stopPrice, stopQuantity,
+                        records.getLong(), stopExpiryTime);
+                break;
+            case CANCEL_STOP:
+                orderBookManager.cancelStopOrder(getString(records), getString(records));
+                break;
+            case CANCEL_STOP_NUMERIC:
+                orderBookManager.cancelStopOrder(records.getInt(), records.getLong());
+                break;
+            case MODIFY:
+                orderBookManager.modifyOrder(getString(records), records.getLong());
+                break;
+            case MODIFY_NUMERIC:
+                orderBookManager.modifyOrder(records.getLong(), records.getLong());
+                break;
+            case DELETE:
+                orderBookManager.deleteOrder(getString(records));
+                break;
+            case DELETE_NUMERIC:
+                orderBookManager.deleteOrder(records.getLong());
+                break;
+            case MATCHING:
+                boolean matching = records.get() != 0;
+                if (matching && orderBookManager.getFillListener() == null) {
+                    orderBookManager.setFillListener(REPLAYED_FILLS);
+                } else if (!matching && orderBookManager.getFillListener() != null) {
+                    orderBookManager.setFillListener(null);
+                }
+                break;
+            default:
+                throw new IllegalStateException("unknown journal record type " + type);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.none) {
+            force();
+        }
+        channel.close();
+    }
+
+    /**
+     * Makes room for a record of the given size, rolling to the next segment if it does not fit in this one
+     *
+     * @return position of the record
+     */
+    private int begin(int size) {
+        if (4 + size + 4 > segmentSize) {
+            throw new IllegalArgumentException("record of " + size + " bytes does not fit in a journal segment");
+        }
+        if (buffer.position() + 4 + size + 4 > segmentSize) { // always leave room for the end of segment marker
+            rollSegment();
+        }
+        int start = buffer.position();
+        buffer.position(start + 4); // the length is written once the record is complete
+        return start;
+    }
+
+    /**
+     * Completes the record started at the given position by writing its length
+     */
+    private void end(int start) {
+        buffer.putInt(start, buffer.position() - start - 4);
+        if (fsyncPolicy == FsyncPolicy.periodic && System.nanoTime() - lastFsyncNanos >= fsyncIntervalNanos) {
+            force();
+        }
+    }
+
+    private void rollSegment() {
+        try {
+            if (fsyncPolicy != FsyncPolicy.none) {
+                buffer.force(); // nothing of a full segment is left to the operating system
+            }
+            channel.close();
+            openSegment(segmentIndex + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not roll journal segment in " + directory, e);
+        }
+    }
+
+    private void openSegment(long index) throws IOException {
+        Path segment = directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segmentIndex = index;
+    }
+
+    private static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).forEach(segments::add);
+        }
+        Collections.sort(segments); // indexes are zero padded, so names sort in index order
+        return segments;
+    }
+
+    private static long segmentIndexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * @return number of bytes taken by the given string in a record
+     */
+    private static int sizeOf(String value) {
+        if (value == null) {
+            return 2;
+        }
+        if (value.length() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("string too long for the journal: " + value.length() + " chars");
+        }
+        return 2 + 2 * value.length();
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        buffer.putShort((short) value.length()); // sizeOf has checked it fits
+        for (int i = 0; i < value.length(); i++) {
+            buffer.putChar(value.charAt(i));
+        }
+    }
+
+    private static String getString(MappedByteBuffer records) {
+        int length = records.getShort();
+        if (length < 0) {
+            return null;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = records.getChar();
+        }
+        return new String(chars);
+    }
+}
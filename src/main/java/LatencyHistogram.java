@@ -0,0 +1,132 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Histogram of non-negative values, typically latencies in nanoseconds, with a fixed footprint.
+ * <p>
+ * Buckets are log-linear: values below 32 have a bucket each, then every power of two is split into 16 buckets of
+ * equal width. Any value is counted in a bucket at most about 6% wider than itself, whatever its magnitude, and
+ * the whole range of long fits in under a thousand buckets. Recording is a few shifts and an array increment.
+ * <p>
+ * A histogram is recorded into by a single thread at a time, without locks: counts are updated with ordered writes
+ * rather than atomic increments. Any other thread can read it at any time; snapshot gives it a consistent copy to
+ * compute percentiles from while recording goes on.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4; // 16 buckets per power of two
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS; // enough for any long
+
+    // indexes of the totals, stored after the buckets
+    private static final int COUNT = BUCKETS;
+    private static final int SUM = BUCKETS + 1;
+    private static final int MAX = BUCKETS + 2;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS + 3);
+
+    /**
+     * Counts the given value. Negative values are counted as 0. Must only be called by one thread at a time
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        int bucket = bucketOf(value);
+        counts.lazySet(bucket, counts.get(bucket) + 1);
+        counts.lazySet(SUM, counts.get(SUM) + value);
+        if (value > counts.get(MAX)) {
+            counts.lazySet(MAX, value);
+        }
+        counts.lazySet(COUNT, counts.get(COUNT) + 1); // last, so a reader never sees more values than were bucketed
+    }
+
+    public long getCount() {
+        return counts.get(COUNT);
+    }
+
+    public long getMax() {
+        return counts.get(MAX);
+    }
+
+    /**
+     * @return the mean of the recorded values. 0 if none was recorded
+     */
+    public double getMean() {
+        long count = counts.get(COUNT);
+        return count == 0 ? 0 : (double) counts.get(SUM) / count;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return a value that at least the given percentage of the recorded values are less than or equal to, accurate
+     * to the width of its bucket. 0 if no value was recorded. Read from another thread while values are recorded,
+     * use a snapshot instead.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = counts.get(COUNT);
+        if (count == 0) {
+            return 0;
+        }
+        long max = counts.get(MAX);
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count)); // number of values to cover
+        long covered = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            covered += counts.get(bucket);
+            if (covered >= rank) {
+                return Math.min(highestValueOf(bucket), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return a copy of this histogram that no thread records into. Can be taken from any thread
+     */
+    public LatencyHistogram snapshot() {
+        LatencyHistogram snapshot = new LatencyHistogram();
+        long count = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            long bucketCount = counts.get(bucket);
+            snapshot.counts.lazySet(bucket, bucketCount);
+            count += bucketCount;
+        }
+        snapshot.counts.lazySet(COUNT, count); // what was bucketed, even if the count was not updated yet
+        snapshot.counts.lazySet(SUM, counts.get(SUM));
+        snapshot.counts.lazySet(MAX, counts.get(MAX));
+        return snapshot;
+    }
+
+    /**
+     * Forgets every recorded value. Must only be called by the thread that records
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS + 3; i++) {
+            counts.lazySet(i, 0);
+        }
+    }
+
+    /**
+     * Bucket b of a power of two p holds [ (16 + b) << p, (17 + b) << p ). Values below 32 are their own bucket.
+     */
+    static int bucketOf(long value) {
+        int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS + 1));
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * @return the largest value counted in the given bucket
+     */
+    static long highestValueOf(int bucket) {
+        int shift = Math.max(0, (bucket >> SUB_BUCKET_BITS) - 1);
+        long mantissa = bucket - ((long) shift << SUB_BUCKET_BITS);
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.0f p50=%d p90=%d p99=%d p99.9=%d max=%d", getCount(), getMean(),
+                getValueAtPercentile(50), getValueAtPercentile(90), getValueAtPercentile(99),
+                getValueAtPercentile(99.9), getMax());
+    }
+}
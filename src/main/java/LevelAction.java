@@ -0,0 +1,7 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * What happened to a level of a book.
+ */
+public enum LevelAction {
+    added, changed, removed;
+}
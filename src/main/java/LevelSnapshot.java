@@ -0,0 +1,76 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Immutable copy of a level of an OrderBook: its price, totals and orders in order of arrival. The orders are
+ * immutable OrderSnapshots, so they can be read from any thread while the book keeps changing, and no reader can
+ * change what the others see.
+ * <p>
+ * A level caches its LevelSnapshot until it changes, so consecutive BookSnapshots share the snapshots of every level
+ * that did not change in between.
+ */
+public final class LevelSnapshot {
+    private final Side side;
+    private final long price;
+    private final long quantity; // total quantity of the level
+    private final long volume; // total volume of the level
+    private final List<OrderSnapshot> orders; // unmodifiable, oldest first
+
+    /**
+     * Copies the given level
+     *
+     * @param orderList orders of the level
+     */
+    LevelSnapshot(Side side, long price, OrderList orderList) {
+        this.side = side;
+        this.price = price;
+        this.quantity = orderList.getTotalTradeableQuantity();
+        this.volume = orderList.getTotalTradeableVolume();
+        OrderSnapshot[] copies = new OrderSnapshot[(int) orderList.getNumberOfOrders()];
+        int i = 0;
+        for (RestingOrder restingOrder = orderList.getHead(); restingOrder != null; restingOrder = restingOrder.next) {
+            copies[i++] = new OrderSnapshot(restingOrder.getOrder()); // the order may change or be recycled
+        }
+        this.orders = Collections.unmodifiableList(Arrays.asList(copies));
+    }
+
+    public Side getSide() {
+        return side;
+    }
+
+    public long getPrice() {
+        return price;
+    }
+
+    public long getTotalQuantity() {
+        return quantity;
+    }
+
+    public long getTotalVolume() {
+        return volume;
+    }
+
+    public int getNumberOfOrders() {
+        return orders.size();
+    }
+
+    /**
+     * @return the orders of the level, oldest first. Neither the list nor its orders can be modified
+     */
+    public List<OrderSnapshot> getOrders() {
+        return orders;
+    }
+
+    @Override
+    public String toString() {
+        return "LevelSnapshot{" +
+                "side=" + side +
+                ", price=" + price +
+                ", quantity=" + quantity +
+                ", orders=" + orders +
+                '}';
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Describes the new state of one level of a book after a mutation. Each OrderBook fills and reuses a single
+ * instance for every update it publishes, so listeners must copy what they need before returning and must not
+ * retain the instance.
+ */
+public class LevelUpdate {
+    /**
+     * instrument of the book, null for books identified by number
+     */
+    private String instrument;
+
+    /**
+     * numeric identifier of the instrument, only meaningful when instrument is null
+     */
+    private int instrumentId;
+
+    private Side side;
+
+    private long price;
+
+    /**
+     * total tradeable quantity of the level after the update. 0 if the level was removed
+     */
+    private long quantity;
+
+    /**
+     * number of orders in the level after the update. 0 if the level was removed
+     */
+    private long orderCount;
+
+    private LevelAction action;
+
+    void set(String instrument, int instrumentId, Side side, long price, long quantity, long orderCount,
+             LevelAction action) {
+        this.instrument = instrument;
+        this.instrumentId = instrumentId;
+        this.side = side;
+        this.price = price;
+        this.quantity = quantity;
+        this.orderCount = orderCount;
+        this.action = action;
+    }
+
+    public String getInstrument() {
+        return instrument;
+    }
+
+    public int getInstrumentId() {
+        return instrumentId;
+    }
+
+    public Side getSide() {
+        return side;
+    }
+
+    public long getPrice() {
+        return price;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    public LevelAction getAction() {
+        return action;
+    }
+
+    @Override
+    public String toString() {
+        return "LevelUpdate{" +
+                "instrument='" + instrument + '\'' +
+                ", instrumentId=" + instrumentId +
+                ", side=" + side +
+                ", price=" + price +
+                ", quantity=" + quantity +
+                ", orderCount=" + orderCount +
+                ", action=" + action +
+                '}';
+    }
+}
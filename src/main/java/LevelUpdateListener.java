@@ -0,0 +1,13 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Receives the levels of a book that change as orders are added, modified, deleted or filled. Called once per
+ * changed level, after the book is updated. Implementations must not modify the book.
+ */
+public interface LevelUpdateListener {
+
+    /**
+     * @param update new state of the level. Reused for the next update, so it must not be retained
+     */
+    void onLevelUpdate(LevelUpdate update);
+}
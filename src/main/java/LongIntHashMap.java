@@ -0,0 +1,185 @@
+import java.util.Arrays;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Open addressing hash map from primitive long keys to non-negative int values, e.g. order ids to OrderStore
+ * handles. Keys and values live in two parallel primitive arrays probed linearly, so the map holds no object per
+ * entry for the garbage collector to trace. Removal shifts the following entries of the probe sequence back
+ * instead of leaving tombstones, like LongObjectHashMap.
+ * <p>
+ * Values must be non-negative; an empty slot is one whose value is MISSING.
+ */
+public class LongIntHashMap {
+    /**
+     * returned for keys that are not in the map
+     */
+    public static final int MISSING = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * the map grows once it is more than this full
+     */
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private int[] values;
+    private int mask; // capacity - 1, capacity is always a power of 2
+    private int size;
+    private int resizeThreshold;
+
+    public LongIntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize number of entries the map should hold without growing
+     */
+    public LongIntHashMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * @return the value mapped to the given key. MISSING if there is none
+     */
+    public int get(long key) {
+        int index = indexOf(key);
+        int value;
+        while ((value = values[index]) != MISSING) {
+            if (keys[index] == key) {
+                return value;
+            }
+            index = (index + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != MISSING;
+    }
+
+    /**
+     * Maps the given key to the given value, replacing any previous value
+     *
+     * @param value a non-negative value
+     * @return the previous value. MISSING if there was none
+     */
+    public int put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("negative values are not allowed");
+        }
+        int index = indexOf(key);
+        int existing;
+        while ((existing = values[index]) != MISSING) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return existing;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > resizeThreshold) {
+            rehash(values.length << 1);
+        }
+        return MISSING;
+    }
+
+    /**
+     * Removes the mapping for the given key
+     *
+     * @return the removed value. MISSING if there was none
+     */
+    public int remove(long key) {
+        int index = indexOf(key);
+        int value;
+        while ((value = values[index]) != MISSING) {
+            if (keys[index] == key) {
+                values[index] = MISSING;
+                size--;
+                compactChain(index);
+                return value;
+            }
+            index = (index + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, MISSING);
+        size = 0;
+    }
+
+    /**
+     * Moves entries following a freed slot back into it when their ideal slot is at or before it, so probe
+     * sequences never cross an empty slot.
+     */
+    private void compactChain(int freeIndex) {
+        int index = (freeIndex + 1) & mask;
+        while (values[index] != MISSING) {
+            int ideal = indexOf(keys[index]);
+            // the entry can move if its ideal slot is not cyclically within (freeIndex, index]
+            if (((index - ideal) & mask) >= ((index - freeIndex) & mask)) {
+                keys[freeIndex] = keys[index];
+                values[freeIndex] = values[index];
+                values[index] = MISSING;
+                freeIndex = index;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private int indexOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L; // spread sequential ids across the table
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != MISSING) {
+                int index = indexOf(oldKeys[i]);
+                while (values[index] != MISSING) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != MISSING) {
+                if (sb.length() > 1) sb.append(", ");
+                sb.append(keys[i]).append('=').append(values[i]);
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,270 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Drives an OrderBookManager with a recorded stream of market data events, to measure its throughput and latency.
+ * <p>
+ * Events are read from a binary file through memory mapped buffers. Every event is a fixed size record, written in
+ * the order the events happened:
+ * <pre>
+ * long timestamp (nanoseconds), byte action (1 add, 2 modify, 3 delete), long orderId, int instrumentId,
+ * byte side (0 buy, 1 sell), long price, long quantity
+ * </pre>
+ * Events are applied through the numeric API, either as fast as possible or paced at their recorded timestamps,
+ * possibly sped up. Each operation is timed into a LatencyHistogram of its action. When paced, an operation is timed
+ * from when it should have started, so falling behind the recording shows up in the latencies.
+ * <p>
+ * Binary files are made from CSV captures with convertCsv. Each line of a capture is
+ * <pre>
+ * timestamp,action,orderId,instrument,side,price,quantity
+ * </pre>
+ * where action is add, modify or delete, side is buy or sell and instrument is any name. Order ids are numbers.
+ * Modify lines only need the quantity, delete lines only the order id; the other fields can be left empty.
+ * Instruments are numbered in order of first appearance. Empty lines, lines starting with # and a header line are
+ * skipped.
+ * <p>
+ * From the command line:
+ * <pre>
+ * MarketDataReplay convert capture.csv events.bin
+ * MarketDataReplay replay events.bin [speed] [tickSize ladderCapacity]
+ * </pre>
+ * where speed is 0 (the default) to replay as fast as possible, 1 to replay at recorded timestamps, 10 to replay
+ * ten times faster...
+ */
+public class MarketDataReplay {
+    public static final byte ADD = 1;
+    public static final byte MODIFY = 2;
+    public static final byte DELETE = 3;
+
+    /**
+     * size of an event in the binary file
+     */
+    public static final int EVENT_SIZE = 8 + 1 + 8 + 4 + 1 + 8 + 8;
+
+    /**
+     * most bytes mapped at once. A multiple of EVENT_SIZE, so no event straddles two mappings
+     */
+    private static final long WINDOW_SIZE = (Integer.MAX_VALUE / EVENT_SIZE) * (long) EVENT_SIZE;
+
+    private final OrderBookManager orderBookManager;
+    private final LatencyHistogram addLatencies = new LatencyHistogram();
+    private final LatencyHistogram modifyLatencies = new LatencyHistogram();
+    private final LatencyHistogram deleteLatencies = new LatencyHistogram();
+    private long events;
+    private long elapsedNanos;
+
+    public MarketDataReplay(OrderBookManager orderBookManager) {
+        this.orderBookManager = orderBookManager;
+    }
+
+    public OrderBookManager getOrderBookManager() {
+        return orderBookManager;
+    }
+
+    public LatencyHistogram getAddLatencies() {
+        return addLatencies;
+    }
+
+    public LatencyHistogram getModifyLatencies() {
+        return modifyLatencies;
+    }
+
+    public LatencyHistogram getDeleteLatencies() {
+        return deleteLatencies;
+    }
+
+    /**
+     * @return number of events replayed so far
+     */
+    public long getEvents() {
+        return events;
+    }
+
+    /**
+     * @return time spent replaying so far, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return events replayed per second so far
+     */
+    public double getEventsPerSecond() {
+        return elapsedNanos == 0 ? 0 : events * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Applies every event of the given binary file to the manager
+     *
+     * @param events binary event file
+     * @param speed  0 to replay as fast as possible, otherwise how many times faster than recorded to replay
+     * @return number of events replayed
+     */
+    public long replay(Path events, double speed) throws IOException {
+        long replayed = 0;
+        long start = System.nanoTime();
+        long firstTimestamp = -1;
+        try (FileChannel channel = FileChannel.open(events, StandardOpenOption.READ)) {
+            long size = channel.size() - channel.size() % EVENT_SIZE; // ignore an event cut short
+            for (long offset = 0; offset < size; offset += WINDOW_SIZE) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                        Math.min(WINDOW_SIZE, size - offset));
+                while (buffer.remaining() >= EVENT_SIZE) {
+                    long timestamp = buffer.getLong();
+                    byte action = buffer.get();
+                    long orderId = buffer.getLong();
+                    int instrumentId = buffer.getInt();
+                    Side side = buffer.get() == 0 ? Side.buy : Side.sell;
+                    long price = buffer.getLong();
+                    long quantity = buffer.getLong();
+
+                    long operationStart;
+                    if (speed > 0) {
+                        if (firstTimestamp < 0) {
+                            firstTimestamp = timestamp;
+                        }
+                        operationStart = start + (long) ((timestamp - firstTimestamp) / speed);
+                        while (System.nanoTime() < operationStart) {
+                            // spin until the event is due
+                        }
+                    } else {
+                        operationStart = System.nanoTime();
+                    }
+                    switch (action) {
+                        case ADD:
+                            orderBookManager.addOrder(orderId, instrumentId, side, price, quantity);
+                            addLatencies.record(System.nanoTime() - operationStart);
+                            break;
+                        case MODIFY:
+                            orderBookManager.modifyOrder(orderId, quantity);
+                            modifyLatencies.record(System.nanoTime() - operationStart);
+                            break;
+                        case DELETE:
+                            orderBookManager.deleteOrder(orderId);
+                            deleteLatencies.record(System.nanoTime() - operationStart);
+                            break;
+                        default:
+                            throw new IOException("unknown action " + action + " in " + events);
+                    }
+                    replayed++;
+                }
+            }
+        }
+        elapsedNanos += System.nanoTime() - start;
+        this.events += replayed;
+        return replayed;
+    }
+
+    /**
+     * Converts a CSV capture to a binary event file
+     *
+     * @param csv    capture to convert
+     * @param events binary event file to write, replaced if it exists
+     * @return number of events written
+     */
+    public static long convertCsv(Path csv, Path events) throws IOException {
+        Map<String, Integer> instrumentIds = new HashMap<>();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(EVENT_SIZE * 8192);
+        long written = 0;
+        int lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8);
+             FileChannel channel = FileChannel.open(events, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || (lineNumber == 1 && line.startsWith("timestamp"))) {
+                    continue;
+                }
+                String[] fields = line.split(",", -1);
+                if (fields.length != 7) {
+                    throw new IOException(csv + ":" + lineNumber + ": expected 7 fields, found " + fields.length);
+                }
+                try {
+                    CommandType action = CommandType.valueOf(fields[1].trim());
+                    if (action == CommandType.task) {
+                        throw new IllegalArgumentException("unknown action " + action);
+                    }
+                    String side = fields[4].trim();
+                    if (!side.equals("buy") && !side.equals("sell")
+                            && (action == CommandType.add || !side.isEmpty())) { // modify and delete need no side
+                        throw new IllegalArgumentException("unknown side " + side);
+                    }
+                    String instrument = fields[3].trim();
+                    Integer instrumentId = instrumentIds.get(instrument);
+                    if (instrumentId == null && !instrument.isEmpty()) {
+                        instrumentId = instrumentIds.size();
+                        instrumentIds.put(instrument, instrumentId);
+                    }
+                    buffer.putLong(Long.parseLong(fields[0].trim()));
+                    buffer.put(action == CommandType.add ? ADD : action == CommandType.modify ? MODIFY : DELETE);
+                    buffer.putLong(Long.parseLong(fields[2].trim()));
+                    buffer.putInt(instrumentId == null ? 0 : instrumentId);
+                    buffer.put((byte) (side.equals("sell") ? 1 : 0));
+                    buffer.putLong(parseLong(fields[5]));
+                    buffer.putLong(parseLong(fields[6]));
+                } catch (IllegalArgumentException e) { // includes NumberFormatException
+                    throw new IOException(csv + ":" + lineNumber + ": " + e.getMessage(), e);
+                }
+                written++;
+                if (buffer.remaining() < EVENT_SIZE) {
+                    writeOut(buffer, channel);
+                }
+            }
+            writeOut(buffer, channel);
+        }
+        return written;
+    }
+
+    private static long parseLong(String field) {
+        field = field.trim();
+        return field.isEmpty() ? 0 : Long.parseLong(field);
+    }
+
+    private static void writeOut(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("events=%d elapsed=%.3fs throughput=%.0f msgs/s%n  add (ns):    %s%n"
+                        + "  modify (ns): %s%n  delete (ns): %s", events, elapsedNanos / 1e9, getEventsPerSecond(),
+                addLatencies, modifyLatencies, deleteLatencies);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("convert")) {
+            long written = convertCsv(Paths.get(args[1]), Paths.get(args[2]));
+            System.out.println("converted " + written + " events");
+        } else if (args.length >= 2 && args[0].equals("replay")) {
+            double speed = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+            OrderBookManager orderBookManager = args.length > 4
+                    ? new OrderBookManager(Long.parseLong(args[3]), Integer.parseInt(args[4]), true)
+                    : new OrderBookManager();
+            MarketDataReplay replay = new MarketDataReplay(orderBookManager);
+            replay.replay(Paths.get(args[1]), speed);
+            System.out.println(replay);
+        } else {
+            System.err.println("usage: MarketDataReplay convert <capture.csv> <events.bin>");
+            System.err.println("       MarketDataReplay replay <events.bin> [speed] [tickSize ladderCapacity]");
+            System.exit(1);
+        }
+    }
+}
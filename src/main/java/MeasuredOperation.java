@@ -0,0 +1,9 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * The operations of an OrderBookManager whose latency is recorded by OrderBookMetrics.
+ * Modifies are split by direction, since an increase moves the order to the back of its level.
+ */
+public enum MeasuredOperation {
+    add, modifyUp, modifyDown, delete,
+    getBestPrice, getOrderNumAtLevel, getTotalQuantityAtLevel, getTotalVolumeAtLevel, getOrdersAtLevel, getDepth;
+}
@@ -0,0 +1,70 @@
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * A stack of recycled objects. acquire() hands out a released object when there is one and only creates a new one
+ * when the pool is empty, so once a process has warmed up, objects are reused instead of becoming garbage.
+ * Objects are handed out as they were released; callers are responsible for resetting their state.
+ * Not thread safe.
+ *
+ * @param <T> type of the pooled objects
+ */
+public class ObjectPool<T> {
+    /**
+     * creates objects when the pool is empty
+     */
+    private final Supplier<T> factory;
+
+    /**
+     * released objects, available for reuse
+     */
+    private Object[] free;
+    private int size;
+
+    public ObjectPool(Supplier<T> factory) {
+        this.factory = factory;
+        this.free = new Object[16];
+        this.size = 0;
+    }
+
+    /**
+     * @return a released object if there is one, otherwise a new one
+     */
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        if (size == 0) {
+            return factory.get();
+        }
+        T object = (T) free[--size];
+        free[size] = null;
+        return object;
+    }
+
+    /**
+     * Returns an object to the pool. It must no longer be used by the caller.
+     */
+    public void release(T object) {
+        if (size == free.length) {
+            free = Arrays.copyOf(free, size * 2);
+        }
+        free[size++] = object;
+    }
+
+    /**
+     * Creates objects until the given number are available, so they are not created on the hot path later.
+     */
+    public void preallocate(int count) {
+        while (size < count) {
+            release(factory.get());
+        }
+    }
+
+    /**
+     * @return number of objects available for reuse
+     */
+    public int size() {
+        return size;
+    }
+}
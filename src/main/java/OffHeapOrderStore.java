@@ -0,0 +1,169 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * OrderStore keeping order records in fixed width slots of direct ByteBuffers, outside of the heap. The garbage
+ * collector neither traces nor copies them, so tens of millions of resting orders add nothing to its marking time.
+ * <p>
+ * Slots are allocated in chunks of CHUNK_SLOTS, a handle being the index of a slot: its high bits select the chunk
+ * and its low bits the slot within it. The store grows a chunk at a time and never shrinks; freed slots are chained
+ * into a free list through their next field and reused first.
+ * <p>
+ * Slot layout, SLOT_SIZE bytes in native byte order:
+ * id (long) | price (long) | quantity (long) | prev (int) | next (int) | instrumentId (int) | side (byte) | padding
+ */
+public class OffHeapOrderStore implements OrderStore {
+    private static final int ID = 0;
+    private static final int PRICE = 8;
+    private static final int QUANTITY = 16;
+    private static final int PREV = 24;
+    private static final int NEXT = 28;
+    private static final int INSTRUMENT_ID = 32;
+    private static final int SIDE = 36;
+    public static final int SLOT_SIZE = 40;
+
+    private static final int CHUNK_BITS = 16;
+    public static final int CHUNK_SLOTS = 1 << CHUNK_BITS; // 2.5MB per chunk
+    private static final int CHUNK_MASK = CHUNK_SLOTS - 1;
+
+    private static final Side[] SIDES = Side.values();
+
+    private ByteBuffer[] chunks;
+    private int chunkCount;
+    private int unusedHandle; // slots from this handle onwards have never been allocated
+    private int freeHandle = NULL; // head of the free list
+    private int size;
+
+    public OffHeapOrderStore() {
+        this(CHUNK_SLOTS);
+    }
+
+    /**
+     * @param initialCapacity number of orders the store holds before allocating another chunk, rounded up to a
+     *                        whole number of chunks
+     */
+    public OffHeapOrderStore(int initialCapacity) {
+        chunks = new ByteBuffer[16];
+        do {
+            addChunk();
+        } while ((long) chunkCount * CHUNK_SLOTS < initialCapacity);
+    }
+
+    @Override
+    public int allocate(long id, int instrumentId, Side side, long price, long quantity) {
+        int handle;
+        if (freeHandle != NULL) {
+            handle = freeHandle;
+            freeHandle = getNext(handle);
+        } else {
+            if (unusedHandle == chunkCount * CHUNK_SLOTS) {
+                addChunk();
+            }
+            handle = unusedHandle++;
+        }
+        ByteBuffer chunk = chunks[handle >>> CHUNK_BITS];
+        int offset = offsetOf(handle);
+        chunk.putLong(offset + ID, id);
+        chunk.putLong(offset + PRICE, price);
+        chunk.putLong(offset + QUANTITY, quantity);
+        chunk.putInt(offset + PREV, NULL);
+        chunk.putInt(offset + NEXT, NULL);
+        chunk.putInt(offset + INSTRUMENT_ID, instrumentId);
+        chunk.put(offset + SIDE, (byte) side.ordinal());
+        size++;
+        return handle;
+    }
+
+    @Override
+    public void free(int handle) {
+        setNext(handle, freeHandle);
+        freeHandle = handle;
+        size--;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of orders the store can hold without allocating another chunk
+     */
+    public long getCapacity() {
+        return (long) chunkCount * CHUNK_SLOTS;
+    }
+
+    /**
+     * @return bytes of direct memory allocated by this store
+     */
+    public long getAllocatedBytes() {
+        return getCapacity() * SLOT_SIZE;
+    }
+
+    @Override
+    public long getId(int handle) {
+        return chunks[handle >>> CHUNK_BITS].getLong(offsetOf(handle) + ID);
+    }
+
+    @Override
+    public int getInstrumentId(int handle) {
+        return chunks[handle >>> CHUNK_BITS].getInt(offsetOf(handle) + INSTRUMENT_ID);
+    }
+
+    @Override
+    public Side getSide(int handle) {
+        return SIDES[chunks[handle >>> CHUNK_BITS].get(offsetOf(handle) + SIDE)];
+    }
+
+    @Override
+    public long getPrice(int handle) {
+        return chunks[handle >>> CHUNK_BITS].getLong(offsetOf(handle) + PRICE);
+    }
+
+    @Override
+    public long getQuantity(int handle) {
+        return chunks[handle >>> CHUNK_BITS].getLong(offsetOf(handle) + QUANTITY);
+    }
+
+    @Override
+    public void setQuantity(int handle, long quantity) {
+        chunks[handle >>> CHUNK_BITS].putLong(offsetOf(handle) + QUANTITY, quantity);
+    }
+
+    @Override
+    public int getPrev(int handle) {
+        return chunks[handle >>> CHUNK_BITS].getInt(offsetOf(handle) + PREV);
+    }
+
+    @Override
+    public void setPrev(int handle, int prev) {
+        chunks[handle >>> CHUNK_BITS].putInt(offsetOf(handle) + PREV, prev);
+    }
+
+    @Override
+    public int getNext(int handle) {
+        return chunks[handle >>> CHUNK_BITS].getInt(offsetOf(handle) + NEXT);
+    }
+
+    @Override
+    public void setNext(int handle, int next) {
+        chunks[handle >>> CHUNK_BITS].putInt(offsetOf(handle) + NEXT, next);
+    }
+
+    private static int offsetOf(int handle) {
+        return (handle & CHUNK_MASK) * SLOT_SIZE;
+    }
+
+    private void addChunk() {
+        if (chunkCount == chunks.length) {
+            if (chunkCount == 1 << (31 - CHUNK_BITS)) {
+                throw new IllegalStateException("OffHeapOrderStore is full");
+            }
+            chunks = Arrays.copyOf(chunks, chunkCount << 1);
+        }
+        chunks[chunkCount++] = ByteBuffer.allocateDirect(CHUNK_SLOTS * SLOT_SIZE).order(ByteOrder.nativeOrder());
+    }
+}
@@ -12,6 +12,16 @@ public class Order {
      */
     private String instrument;
 
+    /**
+     * numeric identifier for an order. Only used when orderId is null
+     */
+    private long id;
+
+    /**
+     * numeric identifier of an instrument. Only used when instrument is null
+     */
+    private int instrumentId;
+
     /**
      * either buy or sell
      */
@@ -27,6 +37,11 @@ public class Order {
      */
     private long quantity;
 
+    /**
+     * time at which the order expires, in the unit of the OrderBookManager's TimerWheel. 0 if it never expires
+     */
+    private long expiryTime;
+
     /**
      * Default for serializers
      */
@@ -41,6 +56,17 @@ public class Order {
         this.quantity = quantity;
     }
 
+    /**
+     * Creates an order identified by numbers rather than Strings
+     */
+    public Order(long id, int instrumentId, Side side, long price, long quantity) {
+        this.id = id;
+        this.instrumentId = instrumentId;
+        this.side = side;
+        this.price = price;
+        this.quantity = quantity;
+    }
+
     public String getOrderId() {
         return orderId;
     }
@@ -57,6 +83,22 @@ public class Order {
         this.instrument = instrument;
     }
 
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public int getInstrumentId() {
+        return instrumentId;
+    }
+
+    public void setInstrumentId(int instrumentId) {
+        this.instrumentId = instrumentId;
+    }
+
     public Side getSide() {
         return side;
     }
@@ -81,11 +123,21 @@ public class Order {
         this.quantity = quantity;
     }
 
+    public long getExpiryTime() {
+        return expiryTime;
+    }
+
+    public void setExpiryTime(long expiryTime) {
+        this.expiryTime = expiryTime;
+    }
+
     @Override
     public String toString() {
         return "Order{" +
                 "orderId='" + orderId + '\'' +
                 ", instrument='" + instrument + '\'' +
+                ", id=" + id +
+                ", instrumentId=" + instrumentId +
                 ", side=" + side +
                 ", price=" + price +
                 ", quantity=" + quantity +
@@ -99,6 +151,8 @@ public class Order {
 
         Order order = (Order) o;
 
+        if (id != order.id) return false;
+        if (instrumentId != order.instrumentId) return false;
         if (price != order.price) return false;
         if (quantity != order.quantity) return false;
         if (orderId != null ? !orderId.equals(order.orderId) : order.orderId != null) return false;
@@ -110,6 +164,8 @@ public class Order {
     public int hashCode() {
         int result = orderId != null ? orderId.hashCode() : 0;
         result = 31 * result + (instrument != null ? instrument.hashCode() : 0);
+        result = 31 * result + (int) (id ^ (id >>> 32));
+        result = 31 * result + instrumentId;
         result = 31 * result + (side != null ? side.hashCode() : 0);
         result = 31 * result + (int) (price ^ (price >>> 32));
         result = 31 * result + (int) (quantity ^ (quantity >>> 32));
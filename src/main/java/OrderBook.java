@@ -10,115 +10,729 @@ import java.util.TreeMap;
  * bids is the set of orders from buyers
  * asks is the set of orders from sellers
  * <p>
- * Each side is an ordered Map where the price is used as key and the value is an OrderList
+ * Each side is an ordered set of levels where the price is used as key and the value is an OrderList
  * of orders that have the same price. Price -> OrderList This makes up a level.
  * <p>
- * Both Maps are ordered using the price/level as key. Comparators for both bids and asks have been implemented based
- * on the requirements. bids are sorted in descending order of price level and asks are sorted in ascending order.
+ * Both sides are ordered using the price/level as key. By default each side is a TreeMap, using the comparators
+ * implemented for bids and asks. bids are sorted in descending order of price level and asks are sorted in
+ * ascending order. Books for instruments trading in a narrow band of prices can use PriceLadders instead, which
+ * find a level with an array read.
  * <p>
  * The OrderList class encapsulates the list of orders into an object that provides efficient
  * lookup for total volume and quantity of orders in the list.
+ * <p>
+ * A book with a FillListener matches incoming orders. An order that crosses the opposite side sweeps its levels from
+ * the best price outwards, trading with each level's orders in the order they arrived, as part of adding it.
+ * Only the residual, if any, rests in the book.
+ * <p>
+ * A book with a LevelUpdateListener publishes the new state of every level it adds, changes or removes, right from
+ * the operation that changed it, through a single reused LevelUpdate.
+ * <p>
+ * A book with a TopOfBook publishes its best bid and ask there whenever they change, for other threads to read
+ * without locks while this book keeps being mutated.
+ * <p>
+ * Stop orders wait in a StopOrderIndex, apart from the levels, until the best price of the opposite side crosses
+ * their trigger price. Adding and deleting orders then turn the stops they trigger into orders of the book.
+ * <p>
+ * snapshot() returns an immutable BookSnapshot of the whole book. Levels cache their snapshot until they change, so
+ * consecutive snapshots share every level that did not change in between.
  */
 public class OrderBook {
+    /**
+     * initial number of ticks covered by the depth indexes of TreeMap backed books
+     */
+    private static final int DEPTH_INDEX_CAPACITY = 1024;
+
+    /**
+     * Levels of buy orders. Entries are sorted in descending order of price.
+     */
+    private PriceLevels bids;
+
+    /**
+     * Levels of sell orders. Entries are sorted in ascending order of price.
+     */
+    private PriceLevels asks;
+
+    /**
+     * Quick lookup of the node of a resting order given its Id. The node knows the level, side and price of the
+     * order. Shared with every other OrderBook of the same OrderBookManager.
+     */
+    private HashMap<String, RestingOrder> restingOrderByOrderIdMap;
+
+    /**
+     * Quick lookup of the node of a resting order given its numeric id, for orders without a String id.
+     * Shared with every other OrderBook of the same OrderBookManager.
+     */
+    private LongObjectHashMap<RestingOrder> restingOrderByIdMap;
+
+    /**
+     * Pools to take RestingOrders and OrderLists from, and to return them to once they are no longer used.
+     * null if this book is not pooled, in which case they are created and left to the garbage collector.
+     */
+    private OrderBookPools pools;
+
+    /**
+     * Receives the fills of incoming orders. null if this book does not match orders, in which case crossing
+     * orders simply rest.
+     */
+    private FillListener fillListener;
+
+    /**
+     * Receives the levels that change. null if level updates are not published
+     */
+    private LevelUpdateListener levelUpdateListener;
+
+    /**
+     * Flyweight filled for every published level update
+     */
+    private final LevelUpdate levelUpdate = new LevelUpdate();
+
+    /**
+     * Receives the best bid and ask whenever they change. null if they are not published
+     */
+    private TopOfBook topOfBook;
+
+    /**
+     * Expires the orders of this book that have an expiry time. Shared with every other OrderBook of the same
+     * OrderBookManager. null if orders do not expire
+     */
+    private TimerWheel timerWheel;
+
+    /**
+     * Pending stop orders of this book. null until the first stop order is added
+     */
+    private StopOrderIndex stopOrders;
+    private final ArrayList<Order> triggeredOrders = new ArrayList<>(); // reused by triggerStops
+    private boolean triggering; // true while triggerStops adds triggered orders
+
+    /**
+     * Counts the levels created and removed. null if not counted
+     */
+    private OrderBookMetrics metrics;
+
+    /**
+     * Prefix sums of the levels of each side, answering cumulative depth and sweep queries in O(log n). null if
+     * this book is not depth indexed, in which case those queries walk the levels
+     */
+    private DepthIndex bidDepth;
+    private DepthIndex askDepth;
 
     /**
-     * Ordered map of price -> OrderList. Guarantees O(log(n)) worst case time for all operations.
-     * Entries are sorted in descending order of price.
+     * true if every level keeps a QueueIndex of its orders
      */
-    private TreeMap<Long, OrderList> bids;
+    private boolean queueIndexed;
 
     /**
-     * Ordered map of price -> OrderList. Guarantees O(log(n)) worst case time for all operations.
-     * Entries are sorted in ascending order of price.
+     * tick size and initial capacity of the PriceLadders backing each side, also used by the depth indexes.
+     * tickSize is 0 for TreeMap backed books
      */
-    private TreeMap<Long, OrderList> asks;
+    private final long tickSize;
+    private final int ladderCapacity;
 
     /**
-     * Quick lookup map for the price/level of an order given its Id
+     * Snapshot of this book, reused until the book changes. null once it has changed
      */
-    private HashMap<String, Long> priceByOrderIdMap;
+    private BookSnapshot snapshot;
 
     /**
-     * Quick lookup of the side of an order given its Id.
+     * Books of an OrderBookManager whose snapshot must be published again. This book adds itself when it changes.
+     * null if snapshots are not published
      */
-    private HashMap<String, Side> sideByOrderIdMap;
+    private ArrayList<OrderBook> staleOrderBooks;
+    boolean snapshotStale; // true while this book is in staleOrderBooks
+
+    /**
+     * Instrument of this book, reported in level updates. instrument is null for books identified by number
+     */
+    private String instrument;
+    private int instrumentId;
 
     /**
      * Preferred constructor.
      * Ideally, to instantiate an OrderBook an instrument must be specified.
+     * Both sides are kept in TreeMaps.
      */
     public OrderBook() {
-        bids = new TreeMap<>(new BidLevelComparator()); // sort Map in descending order of Key<price>
-        asks = new TreeMap<>(new AskLevelComparator()); // sort Map in ascending order of Key<price>
-        priceByOrderIdMap = new HashMap<>();
-        sideByOrderIdMap = new HashMap<>();
+        this(0, 0, new HashMap<>(), new LongObjectHashMap<>(), null);
     }
 
+    /**
+     * Creates an OrderBook whose sides are kept in PriceLadders.
+     *
+     * @param tickSize       smallest price increment of the instrument. Prices must be multiples of it
+     * @param ladderCapacity initial number of ticks covered by each side
+     */
+    public OrderBook(long tickSize, int ladderCapacity) {
+        this(tickSize, ladderCapacity, new HashMap<>(), new LongObjectHashMap<>(), null);
+    }
+
+    /**
+     * @param tickSize                 tick size of the PriceLadders backing each side. 0 for TreeMaps
+     * @param ladderCapacity           initial number of ticks covered by each PriceLadder
+     * @param restingOrderByOrderIdMap order id index, shared by all books of an OrderBookManager
+     * @param restingOrderByIdMap      numeric order id index, shared by all books of an OrderBookManager
+     * @param pools                    pools shared by all books of a pooled OrderBookManager. null if not pooled
+     */
+    OrderBook(long tickSize, int ladderCapacity, HashMap<String, RestingOrder> restingOrderByOrderIdMap,
+              LongObjectHashMap<RestingOrder> restingOrderByIdMap, OrderBookPools pools) {
+        this.tickSize = tickSize;
+        this.ladderCapacity = ladderCapacity;
+        if (tickSize > 0) {
+            bids = new PriceLadder(Side.buy, tickSize, ladderCapacity);
+            asks = new PriceLadder(Side.sell, tickSize, ladderCapacity);
+        } else {
+            bids = new TreeMapPriceLevels(new BidLevelComparator()); // sort levels in descending order of price
+            asks = new TreeMapPriceLevels(new AskLevelComparator()); // sort levels in ascending order of price
+        }
+        this.restingOrderByOrderIdMap = restingOrderByOrderIdMap;
+        this.restingOrderByIdMap = restingOrderByIdMap;
+        this.pools = pools;
+    }
+
+    /**
+     * @return the bid levels, sorted in descending order of price. The live map for TreeMap backed books, a copy
+     * for ladder backed books.
+     */
     public TreeMap<Long, OrderList> getBids() {
-        return bids;
+        return bids.asTreeMap();
     }
 
+    /**
+     * @return the ask levels, sorted in ascending order of price. The live map for TreeMap backed books, a copy
+     * for ladder backed books.
+     */
     public TreeMap<Long, OrderList> getAsks() {
-        return asks;
+        return asks.asTreeMap();
     }
 
     /**
-     * @return map for retrieving the price/level for an order using the order id as key
+     * @param orderId id of an order
+     * @return the node of the order with the given id resting in this book. null if there is no such order
      */
-    public HashMap<String, Long> getPriceByOrderIdMap() {
-        return priceByOrderIdMap;
+    public RestingOrder getRestingOrder(String orderId) {
+        RestingOrder restingOrder = restingOrderByOrderIdMap.get(orderId);
+        return restingOrder != null && restingOrder.orderBook == this ? restingOrder : null;
     }
 
     /**
-     * @return map for retrieving the side of an order using the order id as key
+     * @param id numeric id of an order
+     * @return the node of the order with the given numeric id resting in this book. null if there is no such order
      */
-    public HashMap<String, Side> getSideByOrderIdMap() {
-        return sideByOrderIdMap;
+    public RestingOrder getRestingOrder(long id) {
+        RestingOrder restingOrder = restingOrderByIdMap.get(id);
+        return restingOrder != null && restingOrder.orderBook == this ? restingOrder : null;
     }
 
-    /* To prevent errors, fields should not be explicitly set */
-    private void setBids(TreeMap<Long, OrderList> bids) {
-        this.bids = bids;
+    public FillListener getFillListener() {
+        return fillListener;
     }
 
-    private void setAsks(TreeMap<Long, OrderList> asks) {
-        this.asks = asks;
+    /**
+     * @param fillListener receives fills once this book matches incoming orders. null to stop matching
+     */
+    public void setFillListener(FillListener fillListener) {
+        this.fillListener = fillListener;
+    }
+
+    public LevelUpdateListener getLevelUpdateListener() {
+        return levelUpdateListener;
     }
 
-    private void setPriceByOrderIdMap(HashMap<String, Long> priceByOrderIdMap) {
-        this.priceByOrderIdMap = priceByOrderIdMap;
+    /**
+     * @param levelUpdateListener receives the new state of every level that changes. null to stop publishing
+     */
+    public void setLevelUpdateListener(LevelUpdateListener levelUpdateListener) {
+        this.levelUpdateListener = levelUpdateListener;
     }
 
-    private void setSideByOrderIdMap(HashMap<String, Side> sideByOrderIdMap) {
-        this.sideByOrderIdMap = sideByOrderIdMap;
+    public TopOfBook getTopOfBook() {
+        return topOfBook;
     }
 
     /**
-     * Adds the given order to the either the bids or asks TreeMap based on the side of the order.
-     * Registers the id of this order in the priceByOrderId and sideByOrderId maps.
+     * Publishes the current best bid and ask to the given TopOfBook, then keeps it up to date.
+     *
+     * @param topOfBook receives the best bid and ask whenever they change. null to stop publishing
+     */
+    public void setTopOfBook(TopOfBook topOfBook) {
+        this.topOfBook = topOfBook;
+        if (topOfBook != null) {
+            publishTopOfBook(Side.buy);
+            publishTopOfBook(Side.sell);
+        }
+    }
+
+    public TimerWheel getTimerWheel() {
+        return timerWheel;
+    }
+
+    /**
+     * Only orders added from then on are scheduled. OrderBookManager.setTimerWheel also schedules the orders
+     * already resting
+     *
+     * @param timerWheel schedules the expiry of orders added with an expiry time. null if orders do not expire
+     */
+    public void setTimerWheel(TimerWheel timerWheel) {
+        this.timerWheel = timerWheel;
+    }
+
+    public OrderBookMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param metrics counts the levels created and removed from now on. null to stop counting
+     */
+    public void setMetrics(OrderBookMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public String getInstrument() {
+        return instrument;
+    }
+
+    public void setInstrument(String instrument) {
+        this.instrument = instrument;
+        this.snapshot = null;
+    }
+
+    public int getInstrumentId() {
+        return instrumentId;
+    }
+
+    public void setInstrumentId(int instrumentId) {
+        this.instrumentId = instrumentId;
+        this.snapshot = null;
+    }
+
+    public boolean isDepthIndexed() {
+        return bidDepth != null;
+    }
+
+    /**
+     * Starts or stops keeping a DepthIndex of each side, filled from the current levels. Every level change then
+     * costs O(log n) more, and cumulative depth and sweep queries become O(log n) instead of O(levels).
+     * Books backed by TreeMaps index prices in units of 1. The levels of each side of an indexed book must span at
+     * most DepthIndex.MAX_CAPACITY ticks: a level further away is still added, and the book then drops its depth
+     * indexes and walks its levels instead, as it does when the indexes were never built.
+     *
+     * @param depthIndexed true to index both sides
+     * @throws IllegalArgumentException if the current levels of a side span too many ticks. The book is then left
+     *                                  without depth indexes
+     */
+    public void setDepthIndexed(boolean depthIndexed) {
+        if (!depthIndexed) {
+            bidDepth = null;
+            askDepth = null;
+            return;
+        }
+        if (bidDepth != null) {
+            return;
+        }
+        long indexTickSize = tickSize > 0 ? tickSize : 1;
+        int capacity = ladderCapacity > 0 ? ladderCapacity : DEPTH_INDEX_CAPACITY;
+        DepthIndex[] depthIndexes = new DepthIndex[2];
+        for (Side side : Side.values()) {
+            DepthIndex depthIndex = new DepthIndex(side, indexTickSize, capacity);
+            PriceLevels levels = getLevels(side);
+            for (long price = levels.getBestPrice(); price >= 0; price = levels.getNextPrice(price)) {
+                if (!depthIndex.fits(price)) {
+                    throw new IllegalArgumentException("the " + side + " levels span more than "
+                            + DepthIndex.MAX_CAPACITY + " ticks");
+                }
+                OrderList orderList = levels.get(price);
+                depthIndex.set(price, orderList.getTotalTradeableQuantity(), orderList.getTotalTradeableVolume());
+            }
+            depthIndexes[side.ordinal()] = depthIndex;
+        }
+        bidDepth = depthIndexes[Side.buy.ordinal()];
+        askDepth = depthIndexes[Side.sell.ordinal()];
+    }
+
+    public boolean isQueueIndexed() {
+        return queueIndexed;
+    }
+
+    /**
+     * Starts or stops keeping a QueueIndex in every level, existing or new. Every order operation then costs
+     * O(log n) more in the size of its level, and queue position queries become O(log n) instead of O(position).
+     *
+     * @param queueIndexed true to index the queue of every level
+     */
+    public void setQueueIndexed(boolean queueIndexed) {
+        this.queueIndexed = queueIndexed;
+        for (Side side : Side.values()) {
+            PriceLevels levels = getLevels(side);
+            for (long price = levels.getBestPrice(); price >= 0; price = levels.getNextPrice(price)) {
+                levels.get(price).setQueueIndexed(queueIndexed);
+            }
+        }
+    }
+
+    private DepthIndex getDepthIndex(Side side) {
+        return side == Side.buy ? bidDepth : askDepth;
+    }
+
+    /**
+     * @param staleOrderBooks list this book adds itself to, once, whenever it changes. The book is added right away.
+     *                        null to stop
+     */
+    void setStaleOrderBooks(ArrayList<OrderBook> staleOrderBooks) {
+        if (this.staleOrderBooks != staleOrderBooks) {
+            this.staleOrderBooks = staleOrderBooks;
+            snapshotStale = false;
+        }
+        invalidateSnapshot();
+    }
+
+    /**
+     * Returns an immutable snapshot of this book. Only the levels that changed since the previous snapshot are
+     * copied, and the same snapshot is returned as long as the book does not change. Must be called by the thread
+     * mutating this book; the returned snapshot can then be handed to any thread.
+     *
+     * @return every level of both sides, best price first, as they are now
+     */
+    public BookSnapshot snapshot() {
+        if (snapshot == null) {
+            snapshot = new BookSnapshot(instrument, instrumentId, snapshotOf(Side.buy), snapshotOf(Side.sell));
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the snapshots of the levels of the given side, best price first. Levels that did not change since
+     * their last snapshot reuse it
+     */
+    private LevelSnapshot[] snapshotOf(Side side) {
+        PriceLevels levels = getLevels(side);
+        LevelSnapshot[] snapshots = new LevelSnapshot[levels.size()];
+        int i = 0;
+        for (long price = levels.getBestPrice(); price >= 0; price = levels.getNextPrice(price)) {
+            OrderList orderList = levels.get(price);
+            if (orderList.snapshot == null) {
+                orderList.snapshot = new LevelSnapshot(side, price, orderList);
+            }
+            snapshots[i++] = orderList.snapshot;
+        }
+        return snapshots;
+    }
+
+    /**
+     * Drops the snapshot of this book, and queues it to be published again if snapshots are published
+     */
+    private void invalidateSnapshot() {
+        snapshot = null;
+        if (staleOrderBooks != null && !snapshotStale) {
+            snapshotStale = true;
+            staleOrderBooks.add(this);
+        }
+    }
+
+    /**
+     * @param side either buy or sell
+     * @return bids for buy, asks for sell
+     */
+    private PriceLevels getLevels(Side side) {
+        return side == Side.buy ? bids : asks; // no other case. Side Enum must be 1 of the 2 values.
+    }
+
+    /**
+     * Adds the given order to the either the bids or asks based on the side of the order.
+     * Registers the node of this order in the order id index, or in the numeric order id index if the order has
+     * no String id.
+     * <p>
+     * If this book matches orders, the order first trades with the opposite side for as long as it crosses it,
+     * and its quantity is reduced by what it traded. It only rests if some quantity is left.
+     * Stop orders triggered by the new best prices are then added as well.
      *
      * @param order new order to add
+     * @return the node of the order resting in the book. null if it was completely filled
+     */
+    public RestingOrder addOrder(Order order) {
+        RestingOrder restingOrder = rest(order);
+        triggerStops();
+        return restingOrder;
+    }
+
+    /**
+     * Same as addOrder, without triggering stop orders
      */
-    public void addOrder(Order order) {
+    private RestingOrder rest(Order order) {
         long price = order.getPrice(); // get the price/level of the order with this id
-        Side side = order.getSide(); // get the side of the order with this id
+        if (!isOnTick(price)) {
+            if (pools != null && order.getOrderId() == null) {
+                pools.orders.release(order); // numeric orders of a pooled book belong to its pool
+            }
+            throw offTick(price);
+        }
+        if (fillListener != null && !match(order)) {
+            // completely filled, nothing rests. numeric orders of a pooled book belong to its pool
+            if (pools != null && order.getOrderId() == null) {
+                pools.orders.release(order);
+            }
+            return null;
+        }
+        fitDepthIndex(order.getSide(), price);
+        PriceLevels levels = getLevels(order.getSide());
 
-        OrderList orderList;
-        switch (side) {
-            case buy:
-                orderList = bids.getOrDefault(price, new OrderList());// new List if mapping doesn't exist
-                orderList.addOrder(order);// add order to the end of the list
-                bids.put(price, orderList);//update TreeMap
-                break;
-            case sell:
-                orderList = asks.getOrDefault(price, new OrderList());// new List if mapping doesn't exist
-                orderList.addOrder(order); //add order to the end of the list
-                asks.put(price, orderList); // update TreeMap
-                break; // no need for default case. Side Enum must be 1 of the 2 values.
+        OrderList orderList = levels.get(price);
+        boolean newLevel = orderList == null;
+        if (newLevel) {
+            orderList = newOrderList(); // new List if mapping doesn't exist
+            levels.put(price, orderList);
+            if (metrics != null) {
+                metrics.levelCreated();
+            }
+        }
+        RestingOrder restingOrder;
+        if (pools != null) {
+            restingOrder = pools.restingOrders.acquire();
+            restingOrder.init(order);
+            orderList.addOrder(restingOrder); // add order to the end of the list
+        } else {
+            restingOrder = orderList.addOrder(order); // add order to the end of the list
+        }
+        restingOrder.orderBook = this;
+        register(order, restingOrder); // register the node in the order id index
+        publishLevel(order.getSide(), price, orderList, newLevel ? LevelAction.added : LevelAction.changed);
+        return restingOrder;
+    }
+
+    /**
+     * Adds the orders of the given add commands, which must all be for this book, on the same side and at the same
+     * price. The level is looked up once, its totals are updated once and a single level update is published.
+     * A matching book adds them one by one instead, since each of them may trade.
+     *
+     * @param commands add commands
+     * @param from     index of the first command to add
+     * @param to       index following the last command to add
+     */
+    void addOrders(Command[] commands, int from, int to) {
+        if (fillListener != null) {
+            for (int i = from; i < to; i++) {
+                addOrder(orderOf(commands[i]));
+            }
+            return;
+        }
+        Side side = commands[from].getSide();
+        long price = commands[from].getPrice();
+        checkPrice(price); // before any order is created or any level taken from the pool
+        fitDepthIndex(side, price);
+        PriceLevels levels = getLevels(side);
+
+        OrderList orderList = levels.get(price);
+        boolean newLevel = orderList == null;
+        if (newLevel) {
+            orderList = newOrderList();
+            levels.put(price, orderList);
+            if (metrics != null) {
+                metrics.levelCreated();
+            }
+        }
+        long quantity = 0;
+        for (int i = from; i < to; i++) {
+            Order order = orderOf(commands[i]);
+            RestingOrder restingOrder;
+            if (pools != null) {
+                restingOrder = pools.restingOrders.acquire();
+                restingOrder.init(order);
+            } else {
+                restingOrder = new RestingOrder(order);
+            }
+            orderList.append(restingOrder); // totals are updated once, below
+            restingOrder.orderBook = this;
+            register(order, restingOrder);
+            quantity += order.getQuantity();
+        }
+        orderList.addToTotals(to - from, quantity, price * quantity);
+        publishLevel(side, price, orderList, newLevel ? LevelAction.added : LevelAction.changed);
+        triggerStops();
+    }
+
+    /**
+     * Adds a level restored from a Snapshot, holding the given orders in the given order of arrival. The level
+     * must not exist yet. Nothing is matched or published, and the totals of the level are set once. Orders with an
+     * expiry time are scheduled on the TimerWheel of this book, if it has one.
+     *
+     * @param orders orders of the level, oldest first
+     * @param count  number of orders of the level
+     */
+    void restoreLevel(Side side, long price, Order[] orders, int count) {
+        checkPrice(price);
+        fitDepthIndex(side, price);
+        OrderList orderList = newOrderList();
+        long quantity = 0;
+        for (int i = 0; i < count; i++) {
+            Order order = orders[i];
+            RestingOrder restingOrder;
+            if (pools != null) {
+                restingOrder = pools.restingOrders.acquire();
+                restingOrder.init(order);
+            } else {
+                restingOrder = new RestingOrder(order);
+            }
+            orderList.append(restingOrder);
+            restingOrder.orderBook = this;
+            register(order, restingOrder);
+            quantity += order.getQuantity();
+        }
+        orderList.addToTotals(count, quantity, price * quantity);
+        getLevels(side).put(price, orderList);
+        if (metrics != null) {
+            metrics.levelCreated();
+        }
+        if (topOfBook != null) {
+            updateTopOfBook(side, price);
+        }
+        if (bidDepth != null) {
+            getDepthIndex(side).set(price, quantity, price * quantity);
+        }
+        invalidateSnapshot();
+    }
+
+    /**
+     * @return true if a level at the given price can be added to this book
+     */
+    private boolean isOnTick(long price) {
+        return tickSize == 0 || price % tickSize == 0;
+    }
+
+    /**
+     * Rejects a level price the PriceLadders of this book cannot hold, before anything is matched, taken from a pool
+     * or changed, so a rejected order leaves no trace in the book
+     *
+     * @throws IllegalArgumentException if the price is not a multiple of the tick size of this book
+     */
+    private void checkPrice(long price) {
+        if (!isOnTick(price)) {
+            throw offTick(price);
+        }
+    }
+
+    private IllegalArgumentException offTick(long price) {
+        return new IllegalArgumentException("price " + price + " is not a multiple of the tick size " + tickSize);
+    }
+
+    /**
+     * Drops the DepthIndexes of this book if a level at the given price would make the one of its side span more
+     * than DepthIndex.MAX_CAPACITY ticks. Cumulative depth and sweep queries then walk the levels, as they do for a
+     * book whose levels were too far apart to be indexed when depth indexing was enabled
+     */
+    private void fitDepthIndex(Side side, long price) {
+        if (bidDepth != null && !getDepthIndex(side).fits(price)) {
+            bidDepth = null;
+            askDepth = null;
+        }
+    }
+
+    /**
+     * @return an empty level, taken from the pool if this book is pooled, queue indexed if this book is
+     */
+    private OrderList newOrderList() {
+        OrderList orderList = pools != null ? pools.orderLists.acquire() : new OrderList();
+        orderList.setQueueIndexed(queueIndexed);
+        return orderList;
+    }
+
+    /**
+     * @return the order of the given add command, created for commands adding an order identified by number
+     */
+    private Order orderOf(Command command) {
+        if (command.getOrder() != null) {
+            return command.getOrder();
+        }
+        Order order = newOrder(command.getId(), command.getInstrumentId(), command.getSide(), command.getPrice(),
+                command.getQuantity());
+        order.setExpiryTime(command.getExpiryTime());
+        return order;
+    }
+
+    /**
+     * @return a new order identified by number, taken from the pool if this book is pooled
+     */
+    Order newOrder(long id, int instrumentId, Side side, long price, long quantity) {
+        if (pools == null) {
+            return new Order(id, instrumentId, side, price, quantity);
+        }
+        Order order = pools.orders.acquire();
+        order.setId(id);
+        order.setInstrumentId(instrumentId);
+        order.setSide(side);
+        order.setPrice(price);
+        order.setQuantity(quantity);
+        order.setExpiryTime(0);
+        return order;
+    }
+
+    /**
+     * Registers the node of the given order in the order id index it belongs to, and schedules its expiry if it has
+     * one and this book has a TimerWheel
+     */
+    private void register(Order order, RestingOrder restingOrder) {
+        if (order.getOrderId() != null) {
+            restingOrderByOrderIdMap.put(order.getOrderId(), restingOrder);
+        } else {
+            restingOrderByIdMap.put(order.getId(), restingOrder);
+        }
+        if (timerWheel != null && order.getExpiryTime() > 0) {
+            timerWheel.schedule(restingOrder);
+        }
+    }
+
+    /**
+     * Trades the given incoming order against the opposite side, best level first and in order of arrival within
+     * a level, until it no longer crosses or is completely filled. Reports every fill, reduces or removes the
+     * resting orders it trades with and reduces the quantity of the incoming order accordingly.
+     * Publishes one update per level it trades with.
+     *
+     * @param order incoming order
+     * @return true if some quantity of the incoming order is left
+     */
+    private boolean match(Order order) {
+        boolean buy = order.getSide() == Side.buy;
+        PriceLevels opposite = getLevels(buy ? Side.sell : Side.buy);
+        long limitPrice = order.getPrice();
+        long remaining = order.getQuantity();
+
+        while (remaining > 0) {
+            long bestPrice = opposite.getBestPrice();
+            if (bestPrice < 0 || (buy ? bestPrice > limitPrice : bestPrice < limitPrice)) {
+                break; // opposite side is empty or no longer crosses
+            }
+            OrderList orderList = opposite.get(bestPrice);
+            RestingOrder restingOrder = orderList.getHead();
+            Side restingSide = restingOrder.getOrder().getSide();
+            boolean levelRemoved = false;
+            while (remaining > 0 && restingOrder != null) {
+                RestingOrder next = restingOrder.next;
+                Order resting = restingOrder.getOrder();
+                long fillQuantity = Math.min(remaining, resting.getQuantity());
+                order.setQuantity(remaining); // the listener sees the quantity before this fill
+                fillListener.onFill(order, resting, bestPrice, fillQuantity);
+                remaining -= fillQuantity;
+                if (fillQuantity == resting.getQuantity()) {
+                    unregister(resting);
+                    levelRemoved = removeOrder(restingOrder); // removes the level with its last order
+                } else {
+                    orderList.modifyOrder(restingOrder, resting.getQuantity() - fillQuantity); // keeps its position
+                }
+                restingOrder = next;
+            }
+            publishLevel(restingSide, bestPrice, orderList, levelRemoved ? LevelAction.removed : LevelAction.changed);
+        }
+        order.setQuantity(remaining);
+        return remaining > 0;
+    }
+
+    /**
+     * Removes the given order from the order id index it is registered in
+     */
+    private void unregister(Order order) {
+        if (order.getOrderId() != null) {
+            restingOrderByOrderIdMap.remove(order.getOrderId());
+        } else {
+            restingOrderByIdMap.remove(order.getId());
         }
-        // register this price and side in the priceByOrderId and sideByOrderId maps
-        priceByOrderIdMap.put(order.getOrderId(), order.getPrice());
-        sideByOrderIdMap.put(order.getOrderId(), order.getSide());
     }
 
     /**
@@ -129,19 +743,31 @@ public class OrderBook {
      * @param newQuantity
      */
     public void modifyOrder(String orderId, long newQuantity) {
-        long price = priceByOrderIdMap.get(orderId);// get the price/level for the order with this id
-        Side side = sideByOrderIdMap.get(orderId);// get the side of the order with this id
-        OrderList orderList;
-        switch (side) {
-            case buy:
-                orderList = bids.get(price);
-                orderList.modifyOrder(orderId, newQuantity);
-                break;
-            case sell:
-                orderList = asks.get(price);
-                orderList.modifyOrder(orderId, newQuantity);
-                break; // no need for default case. Side Enum must be 1 of the 2 values.
-        }
+        modifyOrder(restingOrderByOrderIdMap.get(orderId), newQuantity);
+    }
+
+    /**
+     * Given the numeric ID of an existing order, modifies its quantity.
+     * It is assumed that an order with the given id is present.
+     *
+     * @param id          numeric id of the order
+     * @param newQuantity new quantity for the order
+     */
+    public void modifyOrder(long id, long newQuantity) {
+        modifyOrder(restingOrderByIdMap.get(id), newQuantity);
+    }
+
+    /**
+     * Modifies the quantity of the order held by the given node of this book. O(1)
+     *
+     * @param restingOrder node of an order resting in this book
+     * @param newQuantity  new quantity for the order
+     */
+    void modifyOrder(RestingOrder restingOrder, long newQuantity) {
+        OrderList orderList = restingOrder.orderList;
+        orderList.modifyOrder(restingOrder, newQuantity);
+        Order order = restingOrder.getOrder();
+        publishLevel(order.getSide(), order.getPrice(), orderList, LevelAction.changed);
     }
 
     /**
@@ -151,26 +777,224 @@ public class OrderBook {
      * @param orderId
      */
     public void deleteOrder(String orderId) {
-        long price = priceByOrderIdMap.get(orderId);// get the price/level for the order with this id
-        Side side = sideByOrderIdMap.get(orderId); // get the side of the order with this id
-        OrderList orderList;
-        switch (side) {
-            case buy:
-                orderList = bids.get(price);
-                orderList.deleteOrder(orderId);
-                if (orderList.getNumberOfOrders() == 0)
-                    bids.remove(price);// no more orders in this side for this level, so remove it from map
-                break;
-            case sell:
-                orderList = asks.get(price);
-                orderList.deleteOrder(orderId);
-                if (orderList.getNumberOfOrders() == 0)
-                    asks.remove(price);// no more orders in this side for this level, so remove it from map
-                break; // no need for default case. Side Enum must be 1 of the 2 values.
-        }
-        //update priceByOrderId and sideByOrderId
-        priceByOrderIdMap.remove(orderId);
-        sideByOrderIdMap.remove(orderId);
+        deleteOrder(restingOrderByOrderIdMap.remove(orderId)); // unregister it from the order id index
+    }
+
+    /**
+     * Permanently removes the order with the given numeric id from the list.
+     * assumes that an order with given id is present
+     *
+     * @param id numeric id of the order
+     */
+    public void deleteOrder(long id) {
+        deleteOrder(restingOrderByIdMap.remove(id)); // unregister it from the numeric order id index
+    }
+
+    /**
+     * Unlinks the order held by the given node from its level, removing the level if it becomes empty.
+     * The caller is responsible for removing the node from the order id index.
+     * If this book is pooled, the node, and the order if it has a numeric id, are returned to their pools and must
+     * not be used afterwards.
+     *
+     * @param restingOrder node of an order resting in this book
+     */
+    void deleteOrder(RestingOrder restingOrder) {
+        OrderList orderList = restingOrder.orderList;
+        Side side = restingOrder.getOrder().getSide();
+        long price = restingOrder.getOrder().getPrice();
+        boolean levelRemoved = removeOrder(restingOrder);
+        publishLevel(side, price, orderList, levelRemoved ? LevelAction.removed : LevelAction.changed);
+        triggerStops();
+    }
+
+    /**
+     * Adds a stop order, which waits apart from the levels until the best price of the opposite side crosses the
+     * given trigger price: a buy stop is triggered once the best ask is at or above it, a sell stop once the best
+     * bid is at or below it. It is then added as addOrder would, at its own price, which is its limit price.
+     * A stop that the current best prices already trigger is added right away.
+     * <p>
+     * The limit price is checked here rather than when the stop is triggered, so a stop that is added is always
+     * added to the book once triggered.
+     *
+     * @param order        order to add once triggered
+     * @param triggerPrice price that triggers the order, always positive
+     * @throws IllegalArgumentException if the limit price is not a multiple of the tick size of this book, or the
+     *                                  trigger price is not positive. The stop is not added
+     */
+    public void addStopOrder(Order order, long triggerPrice) {
+        long price = order.getPrice();
+        if (!isOnTick(price) || triggerPrice <= 0) {
+            if (pools != null && order.getOrderId() == null) {
+                pools.orders.release(order); // numeric orders of a pooled book belong to its pool
+            }
+            if (triggerPrice <= 0) {
+                throw new IllegalArgumentException("trigger price " + triggerPrice + " is not positive");
+            }
+            throw offTick(price);
+        }
+        if (stopOrders == null) {
+            stopOrders = new StopOrderIndex();
+        }
+        stopOrders.add(order, triggerPrice);
+        triggerStops();
+    }
+
+    /**
+     * Cancels the pending stop order with the given id
+     *
+     * @return true if there was a pending stop order with the given id
+     */
+    public boolean cancelStopOrder(String orderId) {
+        return stopOrders != null && stopOrders.cancel(orderId) != null;
+    }
+
+    /**
+     * Cancels the pending stop order with the given numeric id
+     *
+     * @return true if there was a pending stop order with the given id
+     */
+    public boolean cancelStopOrder(long id) {
+        Order order = stopOrders == null ? null : stopOrders.cancel(id);
+        if (order == null) {
+            return false;
+        }
+        if (pools != null) {
+            pools.orders.release(order); // numeric orders of a pooled book belong to its pool
+        }
+        return true;
+    }
+
+    /**
+     * @return number of stop orders waiting to be triggered
+     */
+    public int getStopOrderCount() {
+        return stopOrders == null ? 0 : stopOrders.size();
+    }
+
+    /**
+     * Copies the pending stop orders of this book in the order they would be triggered, buy stops first
+     *
+     * @param orders        receives the order of each stop
+     * @param triggerPrices receives the trigger price of each stop
+     */
+    public void getStopOrders(List<Order> orders, List<Long> triggerPrices) {
+        if (stopOrders != null) {
+            stopOrders.copyTo(orders, triggerPrices);
+        }
+    }
+
+    /**
+     * Adds the orders of the stops triggered by the best prices of this book. Since they may trade and move the best
+     * prices, which may trigger further stops, this goes on until no pending stop is triggered. Only the stops
+     * triggered are looked at, and nothing at all is done while the best prices trigger no stop.
+     * The book accepts every triggered order, since addStopOrder has checked its price. Should a FillListener
+     * throw, the stops polled and not added yet are lost, and the next operation triggers stops again.
+     */
+    private void triggerStops() {
+        if (stopOrders == null || triggering) {
+            return; // no stops, or the stops triggered are being added
+        }
+        triggering = true;
+        try {
+            while (stopOrders.isTriggered(bids.getBestPrice(), asks.getBestPrice())) {
+                stopOrders.pollTriggered(bids.getBestPrice(), asks.getBestPrice(), triggeredOrders);
+                for (int i = 0; i < triggeredOrders.size(); i++) {
+                    rest(triggeredOrders.get(i));
+                }
+                triggeredOrders.clear();
+            }
+        } finally {
+            triggeredOrders.clear();
+            triggering = false;
+        }
+    }
+
+    /**
+     * Same as deleteOrder(RestingOrder), without publishing the change of the level
+     *
+     * @return true if the level was removed along with its last order
+     */
+    private boolean removeOrder(RestingOrder restingOrder) {
+        if (restingOrder.timerSlot >= 0) {
+            timerWheel.cancel(restingOrder); // no longer due to expire
+        }
+        OrderList orderList = restingOrder.orderList;
+        orderList.deleteOrder(restingOrder);
+        boolean levelRemoved = orderList.getNumberOfOrders() == 0;
+        if (levelRemoved) {
+            Order order = restingOrder.getOrder();
+            getLevels(order.getSide()).remove(order.getPrice());// no more orders in this side for this level
+            if (pools != null) {
+                pools.orderLists.release(orderList);
+            }
+            if (metrics != null) {
+                metrics.levelRemoved();
+            }
+        }
+        restingOrder.orderBook = null;
+        if (pools != null) {
+            Order order = restingOrder.getOrder();
+            restingOrder.init(null); // drop the reference to the order
+            pools.restingOrders.release(restingOrder);
+            if (order.getOrderId() == null) {
+                pools.orders.release(order); // numeric orders of a pooled book belong to its pool
+            }
+        }
+        return levelRemoved;
+    }
+
+    /**
+     * Publishes the new state of a level to the LevelUpdateListener, if there is one, and to the TopOfBook if the
+     * level is or was the best of its side. Drops the snapshot of this book and updates its depth indexes
+     *
+     * @param orderList orders of the level. Ignored if the level was removed
+     */
+    private void publishLevel(Side side, long price, OrderList orderList, LevelAction action) {
+        invalidateSnapshot();
+        if (bidDepth != null) {
+            if (action == LevelAction.removed) {
+                getDepthIndex(side).set(price, 0, 0);
+            } else {
+                getDepthIndex(side).set(price, orderList.getTotalTradeableQuantity(),
+                        orderList.getTotalTradeableVolume());
+            }
+        }
+        if (topOfBook != null) {
+            updateTopOfBook(side, price);
+        }
+        if (levelUpdateListener == null) {
+            return;
+        }
+        if (action == LevelAction.removed) {
+            levelUpdate.set(instrument, instrumentId, side, price, 0, 0, action);
+        } else {
+            levelUpdate.set(instrument, instrumentId, side, price, orderList.getTotalTradeableQuantity(),
+                    orderList.getNumberOfOrders(), action);
+        }
+        levelUpdateListener.onLevelUpdate(levelUpdate);
+    }
+
+    /**
+     * Publishes the best level of the given side to the TopOfBook, unless the level that changed at the given price
+     * was behind the best level, which then is the same as before
+     */
+    private void updateTopOfBook(Side side, long price) {
+        long bestPrice = getLevels(side).getBestPrice();
+        if (bestPrice != price && bestPrice == topOfBook.getBestPrice(side)) {
+            return; // a level behind the best one changed
+        }
+        publishTopOfBook(side);
+    }
+
+    private void publishTopOfBook(Side side) {
+        PriceLevels levels = getLevels(side);
+        long bestPrice = levels.getBestPrice();
+        OrderList best = bestPrice < 0 ? null : levels.get(bestPrice);
+        if (best == null) {
+            topOfBook.update(side, -1, 0, 0);
+        } else {
+            topOfBook.update(side, bestPrice, best.getTotalTradeableQuantity(), best.getNumberOfOrders());
+        }
     }
 
     /**
@@ -178,19 +1002,8 @@ public class OrderBook {
      * @return The best price for the given side in the OrderBook, -1 if there're no orders on the give side
      */
     public long getBestPrice(Side side) {
-        long bestPrice = -1;
-        // since the TreeMap maintains order, the best price is always the first key
-        switch (side) {
-            case buy:
-                if (!bids.isEmpty())
-                    bestPrice = bids.firstKey(); // the TreeMap enforces the required ordering for bids
-                break;
-            case sell:
-                if (!asks.isEmpty())
-                    bestPrice = asks.firstKey(); // the TreeMap enforces the required ordering for asks
-                break; // no need for default case. Side Enum must be 1 of the 2 values.
-        }
-        return bestPrice; // would still be -1 if there're no orders on the given side
+        // both sides maintain order, so the best price is always the first level
+        return getLevels(side).getBestPrice(); // -1 if there're no orders on the given side
     }
 
     /**
@@ -200,21 +1013,8 @@ public class OrderBook {
      * with the given price.
      */
     public long getOrderNumAtLevel(Side side, long price) {
-        long orderNumAtLevel = -1;
-        OrderList orderList;
-        switch (side) {
-            case buy:
-                orderList = bids.get(price); // returns null if there is no OrderList for this level
-                if (orderList != null)
-                    orderNumAtLevel = orderList.getNumberOfOrders();
-                break;
-            case sell:
-                orderList = asks.get(price); // returns null if there is no OrderList for this level
-                if (orderList != null)
-                    orderNumAtLevel = orderList.getNumberOfOrders();
-                break; // no need for default case. Side Enum must be 1 of the 2 values.
-        }
-        return orderNumAtLevel;// will still be -1 if there're no orders on the given side for the given price
+        OrderList orderList = getLevels(side).get(price); // returns null if there is no OrderList for this level
+        return orderList == null ? -1 : orderList.getNumberOfOrders();
     }
 
     /**
@@ -224,21 +1024,8 @@ public class OrderBook {
      * the given side with the given price.
      */
     public long getTotalQuantityAtLevel(Side side, long price) {
-        long totalQuantity = -1;
-        OrderList orderList;
-        switch (side) {
-            case buy:
-                orderList = bids.get(price); // returns null if there is no OrderList for this level
-                if (orderList != null)
-                    totalQuantity = orderList.getTotalTradeableQuantity();
-                break;
-            case sell:
-                orderList = asks.get(price);// returns null if there is no OrderList for this level
-                if (orderList != null)
-                    totalQuantity = orderList.getTotalTradeableQuantity();
-                break; // no need for default case. Side Enum must be 1 of the 2 values.
-        }
-        return totalQuantity; // would still be -1 if there're no orders on the given side for the given price
+        OrderList orderList = getLevels(side).get(price); // returns null if there is no OrderList for this level
+        return orderList == null ? -1 : orderList.getTotalTradeableQuantity();
     }
 
     /**
@@ -248,21 +1035,8 @@ public class OrderBook {
      * the given side with the given price.
      */
     public long getTotalVolumeAtLevel(Side side, long price) {
-        long totalVolume = -1;
-        OrderList orderList;
-        switch (side) {
-            case buy:
-                orderList = bids.get(price); // returns null if there is no OrderList for this level
-                if (orderList != null)
-                    totalVolume = orderList.getTotalTradeableVolume();
-                break;
-            case sell:
-                orderList = asks.get(price);// returns null if there is no OrderList for this level
-                if (orderList != null)
-                    totalVolume = orderList.getTotalTradeableVolume();
-                break; // no need for default case. Side Enum must be 1 of the 2 values.
-        }
-        return totalVolume; // would still be -1 if there're no orders on the given side for the given price
+        OrderList orderList = getLevels(side).get(price); // returns null if there is no OrderList for this level
+        return orderList == null ? -1 : orderList.getTotalTradeableVolume();
     }
 
     /**
@@ -272,29 +1046,103 @@ public class OrderBook {
      * orders on the given side for the given price
      */
     public List<Order> getOrdersAtLevel(Side side, long price) {
-        List<Order> orders = new ArrayList<>(); // empty list
-        OrderList orderList;
-        switch (side) {
-            case buy:
-                orderList = bids.get(price); // returns null if there is no OrderList for this level
-                if (orderList != null)
-                    orders = orderList.getOrders();
-                break;
-            case sell:
-                orderList = asks.get(price);// returns null if there is no OrderList for this level
-                if (orderList != null)
-                    orders = orderList.getOrders();
-                break; // no need for default case. Side Enum must be 1 of the 2 values.
+        OrderList orderList = getLevels(side).get(price); // returns null if there is no OrderList for this level
+        if (orderList == null) {
+            return new ArrayList<>(); // empty list if there're no orders on the given side for the given price
         }
-        return orders; // would still be an empty list if there're no orders on the given side for the given price
+        return orderList.getOrders();
     }
 
     /**
-     * @return true if an orderBook contains no orders. False if it does. Useful to know when to stop keeping track of
-     * OrderBooks. Especially after deleting orders.
+     * Copies the best n levels of the given side into the given arrays, best level first, without allocating.
+     * The arrays must hold at least n entries.
+     *
+     * @param side       either buy or sell
+     * @param n          maximum number of levels to copy
+     * @param prices     receives the price of each level
+     * @param quantities receives the total tradeable quantity of each level
+     * @param counts     receives the number of orders of each level
+     * @return number of levels copied. Less than n if the side has fewer levels
+     */
+    public int getDepth(Side side, int n, long[] prices, long[] quantities, int[] counts) {
+        return getLevels(side).getDepth(n, prices, quantities, counts);
+    }
+
+    /**
+     * @return total quantity of the levels of the given side at or better than the given price: at or above it for
+     * bids, at or below it for asks. O(log n) if this book is depth indexed, O(levels) otherwise
+     */
+    public long getCumulativeQuantity(Side side, long price) {
+        if (bidDepth != null) {
+            return getDepthIndex(side).getCumulativeQuantity(price);
+        }
+        long quantity = 0;
+        PriceLevels levels = getLevels(side);
+        for (long level = levels.getBestPrice(); level >= 0 && isAtOrBetter(side, level, price);
+             level = levels.getNextPrice(level)) {
+            quantity += levels.get(level).getTotalTradeableQuantity();
+        }
+        return quantity;
+    }
+
+    /**
+     * @return total volume of the levels of the given side at or better than the given price. O(log n) if this
+     * book is depth indexed, O(levels) otherwise
+     */
+    public long getCumulativeVolume(Side side, long price) {
+        if (bidDepth != null) {
+            return getDepthIndex(side).getCumulativeVolume(price);
+        }
+        long volume = 0;
+        PriceLevels levels = getLevels(side);
+        for (long level = levels.getBestPrice(); level >= 0 && isAtOrBetter(side, level, price);
+             level = levels.getNextPrice(level)) {
+            volume += levels.get(level).getTotalTradeableVolume();
+        }
+        return volume;
+    }
+
+    /**
+     * Finds what an order sweeping the given side from its best price outwards would fill: e.g. sweeping the asks
+     * with quantity Q gives the cost of buying Q, the worst price paid and the average price.
+     * O(log n) if this book is depth indexed, O(levels swept) otherwise
+     *
+     * @param side     side of the levels swept
+     * @param quantity quantity to sweep, positive
+     * @param result   receives the quantity the side can fill, its cost and the price of the last level reached
+     * @return the given result
+     */
+    public SweepCost getSweepCost(Side side, long quantity, SweepCost result) {
+        if (bidDepth != null) {
+            return getDepthIndex(side).sweep(quantity, result);
+        }
+        long filled = 0;
+        long cost = 0;
+        long lastPrice = -1;
+        PriceLevels levels = getLevels(side);
+        for (long level = levels.getBestPrice(); level >= 0 && filled < quantity; level = levels.getNextPrice(level)) {
+            long fill = Math.min(quantity - filled, levels.get(level).getTotalTradeableQuantity());
+            filled += fill;
+            cost += fill * level;
+            lastPrice = level;
+        }
+        result.set(filled, cost, lastPrice);
+        return result;
+    }
+
+    /**
+     * @return true if price1 is the same as or better than price2 for the given side
+     */
+    private static boolean isAtOrBetter(Side side, long price1, long price2) {
+        return side == Side.buy ? price1 >= price2 : price1 <= price2;
+    }
+
+    /**
+     * @return true if an orderBook contains no orders, resting or pending stop orders. False if it does. Useful to
+     * know when to stop keeping track of OrderBooks. Especially after deleting orders.
      */
     public boolean isEmpty() {
-        return bids.isEmpty() && asks.isEmpty();
+        return bids.isEmpty() && asks.isEmpty() && (stopOrders == null || stopOrders.isEmpty());
     }
 
     @Override
@@ -304,19 +1152,14 @@ public class OrderBook {
 
         OrderBook orderBook = (OrderBook) o;
 
-        if (bids != null ? !bids.equals(orderBook.bids) : orderBook.bids != null) return false;
-        if (asks != null ? !asks.equals(orderBook.asks) : orderBook.asks != null) return false;
-        if (priceByOrderIdMap != null ? !priceByOrderIdMap.equals(orderBook.priceByOrderIdMap) : orderBook.priceByOrderIdMap != null)
-            return false;
-        return sideByOrderIdMap != null ? sideByOrderIdMap.equals(orderBook.sideByOrderIdMap) : orderBook.sideByOrderIdMap == null;
+        if (!getBids().equals(orderBook.getBids())) return false;
+        return getAsks().equals(orderBook.getAsks());
     }
 
     @Override
     public int hashCode() {
-        int result = bids != null ? bids.hashCode() : 0;
-        result = 31 * result + (asks != null ? asks.hashCode() : 0);
-        result = 31 * result + (priceByOrderIdMap != null ? priceByOrderIdMap.hashCode() : 0);
-        result = 31 * result + (sideByOrderIdMap != null ? sideByOrderIdMap.hashCode() : 0);
+        int result = getBids().hashCode();
+        result = 31 * result + getAsks().hashCode();
         return result;
     }
 
@@ -325,8 +1168,6 @@ public class OrderBook {
         return "OrderBook{" +
                 "bids=" + bids +
                 ", asks=" + asks +
-                ", priceByOrderIdMap=" + priceByOrderIdMap +
-                ", sideByOrderIdMap=" + sideByOrderIdMap +
                 '}';
     }
 }
@@ -1,11 +1,42 @@
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by ioluwayo. email: ioluwayo@gmail.com
  * Implementation of an OrderBookManager which manages order books for different instruments.
+ * <p>
+ * Orders and instruments can be identified either by Strings or by numbers (long order ids, int instrument ids).
+ * The numeric API is backed by open addressing maps with primitive keys, so it neither hashes Strings nor boxes
+ * ids. The String API is a thin adapter: it only resolves the String id, then takes the same path. The two APIs
+ * address separate id spaces, so an order added with a numeric id must be modified and deleted with it.
+ * <p>
+ * A pooled manager recycles the Orders it creates for the numeric API, the RestingOrder node of every order, the
+ * OrderList of every level and every OrderBook, returning them to pools when orders, levels and books go away.
+ * With the numeric API and ladder backed books, a warmed up pooled manager allocates nothing per operation.
+ * Orders handed out by a pooled manager must not be retained after they are deleted.
+ * <p>
+ * Once a FillListener is set, every book matches incoming orders against its opposite side as they are added.
+ * Once a LevelUpdateListener is set, every book publishes the levels that change as orders are added, modified,
+ * deleted or filled, so market by price feeds can be built without polling the books.
+ * <p>
+ * Once a TimerWheel is set, orders added with an expiry time are deleted by the first call to tick at or after it.
+ * <p>
+ * Stop orders wait in the book of their instrument, apart from its levels, until adds and deletes move the best
+ * price of the opposite side across their trigger price.
+ * <p>
+ * Once a Journal is set, every add, modify and delete, and every stop order added or cancelled, is appended to it
+ * before it is applied, so the books can be rebuilt by replaying the journal after a restart.
+ * <p>
+ * Once OrderBookMetrics are set, the latency of every operation and the number of levels and books created and
+ * removed are recorded, for other threads to read. Without them, the only cost is a null check per operation.
+ * <p>
+ * An OrderBookManager is meant to be used by a single thread. Once top of book publishing is enabled, other
+ * threads can follow the best bid and ask of any instrument through its TopOfBook, without locks. Once snapshots are
+ * enabled, they can also read an immutable BookSnapshot of any book, published at the end of every batch.
  */
 public class OrderBookManager {
     /**
@@ -14,29 +45,536 @@ public class OrderBookManager {
     private Map<String, OrderBook> orderBookByInstrumentMap;
 
     /**
-     * Maintains orderId -> instrument pairs. Facilitates retrieving an OrderBook when only the order id is known.
+     * Maintains instrumentId->orderBook pairs for instruments identified by number.
      */
-    private Map<String, String> instrumentByOrderIdMap;
+    private LongObjectHashMap<OrderBook> orderBookByInstrumentIdMap;
+
+    /**
+     * Maintains orderId -> resting order node pairs for every order of every book. The node knows its OrderBook,
+     * level and side, so an order can be modified or deleted after a single lookup.
+     * Shared with all the OrderBooks created by this manager.
+     */
+    private HashMap<String, RestingOrder> restingOrderByOrderIdMap;
+
+    /**
+     * Same as restingOrderByOrderIdMap, for orders identified by number.
+     */
+    private LongObjectHashMap<RestingOrder> restingOrderByIdMap;
+
+    /**
+     * Tick size and initial number of ticks per side of the PriceLadders backing new OrderBooks.
+     * A tick size of 0 means new OrderBooks are backed by TreeMaps.
+     */
+    private final long tickSize;
+    private final int ladderCapacity;
+
+    /**
+     * Pools of the objects created per order and level. null if this manager is not pooled
+     */
+    private final OrderBookPools pools;
+
+    /**
+     * Pool of empty OrderBooks. null if this manager is not pooled
+     */
+    private final ObjectPool<OrderBook> orderBookPool;
+
+    /**
+     * Receives the fills of every book. null if books do not match orders
+     */
+    private FillListener fillListener;
+
+    /**
+     * Receives the level updates of every book. null if books do not publish level updates
+     */
+    private LevelUpdateListener levelUpdateListener;
+
+    /**
+     * Receives every add, modify and delete before it is applied. null if operations are not journaled
+     */
+    private Journal journal;
+
+    /**
+     * Schedules the expiry of orders added with an expiry time, shared by every book. null if orders do not expire
+     */
+    private TimerWheel timerWheel;
+
+    /**
+     * Records latencies and counters. null if nothing is recorded
+     */
+    private OrderBookMetrics metrics;
+
+    /**
+     * true if every book keeps a DepthIndex of each side
+     */
+    private boolean depthIndexEnabled;
+
+    /**
+     * true if every level of every book keeps a QueueIndex of its orders
+     */
+    private boolean queueIndexEnabled;
+
+    /**
+     * TopOfBook of every instrument that has had a book since top of book publishing was enabled. Concurrent maps,
+     * since they are read by other threads. null if top of book publishing is not enabled
+     */
+    private volatile ConcurrentHashMap<String, TopOfBook> topOfBookByInstrumentMap;
+    private volatile ConcurrentHashMap<Integer, TopOfBook> topOfBookByInstrumentIdMap;
+
+    /**
+     * Latest published BookSnapshot of every instrument that has had a book since snapshots were enabled.
+     * Concurrent maps, since they are read by other threads. null if snapshots are not enabled
+     */
+    private volatile ConcurrentHashMap<String, BookSnapshot> bookSnapshotByInstrumentMap;
+    private volatile ConcurrentHashMap<Integer, BookSnapshot> bookSnapshotByInstrumentIdMap;
+
+    /**
+     * Books that changed, and instruments whose book was released, since snapshots were last published.
+     * null if snapshots are not enabled
+     */
+    private ArrayList<OrderBook> staleOrderBooks;
+    private ArrayList<String> releasedInstruments;
+    private ArrayList<Integer> releasedInstrumentIds;
 
     public OrderBookManager() {
+        this(0, 0, false);
+    }
+
+    /**
+     * Creates a manager whose OrderBooks keep their levels in PriceLadders.
+     *
+     * @param tickSize       smallest price increment of every instrument. Prices must be multiples of it
+     * @param ladderCapacity initial number of ticks covered by each side of a book
+     */
+    public OrderBookManager(long tickSize, int ladderCapacity) {
+        this(tickSize, ladderCapacity, false);
+    }
+
+    /**
+     * @param tickSize       smallest price increment of every instrument. 0 for TreeMap backed books
+     * @param ladderCapacity initial number of ticks covered by each side of a ladder backed book
+     * @param pooled         true to recycle orders, levels and books through pools
+     */
+    public OrderBookManager(long tickSize, int ladderCapacity, boolean pooled) {
+        this.tickSize = tickSize;
+        this.ladderCapacity = ladderCapacity;
+        this.pools = pooled ? new OrderBookPools() : null;
+        this.orderBookPool = pooled ? new ObjectPool<>(this::createOrderBook) : null;
         orderBookByInstrumentMap = new HashMap<>();
-        instrumentByOrderIdMap = new HashMap<>();
+        orderBookByInstrumentIdMap = new LongObjectHashMap<>();
+        restingOrderByOrderIdMap = new HashMap<>();
+        restingOrderByIdMap = new LongObjectHashMap<>();
     }
 
     public Map<String, OrderBook> getOrderBookByInstrumentMap() {
         return orderBookByInstrumentMap;
     }
 
-    public Map<String, String> getInstrumentByOrderIdMap() {
-        return instrumentByOrderIdMap;
+    public LongObjectHashMap<OrderBook> getOrderBookByInstrumentIdMap() {
+        return orderBookByInstrumentIdMap;
     }
 
-    private void setOrderBookByInstrumentMap(Map<String, OrderBook> orderBookByInstrumentMap) {
-        this.orderBookByInstrumentMap = orderBookByInstrumentMap;
+    public Map<String, RestingOrder> getRestingOrderByOrderIdMap() {
+        return restingOrderByOrderIdMap;
+    }
+
+    public LongObjectHashMap<RestingOrder> getRestingOrderByIdMap() {
+        return restingOrderByIdMap;
+    }
+
+    public FillListener getFillListener() {
+        return fillListener;
+    }
+
+    /**
+     * Makes every book, existing or new, match incoming orders and report their fills to the given listener.
+     * Starting or stopping matching is recorded in the journal, if any, so replaying it matches the same way.
+     *
+     * @param fillListener receives the fills of every book. null to stop matching
+     */
+    public void setFillListener(FillListener fillListener) {
+        if (journal != null && (fillListener != null) != (this.fillListener != null)) {
+            journal.appendMatching(fillListener != null);
+        }
+        this.fillListener = fillListener;
+        for (OrderBook orderBook : orderBookByInstrumentMap.values()) {
+            orderBook.setFillListener(fillListener);
+        }
+        for (OrderBook orderBook : orderBookByInstrumentIdMap.values()) {
+            orderBook.setFillListener(fillListener);
+        }
+    }
+
+    public LevelUpdateListener getLevelUpdateListener() {
+        return levelUpdateListener;
+    }
+
+    /**
+     * Makes every book, existing or new, publish the levels that change to the given listener.
+     *
+     * @param levelUpdateListener receives the level updates of every book. null to stop publishing
+     */
+    public void setLevelUpdateListener(LevelUpdateListener levelUpdateListener) {
+        this.levelUpdateListener = levelUpdateListener;
+        for (OrderBook orderBook : orderBookByInstrumentMap.values()) {
+            orderBook.setLevelUpdateListener(levelUpdateListener);
+        }
+        for (OrderBook orderBook : orderBookByInstrumentIdMap.values()) {
+            orderBook.setLevelUpdateListener(levelUpdateListener);
+        }
+    }
+
+    public TimerWheel getTimerWheel() {
+        return timerWheel;
+    }
+
+    /**
+     * Makes orders with an expiry time expire as tick is called. Orders already resting are moved from the previous
+     * TimerWheel, if any, to the given one.
+     *
+     * @param timerWheel schedules the expiry of orders. null if orders do not expire
+     */
+    public void setTimerWheel(TimerWheel timerWheel) {
+        TimerWheel previous = this.timerWheel;
+        this.timerWheel = timerWheel;
+        for (OrderBook orderBook : orderBookByInstrumentMap.values()) {
+            orderBook.setTimerWheel(timerWheel);
+        }
+        for (OrderBook orderBook : orderBookByInstrumentIdMap.values()) {
+            orderBook.setTimerWheel(timerWheel);
+        }
+        for (RestingOrder restingOrder : restingOrderByOrderIdMap.values()) {
+            reschedule(previous, restingOrder);
+        }
+        for (RestingOrder restingOrder : restingOrderByIdMap.values()) {
+            reschedule(previous, restingOrder);
+        }
+    }
+
+    private void reschedule(TimerWheel previous, RestingOrder restingOrder) {
+        if (previous != null) {
+            previous.cancel(restingOrder);
+        }
+        if (timerWheel != null && restingOrder.getOrder().getExpiryTime() > 0) {
+            timerWheel.schedule(restingOrder);
+        }
+    }
+
+    /**
+     * Deletes every order whose expiry time is at or before the given time, as deleteOrder would: each delete is
+     * journaled, recorded and published. Expired orders are found through the TimerWheel, without looking at the
+     * books, and the batch of expiries ends with endBatch.
+     *
+     * @param now current time, in the unit of the TimerWheel
+     * @return number of orders expired. 0 if this manager has no TimerWheel
+     */
+    public int tick(long now) {
+        if (timerWheel == null) {
+            return 0;
+        }
+        int expired = 0;
+        RestingOrder restingOrder;
+        while ((restingOrder = timerWheel.poll(now)) != null) {
+            Order order = restingOrder.getOrder();
+            if (order.getOrderId() != null) {
+                deleteOrder(order.getOrderId());
+            } else {
+                deleteOrder(order.getId());
+            }
+            expired++;
+        }
+        if (expired > 0) {
+            endBatch();
+        }
+        return expired;
+    }
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Also records in the journal whether this manager matches, so replaying it matches the same way
+     *
+     * @param journal receives every add, modify and delete from now on. null to stop journaling
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+        if (journal != null) {
+            journal.appendMatching(fillListener != null);
+        }
+    }
+
+    /**
+     * Marks the point of the journal, if any, that a Snapshot of this manager is taken at. Appends a record of
+     * whether this manager matches, so replaying the journal from the returned position into the books read back
+     * from the snapshot matches the same way. Snapshot.write calls it.
+     *
+     * @return position of the journal to replay from once the snapshot is read. 0 if there is no journal
+     */
+    public long markSnapshot() {
+        if (journal == null) {
+            return 0;
+        }
+        long position = journal.getPosition();
+        // first record replayed after the snapshot, since the one recording it may come before it
+        journal.appendMatching(fillListener != null);
+        return position;
     }
 
-    private void setInstrumentByOrderIdMap(Map<String, String> instrumentByOrderIdMap) {
-        this.instrumentByOrderIdMap = instrumentByOrderIdMap;
+    public OrderBookMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Makes this manager and every book, existing or new, record latencies and counters into the given metrics.
+     *
+     * @param metrics receives latencies and counters. null to stop recording
+     */
+    public void setMetrics(OrderBookMetrics metrics) {
+        this.metrics = metrics;
+        for (OrderBook orderBook : orderBookByInstrumentMap.values()) {
+            orderBook.setMetrics(metrics);
+        }
+        for (OrderBook orderBook : orderBookByInstrumentIdMap.values()) {
+            orderBook.setMetrics(metrics);
+        }
+    }
+
+    public boolean isDepthIndexEnabled() {
+        return depthIndexEnabled;
+    }
+
+    /**
+     * Makes every book, existing or new, keep a DepthIndex of each side, or stops it from doing so. See
+     * OrderBook.setDepthIndexed. Existing books whose levels span too many ticks to be indexed are left as they are,
+     * answering by walking their levels, and so are books that later add a level too far away to be indexed.
+     *
+     * @param depthIndexEnabled true to answer cumulative depth and sweep queries in O(log n)
+     */
+    public void setDepthIndexEnabled(boolean depthIndexEnabled) {
+        this.depthIndexEnabled = depthIndexEnabled;
+        for (OrderBook orderBook : orderBookByInstrumentMap.values()) {
+            setDepthIndexed(orderBook);
+        }
+        for (OrderBook orderBook : orderBookByInstrumentIdMap.values()) {
+            setDepthIndexed(orderBook);
+        }
+    }
+
+    private void setDepthIndexed(OrderBook orderBook) {
+        try {
+            orderBook.setDepthIndexed(depthIndexEnabled);
+        } catch (IllegalArgumentException e) {
+            // levels too far apart to be indexed, the book keeps walking them
+        }
+    }
+
+    public boolean isQueueIndexEnabled() {
+        return queueIndexEnabled;
+    }
+
+    /**
+     * Makes every level of every book, existing or new, keep a QueueIndex of its orders, or stops it from doing so.
+     * See OrderBook.setQueueIndexed
+     *
+     * @param queueIndexEnabled true to answer queue position queries in O(log n)
+     */
+    public void setQueueIndexEnabled(boolean queueIndexEnabled) {
+        this.queueIndexEnabled = queueIndexEnabled;
+        for (OrderBook orderBook : orderBookByInstrumentMap.values()) {
+            orderBook.setQueueIndexed(queueIndexEnabled);
+        }
+        for (OrderBook orderBook : orderBookByInstrumentIdMap.values()) {
+            orderBook.setQueueIndexed(queueIndexEnabled);
+        }
+    }
+
+    public boolean isTopOfBookEnabled() {
+        return topOfBookByInstrumentMap != null;
+    }
+
+    /**
+     * Makes every book, existing or new, publish its best bid and ask to the TopOfBook of its instrument, or stops
+     * it from doing so.
+     *
+     * @param enabled true to publish the best bid and ask of every book
+     */
+    public void setTopOfBookEnabled(boolean enabled) {
+        if (enabled && topOfBookByInstrumentMap == null) {
+            topOfBookByInstrumentMap = new ConcurrentHashMap<>();
+            topOfBookByInstrumentIdMap = new ConcurrentHashMap<>();
+        } else if (!enabled) {
+            topOfBookByInstrumentMap = null;
+            topOfBookByInstrumentIdMap = null;
+        }
+        for (OrderBook orderBook : orderBookByInstrumentMap.values()) {
+            orderBook.setTopOfBook(topOfBookOf(orderBook.getInstrument(), 0));
+        }
+        for (OrderBook orderBook : orderBookByInstrumentIdMap.values()) {
+            orderBook.setTopOfBook(topOfBookOf(null, orderBook.getInstrumentId()));
+        }
+    }
+
+    /**
+     * Can be called from any thread. The TopOfBook of an instrument stays the same object once created, even when
+     * the book of the instrument is emptied and created again, so it should be looked up once and kept.
+     *
+     * @param instrument identifier of an instrument
+     * @return the best bid and ask of the instrument. null if top of book publishing is not enabled or the
+     * instrument has had no book since it was
+     */
+    public TopOfBook getTopOfBook(String instrument) {
+        ConcurrentHashMap<String, TopOfBook> topOfBooks = topOfBookByInstrumentMap;
+        return topOfBooks == null ? null : topOfBooks.get(instrument);
+    }
+
+    /**
+     * Same as getTopOfBook(String) for an instrument identified by number
+     */
+    public TopOfBook getTopOfBook(int instrumentId) {
+        ConcurrentHashMap<Integer, TopOfBook> topOfBooks = topOfBookByInstrumentIdMap;
+        return topOfBooks == null ? null : topOfBooks.get(instrumentId);
+    }
+
+    public boolean isSnapshotsEnabled() {
+        return bookSnapshotByInstrumentMap != null;
+    }
+
+    /**
+     * Starts or stops publishing a BookSnapshot of every book for other threads to read. Once enabled, the
+     * snapshots of the books that changed are published by publishSnapshots, which endBatch calls. The snapshot
+     * of every existing book is published right away.
+     *
+     * @param enabled true to publish snapshots
+     */
+    public void setSnapshotsEnabled(boolean enabled) {
+        if (enabled == isSnapshotsEnabled()) {
+            return;
+        }
+        if (enabled) {
+            staleOrderBooks = new ArrayList<>();
+            releasedInstruments = new ArrayList<>();
+            releasedInstrumentIds = new ArrayList<>();
+            bookSnapshotByInstrumentMap = new ConcurrentHashMap<>();
+            bookSnapshotByInstrumentIdMap = new ConcurrentHashMap<>();
+        } else {
+            staleOrderBooks = null;
+            releasedInstruments = null;
+            releasedInstrumentIds = null;
+            bookSnapshotByInstrumentMap = null;
+            bookSnapshotByInstrumentIdMap = null;
+        }
+        for (OrderBook orderBook : orderBookByInstrumentMap.values()) {
+            orderBook.setStaleOrderBooks(staleOrderBooks);
+        }
+        for (OrderBook orderBook : orderBookByInstrumentIdMap.values()) {
+            orderBook.setStaleOrderBooks(staleOrderBooks);
+        }
+        publishSnapshots();
+    }
+
+    /**
+     * Can be called from any thread. The snapshot is replaced as a whole every time the book is published, so
+     * the returned one never changes; it should be looked up again to see later changes.
+     *
+     * @param instrument identifier of an instrument
+     * @return the latest published snapshot of the book of the instrument, empty if the book was emptied. null if
+     * snapshots are not enabled or the instrument has had no book since they were
+     */
+    public BookSnapshot getSnapshot(String instrument) {
+        ConcurrentHashMap<String, BookSnapshot> snapshots = bookSnapshotByInstrumentMap;
+        return snapshots == null ? null : snapshots.get(instrument);
+    }
+
+    /**
+     * Same as getSnapshot(String) for an instrument identified by number
+     */
+    public BookSnapshot getSnapshot(int instrumentId) {
+        ConcurrentHashMap<Integer, BookSnapshot> snapshots = bookSnapshotByInstrumentIdMap;
+        return snapshots == null ? null : snapshots.get(instrumentId);
+    }
+
+    /**
+     * Publishes the snapshot of every book that changed since the last call, and an empty snapshot for every
+     * instrument whose book was released since. Only the levels that changed are copied. Does nothing if
+     * snapshots are not enabled.
+     */
+    public void publishSnapshots() {
+        ConcurrentHashMap<String, BookSnapshot> snapshots = bookSnapshotByInstrumentMap;
+        ConcurrentHashMap<Integer, BookSnapshot> idSnapshots = bookSnapshotByInstrumentIdMap;
+        if (snapshots == null) {
+            return;
+        }
+        for (int i = 0; i < releasedInstruments.size(); i++) {
+            String instrument = releasedInstruments.get(i);
+            if (!orderBookByInstrumentMap.containsKey(instrument)) { // not created again since
+                snapshots.put(instrument, BookSnapshot.empty(instrument, 0));
+            }
+        }
+        for (int i = 0; i < releasedInstrumentIds.size(); i++) {
+            int instrumentId = releasedInstrumentIds.get(i);
+            if (!orderBookByInstrumentIdMap.containsKey(instrumentId)) {
+                idSnapshots.put(instrumentId, BookSnapshot.empty(null, instrumentId));
+            }
+        }
+        for (int i = 0; i < staleOrderBooks.size(); i++) {
+            OrderBook orderBook = staleOrderBooks.get(i);
+            orderBook.snapshotStale = false;
+            // released books are skipped, unless they were recycled for another instrument since
+            if (orderBook.getInstrument() != null) {
+                if (orderBookByInstrumentMap.get(orderBook.getInstrument()) == orderBook) {
+                    snapshots.put(orderBook.getInstrument(), orderBook.snapshot());
+                }
+            } else if (orderBookByInstrumentIdMap.get(orderBook.getInstrumentId()) == orderBook) {
+                idSnapshots.put(orderBook.getInstrumentId(), orderBook.snapshot());
+            }
+        }
+        releasedInstruments.clear();
+        releasedInstrumentIds.clear();
+        staleOrderBooks.clear();
+    }
+
+    /**
+     * @return the TopOfBook of the given instrument, created if needed. null if top of book publishing is not
+     * enabled
+     */
+    private TopOfBook topOfBookOf(String instrument, int instrumentId) {
+        if (topOfBookByInstrumentMap == null) {
+            return null;
+        }
+        if (instrument != null) {
+            return topOfBookByInstrumentMap.computeIfAbsent(instrument, key -> new TopOfBook(key, 0));
+        }
+        return topOfBookByInstrumentIdMap.computeIfAbsent(instrumentId, key -> new TopOfBook(null, key));
+    }
+
+    /**
+     * Marks the end of a batch of operations applied one by one, e.g. by a CommandProcessor. Lets the journal
+     * force its records to disk if it does so per batch, and publishes the snapshots of the books that changed.
+     */
+    public void endBatch() {
+        if (journal != null) {
+            journal.endBatch();
+        }
+        publishSnapshots();
+    }
+
+    /**
+     * @return pools of orders, nodes and levels. null if this manager is not pooled
+     */
+    public OrderBookPools getPools() {
+        return pools;
+    }
+
+    /**
+     * @return pool of empty OrderBooks. null if this manager is not pooled
+     */
+    public ObjectPool<OrderBook> getOrderBookPool() {
+        return orderBookPool;
+    }
+
+    private void setOrderBookByInstrumentMap(Map<String, OrderBook> orderBookByInstrumentMap) {
+        this.orderBookByInstrumentMap = orderBookByInstrumentMap;
     }
 
     /**
@@ -45,14 +583,233 @@ public class OrderBookManager {
      * @param order new order to add
      */
     public void addOrder(Order order) {
-        String instrument = order.getInstrument();
-        String orderId = order.getOrderId();
+        long start = startTimer();
+        if (journal != null) {
+            journal.appendAdd(order);
+        }
+        OrderBook orderBook = getOrCreateOrderBook(order.getInstrument());
+        try {
+            orderBook.addOrder(order); // also registers the order in the shared order id index
+        } finally {
+            // a matching book is left empty if the order filled everything, a new book if the order was rejected
+            releaseIfEmpty(orderBook);
+        }
+        stopTimer(MeasuredOperation.add, start);
+    }
 
-        //get orderBook for this instrument or create new order book if non exists
-        OrderBook orderBook = orderBookByInstrumentMap.getOrDefault(instrument, new OrderBook());
-        orderBook.addOrder(order);
-        orderBookByInstrumentMap.put(instrument, orderBook); // make sure it is in the map
-        instrumentByOrderIdMap.put(orderId, instrument); // register the instrument of for this order id
+    /**
+     * Adds an order identified by number to its orderBook
+     *
+     * @param id           unique numeric identifier of the new order
+     * @param instrumentId numeric identifier of the instrument
+     * @param side         either buy or sell
+     * @param price        limit price for the order, always positive
+     * @param quantity     required quantity, always positive
+     */
+    public void addOrder(long id, int instrumentId, Side side, long price, long quantity) {
+        addOrder(id, instrumentId, side, price, quantity, 0);
+    }
+
+    /**
+     * Adds an order identified by number, which expires at the given time if this manager has a TimerWheel
+     *
+     * @param expiryTime time at which the order expires, in the unit of the TimerWheel. 0 if it never expires
+     */
+    public void addOrder(long id, int instrumentId, Side side, long price, long quantity, long expiryTime) {
+        long start = startTimer();
+        if (journal != null) {
+            journal.appendAdd(id, instrumentId, side, price, quantity, expiryTime);
+        }
+        OrderBook orderBook = getOrCreateOrderBook(instrumentId);
+        Order order = orderBook.newOrder(id, instrumentId, side, price, quantity);
+        order.setExpiryTime(expiryTime);
+        try {
+            orderBook.addOrder(order); // registers it by numeric id and schedules its expiry
+        } finally {
+            // a matching book is left empty if the order filled everything, a new book if the order was rejected
+            releaseIfEmpty(orderBook);
+        }
+        stopTimer(MeasuredOperation.add, start);
+    }
+
+    /**
+     * Adds a stop order to its orderBook. It waits there until the best ask rises to or above the trigger price of a
+     * buy stop, or the best bid falls to or below the trigger price of a sell stop, and is then added as addOrder
+     * would, at its own price. Orders added when stops are triggered are not journaled, since replaying the stop
+     * triggers them again
+     *
+     * @param order        order to add once triggered. Its price is the limit price it rests at
+     * @param triggerPrice price that triggers the order, always positive
+     * @throws IllegalArgumentException if the limit price is off the tick size of the book or the trigger price is
+     *                                  not positive
+     */
+    public void addStopOrder(Order order, long triggerPrice) {
+        if (journal != null) {
+            journal.appendAddStop(order, triggerPrice);
+        }
+        OrderBook orderBook = getOrCreateOrderBook(order.getInstrument());
+        try {
+            orderBook.addStopOrder(order, triggerPrice); // added right away if already triggered
+        } finally {
+            releaseIfEmpty(orderBook); // a new book is left empty if the stop was rejected
+        }
+    }
+
+    /**
+     * Adds a stop order identified by number to its orderBook, as addStopOrder(Order, long) does
+     *
+     * @param price        limit price the order rests at once triggered, always positive
+     * @param triggerPrice price that triggers the order, always positive
+     */
+    public void addStopOrder(long id, int instrumentId, Side side, long price, long quantity, long triggerPrice) {
+        addStopOrder(id, instrumentId, side, price, quantity, triggerPrice, 0);
+    }
+
+    /**
+     * Adds a stop order identified by number, which expires at the given time once triggered if this manager has a
+     * TimerWheel
+     *
+     * @param expiryTime time at which the order expires, in the unit of the TimerWheel. 0 if it never expires
+     */
+    public void addStopOrder(long id, int instrumentId, Side side, long price, long quantity, long triggerPrice,
+                             long expiryTime) {
+        if (journal != null) {
+            journal.appendAddStop(id, instrumentId, side, price, quantity, triggerPrice, expiryTime);
+        }
+        OrderBook orderBook = getOrCreateOrderBook(instrumentId);
+        Order order = orderBook.newOrder(id, instrumentId, side, price, quantity);
+        order.setExpiryTime(expiryTime);
+        try {
+            orderBook.addStopOrder(order, triggerPrice);
+        } finally {
+            releaseIfEmpty(orderBook); // a new book is left empty if the stop was rejected
+        }
+    }
+
+    /**
+     * Cancels a stop order that has not been triggered yet
+     *
+     * @param instrument instrument of the stop order
+     * @param orderId    unique identifier of the stop order
+     * @return true if the stop order was pending
+     */
+    public boolean cancelStopOrder(String instrument, String orderId) {
+        if (journal != null) {
+            journal.appendCancelStop(instrument, orderId);
+        }
+        OrderBook orderBook = orderBookByInstrumentMap.get(instrument);
+        if (orderBook == null || !orderBook.cancelStopOrder(orderId)) {
+            return false;
+        }
+        releaseIfEmpty(orderBook);
+        return true;
+    }
+
+    /**
+     * Cancels a stop order identified by number that has not been triggered yet
+     *
+     * @return true if the stop order was pending
+     */
+    public boolean cancelStopOrder(int instrumentId, long id) {
+        if (journal != null) {
+            journal.appendCancelStop(instrumentId, id);
+        }
+        OrderBook orderBook = orderBookByInstrumentIdMap.get(instrumentId);
+        if (orderBook == null || !orderBook.cancelStopOrder(id)) {
+            return false;
+        }
+        releaseIfEmpty(orderBook);
+        return true;
+    }
+
+    /**
+     * Applies the given commands in order, with the same result as applying them one by one.
+     * <p>
+     * Consecutive add commands for the same instrument, side and price are applied as a group: the book and the
+     * level are looked up once, the totals of the level are updated once and a single level update is published
+     * for the group. The book is also kept from one group to the next while the instrument does not change.
+     * Feeds delivering many messages per instrument in a packet should use this rather than addOrder.
+     * Modify, delete and task commands are applied one by one. Commands are not modified and can be reused.
+     * The batch ends with endBatch. With metrics, each add of a group is recorded with its share of the group's
+     * time.
+     *
+     * @param commands commands to apply
+     * @param offset   index of the first command to apply
+     * @param length   number of commands to apply
+     */
+    public void applyBatch(Command[] commands, int offset, int length) {
+        int end = offset + length;
+        OrderBook orderBook = null; // book of the last group of adds, while it is still tracked
+        int i = offset;
+        while (i < end) {
+            Command command = commands[i];
+            if (command.getType() != CommandType.add) {
+                command.applyTo(this);
+                orderBook = null; // a delete may have released the book
+                i++;
+                continue;
+            }
+            int groupEnd = i + 1;
+            while (groupEnd < end && isSameLevel(command, commands[groupEnd])) {
+                groupEnd++;
+            }
+            if (orderBook == null || !isSameInstrument(command, orderBook)) {
+                orderBook = command.getOrder() != null ? getOrCreateOrderBook(command.getInstrument())
+                        : getOrCreateOrderBook(command.getInstrumentId());
+            }
+            long start = startTimer();
+            if (journal != null) {
+                for (int j = i; j < groupEnd; j++) {
+                    journal.append(commands[j]);
+                }
+            }
+            try {
+                orderBook.addOrders(commands, i, groupEnd);
+            } finally {
+                if (releaseIfEmpty(orderBook)) {
+                    orderBook = null; // a new book is left empty if the group was rejected
+                }
+            }
+            if (metrics != null) {
+                long nanos = (System.nanoTime() - start) / (groupEnd - i); // each add of the group gets its share
+                for (int j = i; j < groupEnd; j++) {
+                    metrics.record(MeasuredOperation.add, nanos);
+                }
+            }
+            i = groupEnd;
+        }
+        endBatch();
+    }
+
+    /**
+     * Same as applyBatch(Command[], int, int) for every command of the array
+     */
+    public void applyBatch(Command[] commands) {
+        applyBatch(commands, 0, commands.length);
+    }
+
+    /**
+     * @return true if the given command adds an order to the same level of the same book as the given add command
+     */
+    private static boolean isSameLevel(Command add, Command command) {
+        if (command.getType() != CommandType.add || command.getSide() != add.getSide()
+                || command.getPrice() != add.getPrice()) {
+            return false;
+        }
+        if (add.getOrder() != null) {
+            return command.getOrder() != null && add.getInstrument().equals(command.getInstrument());
+        }
+        return command.getOrder() == null && command.getInstrumentId() == add.getInstrumentId();
+    }
+
+    /**
+     * @return true if the given add command is for the given book
+     */
+    private static boolean isSameInstrument(Command add, OrderBook orderBook) {
+        if (add.getOrder() != null) {
+            return add.getInstrument().equals(orderBook.getInstrument());
+        }
+        return orderBook.getInstrument() == null && add.getInstrumentId() == orderBook.getInstrumentId();
     }
 
     /**
@@ -62,15 +819,38 @@ public class OrderBookManager {
      * @param newQuantity new quantity for the order, NOT a delta from previous quantity, always positive
      */
     public void modifyOrder(String orderId, long newQuantity) {
-        String instrument = instrumentByOrderIdMap.get(orderId);
-        // do nothing if this order id does not match any existing instrument
-        if (instrument == null) {
-            return;
+        long start = startTimer();
+        if (journal != null) {
+            journal.appendModify(orderId, newQuantity);
         }
+        modifyOrder(restingOrderByOrderIdMap.get(orderId), newQuantity, start);
+    }
 
-        //get the orderBook for this instrument. An OrderBook is guaranteed to exist at this point.
-        OrderBook orderBook = orderBookByInstrumentMap.get(instrument);
-        orderBook.modifyOrder(orderId, newQuantity);
+    /**
+     * Changes the quantity of an existing order identified by number. Does nothing if the order does not exist
+     *
+     * @param id          unique numeric identifier of existing order to modify
+     * @param newQuantity new quantity for the order, NOT a delta from previous quantity, always positive
+     */
+    public void modifyOrder(long id, long newQuantity) {
+        long start = startTimer();
+        if (journal != null) {
+            journal.appendModify(id, newQuantity);
+        }
+        modifyOrder(restingOrderByIdMap.get(id), newQuantity, start);
+    }
+
+    /**
+     * @param start time the modify started at, from startTimer
+     */
+    private void modifyOrder(RestingOrder restingOrder, long newQuantity, long start) {
+        // do nothing if this order id does not match any existing order
+        if (restingOrder == null) {
+            return;
+        }
+        boolean increase = newQuantity > restingOrder.getOrder().getQuantity();
+        restingOrder.getOrderBook().modifyOrder(restingOrder, newQuantity); // the node knows its book and level
+        stopTimer(increase ? MeasuredOperation.modifyUp : MeasuredOperation.modifyDown, start);
     }
 
     /**
@@ -79,20 +859,36 @@ public class OrderBookManager {
      * @param orderId unique identifier of existing order
      */
     public void deleteOrder(String orderId) {
-        String instrument = instrumentByOrderIdMap.get(orderId);
+        long start = startTimer();
+        if (journal != null) {
+            journal.appendDelete(orderId);
+        }
+        deleteOrder(restingOrderByOrderIdMap.remove(orderId));// remove mapping from the order id index
+        stopTimer(MeasuredOperation.delete, start);
+    }
 
-        // do nothing if there is no matching instrument for the given order id
-        if (instrument == null) {
-            return;
+    /**
+     * Permanently deletes an existing order identified by number. Does nothing if the order does not exist
+     *
+     * @param id unique numeric identifier of existing order
+     */
+    public void deleteOrder(long id) {
+        long start = startTimer();
+        if (journal != null) {
+            journal.appendDelete(id);
         }
-        OrderBook orderBook = orderBookByInstrumentMap.get(instrument);
-        orderBook.deleteOrder(orderId);
-        instrumentByOrderIdMap.remove(orderId);// remove mapping from the instrumentByOrderIdMap
+        deleteOrder(restingOrderByIdMap.remove(id));// remove mapping from the numeric order id index
+        stopTimer(MeasuredOperation.delete, start);
+    }
 
-        // check if this orderBook has now become empty and stop keeping track of it
-        if (orderBook.isEmpty()) {
-            orderBookByInstrumentMap.remove(instrument);
+    private void deleteOrder(RestingOrder restingOrder) {
+        // do nothing if there is no matching order for the given order id
+        if (restingOrder == null) {
+            return;
         }
+        OrderBook orderBook = restingOrder.getOrderBook();
+        orderBook.deleteOrder(restingOrder); // a pooled book recycles the node and numeric order, so not used after
+        releaseIfEmpty(orderBook); // check if this orderBook has now become empty and stop keeping track of it
     }
 
     /**
@@ -101,8 +897,25 @@ public class OrderBookManager {
      * @return best bid/ask price for an instrument. -1 if no order for the given instrument exists on the given side
      */
     public long getBestPrice(String instrument, Side side) {
-        OrderBook orderBook = orderBookByInstrumentMap.get(instrument);
+        long start = startTimer();
+        long bestPrice = getBestPrice(orderBookByInstrumentMap.get(instrument), side);
+        stopTimer(MeasuredOperation.getBestPrice, start);
+        return bestPrice;
+    }
+
+    /**
+     * @param instrumentId numeric identifier of an instrument
+     * @param side         either buy or sell
+     * @return best bid/ask price for an instrument. -1 if no order for the given instrument exists on the given side
+     */
+    public long getBestPrice(int instrumentId, Side side) {
+        long start = startTimer();
+        long bestPrice = getBestPrice(orderBookByInstrumentIdMap.get(instrumentId), side);
+        stopTimer(MeasuredOperation.getBestPrice, start);
+        return bestPrice;
+    }
 
+    private static long getBestPrice(OrderBook orderBook, Side side) {
         //return -1 if there is no OrderBook for the given instrument
         if (orderBook == null) {
             return -1;
@@ -117,8 +930,26 @@ public class OrderBookManager {
      * @return number of orders on a level and side. -1 if there are no orders for the given instrument, side or level
      */
     public long getOrderNumAtLevel(String instrument, Side side, long price) {
-        OrderBook orderBook = orderBookByInstrumentMap.get(instrument);
+        long start = startTimer();
+        long orderNum = getOrderNumAtLevel(orderBookByInstrumentMap.get(instrument), side, price);
+        stopTimer(MeasuredOperation.getOrderNumAtLevel, start);
+        return orderNum;
+    }
+
+    /**
+     * @param instrumentId numeric identifier of an instrument
+     * @param side         either buy or sell
+     * @param price        requested price level
+     * @return number of orders on a level and side. -1 if there are no orders for the given instrument, side or level
+     */
+    public long getOrderNumAtLevel(int instrumentId, Side side, long price) {
+        long start = startTimer();
+        long orderNum = getOrderNumAtLevel(orderBookByInstrumentIdMap.get(instrumentId), side, price);
+        stopTimer(MeasuredOperation.getOrderNumAtLevel, start);
+        return orderNum;
+    }
 
+    private static long getOrderNumAtLevel(OrderBook orderBook, Side side, long price) {
         // return -1 if there is no OrderBook for the given instrument
         if (orderBook == null) {
             return -1;
@@ -133,8 +964,26 @@ public class OrderBookManager {
      * @return tradeable quantity for a side and level. -1 if there're no orders for the given instrument,side or level
      */
     public long getTotalQuantityAtLevel(String instrument, Side side, long price) {
-        OrderBook orderBook = orderBookByInstrumentMap.get(instrument);
+        long start = startTimer();
+        long totalQuantity = getTotalQuantityAtLevel(orderBookByInstrumentMap.get(instrument), side, price);
+        stopTimer(MeasuredOperation.getTotalQuantityAtLevel, start);
+        return totalQuantity;
+    }
+
+    /**
+     * @param instrumentId numeric identifier of an instrument
+     * @param side         either buy or sell
+     * @param price        requested price level
+     * @return tradeable quantity for a side and level. -1 if there're no orders for the given instrument,side or level
+     */
+    public long getTotalQuantityAtLevel(int instrumentId, Side side, long price) {
+        long start = startTimer();
+        long totalQuantity = getTotalQuantityAtLevel(orderBookByInstrumentIdMap.get(instrumentId), side, price);
+        stopTimer(MeasuredOperation.getTotalQuantityAtLevel, start);
+        return totalQuantity;
+    }
 
+    private static long getTotalQuantityAtLevel(OrderBook orderBook, Side side, long price) {
         //return -1 if no OrderBook exists for this instrument
         if (orderBook == null) {
             return -1;
@@ -149,8 +998,26 @@ public class OrderBookManager {
      * @return tradeable volume for a side and level. -1 if there're no orders for the given instrument,side or level
      */
     public long getTotalVolumeAtLevel(String instrument, Side side, long price) {
-        OrderBook orderBook = orderBookByInstrumentMap.get(instrument);
+        long start = startTimer();
+        long totalVolume = getTotalVolumeAtLevel(orderBookByInstrumentMap.get(instrument), side, price);
+        stopTimer(MeasuredOperation.getTotalVolumeAtLevel, start);
+        return totalVolume;
+    }
+
+    /**
+     * @param instrumentId numeric identifier of an instrument
+     * @param side         either buy or sell
+     * @param price        requested price level
+     * @return tradeable volume for a side and level. -1 if there're no orders for the given instrument,side or level
+     */
+    public long getTotalVolumeAtLevel(int instrumentId, Side side, long price) {
+        long start = startTimer();
+        long totalVolume = getTotalVolumeAtLevel(orderBookByInstrumentIdMap.get(instrumentId), side, price);
+        stopTimer(MeasuredOperation.getTotalVolumeAtLevel, start);
+        return totalVolume;
+    }
 
+    private static long getTotalVolumeAtLevel(OrderBook orderBook, Side side, long price) {
         // return -1 if no OrderBook exists for this instrument
         if (orderBook == null) {
             return -1;
@@ -166,11 +1033,271 @@ public class OrderBookManager {
      * the instrument, side or level.
      */
     public List<Order> getOrdersAtLevel(String instrument, Side side, long price) {
-        OrderBook orderBook = orderBookByInstrumentMap.get(instrument);
+        long start = startTimer();
+        List<Order> orders = getOrdersAtLevel(orderBookByInstrumentMap.get(instrument), side, price);
+        stopTimer(MeasuredOperation.getOrdersAtLevel, start);
+        return orders;
+    }
+
+    /**
+     * @param instrumentId numeric identifier of an instrument
+     * @param side         either buy or sell
+     * @param price        requested price level
+     * @return a list of orders in the correct order for the given parameters. an empty list if there're no orders for
+     * the instrument, side or level.
+     */
+    public List<Order> getOrdersAtLevel(int instrumentId, Side side, long price) {
+        long start = startTimer();
+        List<Order> orders = getOrdersAtLevel(orderBookByInstrumentIdMap.get(instrumentId), side, price);
+        stopTimer(MeasuredOperation.getOrdersAtLevel, start);
+        return orders;
+    }
+
+    private static List<Order> getOrdersAtLevel(OrderBook orderBook, Side side, long price) {
         if (orderBook == null) {
             return Collections.emptyList(); // maybe returning null might be more representative
         }
         return orderBook.getOrdersAtLevel(side, price);// returns an empty list if there're no orders for the side/level
     }
 
+    /**
+     * Copies the best n levels of a side of an instrument's book into caller owned arrays, best level first.
+     * The arrays must hold at least n entries. Allocates nothing for ladder backed books.
+     *
+     * @param instrument identifier of an instrument
+     * @param side       either buy or sell
+     * @param n          maximum number of levels to copy
+     * @param prices     receives the price of each level
+     * @param quantities receives the total tradeable quantity of each level
+     * @param counts     receives the number of orders of each level
+     * @return number of levels copied. 0 if there're no orders for the given instrument or side
+     */
+    public int getDepth(String instrument, Side side, int n, long[] prices, long[] quantities, int[] counts) {
+        long start = startTimer();
+        int levels = getDepth(orderBookByInstrumentMap.get(instrument), side, n, prices, quantities, counts);
+        stopTimer(MeasuredOperation.getDepth, start);
+        return levels;
+    }
+
+    /**
+     * Same as getDepth(String, Side, int, long[], long[], int[]) for an instrument identified by number
+     */
+    public int getDepth(int instrumentId, Side side, int n, long[] prices, long[] quantities, int[] counts) {
+        long start = startTimer();
+        int levels = getDepth(orderBookByInstrumentIdMap.get(instrumentId), side, n, prices, quantities, counts);
+        stopTimer(MeasuredOperation.getDepth, start);
+        return levels;
+    }
+
+    private static int getDepth(OrderBook orderBook, Side side, int n, long[] prices, long[] quantities,
+                                int[] counts) {
+        if (orderBook == null) {
+            return 0; // no levels if there is no OrderBook for the given instrument
+        }
+        return orderBook.getDepth(side, n, prices, quantities, counts);
+    }
+
+    /**
+     * @param instrument identifier of an instrument
+     * @return total quantity of the levels of the given side at or better than the given price. 0 if there is no
+     * OrderBook for the given instrument. See OrderBook.getCumulativeQuantity
+     */
+    public long getCumulativeQuantity(String instrument, Side side, long price) {
+        OrderBook orderBook = orderBookByInstrumentMap.get(instrument);
+        return orderBook == null ? 0 : orderBook.getCumulativeQuantity(side, price);
+    }
+
+    /**
+     * Same as getCumulativeQuantity(String, Side, long) for an instrument identified by number
+     */
+    public long getCumulativeQuantity(int instrumentId, Side side, long price) {
+        OrderBook orderBook = orderBookByInstrumentIdMap.get(instrumentId);
+        return orderBook == null ? 0 : orderBook.getCumulativeQuantity(side, price);
+    }
+
+    /**
+     * @param instrument identifier of an instrument
+     * @return total volume of the levels of the given side at or better than the given price. 0 if there is no
+     * OrderBook for the given instrument. See OrderBook.getCumulativeVolume
+     */
+    public long getCumulativeVolume(String instrument, Side side, long price) {
+        OrderBook orderBook = orderBookByInstrumentMap.get(instrument);
+        return orderBook == null ? 0 : orderBook.getCumulativeVolume(side, price);
+    }
+
+    /**
+     * Same as getCumulativeVolume(String, Side, long) for an instrument identified by number
+     */
+    public long getCumulativeVolume(int instrumentId, Side side, long price) {
+        OrderBook orderBook = orderBookByInstrumentIdMap.get(instrumentId);
+        return orderBook == null ? 0 : orderBook.getCumulativeVolume(side, price);
+    }
+
+    /**
+     * @param instrument identifier of an instrument
+     * @param side       side of the levels swept
+     * @param quantity   quantity to sweep, positive
+     * @param result     receives what sweeping the given side would fill. Nothing if there is no OrderBook for the
+     *                   given instrument. See OrderBook.getSweepCost
+     * @return the given result
+     */
+    public SweepCost getSweepCost(String instrument, Side side, long quantity, SweepCost result) {
+        return getSweepCost(orderBookByInstrumentMap.get(instrument), side, quantity, result);
+    }
+
+    /**
+     * Same as getSweepCost(String, Side, long, SweepCost) for an instrument identified by number
+     */
+    public SweepCost getSweepCost(int instrumentId, Side side, long quantity, SweepCost result) {
+        return getSweepCost(orderBookByInstrumentIdMap.get(instrumentId), side, quantity, result);
+    }
+
+    private static SweepCost getSweepCost(OrderBook orderBook, Side side, long quantity, SweepCost result) {
+        if (orderBook == null) {
+            result.set(0, 0, -1); // nothing to sweep if there is no OrderBook for the given instrument
+            return result;
+        }
+        return orderBook.getSweepCost(side, quantity, result);
+    }
+
+    /**
+     * @param orderId id of a resting order
+     * @return number of orders ahead of the given one at its level. -1 if there is no such order.
+     * O(log n) with queue indexing enabled, O(position) otherwise
+     */
+    public long getQueuePosition(String orderId) {
+        RestingOrder restingOrder = restingOrderByOrderIdMap.get(orderId);
+        return restingOrder == null ? -1 : restingOrder.getOrderList().getQueuePosition(restingOrder);
+    }
+
+    /**
+     * Same as getQueuePosition(String) for an order identified by number
+     */
+    public long getQueuePosition(long id) {
+        RestingOrder restingOrder = restingOrderByIdMap.get(id);
+        return restingOrder == null ? -1 : restingOrder.getOrderList().getQueuePosition(restingOrder);
+    }
+
+    /**
+     * @param orderId id of a resting order
+     * @return total quantity of the orders ahead of the given one at its level, i.e. what has to trade before it
+     * does. -1 if there is no such order. O(log n) with queue indexing enabled, O(position) otherwise
+     */
+    public long getQuantityAhead(String orderId) {
+        RestingOrder restingOrder = restingOrderByOrderIdMap.get(orderId);
+        return restingOrder == null ? -1 : restingOrder.getOrderList().getQuantityAhead(restingOrder);
+    }
+
+    /**
+     * Same as getQuantityAhead(String) for an order identified by number
+     */
+    public long getQuantityAhead(long id) {
+        RestingOrder restingOrder = restingOrderByIdMap.get(id);
+        return restingOrder == null ? -1 : restingOrder.getOrderList().getQuantityAhead(restingOrder);
+    }
+
+    /**
+     * @return the current time to time an operation from, if metrics are recorded
+     */
+    private long startTimer() {
+        return metrics != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time elapsed since the given start in the histogram of the given operation, if metrics are recorded
+     */
+    private void stopTimer(MeasuredOperation operation, long start) {
+        if (metrics != null) {
+            metrics.record(operation, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return the book of the given instrument, created if there is none
+     */
+    OrderBook getOrCreateOrderBook(String instrument) {
+        OrderBook orderBook = orderBookByInstrumentMap.get(instrument);
+        if (orderBook == null) {
+            orderBook = newOrderBook(instrument, 0);
+            orderBookByInstrumentMap.put(instrument, orderBook); // make sure it is in the map
+        }
+        return orderBook;
+    }
+
+    /**
+     * @return the book of the given numeric instrument, created if there is none
+     */
+    OrderBook getOrCreateOrderBook(int instrumentId) {
+        OrderBook orderBook = orderBookByInstrumentIdMap.get(instrumentId);
+        if (orderBook == null) {
+            orderBook = newOrderBook(null, instrumentId);
+            orderBookByInstrumentIdMap.put(instrumentId, orderBook);
+        }
+        return orderBook;
+    }
+
+    /**
+     * Stops keeping track of the given book, and releases it, if it holds no order
+     *
+     * @return true if the book was empty
+     */
+    private boolean releaseIfEmpty(OrderBook orderBook) {
+        if (!orderBook.isEmpty()) {
+            return false;
+        }
+        if (orderBook.getInstrument() != null) {
+            orderBookByInstrumentMap.remove(orderBook.getInstrument());
+        } else {
+            orderBookByInstrumentIdMap.remove(orderBook.getInstrumentId());
+        }
+        if (releasedInstruments != null) {
+            if (orderBook.getInstrument() != null) {
+                releasedInstruments.add(orderBook.getInstrument());
+            } else {
+                releasedInstrumentIds.add(orderBook.getInstrumentId());
+            }
+        }
+        releaseOrderBook(orderBook);
+        if (metrics != null) {
+            metrics.bookRemoved();
+        }
+        return true;
+    }
+
+    /**
+     * @param instrument   instrument of the book. null for books identified by number
+     * @param instrumentId numeric identifier of the instrument, ignored if instrument is not null
+     * @return an empty OrderBook sharing this manager's order id indexes, recycled if this manager is pooled
+     */
+    private OrderBook newOrderBook(String instrument, int instrumentId) {
+        OrderBook orderBook = orderBookPool != null ? orderBookPool.acquire() : createOrderBook();
+        orderBook.setInstrument(instrument);
+        orderBook.setInstrumentId(instrumentId);
+        orderBook.setFillListener(fillListener);
+        orderBook.setLevelUpdateListener(levelUpdateListener);
+        orderBook.setMetrics(metrics);
+        orderBook.setTopOfBook(topOfBookOf(instrument, instrumentId));
+        orderBook.setStaleOrderBooks(staleOrderBooks);
+        orderBook.setDepthIndexed(depthIndexEnabled);
+        orderBook.setQueueIndexed(queueIndexEnabled);
+        orderBook.setTimerWheel(timerWheel);
+        if (metrics != null) {
+            metrics.bookCreated();
+        }
+        return orderBook;
+    }
+
+    /**
+     * Returns an empty OrderBook to the pool if this manager is pooled
+     */
+    private void releaseOrderBook(OrderBook orderBook) {
+        if (orderBookPool != null) {
+            orderBookPool.release(orderBook);
+        }
+    }
+
+    private OrderBook createOrderBook() {
+        return new OrderBook(tickSize, ladderCapacity, restingOrderByOrderIdMap, restingOrderByIdMap, pools);
+    }
+
 }
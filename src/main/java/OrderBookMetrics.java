@@ -0,0 +1,82 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Latencies and counters of an OrderBookManager and its books, recorded once it is given to
+ * OrderBookManager.setMetrics.
+ * <p>
+ * There is a LatencyHistogram per MeasuredOperation, in nanoseconds, and counters of the levels and books created
+ * and removed. They are written by the thread using the manager, without locks, and can be read from any other
+ * thread, e.g. to export them periodically: getLatencies(operation).snapshot() gives a consistent copy.
+ */
+public class OrderBookMetrics {
+    private final LatencyHistogram[] latencies = new LatencyHistogram[MeasuredOperation.values().length];
+    private final AtomicLong levelsCreated = new AtomicLong();
+    private final AtomicLong levelsRemoved = new AtomicLong();
+    private final AtomicLong booksCreated = new AtomicLong();
+    private final AtomicLong booksRemoved = new AtomicLong();
+
+    public OrderBookMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * @return the live histogram of the given operation
+     */
+    public LatencyHistogram getLatencies(MeasuredOperation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    public long getLevelsCreated() {
+        return levelsCreated.get();
+    }
+
+    public long getLevelsRemoved() {
+        return levelsRemoved.get();
+    }
+
+    public long getBooksCreated() {
+        return booksCreated.get();
+    }
+
+    public long getBooksRemoved() {
+        return booksRemoved.get();
+    }
+
+    void record(MeasuredOperation operation, long nanos) {
+        latencies[operation.ordinal()].record(nanos);
+    }
+
+    // counters have a single writer, so ordered writes are enough
+    void levelCreated() {
+        levelsCreated.lazySet(levelsCreated.get() + 1);
+    }
+
+    void levelRemoved() {
+        levelsRemoved.lazySet(levelsRemoved.get() + 1);
+    }
+
+    void bookCreated() {
+        booksCreated.lazySet(booksCreated.get() + 1);
+    }
+
+    void bookRemoved() {
+        booksRemoved.lazySet(booksRemoved.get() + 1);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("OrderBookMetrics{levelsCreated=").append(getLevelsCreated())
+                .append(", levelsRemoved=").append(getLevelsRemoved())
+                .append(", booksCreated=").append(getBooksCreated())
+                .append(", booksRemoved=").append(getBooksRemoved());
+        for (MeasuredOperation operation : MeasuredOperation.values()) {
+            builder.append(", ").append(operation).append("={").append(getLatencies(operation).snapshot())
+                    .append('}');
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,24 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Pools of the objects an OrderBook creates and discards as orders come and go: the RestingOrder node of every
+ * order, the OrderList of every level and the Order of every order added through the numeric API.
+ * Shared by all the OrderBooks of a pooled OrderBookManager.
+ */
+public class OrderBookPools {
+    final ObjectPool<Order> orders = new ObjectPool<>(Order::new);
+    final ObjectPool<RestingOrder> restingOrders = new ObjectPool<>(RestingOrder::new);
+    final ObjectPool<OrderList> orderLists = new ObjectPool<>(OrderList::new);
+
+    public ObjectPool<Order> getOrders() {
+        return orders;
+    }
+
+    public ObjectPool<RestingOrder> getRestingOrders() {
+        return restingOrders;
+    }
+
+    public ObjectPool<OrderList> getOrderLists() {
+        return orderLists;
+    }
+}
@@ -4,34 +4,147 @@ import java.util.ArrayList;
  * Created by ioluwayo. email: ioluwayo@gmail.com
  * <p>
  * Represents a list of orders.
+ * <p>
+ * Orders are kept in an intrusive doubly linked FIFO of RestingOrder nodes. Given the node of an order, deleting it,
+ * reducing its quantity in place or moving it to the back of the list are all O(1). Nothing is shifted when an
+ * order leaves the list. OrderBooks find the node through their order id index; the methods taking an order id
+ * walk the list instead.
  */
 public class OrderList {
-    private ArrayList<Order> orders;
+    /**
+     * first (oldest) order in the list. null if the list is empty
+     */
+    private RestingOrder head;
+
+    /**
+     * last (newest) order in the list. null if the list is empty
+     */
+    private RestingOrder tail;
 
     /**
      * Fields to provide constant lookup time.
      * Updated after every modify/delete/add operation on the list.
      * So they wouldn't need to be computed when required.
      */
+    private long numberOfOrders; // number of orders in an orderList
     private long totalTradeableQuantity; //sum of the quantity of orders in an orderList
     private long totalTradeableVolume; // sum of the volume of orders in an orderList. order volume = price*quantity
 
+    /**
+     * Snapshot of this list taken by its OrderBook, reused until the list changes. null once it has changed
+     */
+    LevelSnapshot snapshot;
+
+    /**
+     * Arrival slots of the orders of this list, for queue position queries in O(log n). null if not indexed
+     */
+    private QueueIndex queueIndex;
+
     /**
      * Default constructor
      * Orders should be added using the addOrder method.
      */
     public OrderList() {
-        this.orders = new ArrayList<>();
+        this.numberOfOrders = 0;
         this.totalTradeableQuantity = 0;
         this.totalTradeableVolume = 0;
     }
 
+    /**
+     * @return a copy of the orders in the list, in the order in which they are queued. Changes to the returned list
+     * are not reflected in this OrderList.
+     */
     public ArrayList<Order> getOrders() {
+        ArrayList<Order> orders = new ArrayList<>((int) numberOfOrders);
+        for (RestingOrder restingOrder = head; restingOrder != null; restingOrder = restingOrder.next) {
+            orders.add(restingOrder.getOrder());
+        }
         return orders;
     }
 
+    /**
+     * @return the node at the front of the list. null if the list is empty
+     */
+    public RestingOrder getHead() {
+        return head;
+    }
+
+    /**
+     * @return the node at the back of the list. null if the list is empty
+     */
+    public RestingOrder getTail() {
+        return tail;
+    }
+
+    /**
+     * @param orderId id of an order
+     * @return the node of the order with the given id. null if no order in the list matches the id. O(n)
+     */
+    public RestingOrder getRestingOrder(String orderId) {
+        for (RestingOrder restingOrder = head; restingOrder != null; restingOrder = restingOrder.next) {
+            if (orderId.equals(restingOrder.getOrder().getOrderId())) {
+                return restingOrder;
+            }
+        }
+        return null;
+    }
+
+    public boolean isQueueIndexed() {
+        return queueIndex != null;
+    }
+
+    /**
+     * Starts or stops keeping a QueueIndex of the orders of this list. Every add, modify and delete then costs
+     * O(log n) more, and getQueuePosition and getQuantityAhead become O(log n) instead of O(position).
+     *
+     * @param queueIndexed true to index the orders of this list
+     */
+    public void setQueueIndexed(boolean queueIndexed) {
+        if (queueIndexed && queueIndex == null) {
+            queueIndex = new QueueIndex();
+            queueIndex.rebuild(head, (int) numberOfOrders);
+        } else if (!queueIndexed && queueIndex != null) {
+            queueIndex = null;
+            for (RestingOrder restingOrder = head; restingOrder != null; restingOrder = restingOrder.next) {
+                restingOrder.slot = -1;
+            }
+        }
+    }
+
+    /**
+     * @param restingOrder node of an order in this list
+     * @return number of orders ahead of the given one. O(log n) if this list is queue indexed, O(position)
+     * otherwise
+     */
+    public long getQueuePosition(RestingOrder restingOrder) {
+        if (queueIndex != null) {
+            return queueIndex.getPosition(restingOrder.slot);
+        }
+        long position = 0;
+        for (RestingOrder ahead = restingOrder.prev; ahead != null; ahead = ahead.prev) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * @param restingOrder node of an order in this list
+     * @return total quantity of the orders ahead of the given one. O(log n) if this list is queue indexed,
+     * O(position) otherwise
+     */
+    public long getQuantityAhead(RestingOrder restingOrder) {
+        if (queueIndex != null) {
+            return queueIndex.getQuantityAhead(restingOrder.slot);
+        }
+        long quantity = 0;
+        for (RestingOrder ahead = restingOrder.prev; ahead != null; ahead = ahead.prev) {
+            quantity += ahead.getOrder().getQuantity();
+        }
+        return quantity;
+    }
+
     public long getNumberOfOrders() {
-        return orders.size();
+        return numberOfOrders;
     }
 
     public long getTotalTradeableQuantity() {
@@ -43,10 +156,6 @@ public class OrderList {
         return totalTradeableVolume;
     }
 
-    private void setOrders(ArrayList<Order> orders) {
-        this.orders = orders;
-    }
-
     private void setTotalTradeableQuantity(long totalTradeableQuantity) {
         this.totalTradeableQuantity = totalTradeableQuantity;
     }
@@ -58,13 +167,52 @@ public class OrderList {
      * Adds an order to the list of orders and updates the totalTradeableQuantity and totalTradeableVolume fields
      *
      * @param order the order to be added to list.
+     * @return the node holding the order in this list
      */
-    public void addOrder(Order order) {
-        orders.add(order); // appends to end of list
+    public RestingOrder addOrder(Order order) {
+        return addOrder(new RestingOrder(order));
+    }
+
+    /**
+     * Appends the given node to the list of orders and updates the totalTradeableQuantity and totalTradeableVolume
+     * fields. The node must not be in any list.
+     *
+     * @param restingOrder node holding the order to be added to the list
+     * @return the given node
+     */
+    public RestingOrder addOrder(RestingOrder restingOrder) {
+        Order order = restingOrder.getOrder();
+        linkLast(restingOrder); // appends to end of list
+        snapshot = null;
 
         // update the fields to reflect the addition
+        numberOfOrders++;
+        indexLast(restingOrder);
         totalTradeableQuantity += order.getQuantity();
         totalTradeableVolume += order.getPrice() * order.getQuantity();
+        return restingOrder;
+    }
+
+    /**
+     * Appends the given node to the list without updating the totals. Used to add several orders at once, the
+     * caller then updates the totals for all of them with addToTotals.
+     *
+     * @param restingOrder node holding the order to be added to the list. Must not be in any list
+     */
+    void append(RestingOrder restingOrder) {
+        linkLast(restingOrder);
+        snapshot = null;
+        indexLast(restingOrder);
+    }
+
+    /**
+     * Adds the given amounts to numberOfOrders, totalTradeableQuantity and totalTradeableVolume
+     */
+    void addToTotals(long orders, long quantity, long volume) {
+        numberOfOrders += orders;
+        totalTradeableQuantity += quantity;
+        totalTradeableVolume += volume;
+        snapshot = null;
     }
 
     /**
@@ -75,17 +223,34 @@ public class OrderList {
      * @param orderId the id of the order to be deleted.
      */
     public void deleteOrder(String orderId) {
-        for (int i = 0; i < orders.size(); i++) {
-            Order order = orders.get(i);
-            if (order.getOrderId() == orderId) {
-                orders.remove(i); // removes and shifts subsequent elements to the left(subtracts 1 from their indices
-                totalTradeableQuantity -= order.getQuantity(); //update the fields to reflect change
-                totalTradeableVolume -= order.getPrice() * order.getQuantity();
-                break; // absolutely no need to go further. only 1 order can match this id.
-            }
+        RestingOrder restingOrder = getRestingOrder(orderId);
+        if (restingOrder != null) {
+            deleteOrder(restingOrder);
         }
     }
 
+    /**
+     * Permanently deletes the given node from the list. O(1).
+     * updates the totalTradeableQuantity and totalTradeableVolume fields to reflect the change.
+     *
+     * @param restingOrder node of an order in this list
+     */
+    public void deleteOrder(RestingOrder restingOrder) {
+        Order order = restingOrder.getOrder();
+        unlink(restingOrder);
+        restingOrder.orderList = null;
+        snapshot = null;
+        if (queueIndex != null) {
+            queueIndex.remove(restingOrder.slot, order.getQuantity());
+            restingOrder.slot = -1;
+        }
+
+        //update the fields to reflect change
+        numberOfOrders--;
+        totalTradeableQuantity -= order.getQuantity();
+        totalTradeableVolume -= order.getPrice() * order.getQuantity();
+    }
+
     /**
      * Changes the quantity of the order in the list of orders corresponding to the Id provided.
      * If no order matches the provided id, it does nothing.
@@ -96,31 +261,97 @@ public class OrderList {
      * @param newQuantity new quantity for the order.
      */
     public void modifyOrder(String orderId, long newQuantity) {
-        for (int i = 0; i < orders.size(); i++) {
-            Order order = orders.get(i);
-            if (order.getOrderId() == orderId) {
-                long currentQuantity = order.getQuantity();
-
-                //The total totalTradeable fields are going to change in both cases.
-                totalTradeableQuantity -= order.getQuantity();
-                totalTradeableVolume -= order.getPrice() * order.getQuantity();
-
-                if (newQuantity > currentQuantity) {
-                    orders.remove(order); // order has to be placed at the end of the list, so remove it.
-                    order.setQuantity(newQuantity);
-                    addOrder(order);// add to end of the list. method also handles updating the relevant fields.
-                } else {
-                    order.setQuantity(newQuantity);// just change the quantity and leave the order in current position
-
-                    //update the totalTradeable fields to reflect changes
-                    totalTradeableQuantity += order.getQuantity();
-                    totalTradeableVolume += order.getPrice() * order.getQuantity();
-                }
-                return; // absolutely no need to go further. only 1 order can match this id.
+        RestingOrder restingOrder = getRestingOrder(orderId);
+        if (restingOrder != null) {
+            modifyOrder(restingOrder, newQuantity);
+        }
+    }
+
+    /**
+     * Changes the quantity of the order held by the given node. O(1).
+     * Updates the totalTradeableQuantity and totalTradeableVolume fields to reflect the change.
+     * Moves the order to the end of the list if the quantity increases.
+     *
+     * @param restingOrder node of an order in this list
+     * @param newQuantity  new quantity for the order.
+     */
+    public void modifyOrder(RestingOrder restingOrder, long newQuantity) {
+        Order order = restingOrder.getOrder();
+        long currentQuantity = order.getQuantity();
+
+        //The totalTradeable fields change by the difference in both cases.
+        totalTradeableQuantity += newQuantity - currentQuantity;
+        totalTradeableVolume += order.getPrice() * (newQuantity - currentQuantity);
+        order.setQuantity(newQuantity);
+        snapshot = null;
+
+        // order has to be placed at the end of the list if its quantity increased, otherwise it keeps its position
+        if (newQuantity > currentQuantity && restingOrder != tail) {
+            unlink(restingOrder);
+            linkLast(restingOrder);
+            if (queueIndex != null) {
+                queueIndex.remove(restingOrder.slot, currentQuantity);
+                indexLast(restingOrder);
+            }
+        } else if (queueIndex != null) {
+            queueIndex.changeQuantity(restingOrder.slot, newQuantity - currentQuantity);
+        }
+    }
+
+    /**
+     * Gives the node, just linked at the back of the list, the last slot of the QueueIndex. Renumbers the whole
+     * queue instead if every slot has been handed out
+     */
+    private void indexLast(RestingOrder restingOrder) {
+        if (queueIndex == null) {
+            return;
+        }
+        if (queueIndex.isFull()) {
+            int count = 0;
+            for (RestingOrder node = head; node != null; node = node.next) {
+                count++;
             }
+            queueIndex.rebuild(head, count); // numbers the given node too
+        } else {
+            restingOrder.slot = queueIndex.add(restingOrder.getOrder().getQuantity());
         }
     }
 
+    /**
+     * Appends the node to the back of the list
+     */
+    private void linkLast(RestingOrder restingOrder) {
+        restingOrder.orderList = this;
+        restingOrder.prev = tail;
+        restingOrder.next = null;
+        if (tail == null) {
+            head = restingOrder; // list was empty
+        } else {
+            tail.next = restingOrder;
+        }
+        tail = restingOrder;
+    }
+
+    /**
+     * Detaches the node from its neighbours, joining them to each other
+     */
+    private void unlink(RestingOrder restingOrder) {
+        RestingOrder prev = restingOrder.prev;
+        RestingOrder next = restingOrder.next;
+        if (prev == null) {
+            head = next;
+        } else {
+            prev.next = next;
+        }
+        if (next == null) {
+            tail = prev;
+        } else {
+            next.prev = prev;
+        }
+        restingOrder.prev = null;
+        restingOrder.next = null;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -128,14 +359,26 @@ public class OrderList {
 
         OrderList orderList = (OrderList) o;
 
+        if (numberOfOrders != orderList.numberOfOrders) return false;
         if (totalTradeableQuantity != orderList.totalTradeableQuantity) return false;
         if (totalTradeableVolume != orderList.totalTradeableVolume) return false;
-        return orders != null ? orders.equals(orderList.orders) : orderList.orders == null;
+        // walk both queues side by side
+        RestingOrder mine = head;
+        RestingOrder theirs = orderList.head;
+        while (mine != null && theirs != null) {
+            if (!mine.getOrder().equals(theirs.getOrder())) return false;
+            mine = mine.next;
+            theirs = theirs.next;
+        }
+        return mine == null && theirs == null;
     }
 
     @Override
     public int hashCode() {
-        int result = orders != null ? orders.hashCode() : 0;
+        int result = 1;
+        for (RestingOrder restingOrder = head; restingOrder != null; restingOrder = restingOrder.next) {
+            result = 31 * result + restingOrder.getOrder().hashCode();
+        }
         result = 31 * result + (int) (totalTradeableQuantity ^ (totalTradeableQuantity >>> 32));
         result = 31 * result + (int) (totalTradeableVolume ^ (totalTradeableVolume >>> 32));
         return result;
@@ -144,7 +387,7 @@ public class OrderList {
     @Override
     public String toString() {
         return "OrderList{" +
-                "orders=" + orders +
+                "orders=" + getOrders() +
                 ", totalTradeableQuantity=" + totalTradeableQuantity +
                 ", totalTradeableVolume=" + totalTradeableVolume +
                 '}';
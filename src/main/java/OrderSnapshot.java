@@ -0,0 +1,54 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Immutable copy of an order resting in a level of a LevelSnapshot. Side and price are those of its level, and the
+ * instrument that of its book, so they are not repeated. Shared by every reader of the snapshot.
+ */
+public final class OrderSnapshot {
+    private final String orderId; // null for orders identified by number
+    private final long id;
+    private final long quantity;
+    private final long expiryTime; // 0 if it never expires
+
+    OrderSnapshot(Order order) {
+        this.orderId = order.getOrderId();
+        this.id = order.getId();
+        this.quantity = order.getQuantity();
+        this.expiryTime = order.getExpiryTime();
+    }
+
+    /**
+     * @return id of the order. null for orders identified by number
+     */
+    public String getOrderId() {
+        return orderId;
+    }
+
+    /**
+     * @return numeric id of the order. Only meaningful for orders without a String id
+     */
+    public long getId() {
+        return id;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * @return time at which the order expires, 0 if it never expires
+     */
+    public long getExpiryTime() {
+        return expiryTime;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderSnapshot{" +
+                "orderId='" + orderId + '\'' +
+                ", id=" + id +
+                ", quantity=" + quantity +
+                ", expiryTime=" + expiryTime +
+                '}';
+    }
+}
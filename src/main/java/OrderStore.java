@@ -0,0 +1,58 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Storage of resting order records addressed by int handles instead of object references. Each record holds the
+ * numeric id, instrument id, side, price and quantity of an order, plus the handles of its neighbours in the queue
+ * of its level, so a level is a linked list of handles.
+ * <p>
+ * Handles are only valid between allocate and free. Freed records are reused by later allocations.
+ */
+public interface OrderStore {
+    /**
+     * handle meaning "no order", e.g. the neighbour of the first or last order of a level
+     */
+    int NULL = -1;
+
+    /**
+     * Stores a new order record, with no neighbours
+     *
+     * @return handle of the record
+     */
+    int allocate(long id, int instrumentId, Side side, long price, long quantity);
+
+    /**
+     * Releases the record of the given handle, to be reused by a later allocation
+     */
+    void free(int handle);
+
+    /**
+     * @return number of records allocated and not freed
+     */
+    int size();
+
+    long getId(int handle);
+
+    int getInstrumentId(int handle);
+
+    Side getSide(int handle);
+
+    long getPrice(int handle);
+
+    long getQuantity(int handle);
+
+    void setQuantity(int handle, long quantity);
+
+    /**
+     * @return handle of the order ahead of the given one in its level. NULL if it is the first
+     */
+    int getPrev(int handle);
+
+    void setPrev(int handle, int prev);
+
+    /**
+     * @return handle of the order behind the given one in its level. NULL if it is the last
+     */
+    int getNext(int handle);
+
+    void setNext(int handle, int next);
+}
@@ -0,0 +1,40 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Spins, then yields, then sleeps for a fixed time between checks. Cheapest on the CPU, but a command published while
+ * the consumer sleeps waits for it to wake up.
+ */
+public class ParkingWaitStrategy implements WaitStrategy {
+    private final int spins;
+    private final int yields;
+    private final long parkNanos;
+
+    public ParkingWaitStrategy() {
+        this(100, 100, 50_000);
+    }
+
+    /**
+     * @param spins     number of checks made before the thread starts yielding
+     * @param yields    number of checks made while yielding before the thread starts parking
+     * @param parkNanos how long the thread sleeps between checks once parking
+     */
+    public ParkingWaitStrategy(int spins, int yields, long parkNanos) {
+        this.spins = spins;
+        this.yields = yields;
+        this.parkNanos = parkNanos;
+    }
+
+    @Override
+    public void idle(int attempt) {
+        if (attempt < spins) {
+            return;
+        }
+        if (attempt < spins + yields) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(parkNanos);
+        }
+    }
+}
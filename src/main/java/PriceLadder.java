@@ -0,0 +1,251 @@
+import java.util.TreeMap;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * PriceLevels backed by a primitive array indexed by tick. Slot i holds the level for price basePrice + i*tickSize,
+ * so finding a level is an array read instead of a walk through tree nodes with a boxed key.
+ * <p>
+ * The index of the best level is cached. Adding a level only compares against it and removing the best level scans
+ * towards worse prices for the next occupied slot, which is cheap for instruments trading in a narrow band.
+ * When a price falls outside the array, the ladder is re-centred around the occupied prices, growing if the
+ * band no longer fits.
+ * <p>
+ * Prices must be multiples of the tick size.
+ */
+public class PriceLadder implements PriceLevels {
+    /**
+     * buy ladders prefer higher prices, sell ladders lower prices
+     */
+    private final Side side;
+
+    /**
+     * smallest price increment of the instrument
+     */
+    private final long tickSize;
+
+    /**
+     * slot i holds the level for price basePrice + i*tickSize. null if there is no such level
+     */
+    private OrderList[] levels;
+
+    /**
+     * price of slot 0
+     */
+    private long basePrice;
+
+    /**
+     * number of occupied slots
+     */
+    private int size;
+
+    /**
+     * slot of the best level. -1 if there are no levels
+     */
+    private int bestIndex;
+
+    /**
+     * @param side     side of the book this ladder represents
+     * @param tickSize smallest price increment, always positive
+     * @param capacity initial number of ticks covered by the ladder, always positive
+     */
+    public PriceLadder(Side side, long tickSize, int capacity) {
+        if (tickSize <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("tickSize and capacity must be positive");
+        }
+        this.side = side;
+        this.tickSize = tickSize;
+        this.levels = new OrderList[capacity];
+        this.basePrice = 0;
+        this.size = 0;
+        this.bestIndex = -1;
+    }
+
+    public long getTickSize() {
+        return tickSize;
+    }
+
+    /**
+     * @return number of ticks currently covered by the ladder
+     */
+    public int getCapacity() {
+        return levels.length;
+    }
+
+    @Override
+    public OrderList get(long price) {
+        int index = indexOf(price);
+        return index < 0 ? null : levels[index];
+    }
+
+    @Override
+    public void put(long price, OrderList orderList) {
+        if (price % tickSize != 0) {
+            throw new IllegalArgumentException("price " + price + " is not a multiple of the tick size " + tickSize);
+        }
+        int index = indexOf(price);
+        if (index < 0) {
+            recenter(price); // price has drifted outside the ladder
+            index = indexOf(price);
+        }
+        if (levels[index] == null) {
+            size++;
+        }
+        levels[index] = orderList;
+        if (bestIndex < 0 || isBetter(index, bestIndex)) {
+            bestIndex = index;
+        }
+    }
+
+    @Override
+    public OrderList remove(long price) {
+        int index = indexOf(price);
+        if (index < 0 || levels[index] == null) {
+            return null;
+        }
+        OrderList orderList = levels[index];
+        levels[index] = null;
+        size--;
+        if (index == bestIndex) {
+            bestIndex = size == 0 ? -1 : nextOccupied(index);
+        }
+        return orderList;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long getBestPrice() {
+        return bestIndex < 0 ? -1 : priceOf(bestIndex);
+    }
+
+    @Override
+    public long getNextPrice(long price) {
+        if (size == 0) {
+            return -1;
+        }
+        // slot of the given price, clamped to just outside the array if the price is not covered
+        long offset = Math.floorDiv(price - basePrice, tickSize);
+        int from = (int) Math.max(-1, Math.min(levels.length, offset));
+        int next = nextOccupied(from);
+        return next < 0 ? -1 : priceOf(next);
+    }
+
+    @Override
+    public int getDepth(int n, long[] prices, long[] quantities, int[] counts) {
+        int depth = 0;
+        for (int i = bestIndex; i >= 0 && depth < n; i = nextOccupied(i)) {
+            OrderList orderList = levels[i];
+            prices[depth] = priceOf(i);
+            quantities[depth] = orderList.getTotalTradeableQuantity();
+            counts[depth] = (int) orderList.getNumberOfOrders();
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * @return a new TreeMap holding the levels of this ladder, sorted best price first
+     */
+    @Override
+    public TreeMap<Long, OrderList> asTreeMap() {
+        TreeMap<Long, OrderList> map =
+                new TreeMap<>(side == Side.buy ? new BidLevelComparator() : new AskLevelComparator());
+        for (int i = 0; i < levels.length; i++) {
+            if (levels[i] != null) {
+                map.put(priceOf(i), levels[i]);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * @return slot holding the given price. -1 if the price is not covered by the ladder or not on a tick
+     */
+    private int indexOf(long price) {
+        long offset = price - basePrice;
+        if (offset < 0 || offset % tickSize != 0) {
+            return -1;
+        }
+        long index = offset / tickSize;
+        return index < levels.length ? (int) index : -1;
+    }
+
+    private long priceOf(int index) {
+        return basePrice + index * tickSize;
+    }
+
+    /**
+     * @return true if slot index1 holds a better price than slot index2 for this side
+     */
+    private boolean isBetter(int index1, int index2) {
+        return side == Side.buy ? index1 > index2 : index1 < index2;
+    }
+
+    /**
+     * @param from slot to start after, may be -1 or levels.length
+     * @return the first occupied slot after the given one, moving towards worse prices. -1 if there is none
+     */
+    private int nextOccupied(int from) {
+        if (side == Side.buy) {
+            for (int i = Math.min(from, levels.length) - 1; i >= 0; i--) {
+                if (levels[i] != null) return i;
+            }
+        } else {
+            for (int i = Math.max(from, -1) + 1; i < levels.length; i++) {
+                if (levels[i] != null) return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves the levels into a new array whose band covers both the occupied prices and the given price,
+     * leaving equal room on both ends. The array doubles until the band fits.
+     */
+    private void recenter(long price) {
+        long low = price;
+        long high = price;
+        for (int i = 0; i < levels.length; i++) {
+            if (levels[i] != null) {
+                low = Math.min(low, priceOf(i));
+                high = Math.max(high, priceOf(i));
+            }
+        }
+        long span = (high - low) / tickSize + 1; // ticks between the lowest and highest price, inclusive
+        int capacity = levels.length;
+        while (capacity < span) {
+            if (capacity > Integer.MAX_VALUE / 2) {
+                throw new IllegalStateException("price band of " + span + " ticks does not fit in a ladder");
+            }
+            capacity *= 2;
+        }
+        long newBasePrice = Math.max(0, low - ((capacity - span) / 2) * tickSize); // prices are always positive
+
+        OrderList[] newLevels = new OrderList[capacity];
+        int shift = (int) ((basePrice - newBasePrice) / tickSize);
+        for (int i = 0; i < levels.length; i++) {
+            if (levels[i] != null) {
+                newLevels[i + shift] = levels[i];
+            }
+        }
+        if (bestIndex >= 0) {
+            bestIndex += shift;
+        }
+        levels = newLevels;
+        basePrice = newBasePrice;
+    }
+
+    @Override
+    public String toString() {
+        return asTreeMap().toString();
+    }
+}
@@ -0,0 +1,68 @@
+import java.util.TreeMap;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * One side of an OrderBook: price -> OrderList pairs kept in order of priority, best price first.
+ * <p>
+ * Implemented by TreeMapPriceLevels (the default, any price) and PriceLadder (a tick indexed array for instruments
+ * trading in a narrow band of prices).
+ */
+public interface PriceLevels {
+
+    /**
+     * @param price requested price level
+     * @return the OrderList for the given price. null if there is no such level
+     */
+    OrderList get(long price);
+
+    /**
+     * Registers the given OrderList as the level for the given price
+     *
+     * @param price     price of the level
+     * @param orderList orders resting at that price
+     */
+    void put(long price, OrderList orderList);
+
+    /**
+     * Removes the level for the given price
+     *
+     * @param price price of the level
+     * @return the removed OrderList. null if there was no such level
+     */
+    OrderList remove(long price);
+
+    /**
+     * @return true if there are no levels
+     */
+    boolean isEmpty();
+
+    /**
+     * @return number of levels
+     */
+    int size();
+
+    /**
+     * @return price of the best level. -1 if there are no levels
+     */
+    long getBestPrice();
+
+    /**
+     * @param price price of an existing level
+     * @return price of the next level after the given one in order of priority. -1 if there is none
+     */
+    long getNextPrice(long price);
+
+    /**
+     * Copies the price, total quantity and number of orders of the best n levels into the given arrays, best level
+     * first, in a single ordered walk. The arrays must hold at least n entries.
+     *
+     * @return number of levels copied, at most n
+     */
+    int getDepth(int n, long[] prices, long[] quantities, int[] counts);
+
+    /**
+     * @return the levels as a TreeMap sorted best price first
+     */
+    TreeMap<Long, OrderList> asTreeMap();
+}
@@ -0,0 +1,124 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Order statistics of the queue of one level: the number and the quantity of the orders ahead of any order, in
+ * O(log n). Every order of the level holds an arrival slot. Slots are handed out in increasing order as orders join
+ * the back of the queue, so the order of the slots is the order of the queue, and two Fenwick trees over the slots
+ * sum the orders and their quantities before any slot.
+ * <p>
+ * Leaving the queue frees a slot for good. Once the last slot has been handed out, the owning OrderList renumbers
+ * its orders from 0 with rebuild, so slots stay dense and the trees stay about twice the size of the queue.
+ */
+class QueueIndex {
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * Fenwick trees over the slots. Entry i, 1 based, sums the slots (i - lowbit(i), i]
+     */
+    private int[] countTree;
+    private long[] quantityTree;
+
+    private int nextSlot; // next slot to hand out
+
+    QueueIndex() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * @return true if every slot has been handed out, in which case the queue must be rebuilt before adding
+     */
+    boolean isFull() {
+        return nextSlot == countTree.length - 1;
+    }
+
+    /**
+     * Hands out the slot at the back of the queue to an order of the given quantity. The index must not be full
+     *
+     * @return the slot of the order
+     */
+    int add(long quantity) {
+        int slot = nextSlot++;
+        update(slot, 1, quantity);
+        return slot;
+    }
+
+    /**
+     * Frees the slot of an order leaving the queue
+     *
+     * @param quantity quantity of the order
+     */
+    void remove(int slot, long quantity) {
+        update(slot, -1, -quantity);
+    }
+
+    /**
+     * Records a change of the quantity of the order holding the given slot
+     */
+    void changeQuantity(int slot, long delta) {
+        update(slot, 0, delta);
+    }
+
+    /**
+     * @return number of orders ahead of the order holding the given slot
+     */
+    int getPosition(int slot) {
+        int count = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            count += countTree[i];
+        }
+        return count;
+    }
+
+    /**
+     * @return total quantity of the orders ahead of the order holding the given slot
+     */
+    long getQuantityAhead(int slot) {
+        long quantity = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            quantity += quantityTree[i];
+        }
+        return quantity;
+    }
+
+    /**
+     * Renumbers the orders of the queue from 0, in order, and rebuilds the trees with room for as many orders
+     * again. O(n)
+     *
+     * @param head  first order of the queue
+     * @param count number of orders of the queue
+     */
+    void rebuild(RestingOrder head, int count) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2 * count) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+        for (RestingOrder restingOrder = head; restingOrder != null; restingOrder = restingOrder.next) {
+            int slot = nextSlot++;
+            restingOrder.slot = slot;
+            countTree[slot + 1] = 1;
+            quantityTree[slot + 1] = restingOrder.getOrder().getQuantity();
+        }
+        // turn the values into Fenwick trees in place
+        for (int i = 1; i < countTree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < countTree.length) {
+                countTree[parent] += countTree[i];
+                quantityTree[parent] += quantityTree[i];
+            }
+        }
+    }
+
+    private void update(int slot, int count, long quantity) {
+        for (int i = slot + 1; i < countTree.length; i += i & -i) {
+            countTree[i] += count;
+            quantityTree[i] += quantity;
+        }
+    }
+
+    private void allocate(int capacity) {
+        countTree = new int[capacity + 1];
+        quantityTree = new long[capacity + 1];
+        nextSlot = 0;
+    }
+}
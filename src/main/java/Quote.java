@@ -0,0 +1,65 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * A consistent copy of the best bid and ask of a book, read from a TopOfBook. Prices are -1 for an empty side.
+ * Meant to be reused by a reader thread, which owns it.
+ */
+public class Quote {
+    private long sequence;
+    private long bidPrice = -1;
+    private long bidQuantity;
+    private long bidOrderCount;
+    private long askPrice = -1;
+    private long askQuantity;
+    private long askOrderCount;
+
+    void set(long sequence, long bidPrice, long bidQuantity, long bidOrderCount, long askPrice, long askQuantity,
+             long askOrderCount) {
+        this.sequence = sequence;
+        this.bidPrice = bidPrice;
+        this.bidQuantity = bidQuantity;
+        this.bidOrderCount = bidOrderCount;
+        this.askPrice = askPrice;
+        this.askQuantity = askQuantity;
+        this.askOrderCount = askOrderCount;
+    }
+
+    /**
+     * @return sequence of the TopOfBook when this quote was read. Grows by 2 with every update
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getBidPrice() {
+        return bidPrice;
+    }
+
+    public long getBidQuantity() {
+        return bidQuantity;
+    }
+
+    public long getBidOrderCount() {
+        return bidOrderCount;
+    }
+
+    public long getAskPrice() {
+        return askPrice;
+    }
+
+    public long getAskQuantity() {
+        return askQuantity;
+    }
+
+    public long getAskOrderCount() {
+        return askOrderCount;
+    }
+
+    @Override
+    public String toString() {
+        return "Quote{" +
+                "sequence=" + sequence +
+                ", bid=" + bidQuantity + "/" + bidOrderCount + "@" + bidPrice +
+                ", ask=" + askQuantity + "/" + askOrderCount + "@" + askPrice +
+                '}';
+    }
+}
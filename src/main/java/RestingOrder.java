@@ -0,0 +1,99 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * A node of the intrusive doubly linked FIFO kept by an OrderList.
+ * Wraps a resting order with handles to its neighbours in the queue, to the OrderList (level) that owns it and to
+ * the OrderBook it rests in. The side and price come from the order itself. This is the value of the order id
+ * index, so once a node is looked up, an order can be modified or unlinked without any further lookup.
+ */
+public class RestingOrder {
+    /**
+     * the order resting in the queue
+     */
+    private Order order;
+
+    /**
+     * the order ahead of this one in the queue. null if this is the first order of its level
+     */
+    RestingOrder prev;
+
+    /**
+     * the order behind this one in the queue. null if this is the last order of its level
+     */
+    RestingOrder next;
+
+    /**
+     * the level this order currently rests in. null once it has been removed
+     */
+    OrderList orderList;
+
+    /**
+     * the book this order rests in. null until the order is added to a book
+     */
+    OrderBook orderBook;
+
+    /**
+     * arrival slot of this order in the QueueIndex of its level. -1 if the level is not queue indexed
+     */
+    int slot = -1;
+
+    /**
+     * neighbours of this order in its slot of the TimerWheel, and that slot. timerSlot is -1 if the order is not
+     * scheduled to expire
+     */
+    RestingOrder timerPrev;
+    RestingOrder timerNext;
+    int timerSlot = -1;
+
+    public RestingOrder(Order order) {
+        this.order = order;
+    }
+
+    /**
+     * For pooling. The order is set with init
+     */
+    RestingOrder() {
+    }
+
+    /**
+     * Prepares a recycled node to hold the given order
+     */
+    void init(Order order) {
+        this.order = order;
+        this.prev = null;
+        this.next = null;
+        this.orderList = null;
+        this.orderBook = null;
+        this.slot = -1;
+        this.timerPrev = null;
+        this.timerNext = null;
+        this.timerSlot = -1;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public RestingOrder getPrev() {
+        return prev;
+    }
+
+    public RestingOrder getNext() {
+        return next;
+    }
+
+    public OrderList getOrderList() {
+        return orderList;
+    }
+
+    public OrderBook getOrderBook() {
+        return orderBook;
+    }
+
+    @Override
+    public String toString() {
+        return "RestingOrder{" +
+                "order=" + order +
+                '}';
+    }
+}
@@ -0,0 +1,245 @@
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Spreads instruments over several OrderBookManagers, each owned by a single worker thread.
+ * <p>
+ * Every instrument is hashed onto one shard. A shard's OrderBookManager, and every OrderBook in it, is only ever
+ * touched by the shard's worker thread, which drains the shard's command queue in batches. Books therefore need no
+ * locks, and throughput grows with the number of shards as long as order flow is spread across instruments.
+ * <p>
+ * Any thread can submit commands. Commands for the same instrument are applied in the order they were submitted
+ * by a given thread. Modify and delete commands carry the instrument of the order so they can be routed to its
+ * shard without a shared order id index. Reads run on the shard's thread too and are answered through
+ * CompletableFutures.
+ */
+public class ShardedOrderBookManager implements AutoCloseable {
+    /**
+     * most commands a worker takes off its queue at once
+     */
+    private static final int MAX_BATCH = 256;
+
+    private final Shard[] shards;
+
+    /**
+     * @param shardCount    number of shards, and of worker threads
+     * @param queueCapacity number of commands a shard can hold before submitters wait
+     */
+    public ShardedOrderBookManager(int shardCount, int queueCapacity) {
+        this(shardCount, queueCapacity, OrderBookManager::new);
+    }
+
+    /**
+     * @param shardCount    number of shards, and of worker threads
+     * @param queueCapacity number of commands a shard can hold before submitters wait
+     * @param factory       creates the OrderBookManager of each shard
+     */
+    public ShardedOrderBookManager(int shardCount, int queueCapacity, Supplier<OrderBookManager> factory) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be positive");
+        }
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(factory.get(), queueCapacity, "order-book-shard-" + i);
+        }
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * @return the shard the given instrument is hashed onto
+     */
+    public int shardOf(String instrument) {
+        return Math.floorMod(instrument.hashCode(), shards.length);
+    }
+
+    /**
+     * @return the shard the given numeric instrument is hashed onto
+     */
+    public int shardOf(int instrumentId) {
+        return Math.floorMod(instrumentId, shards.length);
+    }
+
+    /**
+     * @return number of commands of all shards that threw an exception when applied
+     */
+    public long getFailedCommandCount() {
+        long failed = 0;
+        for (Shard shard : shards) {
+            failed += shard.failedCommands.get();
+        }
+        return failed;
+    }
+
+    public void addOrder(Order order) {
+        submit(shardOf(order.getInstrument()), new Command().add(order));
+    }
+
+    public void addOrder(long id, int instrumentId, Side side, long price, long quantity) {
+        submit(shardOf(instrumentId), new Command().add(id, instrumentId, side, price, quantity));
+    }
+
+    public void addOrder(long id, int instrumentId, Side side, long price, long quantity, long expiryTime) {
+        submit(shardOf(instrumentId), new Command().add(id, instrumentId, side, price, quantity, expiryTime));
+    }
+
+    public void modifyOrder(String instrument, String orderId, long newQuantity) {
+        submit(shardOf(instrument), new Command().modify(instrument, orderId, newQuantity));
+    }
+
+    public void modifyOrder(int instrumentId, long id, long newQuantity) {
+        submit(shardOf(instrumentId), new Command().modify(instrumentId, id, newQuantity));
+    }
+
+    public void deleteOrder(String instrument, String orderId) {
+        submit(shardOf(instrument), new Command().delete(instrument, orderId));
+    }
+
+    public void deleteOrder(int instrumentId, long id) {
+        submit(shardOf(instrumentId), new Command().delete(instrumentId, id));
+    }
+
+    /**
+     * Runs the given read on the thread owning the instrument's shard, after every command already submitted to it
+     *
+     * @return the answer of the read, once it has run
+     */
+    public <T> CompletableFuture<T> query(String instrument, Function<OrderBookManager, T> query) {
+        return queryShard(shardOf(instrument), query);
+    }
+
+    /**
+     * Same as query(String, Function) for an instrument identified by number
+     */
+    public <T> CompletableFuture<T> query(int instrumentId, Function<OrderBookManager, T> query) {
+        return queryShard(shardOf(instrumentId), query);
+    }
+
+    public CompletableFuture<Long> getBestPrice(String instrument, Side side) {
+        return query(instrument, orderBookManager -> orderBookManager.getBestPrice(instrument, side));
+    }
+
+    public CompletableFuture<Long> getBestPrice(int instrumentId, Side side) {
+        return query(instrumentId, orderBookManager -> orderBookManager.getBestPrice(instrumentId, side));
+    }
+
+    /**
+     * Runs the given read on the thread owning the given shard, after every command already submitted to it
+     */
+    public <T> CompletableFuture<T> queryShard(int shard, Function<OrderBookManager, T> query) {
+        CompletableFuture<T> answer = new CompletableFuture<>();
+        submit(shard, new Command().task(orderBookManager -> {
+            try {
+                answer.complete(query.apply(orderBookManager));
+            } catch (RuntimeException e) {
+                answer.completeExceptionally(e);
+            }
+        }));
+        return answer;
+    }
+
+    /**
+     * Runs the given code against every shard's OrderBookManager, on the shard's thread. Useful to set listeners,
+     * which are then called on the shard threads and must be thread safe.
+     */
+    public void forEachShard(Consumer<OrderBookManager> task) {
+        for (int i = 0; i < shards.length; i++) {
+            submit(i, new Command().task(task));
+        }
+    }
+
+    /**
+     * Waits until every command submitted before this call has been applied
+     */
+    public void sync() {
+        CompletableFuture<?>[] done = new CompletableFuture<?>[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            done[i] = queryShard(i, orderBookManager -> null);
+        }
+        CompletableFuture.allOf(done).join();
+    }
+
+    /**
+     * Applies every command already submitted, then stops the worker threads
+     */
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            Shard stopping = shard;
+            submit(shard, new Command().task(orderBookManager -> stopping.running = false));
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void submit(int shard, Command command) {
+        submit(shards[shard], command);
+    }
+
+    private void submit(Shard shard, Command command) {
+        try {
+            shard.queue.put(command); // waits while the shard's queue is full
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while submitting " + command, e);
+        }
+    }
+
+    /**
+     * An OrderBookManager, its command queue and the only thread that touches either
+     */
+    private static class Shard implements Runnable {
+        private final OrderBookManager orderBookManager;
+        private final ArrayBlockingQueue<Command> queue;
+        private final Thread thread;
+        private final AtomicLong failedCommands = new AtomicLong();
+        private boolean running = true; // only read and written by the shard's thread
+
+        Shard(OrderBookManager orderBookManager, int queueCapacity, String name) {
+            this.orderBookManager = orderBookManager;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            ArrayList<Command> batch = new ArrayList<>(MAX_BATCH);
+            try {
+                while (running) {
+                    batch.add(queue.take()); // wait for work
+                    queue.drainTo(batch, MAX_BATCH - 1); // then take whatever else is already queued
+                    for (int i = 0; i < batch.size(); i++) {
+                        try {
+                            batch.get(i).applyTo(orderBookManager);
+                        } catch (RuntimeException e) {
+                            failedCommands.incrementAndGet(); // one bad command must not stop the shard
+                        }
+                    }
+                    orderBookManager.endBatch(); // e.g. forces the journal once per batch
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,317 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Compact binary image of every OrderBook of an OrderBookManager, to restart without replaying a whole Journal.
+ * <p>
+ * A snapshot holds a header (magic number, version, the position of the manager's journal when it was taken and the
+ * number of books), then every book: its instrument, then each side as its number of levels followed by the levels,
+ * best first. A level is its price, its number of orders and its orders in order of arrival, each as its id,
+ * quantity and expiry time (0 if it never expires). Side, price and instrument are not repeated per order.
+ * The sides of a book are followed by its pending stop orders: their number, then each stop in the order it would be
+ * triggered, as its side, id, limit price, quantity, expiry time and trigger price.
+ * Snapshots of versions 1 (no expiry times, no stop orders) and 2 (no stop orders) are still read.
+ * <p>
+ * Restored orders with an expiry time are scheduled on the TimerWheel of the manager they are read into, if it has
+ * one, as orders added to it would be.
+ * <p>
+ * Snapshots are written and read through a FileChannel and a large direct buffer. Reading rebuilds each level and
+ * the order id indexes directly, without going through addOrder: no matching, no level updates and a single
+ * update of each level's totals. A snapshot is written to a temporary file that is then moved over the target,
+ * so a crash while writing leaves the previous snapshot intact.
+ * <p>
+ * To restart: read the snapshot into an empty manager, then replay the journal from the position it returns.
+ */
+public class Snapshot {
+    private static final int MAGIC = 0x4F424D53; // "OBMS"
+    private static final int VERSION = 3;
+    private static final int VERSION_WITHOUT_STOPS = 2;
+    private static final int VERSION_WITHOUT_EXPIRY = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final byte STRING_BOOK = 0;
+    private static final byte NUMERIC_BOOK = 1;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private Snapshot(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Writes a snapshot of every book of the given manager to the given file, replacing it if it exists.
+     * Must not run concurrently with operations on the manager. Marks the snapshot in the journal of the manager,
+     * if it has one, through OrderBookManager.markSnapshot.
+     *
+     * @return number of orders written, pending stop orders included
+     */
+    public static long write(OrderBookManager orderBookManager, Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        long orders = 0;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Snapshot snapshot = new Snapshot(channel);
+            ByteBuffer buffer = snapshot.buffer;
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(orderBookManager.markSnapshot());
+            buffer.putInt(orderBookManager.getOrderBookByInstrumentMap().size()
+                    + orderBookManager.getOrderBookByInstrumentIdMap().size());
+            for (OrderBook orderBook : orderBookManager.getOrderBookByInstrumentMap().values()) {
+                orders += snapshot.writeOrderBook(orderBook);
+            }
+            for (OrderBook orderBook : orderBookManager.getOrderBookByInstrumentIdMap().values()) {
+                orders += snapshot.writeOrderBook(orderBook);
+            }
+            snapshot.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return orders;
+    }
+
+    /**
+     * Rebuilds the books of the given snapshot file in the given manager, which must hold no book yet.
+     *
+     * @return the position of the journal when the snapshot was taken, to replay the journal from. 0 if the
+     * manager that was snapshot had no journal
+     */
+    public static long read(Path file, OrderBookManager orderBookManager) throws IOException {
+        if (!orderBookManager.getOrderBookByInstrumentMap().isEmpty()
+                || !orderBookManager.getOrderBookByInstrumentIdMap().isEmpty()) {
+            throw new IllegalStateException("a snapshot can only be read into an empty OrderBookManager");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Snapshot snapshot = new Snapshot(channel);
+            ByteBuffer buffer = snapshot.buffer;
+            buffer.flip(); // nothing read yet
+            snapshot.fill(4 + 4 + 8 + 4);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(file + " is not an order book snapshot");
+            }
+            int version = buffer.getInt();
+            if (version < VERSION_WITHOUT_EXPIRY || version > VERSION) {
+                throw new IOException("unsupported snapshot version " + version + " in " + file);
+            }
+            long journalPosition = buffer.getLong();
+            int books = buffer.getInt();
+            Order[] orders = new Order[16]; // orders of the level being read, grown as needed
+            for (int i = 0; i < books; i++) {
+                orders = snapshot.readOrderBook(orderBookManager, orders, version);
+            }
+            return journalPosition;
+        }
+    }
+
+    /**
+     * @return number of orders written, pending stop orders included
+     */
+    private long writeOrderBook(OrderBook orderBook) throws IOException {
+        boolean numeric = orderBook.getInstrument() == null;
+        ensure(1 + (numeric ? 4 : sizeOf(orderBook.getInstrument())));
+        if (numeric) {
+            buffer.put(NUMERIC_BOOK);
+            buffer.putInt(orderBook.getInstrumentId());
+        } else {
+            buffer.put(STRING_BOOK);
+            putString(orderBook.getInstrument());
+        }
+        return writeSide(orderBook.getBids(), numeric) + writeSide(orderBook.getAsks(), numeric)
+                + writeStopOrders(orderBook, numeric);
+    }
+
+    /**
+     * @return number of stop orders written
+     */
+    private long writeStopOrders(OrderBook orderBook, boolean numeric) throws IOException {
+        List<Order> orders = new ArrayList<>();
+        List<Long> triggerPrices = new ArrayList<>();
+        orderBook.getStopOrders(orders, triggerPrices);
+        ensure(4);
+        buffer.putInt(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            ensure(1 + (numeric ? 8 : sizeOf(order.getOrderId())) + 8 + 8 + 8 + 8);
+            buffer.put((byte) order.getSide().ordinal());
+            if (numeric) {
+                buffer.putLong(order.getId());
+            } else {
+                putString(order.getOrderId());
+            }
+            buffer.putLong(order.getPrice());
+            buffer.putLong(order.getQuantity());
+            buffer.putLong(order.getExpiryTime());
+            buffer.putLong(triggerPrices.get(i));
+        }
+        return orders.size();
+    }
+
+    private long writeSide(TreeMap<Long, OrderList> levels, boolean numeric) throws IOException {
+        long orders = 0;
+        ensure(4);
+        buffer.putInt(levels.size());
+        for (Map.Entry<Long, OrderList> level : levels.entrySet()) {
+            OrderList orderList = level.getValue();
+            ensure(8 + 4);
+            buffer.putLong(level.getKey());
+            buffer.putInt((int) orderList.getNumberOfOrders());
+            for (RestingOrder restingOrder = orderList.getHead(); restingOrder != null;
+                 restingOrder = restingOrder.getNext()) {
+                Order order = restingOrder.getOrder();
+                if (numeric) {
+                    ensure(8 + 8 + 8);
+                    buffer.putLong(order.getId());
+                } else {
+                    ensure(sizeOf(order.getOrderId()) + 8 + 8);
+                    putString(order.getOrderId());
+                }
+                buffer.putLong(order.getQuantity());
+                buffer.putLong(order.getExpiryTime());
+                orders++;
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * @param orders  array to read the orders of a level into
+     * @param version version of the snapshot
+     * @return the given array, or a larger one if a level held more orders than it could
+     */
+    private Order[] readOrderBook(OrderBookManager orderBookManager, Order[] orders, int version)
+            throws IOException {
+        boolean expiring = version > VERSION_WITHOUT_EXPIRY;
+        fill(1);
+        boolean numeric = buffer.get() == NUMERIC_BOOK;
+        OrderBook orderBook;
+        String instrument = null;
+        int instrumentId = 0;
+        if (numeric) {
+            fill(4);
+            instrumentId = buffer.getInt();
+            orderBook = orderBookManager.getOrCreateOrderBook(instrumentId);
+        } else {
+            instrument = getString();
+            orderBook = orderBookManager.getOrCreateOrderBook(instrument);
+        }
+        for (Side side : Side.values()) {
+            fill(4);
+            int levels = buffer.getInt();
+            for (int level = 0; level < levels; level++) {
+                fill(8 + 4);
+                long price = buffer.getLong();
+                int count = buffer.getInt();
+                if (count > orders.length) {
+                    orders = new Order[Math.max(count, orders.length * 2)];
+                }
+                for (int i = 0; i < count; i++) {
+                    if (numeric) {
+                        fill(8 + 8);
+                        orders[i] = orderBook.newOrder(buffer.getLong(), instrumentId, side, price, buffer.getLong());
+                    } else {
+                        String orderId = getString();
+                        fill(8);
+                        orders[i] = new Order(orderId, instrument, side, price, buffer.getLong());
+                    }
+                    if (expiring) {
+                        fill(8);
+                        orders[i].setExpiryTime(buffer.getLong());
+                    }
+                }
+                orderBook.restoreLevel(side, price, orders, count); // schedules the orders that expire
+            }
+        }
+        if (version > VERSION_WITHOUT_STOPS) {
+            fill(4);
+            int stopOrders = buffer.getInt();
+            for (int i = 0; i < stopOrders; i++) {
+                fill(1);
+                Side side = Side.values()[buffer.get()];
+                Order order;
+                if (numeric) {
+                    fill(8 + 8 + 8);
+                    order = orderBook.newOrder(buffer.getLong(), instrumentId, side, buffer.getLong(),
+                            buffer.getLong());
+                } else {
+                    String orderId = getString();
+                    fill(8 + 8);
+                    order = new Order(orderId, instrument, side, buffer.getLong(), buffer.getLong());
+                }
+                fill(8 + 8);
+                order.setExpiryTime(buffer.getLong());
+                orderBook.addStopOrder(order, buffer.getLong()); // in trigger order, so the index is the same
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Makes room for the given number of bytes in the buffer, writing out what it holds if needed
+     */
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Makes sure the buffer holds at least the given number of unread bytes, reading more of the file if needed
+     */
+    private void fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.compact(); // keep the unread bytes
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("snapshot ends unexpectedly");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static int sizeOf(String value) {
+        return 2 + 2 * value.length();
+    }
+
+    private void putString(String value) {
+        if (value.length() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("string too long for a snapshot: " + value.length() + " chars");
+        }
+        buffer.putShort((short) value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer.putChar(value.charAt(i));
+        }
+    }
+
+    private String getString() throws IOException {
+        fill(2);
+        int length = buffer.getShort();
+        fill(2 * length);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar();
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,217 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * The pending stop orders of one book, kept apart from its levels and sorted by trigger price per side.
+ * A buy stop is triggered once the best ask rises to or above its trigger price, a sell stop once the best bid falls
+ * to or below its trigger price. Buy stops are sorted in ascending order of trigger price and sell stops in
+ * descending order, so the stops a best price triggers are always the first ones of their side, and popping them
+ * costs O(log(n)) per trigger price crossed plus O(1) per stop, however many stops are pending.
+ * <p>
+ * Stops sharing a trigger price are triggered in the order they were added. Each trigger price maps to the last
+ * stop added at that price, which links back to the ones added before it.
+ */
+class StopOrderIndex {
+    private static final long NO_BUY_TRIGGER = Long.MAX_VALUE;
+    private static final long NO_SELL_TRIGGER = Long.MIN_VALUE;
+
+    /**
+     * trigger price -> last stop added at that price. Lowest buy trigger first, highest sell trigger first
+     */
+    private final TreeMap<Long, StopOrder> buyStops = new TreeMap<>(new AskLevelComparator());
+    private final TreeMap<Long, StopOrder> sellStops = new TreeMap<>(new BidLevelComparator());
+
+    /**
+     * first trigger price of each side, so that checking for triggered stops needs no lookup
+     */
+    private long buyTrigger = NO_BUY_TRIGGER;
+    private long sellTrigger = NO_SELL_TRIGGER;
+
+    /**
+     * pending stops by order id, and by numeric order id for orders without a String id
+     */
+    private final HashMap<String, StopOrder> stopOrderByOrderIdMap = new HashMap<>();
+    private final LongObjectHashMap<StopOrder> stopOrderByIdMap = new LongObjectHashMap<>();
+
+    /**
+     * Adds a stop for the given order. The order is not looked at again until it is triggered or cancelled
+     *
+     * @param order        order to add to the book once triggered. Its price is the limit price it rests at
+     * @param triggerPrice best price of the opposite side that triggers the order
+     */
+    void add(Order order, long triggerPrice) {
+        StopOrder stopOrder = new StopOrder(order, triggerPrice);
+        if (order.getOrderId() != null) {
+            stopOrderByOrderIdMap.put(order.getOrderId(), stopOrder);
+        } else {
+            stopOrderByIdMap.put(order.getId(), stopOrder);
+        }
+        TreeMap<Long, StopOrder> stops = getStops(order.getSide());
+        StopOrder last = stops.put(triggerPrice, stopOrder); // the new stop is the last of its trigger price
+        if (last != null) {
+            last.next = stopOrder;
+            stopOrder.prev = last;
+        }
+        if (order.getSide() == Side.buy) {
+            buyTrigger = Math.min(buyTrigger, triggerPrice);
+        } else {
+            sellTrigger = Math.max(sellTrigger, triggerPrice);
+        }
+    }
+
+    /**
+     * Removes the pending stop of the order with the given id
+     *
+     * @return the order of the stop. null if there is no pending stop for the given id
+     */
+    Order cancel(String orderId) {
+        StopOrder stopOrder = stopOrderByOrderIdMap.remove(orderId);
+        return stopOrder == null ? null : unlink(stopOrder);
+    }
+
+    /**
+     * Removes the pending stop of the order with the given numeric id
+     *
+     * @return the order of the stop. null if there is no pending stop for the given id
+     */
+    Order cancel(long id) {
+        StopOrder stopOrder = stopOrderByIdMap.remove(id);
+        return stopOrder == null ? null : unlink(stopOrder);
+    }
+
+    private Order unlink(StopOrder stopOrder) {
+        Side side = stopOrder.order.getSide();
+        TreeMap<Long, StopOrder> stops = getStops(side);
+        if (stopOrder.prev != null) {
+            stopOrder.prev.next = stopOrder.next;
+        }
+        if (stopOrder.next != null) {
+            stopOrder.next.prev = stopOrder.prev;
+        } else if (stopOrder.prev != null) {
+            stops.put(stopOrder.triggerPrice, stopOrder.prev); // the one before it is now the last of its price
+        } else {
+            stops.remove(stopOrder.triggerPrice); // no more stops at this trigger price
+            updateTrigger(side);
+        }
+        return stopOrder.order;
+    }
+
+    /**
+     * @param bestBid best bid of the book, -1 if there are no bids
+     * @param bestAsk best ask of the book, -1 if there are no asks
+     * @return true if the given best prices trigger some pending stop. O(1)
+     */
+    boolean isTriggered(long bestBid, long bestAsk) {
+        return (bestAsk >= 0 && bestAsk >= buyTrigger) || (bestBid >= 0 && bestBid <= sellTrigger);
+    }
+
+    /**
+     * Removes the stops triggered by the given best prices and collects their orders, buy stops first, by trigger
+     * price and then in the order they were added
+     *
+     * @param bestBid   best bid of the book, -1 if there are no bids
+     * @param bestAsk   best ask of the book, -1 if there are no asks
+     * @param triggered receives the orders of the triggered stops
+     * @return number of stops triggered
+     */
+    int pollTriggered(long bestBid, long bestAsk, ArrayList<Order> triggered) {
+        int count = 0;
+        while (bestAsk >= 0 && bestAsk >= buyTrigger) {
+            count += pollFirst(buyStops, triggered);
+            updateTrigger(Side.buy);
+        }
+        while (bestBid >= 0 && bestBid <= sellTrigger) {
+            count += pollFirst(sellStops, triggered);
+            updateTrigger(Side.sell);
+        }
+        return count;
+    }
+
+    /**
+     * Removes the stops of the first trigger price of the given side and collects their orders, oldest first
+     *
+     * @return number of stops removed
+     */
+    private int pollFirst(TreeMap<Long, StopOrder> stops, ArrayList<Order> triggered) {
+        StopOrder stopOrder = stops.pollFirstEntry().getValue(); // last stop of the trigger price
+        while (stopOrder.prev != null) {
+            stopOrder = stopOrder.prev;
+        }
+        int count = 0;
+        for (; stopOrder != null; stopOrder = stopOrder.next) {
+            Order order = stopOrder.order;
+            if (order.getOrderId() != null) {
+                stopOrderByOrderIdMap.remove(order.getOrderId());
+            } else {
+                stopOrderByIdMap.remove(order.getId());
+            }
+            triggered.add(order);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Copies every pending stop, buy stops then sell stops, in the order they would be triggered. Adding them in
+     * that order to an empty index rebuilds this one
+     *
+     * @param orders        receives the order of each stop
+     * @param triggerPrices receives the trigger price of each stop
+     */
+    void copyTo(List<Order> orders, List<Long> triggerPrices) {
+        for (Side side : Side.values()) {
+            for (StopOrder last : getStops(side).values()) {
+                StopOrder stopOrder = last;
+                while (stopOrder.prev != null) {
+                    stopOrder = stopOrder.prev;
+                }
+                for (; stopOrder != null; stopOrder = stopOrder.next) {
+                    orders.add(stopOrder.order);
+                    triggerPrices.add(stopOrder.triggerPrice);
+                }
+            }
+        }
+    }
+
+    private void updateTrigger(Side side) {
+        if (side == Side.buy) {
+            buyTrigger = buyStops.isEmpty() ? NO_BUY_TRIGGER : buyStops.firstKey();
+        } else {
+            sellTrigger = sellStops.isEmpty() ? NO_SELL_TRIGGER : sellStops.firstKey();
+        }
+    }
+
+    private TreeMap<Long, StopOrder> getStops(Side side) {
+        return side == Side.buy ? buyStops : sellStops;
+    }
+
+    /**
+     * @return number of pending stops
+     */
+    int size() {
+        return stopOrderByOrderIdMap.size() + stopOrderByIdMap.size();
+    }
+
+    boolean isEmpty() {
+        return stopOrderByOrderIdMap.isEmpty() && stopOrderByIdMap.isEmpty();
+    }
+
+    /**
+     * A pending stop, linked to the stops added before and after it at the same trigger price
+     */
+    private static class StopOrder {
+        final Order order;
+        final long triggerPrice;
+        StopOrder prev;
+        StopOrder next;
+
+        StopOrder(Order order, long triggerPrice) {
+            this.order = order;
+            this.triggerPrice = triggerPrice;
+        }
+    }
+}
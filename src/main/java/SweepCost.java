@@ -0,0 +1,53 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * The outcome of sweeping one side of a book with a given quantity: how much of it the side could fill, what it
+ * would cost and the worst price it would reach. Filled by OrderBook.getSweepCost, meant to be reused.
+ */
+public class SweepCost {
+    private long quantity;
+    private long cost;
+    private long price = -1;
+
+    void set(long quantity, long cost, long price) {
+        this.quantity = quantity;
+        this.cost = cost;
+        this.price = price;
+    }
+
+    /**
+     * @return quantity the side could fill. Less than the swept quantity if the side does not hold that much
+     */
+    public long getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * @return sum of price*quantity over the fills
+     */
+    public long getCost() {
+        return cost;
+    }
+
+    /**
+     * @return price of the last level reached. -1 if the side is empty
+     */
+    public long getPrice() {
+        return price;
+    }
+
+    /**
+     * @return cost / quantity. 0 if nothing could be filled
+     */
+    public double getAveragePrice() {
+        return quantity == 0 ? 0 : (double) cost / quantity;
+    }
+
+    @Override
+    public String toString() {
+        return "SweepCost{" +
+                "quantity=" + quantity +
+                ", cost=" + cost +
+                ", price=" + price +
+                '}';
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Hierarchical timing wheel of resting orders due to expire. Time is divided into ticks of tickDuration, in any
+ * unit the caller likes, e.g. milliseconds. There are LEVELS wheels of SLOTS slots: level 0 has a slot per tick,
+ * and a slot of level n covers SLOTS^n ticks. An order is scheduled in the lowest level whose range covers its
+ * expiry tick; as time reaches the start of a higher level slot, its orders are cascaded into lower levels.
+ * <p>
+ * Slots are intrusive doubly linked lists through the RestingOrder nodes, so scheduling and cancelling are O(1)
+ * and allocate nothing. Each order is cascaded at most LEVELS - 1 times, so an expiry costs amortized O(1).
+ * Orders expire at the first tick at or after their expiry time, never before it.
+ * <p>
+ * Expiries further away than the range of the wheel, SLOTS^LEVELS ticks, wait in the last slot of the highest
+ * level and are re-scheduled each time it is cascaded.
+ */
+public class TimerWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long RANGE = 1L << (SLOT_BITS * LEVELS); // ticks covered by the wheel
+
+    private final long tickDuration;
+
+    /**
+     * first order of every slot, level by level. null if the slot is empty
+     */
+    private final RestingOrder[] slots = new RestingOrder[LEVELS * SLOTS];
+
+    /**
+     * tick the wheel has been advanced to. Orders due at or before it are in its level 0 slot
+     */
+    private long currentTick;
+
+    private int size; // number of scheduled orders
+
+    /**
+     * @param tickDuration duration of a tick, the resolution of expiries. Always positive
+     * @param now          current time, in the same unit as tickDuration and the expiry times of orders
+     */
+    public TimerWheel(long tickDuration, long now) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be positive");
+        }
+        this.tickDuration = tickDuration;
+        this.currentTick = now / tickDuration;
+    }
+
+    public long getTickDuration() {
+        return tickDuration;
+    }
+
+    /**
+     * @return number of orders scheduled to expire
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedules the order of the given node to expire at its expiry time. O(1). An order whose expiry time has
+     * already passed is due at the next poll
+     */
+    public void schedule(RestingOrder restingOrder) {
+        long expiryTime = restingOrder.getOrder().getExpiryTime();
+        long expiryTick = -Math.floorDiv(-expiryTime, tickDuration); // rounded up, so it never expires early
+        link(restingOrder, slotOf(expiryTick));
+        size++;
+    }
+
+    /**
+     * Removes the order of the given node from the wheel if it is scheduled. O(1)
+     */
+    public void cancel(RestingOrder restingOrder) {
+        if (restingOrder.timerSlot >= 0) {
+            unlink(restingOrder);
+            size--;
+        }
+    }
+
+    /**
+     * Advances the wheel up to the given time and removes the next order due by then. Call until it returns null
+     * to expire every order due. Amortized O(1) per order, plus O(1) per tick elapsed while orders are scheduled
+     *
+     * @param now current time
+     * @return the node of an order due to expire, no longer scheduled. null if no more order is due
+     */
+    public RestingOrder poll(long now) {
+        long targetTick = Math.floorDiv(now, tickDuration);
+        while (true) {
+            RestingOrder due = slots[(int) (currentTick & SLOT_MASK)];
+            if (due != null) {
+                unlink(due);
+                size--;
+                return due;
+            }
+            if (currentTick >= targetTick) {
+                return null;
+            }
+            if (size == 0) {
+                currentTick = targetTick; // nothing to cascade or expire on the way
+                return null;
+            }
+            currentTick++;
+            // cascade the higher level slots starting at this tick, highest first so orders flow down
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level * SLOTS + (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK));
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-schedules every order of the given slot relative to the current tick
+     */
+    private void cascade(int slot) {
+        RestingOrder restingOrder = slots[slot];
+        slots[slot] = null;
+        while (restingOrder != null) {
+            RestingOrder next = restingOrder.timerNext;
+            long expiryTick = -Math.floorDiv(-restingOrder.getOrder().getExpiryTime(), tickDuration);
+            link(restingOrder, slotOf(expiryTick));
+            restingOrder = next;
+        }
+    }
+
+    /**
+     * @return the slot an order expiring at the given tick belongs to
+     */
+    private int slotOf(long expiryTick) {
+        long delta = expiryTick - currentTick;
+        if (delta <= 0) {
+            return (int) (currentTick & SLOT_MASK); // already due
+        }
+        if (delta >= RANGE) {
+            expiryTick = currentTick + RANGE - 1; // waits at the far end of the wheel
+            delta = RANGE - 1;
+        }
+        int level = 0;
+        while (delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        return level * SLOTS + (int) ((expiryTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+    }
+
+    private void link(RestingOrder restingOrder, int slot) {
+        RestingOrder head = slots[slot];
+        restingOrder.timerPrev = null;
+        restingOrder.timerNext = head;
+        if (head != null) {
+            head.timerPrev = restingOrder;
+        }
+        slots[slot] = restingOrder;
+        restingOrder.timerSlot = slot;
+    }
+
+    private void unlink(RestingOrder restingOrder) {
+        RestingOrder prev = restingOrder.timerPrev;
+        RestingOrder next = restingOrder.timerNext;
+        if (prev == null) {
+            slots[restingOrder.timerSlot] = next;
+        } else {
+            prev.timerNext = next;
+        }
+        if (next != null) {
+            next.timerPrev = prev;
+        }
+        restingOrder.timerPrev = null;
+        restingOrder.timerNext = null;
+        restingOrder.timerSlot = -1;
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * The best bid and ask of a book (price, total quantity and number of orders), published by the thread mutating
+ * the book for any number of threads to read without locks.
+ * <p>
+ * This is a sequence lock. The writer makes the sequence odd, writes the values, then makes it even again. A reader
+ * reads the sequence, the values, then the sequence again: if it was even and did not change, the values are
+ * consistent, otherwise the writer was updating them and the reader tries again. The writer never waits for
+ * readers, and readers never write anything, so they do not slow each other down beyond sharing a cache line.
+ * <p>
+ * Everything is kept in one AtomicLongArray. The writer uses ordered writes, which keep every write after the
+ * ones before it, and readers use volatile reads, which keep every read after the ones before it: no write of
+ * the values can be seen before the sequence turns odd, and none after it turns even.
+ */
+public class TopOfBook {
+    private static final int SEQUENCE = 0;
+    private static final int BID_PRICE = 1;
+    private static final int BID_QUANTITY = 2;
+    private static final int BID_ORDER_COUNT = 3;
+    private static final int ASK_PRICE = 4;
+    private static final int ASK_QUANTITY = 5;
+    private static final int ASK_ORDER_COUNT = 6;
+
+    private final AtomicLongArray values = new AtomicLongArray(7);
+
+    private final String instrument;
+    private final int instrumentId;
+
+    public TopOfBook(String instrument, int instrumentId) {
+        this.instrument = instrument;
+        this.instrumentId = instrumentId;
+        values.set(BID_PRICE, -1);
+        values.set(ASK_PRICE, -1);
+    }
+
+    public String getInstrument() {
+        return instrument;
+    }
+
+    public int getInstrumentId() {
+        return instrumentId;
+    }
+
+    /**
+     * @return number of updates so far, times 2. Odd while an update is being written
+     */
+    public long getSequence() {
+        return values.get(SEQUENCE);
+    }
+
+    /**
+     * @return the best price of the given side, -1 if it is empty. A single value is always consistent
+     */
+    public long getBestPrice(Side side) {
+        return values.get(side == Side.buy ? BID_PRICE : ASK_PRICE);
+    }
+
+    /**
+     * Copies the best bid and ask into the given quote if they can be read consistently, i.e. unless the writer
+     * is updating them at the same time. Never waits.
+     *
+     * @return true if the quote was filled
+     */
+    public boolean tryRead(Quote quote) {
+        long sequence = values.get(SEQUENCE);
+        if ((sequence & 1) != 0) {
+            return false; // being written
+        }
+        long bidPrice = values.get(BID_PRICE);
+        long bidQuantity = values.get(BID_QUANTITY);
+        long bidOrderCount = values.get(BID_ORDER_COUNT);
+        long askPrice = values.get(ASK_PRICE);
+        long askQuantity = values.get(ASK_QUANTITY);
+        long askOrderCount = values.get(ASK_ORDER_COUNT);
+        if (values.get(SEQUENCE) != sequence) {
+            return false; // written while being read
+        }
+        quote.set(sequence, bidPrice, bidQuantity, bidOrderCount, askPrice, askQuantity, askOrderCount);
+        return true;
+    }
+
+    /**
+     * Copies the best bid and ask into the given quote, trying again for as long as the writer is updating them.
+     * An update is a handful of writes, so this rarely tries more than twice.
+     */
+    public void read(Quote quote) {
+        while (!tryRead(quote)) {
+            // the writer is mid update. try again
+        }
+    }
+
+    /**
+     * Publishes the best level of a side. Only called by the thread mutating the book
+     *
+     * @param price      best price, -1 if the side is empty
+     * @param quantity   total quantity of the best level
+     * @param orderCount number of orders of the best level
+     */
+    void update(Side side, long price, long quantity, long orderCount) {
+        long sequence = values.get(SEQUENCE);
+        values.lazySet(SEQUENCE, sequence + 1); // odd: readers will not trust what they read
+        if (side == Side.buy) {
+            values.lazySet(BID_PRICE, price);
+            values.lazySet(BID_QUANTITY, quantity);
+            values.lazySet(BID_ORDER_COUNT, orderCount);
+        } else {
+            values.lazySet(ASK_PRICE, price);
+            values.lazySet(ASK_QUANTITY, quantity);
+            values.lazySet(ASK_ORDER_COUNT, orderCount);
+        }
+        values.lazySet(SEQUENCE, sequence + 2); // even: consistent again
+    }
+
+    @Override
+    public String toString() {
+        Quote quote = new Quote();
+        read(quote);
+        return "TopOfBook{" +
+                "instrument='" + instrument + '\'' +
+                ", instrumentId=" + instrumentId +
+                ", " + quote +
+                '}';
+    }
+}
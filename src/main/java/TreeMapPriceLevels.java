@@ -0,0 +1,108 @@
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Default PriceLevels backed by a TreeMap. Guarantees O(log(n)) worst case time for all operations and places no
+ * restriction on prices.
+ */
+public class TreeMapPriceLevels implements PriceLevels {
+
+    /**
+     * Ordered map of price -> OrderList, sorted by the comparator of the side it represents.
+     */
+    private TreeMap<Long, OrderList> levels;
+
+    /**
+     * @param comparator BidLevelComparator for bids, AskLevelComparator for asks
+     */
+    public TreeMapPriceLevels(Comparator<Long> comparator) {
+        levels = new TreeMap<>(comparator);
+    }
+
+    @Override
+    public OrderList get(long price) {
+        return levels.get(price); // returns null if there is no OrderList for this level
+    }
+
+    @Override
+    public void put(long price, OrderList orderList) {
+        levels.put(price, orderList);
+    }
+
+    @Override
+    public OrderList remove(long price) {
+        return levels.remove(price);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return levels.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return levels.size();
+    }
+
+    @Override
+    public long getBestPrice() {
+        // since the TreeMap maintains order, the best price is always the first key
+        return levels.isEmpty() ? -1 : levels.firstKey();
+    }
+
+    @Override
+    public long getNextPrice(long price) {
+        Long nextPrice = levels.higherKey(price); // "higher" in the order of the comparator, i.e worse
+        return nextPrice == null ? -1 : nextPrice;
+    }
+
+    @Override
+    public int getDepth(int n, long[] prices, long[] quantities, int[] counts) {
+        int depth = 0;
+        if (n <= 0) {
+            return depth;
+        }
+        // walks the entries in order, the keys are the boxed prices already held by the map
+        for (Map.Entry<Long, OrderList> level : levels.entrySet()) {
+            OrderList orderList = level.getValue();
+            prices[depth] = level.getKey();
+            quantities[depth] = orderList.getTotalTradeableQuantity();
+            counts[depth] = (int) orderList.getNumberOfOrders();
+            if (++depth == n) {
+                break;
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * @return the internal TreeMap itself, not a copy
+     */
+    @Override
+    public TreeMap<Long, OrderList> asTreeMap() {
+        return levels;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        TreeMapPriceLevels that = (TreeMapPriceLevels) o;
+
+        return levels.equals(that.levels);
+    }
+
+    @Override
+    public int hashCode() {
+        return levels.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return levels.toString();
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * How a thread waits on a CommandRingBuffer: a consumer for the next command to be published, a producer for a slot
+ * to be freed. idle is called once per failed check, with the number of checks that have failed so far, and returns
+ * once the caller should check again.
+ */
+public interface WaitStrategy {
+    /**
+     * @param attempt number of times the awaited condition has been checked and not met, starting at 0. Stays at
+     *                Integer.MAX_VALUE once it gets there
+     */
+    void idle(int attempt);
+}
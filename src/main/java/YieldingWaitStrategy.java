@@ -0,0 +1,26 @@
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ * <p>
+ * Spins for a while, then gives up the core to other threads between checks.
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+    private final int spins;
+
+    public YieldingWaitStrategy() {
+        this(100);
+    }
+
+    /**
+     * @param spins number of checks made before the thread starts yielding
+     */
+    public YieldingWaitStrategy(int spins) {
+        this.spins = spins;
+    }
+
+    @Override
+    public void idle(int attempt) {
+        if (attempt >= spins) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ */
+public class BookSnapshotTest {
+
+    @Test
+    public void snapshot() throws Exception {
+        OrderBook orderBook = new OrderBook();
+        orderBook.setInstrument("XBT");
+        orderBook.addOrder(new Order("buyOrder1", "XBT", Side.buy, 100, 10));
+        orderBook.addOrder(new Order("buyOrder2", "XBT", Side.buy, 101, 5));
+        orderBook.addOrder(new Order("buyOrder3", "XBT", Side.buy, 101, 6));
+        orderBook.addOrder(new Order("sellOrder1", "XBT", Side.sell, 103, 7));
+
+        BookSnapshot first = orderBook.snapshot();
+        assertSame(first, orderBook.snapshot()); // nothing changed
+        assertEquals("XBT", first.getInstrument());
+        assertEquals(101, first.getBestPrice(Side.buy));
+        assertEquals(2, first.getBids().size());
+        assertEquals(100, first.getBids().get(1).getPrice());
+        LevelSnapshot level = first.getLevel(Side.buy, 101);
+        assertEquals(11, level.getTotalQuantity());
+        assertEquals(101 * 11, level.getTotalVolume());
+        assertEquals("buyOrder2", level.getOrders().get(0).getOrderId());
+        assertEquals("buyOrder3", level.getOrders().get(1).getOrderId());
+        assertNull(first.getLevel(Side.sell, 101));
+
+        orderBook.modifyOrder("buyOrder2", 8); // moves behind buyOrder3
+        BookSnapshot second = orderBook.snapshot();
+        assertNotSame(first, second);
+        // the previous snapshot is unchanged, including the quantity of its copy of the order
+        assertEquals(5, first.getLevel(Side.buy, 101).getOrders().get(0).getQuantity());
+        assertEquals("buyOrder3", second.getLevel(Side.buy, 101).getOrders().get(0).getOrderId());
+        assertEquals(14, second.getLevel(Side.buy, 101).getTotalQuantity());
+        // levels that did not change are shared
+        assertSame(first.getLevel(Side.buy, 100), second.getLevel(Side.buy, 100));
+        assertSame(first.getAsks().get(0), second.getAsks().get(0));
+
+        orderBook.deleteOrder("sellOrder1");
+        BookSnapshot third = orderBook.snapshot();
+        assertTrue(third.getAsks().isEmpty());
+        assertEquals(-1, third.getBestPrice(Side.sell));
+        assertEquals(1, second.getAsks().size());
+        try {
+            third.getBids().clear();
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void publishedByManager() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager(1, 64, true);
+        orderBookManager.addOrder(1, 7, Side.buy, 50, 2);
+        assertNull(orderBookManager.getSnapshot(7));
+        orderBookManager.setSnapshotsEnabled(true);
+        BookSnapshot snapshot = orderBookManager.getSnapshot(7); // existing books are published right away
+        assertEquals(50, snapshot.getBestPrice(Side.buy));
+
+        orderBookManager.addOrder(2, 7, Side.buy, 50, 3);
+        orderBookManager.addOrder(new Order("sellOrder1", "XBT", Side.sell, 101, 3));
+        assertSame(snapshot, orderBookManager.getSnapshot(7)); // published at the end of the batch
+        assertNull(orderBookManager.getSnapshot("XBT"));
+        orderBookManager.endBatch();
+        BookSnapshot published = orderBookManager.getSnapshot(7);
+        assertEquals(5, published.getLevel(Side.buy, 50).getTotalQuantity());
+        assertEquals(2, published.getLevel(Side.buy, 50).getOrders().get(1).getId());
+        assertEquals(101, orderBookManager.getSnapshot("XBT").getBestPrice(Side.sell));
+
+        // pooled orders are recycled once deleted, the copies in the snapshot are not
+        orderBookManager.deleteOrder(1);
+        orderBookManager.deleteOrder(2);
+        orderBookManager.addOrder(3, 8, Side.sell, 60, 9);
+        orderBookManager.endBatch();
+        assertTrue(orderBookManager.getSnapshot(7).isEmpty());
+        assertEquals(3, published.getLevel(Side.buy, 50).getOrders().get(1).getQuantity());
+        assertEquals(60, orderBookManager.getSnapshot(8).getBestPrice(Side.sell));
+
+        orderBookManager.setSnapshotsEnabled(false);
+        assertNull(orderBookManager.getSnapshot(8));
+    }
+
+    @Test
+    public void consistentWhileMutated() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager();
+        orderBookManager.setSnapshotsEnabled(true);
+        orderBookManager.addOrder(new Order("sellOrder", "XBT", Side.sell, 1000, 10));
+        orderBookManager.endBatch();
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> inconsistent = new AtomicReference<>();
+        AtomicLong reads = new AtomicLong();
+        Thread reader = new Thread(() -> {
+            while (!done.get() && inconsistent.get() == null) {
+                BookSnapshot snapshot = orderBookManager.getSnapshot("XBT");
+                long previousPrice = Long.MAX_VALUE;
+                for (LevelSnapshot level : snapshot.getBids()) {
+                    List<OrderSnapshot> orders = level.getOrders();
+                    long quantity = 0;
+                    for (OrderSnapshot order : orders) {
+                        quantity += order.getQuantity();
+                    }
+                    if (quantity != level.getTotalQuantity() || level.getPrice() >= previousPrice) {
+                        inconsistent.set(snapshot.toString());
+                    }
+                    previousPrice = level.getPrice();
+                }
+                reads.incrementAndGet();
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 100_000; i++) {
+            orderBookManager.addOrder(new Order("buyOrder" + i, "XBT", Side.buy, 900 + i % 50, 1 + i % 7));
+            if (i >= 100) {
+                orderBookManager.modifyOrder("buyOrder" + (i - 50), 1);
+                orderBookManager.deleteOrder("buyOrder" + (i - 100));
+            }
+            if (i % 10 == 0) {
+                orderBookManager.endBatch();
+            }
+        }
+        done.set(true);
+        reader.join();
+        assertNull(inconsistent.get());
+        assertTrue(reads.get() > 0);
+    }
+}
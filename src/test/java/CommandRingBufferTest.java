@@ -0,0 +1,83 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ */
+public class CommandRingBufferTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBePowerOfTwo() throws Exception {
+        new CommandRingBuffer(12);
+    }
+
+    @Test
+    public void busySpin() throws Exception {
+        // producers yield when the buffer is full, so the test also runs on a single core
+        producersAndConsumer(new YieldingWaitStrategy(), new BusySpinWaitStrategy());
+    }
+
+    @Test
+    public void yielding() throws Exception {
+        producersAndConsumer(new YieldingWaitStrategy(), new YieldingWaitStrategy());
+    }
+
+    @Test
+    public void parking() throws Exception {
+        producersAndConsumer(new ParkingWaitStrategy(), new ParkingWaitStrategy());
+    }
+
+    /**
+     * Several producers publish through a small buffer, so that it wraps and fills up many times
+     */
+    private void producersAndConsumer(WaitStrategy producerWaitStrategy, WaitStrategy consumerWaitStrategy)
+            throws Exception {
+        final int producers = 3;
+        final int ordersPerProducer = 2000;
+        CommandRingBuffer ringBuffer = new CommandRingBuffer(16, producerWaitStrategy);
+        CommandProcessor processor = new CommandProcessor(ringBuffer, new OrderBookManager(), consumerWaitStrategy);
+        Thread consumer = new Thread(processor);
+        consumer.start();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < ordersPerProducer; i++) {
+                    // each producer works on its own instrument, so its commands must be applied in order
+                    ringBuffer.publishAdd(new Order("p" + producer + "-" + i, "I" + producer, Side.buy, 100, 10));
+                    ringBuffer.publishAdd(producer * ordersPerProducer + i, producer, Side.sell, 200, 5);
+                    if (i % 2 == 1) {
+                        ringBuffer.publishModify("p" + producer + "-" + (i - 1), 20);
+                        ringBuffer.publishDelete(producer * ordersPerProducer + i - 1);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+        processor.halt();
+        consumer.join();
+
+        // every published command has been applied
+        assertEquals(ringBuffer.getClaimSequence() - 1, ringBuffer.getConsumedSequence());
+        assertEquals(0, processor.getFailedCommands());
+        OrderBookManager orderBookManager = processor.getOrderBookManager();
+        for (int producer = 0; producer < producers; producer++) {
+            // half the buys went from 10 to 20 and half the sells were deleted
+            assertEquals(ordersPerProducer, orderBookManager.getOrderNumAtLevel("I" + producer, Side.buy, 100));
+            assertEquals(ordersPerProducer / 2 * (10 + 20),
+                    orderBookManager.getTotalQuantityAtLevel("I" + producer, Side.buy, 100));
+            assertEquals(ordersPerProducer / 2, orderBookManager.getOrderNumAtLevel(producer, Side.sell, 200));
+
+            // each modified order was moved behind the order added after it
+            List<Order> orders = orderBookManager.getOrdersAtLevel("I" + producer, Side.buy, 100);
+            assertEquals("p" + producer + "-1", orders.get(0).getOrderId());
+            assertEquals("p" + producer + "-0", orders.get(1).getOrderId());
+        }
+    }
+}
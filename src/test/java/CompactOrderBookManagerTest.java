@@ -0,0 +1,207 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ */
+public class CompactOrderBookManagerTest {
+
+    @Test
+    public void addModifyDelete() throws Exception {
+        CompactOrderBookManager orderBookManager = new CompactOrderBookManager();
+        orderBookManager.addOrder(1, 7, Side.buy, 100, 10);
+        orderBookManager.addOrder(2, 7, Side.buy, 100, 5);
+        orderBookManager.addOrder(3, 7, Side.buy, 101, 1);
+        orderBookManager.addOrder(4, 7, Side.sell, 103, 7);
+
+        assertEquals(101, orderBookManager.getBestPrice(7, Side.buy));
+        assertEquals(103, orderBookManager.getBestPrice(7, Side.sell));
+        assertEquals(2, orderBookManager.getOrderNumAtLevel(7, Side.buy, 100));
+        assertEquals(15, orderBookManager.getTotalQuantityAtLevel(7, Side.buy, 100));
+        assertEquals(1500, orderBookManager.getTotalVolumeAtLevel(7, Side.buy, 100));
+        assertEquals(-1, orderBookManager.getOrderNumAtLevel(7, Side.buy, 99));
+        assertEquals(-1, orderBookManager.getBestPrice(8, Side.buy));
+
+        orderBookManager.modifyOrder(1, 12); // moves behind order 2
+        long[] ids = new long[4];
+        assertEquals(2, orderBookManager.getOrderIdsAtLevel(7, Side.buy, 100, ids));
+        assertEquals(2, ids[0]);
+        assertEquals(1, ids[1]);
+        orderBookManager.modifyOrder(1, 3); // keeps its position
+        assertEquals(2, orderBookManager.getOrderIdsAtLevel(7, Side.buy, 100, ids));
+        assertEquals(1, ids[1]);
+        assertEquals(8, orderBookManager.getTotalQuantityAtLevel(7, Side.buy, 100));
+
+        orderBookManager.deleteOrder(3);
+        assertEquals(100, orderBookManager.getBestPrice(7, Side.buy));
+        orderBookManager.deleteOrder(1);
+        orderBookManager.deleteOrder(2);
+        orderBookManager.deleteOrder(4);
+        assertNull(orderBookManager.getOrderBook(7)); // dropped with its last order
+        assertEquals(0, orderBookManager.getNumberOfOrders());
+        assertEquals(0, orderBookManager.getStore().size());
+    }
+
+    @Test
+    public void ignoresUnknownAndRejectsDuplicateIds() throws Exception {
+        CompactOrderBookManager orderBookManager = new CompactOrderBookManager();
+        orderBookManager.modifyOrder(1, 5);
+        orderBookManager.deleteOrder(1);
+        assertEquals(0, orderBookManager.getStore().size());
+
+        orderBookManager.addOrder(1, 7, Side.buy, 100, 10);
+        try {
+            orderBookManager.addOrder(1, 8, Side.sell, 101, 3);
+            fail("the id is already resting");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertNull(orderBookManager.getOrderBook(8));
+        assertEquals(1, orderBookManager.getStore().size());
+        orderBookManager.deleteOrder(1);
+        assertNull(orderBookManager.getOrderBook(7));
+        assertEquals(0, orderBookManager.getStore().size());
+    }
+
+    @Test
+    public void matchesOrderBookManager() throws Exception {
+        matchesOrderBookManager(new OffHeapOrderStore(16), false);
+        matchesOrderBookManager(new ArrayOrderStore(16), false); // grows several times
+    }
+
+    @Test
+    public void matchesLikeOrderBookManager() throws Exception {
+        matchesOrderBookManager(new OffHeapOrderStore(16), true);
+        matchesOrderBookManager(new ArrayOrderStore(16), true);
+    }
+
+    /**
+     * Applies the same random adds, modifies and deletes to an OrderBookManager and to a CompactOrderBookManager
+     * keeping its orders in the given store, and compares their levels, and their fills if they match
+     */
+    static void matchesOrderBookManager(OrderStore store, boolean matching) {
+        OrderBookManager expected = new OrderBookManager();
+        CompactOrderBookManager orderBookManager = new CompactOrderBookManager(store, 16);
+        List<Long> expectedFills = new ArrayList<>();
+        List<Long> fills = new ArrayList<>();
+        if (matching) {
+            expected.setFillListener((aggressor, resting, price, quantity) -> {
+                expectedFills.add(resting.getId());
+                expectedFills.add(price);
+                expectedFills.add(quantity);
+            });
+            orderBookManager.setFillListener((aggressorId, restingId, price, quantity) -> {
+                fills.add(restingId);
+                fills.add(price);
+                fills.add(quantity);
+            });
+        }
+        Random random = new Random(42);
+        List<Long> resting = new ArrayList<>();
+        long[] prices = new long[32];
+        long[] quantities = new long[32];
+        int[] counts = new int[32];
+        long[] expectedPrices = new long[32];
+        long[] expectedQuantities = new long[32];
+        int[] expectedCounts = new int[32];
+        long[] ids = new long[1000];
+
+        for (long id = 0; id < 100_000; id++) {
+            int action = random.nextInt(10);
+            if (action < 5 || resting.isEmpty()) {
+                int instrumentId = random.nextInt(3);
+                Side side = random.nextBoolean() ? Side.buy : Side.sell;
+                long price = 100 + random.nextInt(20);
+                long quantity = 1 + random.nextInt(50);
+                expected.addOrder(id, instrumentId, side, price, quantity);
+                orderBookManager.addOrder(id, instrumentId, side, price, quantity);
+                resting.add(id);
+            } else {
+                int index = random.nextInt(resting.size());
+                long restingId = resting.get(index);
+                if (action < 7) {
+                    long quantity = 1 + random.nextInt(50);
+                    expected.modifyOrder(restingId, quantity);
+                    orderBookManager.modifyOrder(restingId, quantity);
+                } else {
+                    expected.deleteOrder(restingId);
+                    orderBookManager.deleteOrder(restingId);
+                    resting.set(index, resting.get(resting.size() - 1));
+                    resting.remove(resting.size() - 1);
+                }
+            }
+        }
+        assertEquals(expectedFills, fills);
+        assertEquals(matching, !fills.isEmpty());
+        assertEquals(expected.getRestingOrderByIdMap().size(), orderBookManager.getNumberOfOrders());
+        assertEquals(expected.getRestingOrderByIdMap().size(), store.size());
+        for (int instrumentId = 0; instrumentId < 3; instrumentId++) {
+            for (Side side : Side.values()) {
+                int depth = expected.getDepth(instrumentId, side, 32, expectedPrices, expectedQuantities,
+                        expectedCounts);
+                assertEquals(depth, orderBookManager.getDepth(instrumentId, side, 32, prices, quantities, counts));
+                for (int i = 0; i < depth; i++) {
+                    assertEquals(expectedPrices[i], prices[i]);
+                    assertEquals(expectedQuantities[i], quantities[i]);
+                    assertEquals(expectedCounts[i], counts[i]);
+                    assertEquals(expected.getTotalVolumeAtLevel(instrumentId, side, prices[i]),
+                            orderBookManager.getTotalVolumeAtLevel(instrumentId, side, prices[i]));
+                    // same queue, in the same order
+                    List<Order> orders = expected.getOrdersAtLevel(instrumentId, side, prices[i]);
+                    assertEquals(orders.size(),
+                            orderBookManager.getOrderIdsAtLevel(instrumentId, side, prices[i], ids));
+                    for (int j = 0; j < orders.size(); j++) {
+                        assertEquals(orders.get(j).getId(), ids[j]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void offHeapStoreGrowsAndReusesSlots() throws Exception {
+        OffHeapOrderStore store = new OffHeapOrderStore(1);
+        assertEquals(OffHeapOrderStore.CHUNK_SLOTS, store.getCapacity());
+        int[] handles = new int[OffHeapOrderStore.CHUNK_SLOTS + 1];
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = store.allocate(i, 3, i % 2 == 0 ? Side.buy : Side.sell, 100 + i, 10);
+        }
+        assertEquals(2L * OffHeapOrderStore.CHUNK_SLOTS, store.getCapacity()); // grew by a chunk
+        int last = handles[handles.length - 1];
+        assertEquals(handles.length - 1, store.getId(last));
+        assertEquals(Side.buy, store.getSide(last));
+        assertEquals(100 + handles.length - 1, store.getPrice(last));
+        assertEquals(3, store.getInstrumentId(last));
+        assertEquals(OrderStore.NULL, store.getNext(last));
+
+        store.free(handles[5]);
+        assertEquals(handles[5], store.allocate(-1, 4, Side.sell, 7, 8)); // freed slots are reused first
+        assertEquals(-1, store.getId(handles[5]));
+        assertEquals(Side.sell, store.getSide(handles[5]));
+        assertEquals(handles.length, store.size());
+    }
+
+    @Test
+    public void arrayStoreGrowsAndReusesHandles() throws Exception {
+        ArrayOrderStore store = new ArrayOrderStore(16);
+        for (int i = 0; i < 17; i++) {
+            assertEquals(i, store.allocate(i, 3, Side.buy, 100 + i, 10));
+        }
+        assertEquals(32, store.getCapacity());
+        assertEquals(116, store.getPrice(16));
+
+        store.free(3);
+        store.free(9);
+        assertEquals(9, store.allocate(20, 4, Side.sell, 7, 8)); // last freed, first reused
+        assertEquals(3, store.allocate(21, 4, Side.sell, 7, 8));
+        assertEquals(17, store.allocate(22, 4, Side.sell, 7, 8));
+        assertEquals(Side.sell, store.getSide(9));
+        assertEquals(OrderStore.NULL, store.getPrev(9));
+        assertEquals(18, store.size());
+    }
+}
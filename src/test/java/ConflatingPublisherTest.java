@@ -0,0 +1,85 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ */
+public class ConflatingPublisherTest {
+    private final List<String> published = new ArrayList<>();
+
+    /**
+     * @return a publisher recording what it sends as instrument:side:price:quantity:orderCount:action
+     */
+    private ConflatingPublisher publisher(int capacity, long intervalNanos) {
+        return new ConflatingPublisher(update -> published.add(
+                (update.getInstrument() != null ? update.getInstrument() : String.valueOf(update.getInstrumentId()))
+                        + ":" + update.getSide() + ":" + update.getPrice() + ":" + update.getQuantity() + ":"
+                        + update.getOrderCount() + ":" + update.getAction()), capacity, intervalNanos);
+    }
+
+    @Test
+    public void conflates() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager();
+        ConflatingPublisher publisher = publisher(16, 0);
+        orderBookManager.setLevelUpdateListener(publisher);
+
+        for (int i = 0; i < 1000; i++) { // a burst on one level
+            orderBookManager.addOrder(new Order("buyOrder" + i, "XBT", Side.buy, 100, 1));
+        }
+        orderBookManager.addOrder(new Order("sellOrder1", "XBT", Side.sell, 101, 5));
+        orderBookManager.addOrder(1, 7, Side.buy, 100, 3); // same side and price, other instrument
+        assertEquals(3, publisher.getDirtyCount());
+        assertEquals(3, publisher.publish());
+        assertEquals("XBT:buy:100:1000:1000:added", published.get(0));
+        assertEquals("XBT:sell:101:5:1:added", published.get(1));
+        assertEquals("7:buy:100:3:1:added", published.get(2));
+        assertEquals(0, publisher.publish()); // nothing changed since
+        published.clear();
+
+        orderBookManager.addOrder(new Order("sellOrder2", "XBT", Side.sell, 102, 5));
+        orderBookManager.deleteOrder("sellOrder2"); // added and removed: never seen
+        orderBookManager.deleteOrder("sellOrder1");
+        orderBookManager.addOrder(new Order("sellOrder3", "XBT", Side.sell, 101, 2)); // removed and added again
+        orderBookManager.deleteOrder(1);
+        orderBookManager.modifyOrder("buyOrder0", 1000);
+        orderBookManager.modifyOrder("buyOrder1", 1);
+        assertEquals(3, publisher.publish());
+        assertEquals("XBT:sell:101:2:1:changed", published.get(0));
+        assertEquals("7:buy:100:0:0:removed", published.get(1));
+        assertEquals("XBT:buy:100:1999:1000:changed", published.get(2));
+        assertEquals(2, publisher.getPublishCount());
+    }
+
+    @Test
+    public void publishesEarlyWhenFull() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager();
+        ConflatingPublisher publisher = publisher(4, 0);
+        orderBookManager.setLevelUpdateListener(publisher);
+        for (int price = 1; price <= 10; price++) {
+            orderBookManager.addOrder(new Order("buyOrder" + price, "XBT", Side.buy, price, 1));
+        }
+        assertEquals(8, published.size()); // two early publishes of 4 levels
+        assertEquals(2, publisher.getDirtyCount());
+        publisher.publish();
+        assertEquals(10, published.size());
+        assertEquals("XBT:buy:10:1:1:added", published.get(9));
+    }
+
+    @Test
+    public void publishIfDue() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager();
+        ConflatingPublisher publisher = publisher(16, 1000);
+        orderBookManager.setLevelUpdateListener(publisher);
+        orderBookManager.addOrder(new Order("buyOrder1", "XBT", Side.buy, 100, 1));
+        assertEquals(1, publisher.publishIfDue(5000));
+        orderBookManager.addOrder(new Order("buyOrder2", "XBT", Side.buy, 100, 1));
+        assertEquals(0, publisher.publishIfDue(5500)); // within the interval
+        assertEquals(1, publisher.getDirtyCount());
+        assertEquals(1, publisher.publishIfDue(6000));
+        assertEquals("XBT:buy:100:2:2:changed", published.get(1));
+    }
+}
@@ -0,0 +1,145 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ */
+public class DepthIndexTest {
+
+    @Test
+    public void cumulativeDepthAndSweep() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager();
+        orderBookManager.addOrder(new Order("sellOrder1", "XBT", Side.sell, 101, 10));
+        orderBookManager.addOrder(new Order("sellOrder2", "XBT", Side.sell, 103, 5));
+        orderBookManager.addOrder(new Order("sellOrder3", "XBT", Side.sell, 103, 5));
+        orderBookManager.addOrder(new Order("sellOrder4", "XBT", Side.sell, 110, 20));
+        orderBookManager.addOrder(new Order("buyOrder1", "XBT", Side.buy, 100, 4));
+        orderBookManager.addOrder(new Order("buyOrder2", "XBT", Side.buy, 98, 6));
+
+        for (boolean indexed : new boolean[]{false, true}) {
+            orderBookManager.setDepthIndexEnabled(indexed);
+            assertEquals(0, orderBookManager.getCumulativeQuantity("XBT", Side.sell, 100));
+            assertEquals(10, orderBookManager.getCumulativeQuantity("XBT", Side.sell, 102));
+            assertEquals(20, orderBookManager.getCumulativeQuantity("XBT", Side.sell, 103));
+            assertEquals(40, orderBookManager.getCumulativeQuantity("XBT", Side.sell, 1000));
+            assertEquals(101 * 10 + 103 * 10, orderBookManager.getCumulativeVolume("XBT", Side.sell, 109));
+            assertEquals(4, orderBookManager.getCumulativeQuantity("XBT", Side.buy, 99));
+            assertEquals(10, orderBookManager.getCumulativeQuantity("XBT", Side.buy, 98));
+            assertEquals(0, orderBookManager.getCumulativeQuantity("XBT", Side.buy, 101));
+            assertEquals(0, orderBookManager.getCumulativeQuantity("ETH", Side.buy, 101));
+
+            // buying 25 takes 10 at 101, 10 at 103 and 5 at 110
+            SweepCost sweepCost = orderBookManager.getSweepCost("XBT", Side.sell, 25, new SweepCost());
+            assertEquals(25, sweepCost.getQuantity());
+            assertEquals(101 * 10 + 103 * 10 + 110 * 5, sweepCost.getCost());
+            assertEquals(110, sweepCost.getPrice());
+            assertEquals((101 * 10 + 103 * 10 + 110 * 5) / 25.0, sweepCost.getAveragePrice(), 1e-9);
+            // selling more than the bids hold fills what they hold
+            orderBookManager.getSweepCost("XBT", Side.buy, 50, sweepCost);
+            assertEquals(10, sweepCost.getQuantity());
+            assertEquals(98, sweepCost.getPrice());
+            orderBookManager.getSweepCost("XBT", Side.buy, 4, sweepCost);
+            assertEquals(100, sweepCost.getPrice());
+            assertEquals(400, sweepCost.getCost());
+        }
+
+        orderBookManager.deleteOrder("sellOrder1");
+        orderBookManager.modifyOrder("sellOrder2", 1);
+        assertEquals(6, orderBookManager.getCumulativeQuantity("XBT", Side.sell, 103));
+        orderBookManager.addOrder(new Order("sellOrder5", "XBT", Side.sell, 1_000_000, 1)); // far outside the band
+        assertEquals(27, orderBookManager.getCumulativeQuantity("XBT", Side.sell, 1_000_000));
+        assertEquals(1_000_000, orderBookManager.getSweepCost("XBT", Side.sell, 100, new SweepCost()).getPrice());
+    }
+
+    @Test
+    public void dropsTheIndexForPricesTooFarToIndex() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager();
+        orderBookManager.setDepthIndexEnabled(true);
+        orderBookManager.addOrder(new Order("buyOrder1", "XBT", Side.buy, 100_000_000, 10));
+        orderBookManager.addOrder(new Order("sellOrder1", "XBT", Side.sell, 100_000_005, 10));
+        OrderBook orderBook = orderBookManager.getOrderBookByInstrumentMap().get("XBT");
+
+        // an order priced far away is completely filled before resting, the index is kept
+        orderBookManager.setFillListener((incoming, resting, price, quantity) -> {
+        });
+        orderBookManager.addOrder(new Order("sellOrder2", "XBT", Side.sell, 1, 4));
+        assertTrue(orderBook.isDepthIndexed());
+        assertEquals(6, orderBookManager.getCumulativeQuantity("XBT", Side.buy, 1));
+
+        orderBookManager.addOrder(new Order("sellOrder3", "XBT", Side.sell, 1, 7)); // 1 rests at 1, 1e8 ticks away
+        assertFalse(orderBook.isDepthIndexed());
+        assertEquals(1, orderBookManager.getTotalQuantityAtLevel("XBT", Side.sell, 1));
+        assertEquals(1, orderBookManager.getCumulativeQuantity("XBT", Side.sell, 1));
+        assertEquals(11, orderBookManager.getCumulativeQuantity("XBT", Side.sell, 100_000_005));
+
+        // books whose levels are already too far apart stay unindexed
+        orderBookManager.setDepthIndexEnabled(false);
+        orderBookManager.setDepthIndexEnabled(true);
+        assertFalse(orderBook.isDepthIndexed());
+
+        orderBookManager.addOrder(new Order("bid1", "ETH", Side.buy, 100, 2));
+        orderBookManager.addOrder(new Order("bid2", "ETH", Side.buy, 100 + (1 << 21), 3)); // 2^21 ticks away
+        assertFalse(orderBookManager.getOrderBookByInstrumentMap().get("ETH").isDepthIndexed());
+        assertEquals(5, orderBookManager.getCumulativeQuantity("ETH", Side.buy, 100));
+    }
+
+    @Test
+    public void matchesWalkingTheLevels() throws Exception {
+        matchesWalkingTheLevels(new OrderBookManager(), new OrderBookManager(), 1);
+        matchesWalkingTheLevels(new OrderBookManager(5, 16), new OrderBookManager(5, 16), 5);
+    }
+
+    /**
+     * Applies the same random orders, drifting in price, to a depth indexed manager and to one that is not, and
+     * compares their answers
+     */
+    private static void matchesWalkingTheLevels(OrderBookManager indexed, OrderBookManager walked, long tickSize) {
+        indexed.setDepthIndexEnabled(true);
+        Random random = new Random(42);
+        List<Long> resting = new ArrayList<>();
+        SweepCost expected = new SweepCost();
+        SweepCost actual = new SweepCost();
+        for (long id = 0; id < 20_000; id++) {
+            if (random.nextInt(10) < 6 || resting.isEmpty()) {
+                Side side = random.nextBoolean() ? Side.buy : Side.sell;
+                long mid = 1000 + id / 20; // prices drift up, so the indexes re-centre
+                long price = (side == Side.buy ? mid - random.nextInt(40) : mid + 1 + random.nextInt(40)) * tickSize;
+                long quantity = 1 + random.nextInt(20);
+                indexed.addOrder(id, 1, side, price, quantity);
+                walked.addOrder(id, 1, side, price, quantity);
+                resting.add(id);
+            } else {
+                int index = random.nextInt(resting.size());
+                long restingId = resting.get(index);
+                if (random.nextBoolean()) {
+                    long quantity = 1 + random.nextInt(20);
+                    indexed.modifyOrder(restingId, quantity);
+                    walked.modifyOrder(restingId, quantity);
+                } else {
+                    indexed.deleteOrder(restingId);
+                    walked.deleteOrder(restingId);
+                    resting.set(index, resting.get(resting.size() - 1));
+                    resting.remove(resting.size() - 1);
+                }
+            }
+            if (id % 100 == 0) {
+                for (Side side : Side.values()) {
+                    long price = (1000 + id / 20 + random.nextInt(80) - 40) * tickSize + random.nextInt(2);
+                    assertEquals(walked.getCumulativeQuantity(1, side, price),
+                            indexed.getCumulativeQuantity(1, side, price));
+                    assertEquals(walked.getCumulativeVolume(1, side, price),
+                            indexed.getCumulativeVolume(1, side, price));
+                    long quantity = 1 + random.nextInt(500);
+                    walked.getSweepCost(1, side, quantity, expected);
+                    indexed.getSweepCost(1, side, quantity, actual);
+                    assertEquals(expected.toString(), actual.toString());
+                }
+            }
+        }
+    }
+}
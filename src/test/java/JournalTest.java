@@ -0,0 +1,132 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ */
+public class JournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replay() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        OrderBookManager orderBookManager = new OrderBookManager();
+
+        // small segments, so the journal rolls over several of them
+        try (Journal journal = new Journal(directory, 256, FsyncPolicy.batch, 0)) {
+            orderBookManager.setJournal(journal);
+            for (int i = 0; i < 20; i++) {
+                orderBookManager.addOrder(new Order("buyOrder" + i, "XBT", Side.buy, 100 + i % 3, 10));
+                orderBookManager.addOrder(i, 7, Side.sell, 200 + i % 2, 5);
+            }
+            orderBookManager.modifyOrder("buyOrder3", 50);
+            orderBookManager.modifyOrder(4, 1);
+            orderBookManager.deleteOrder("buyOrder5");
+            orderBookManager.deleteOrder(6);
+            orderBookManager.applyBatch(new Command[]{
+                    new Command().add(new Order("sellOrder1", "XRP", Side.sell, 100, 10)),
+                    new Command().add(new Order("sellOrder2", "XRP", Side.sell, 100, 20)),
+                    new Command().delete("XBT", "buyOrder7"),
+            });
+            assertTrue(journal.getSegmentIndex() > 0); // the journal has rolled
+        }
+
+        // rebuild a new manager from the journal
+        OrderBookManager replayed = new OrderBookManager();
+        try (Journal journal = new Journal(directory, 256, FsyncPolicy.batch, 0)) {
+            assertEquals(1 + 40 + 4 + 3, journal.replay(replayed)); // setJournal records that it does not match
+            assertEquals(orderBookManager.getOrderBookByInstrumentMap(), replayed.getOrderBookByInstrumentMap());
+            assertEquals(orderBookManager.getOrderBookByInstrumentIdMap().get(7),
+                    replayed.getOrderBookByInstrumentIdMap().get(7));
+            assertEquals(orderBookManager.getRestingOrderByOrderIdMap().keySet(),
+                    replayed.getRestingOrderByOrderIdMap().keySet());
+
+            // a reopened journal appends after its last record
+            replayed.setJournal(journal);
+            replayed.deleteOrder("sellOrder1");
+        }
+        OrderBookManager replayedTwice = new OrderBookManager();
+        try (Journal journal = new Journal(directory, 256, FsyncPolicy.none, 0)) {
+            assertEquals(1 + 40 + 4 + 3 + 1 + 1, journal.replay(replayedTwice));
+        }
+        assertEquals(replayed.getOrderBookByInstrumentMap(), replayedTwice.getOrderBookByInstrumentMap());
+        assertEquals(1, replayedTwice.getOrderNumAtLevel("XRP", Side.sell, 100));
+    }
+
+    @Test
+    public void replayMatches() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Path file = folder.getRoot().toPath().resolve("books.snapshot");
+        OrderBookManager orderBookManager = new OrderBookManager();
+        long[] filled = new long[1];
+        orderBookManager.setFillListener((incoming, resting, price, quantity) -> filled[0] += quantity);
+        long position;
+        try (Journal journal = new Journal(directory, 4096, FsyncPolicy.none, 0)) {
+            orderBookManager.setJournal(journal);
+            orderBookManager.addOrder(new Order("sellOrder1", "XBT", Side.sell, 100, 10));
+            orderBookManager.addOrder(new Order("sellOrder2", "XBT", Side.sell, 101, 10));
+            orderBookManager.addOrder(new Order("buyOrder1", "XBT", Side.buy, 101, 15)); // fills sellOrder1
+            orderBookManager.addOrder(1, 7, Side.buy, 50, 5);
+            orderBookManager.addOrder(2, 7, Side.sell, 49, 8); // fills order 1, 3 rest at 49
+            position = journal.getPosition();
+            Snapshot.write(orderBookManager, file);
+            orderBookManager.deleteOrder("sellOrder1"); // filled live, so nothing to delete
+            orderBookManager.modifyOrder(1, 20);
+            orderBookManager.addOrder(new Order("buyOrder2", "XBT", Side.buy, 101, 2)); // fills sellOrder2
+
+            orderBookManager.setFillListener(null); // from now on crossing orders rest
+            orderBookManager.addOrder(3, 7, Side.buy, 49, 1);
+        }
+        assertEquals(10 + 5 + 5 + 2, filled[0]);
+
+        OrderBookManager replayed = new OrderBookManager();
+        try (Journal journal = new Journal(directory, 4096, FsyncPolicy.none, 0)) {
+            journal.replay(replayed);
+        }
+        assertEquals(orderBookManager.getOrderBookByInstrumentMap(), replayed.getOrderBookByInstrumentMap());
+        assertEquals(orderBookManager.getOrderBookByInstrumentIdMap().get(7),
+                replayed.getOrderBookByInstrumentIdMap().get(7));
+        assertEquals(3, replayed.getTotalQuantityAtLevel("XBT", Side.sell, 101));
+        assertEquals(1, replayed.getOrderNumAtLevel(7, Side.buy, 49)); // crossed, as in the journaled manager
+        assertNull(replayed.getFillListener());
+
+        // the snapshot holds no journal record saying the manager matched, the journal after it does
+        OrderBookManager restarted = new OrderBookManager();
+        long snapshotPosition = Snapshot.read(file, restarted);
+        assertEquals(position, snapshotPosition);
+        try (Journal journal = new Journal(directory, 4096, FsyncPolicy.none, 0)) {
+            journal.replay(restarted, snapshotPosition);
+        }
+        assertEquals(orderBookManager.getOrderBookByInstrumentMap(), restarted.getOrderBookByInstrumentMap());
+        assertEquals(orderBookManager.getOrderBookByInstrumentIdMap().get(7),
+                restarted.getOrderBookByInstrumentIdMap().get(7));
+    }
+
+    @Test
+    public void periodicFsync() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (Journal journal = new Journal(directory, 1 << 16, FsyncPolicy.periodic, 1)) {
+            for (int i = 0; i < 1000; i++) {
+                journal.appendAdd(i, 1, Side.buy, 100, 10);
+            }
+        }
+        OrderBookManager orderBookManager = new OrderBookManager();
+        try (Journal journal = new Journal(directory)) {
+            assertEquals(1000, journal.replay(orderBookManager));
+        }
+        assertEquals(1000, orderBookManager.getOrderNumAtLevel(1, Side.buy, 100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void recordTooLarge() throws Exception {
+        try (Journal journal = new Journal(folder.getRoot().toPath(), 64, FsyncPolicy.none, 0)) {
+            journal.appendAdd(new Order("an order id that is far too long for the segment", "XBT", Side.buy, 1, 1));
+        }
+    }
+}
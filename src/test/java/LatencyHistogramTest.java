@@ -0,0 +1,52 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets() throws Exception {
+        // every value falls in a bucket no more than 1/16th wider than itself, and buckets are contiguous
+        long previousHighest = -1;
+        for (int bucket = 0; bucket < 60 * 16; bucket++) {
+            long highest = LatencyHistogram.highestValueOf(bucket);
+            assertTrue(highest > previousHighest);
+            assertEquals(bucket, LatencyHistogram.bucketOf(previousHighest + 1));
+            assertEquals(bucket, LatencyHistogram.bucketOf(highest));
+            assertTrue(highest - previousHighest - 1 <= Math.max(1, (previousHighest + 1) / 16));
+            previousHighest = highest;
+        }
+        assertEquals(Long.MAX_VALUE, previousHighest);
+    }
+
+    @Test
+    public void percentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500.5, histogram.getMean(), 0);
+
+        // accurate to the width of a bucket
+        assertEquals(500, histogram.getValueAtPercentile(50), 500 / 16);
+        assertEquals(990, histogram.getValueAtPercentile(99), 990 / 16);
+        assertEquals(1000, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+
+        // a snapshot is a copy, unaffected by later values
+        LatencyHistogram snapshot = histogram.snapshot();
+        histogram.record(5000);
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1000, snapshot.getMax());
+        assertEquals(990, snapshot.getValueAtPercentile(99), 990 / 16);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+}
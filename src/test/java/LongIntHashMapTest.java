@@ -0,0 +1,61 @@
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ */
+public class LongIntHashMapTest {
+    private LongIntHashMap longIntHashMap;
+
+    @Test
+    public void putGetRemove() throws Exception {
+        longIntHashMap = new LongIntHashMap();
+
+        assertEquals(LongIntHashMap.MISSING, longIntHashMap.put(1, 10));
+        assertEquals(LongIntHashMap.MISSING, longIntHashMap.put(0, 0)); // 0 is a valid key and value
+        assertEquals(10, longIntHashMap.put(1, 11)); // replaces the previous value
+        assertEquals(2, longIntHashMap.size());
+
+        assertEquals(11, longIntHashMap.get(1));
+        assertEquals(0, longIntHashMap.get(0));
+        assertEquals(LongIntHashMap.MISSING, longIntHashMap.get(2));
+
+        assertEquals(0, longIntHashMap.remove(0));
+        assertEquals(LongIntHashMap.MISSING, longIntHashMap.remove(0)); // already removed
+        assertFalse(longIntHashMap.containsKey(0));
+        assertEquals(1, longIntHashMap.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeValue() throws Exception {
+        new LongIntHashMap().put(1, -1);
+    }
+
+    @Test
+    public void matchesHashMapUnderChurn() throws Exception {
+        longIntHashMap = new LongIntHashMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        //random adds and removes over a small key space, so probe chains collide and get compacted a lot
+        for (int i = 0; i < 100000; i++) {
+            long key = random.nextInt(2000);
+            if (random.nextBoolean()) {
+                Integer previous = expected.put(key, i);
+                assertEquals(previous == null ? LongIntHashMap.MISSING : previous, longIntHashMap.put(key, i));
+            } else {
+                Integer removed = expected.remove(key);
+                assertEquals(removed == null ? LongIntHashMap.MISSING : removed, longIntHashMap.remove(key));
+            }
+        }
+        assertEquals(expected.size(), longIntHashMap.size());
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals((int) entry.getValue(), longIntHashMap.get(entry.getKey()));
+        }
+    }
+}
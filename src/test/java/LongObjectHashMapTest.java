@@ -0,0 +1,65 @@
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ */
+public class LongObjectHashMapTest {
+    private LongObjectHashMap<String> longObjectHashMap;
+
+    @Test
+    public void putGetRemove() throws Exception {
+        longObjectHashMap = new LongObjectHashMap<>();
+
+        assertNull(longObjectHashMap.put(1, "one"));
+        assertNull(longObjectHashMap.put(0, "zero")); // 0 is a valid key
+        assertNull(longObjectHashMap.put(-7, "minus seven"));
+        assertEquals("one", longObjectHashMap.put(1, "uno")); // replaces the previous value
+        assertEquals(3, longObjectHashMap.size());
+
+        assertEquals("uno", longObjectHashMap.get(1));
+        assertEquals("zero", longObjectHashMap.get(0));
+        assertEquals("minus seven", longObjectHashMap.get(-7));
+        assertNull(longObjectHashMap.get(2));
+
+        assertEquals("zero", longObjectHashMap.remove(0));
+        assertNull(longObjectHashMap.remove(0)); // already removed
+        assertFalse(longObjectHashMap.containsKey(0));
+        assertEquals(2, longObjectHashMap.size());
+    }
+
+    @Test
+    public void matchesHashMapUnderChurn() throws Exception {
+        longObjectHashMap = new LongObjectHashMap<>();
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        //random adds and removes over a small key space, so probe chains collide and get compacted a lot
+        for (int i = 0; i < 100000; i++) {
+            long key = random.nextInt(2000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, "v" + i), longObjectHashMap.put(key, "v" + i));
+            } else {
+                assertEquals(expected.remove(key), longObjectHashMap.remove(key));
+            }
+        }
+
+        //confirm that the maps hold the same entries
+        assertEquals(expected.size(), longObjectHashMap.size());
+        for (long key = 0; key < 2000; key++) {
+            assertEquals(expected.get(key), longObjectHashMap.get(key));
+        }
+        assertEquals(expected.size(), longObjectHashMap.values().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullValue() throws Exception {
+        longObjectHashMap = new LongObjectHashMap<>();
+        longObjectHashMap.put(1, null);
+    }
+}
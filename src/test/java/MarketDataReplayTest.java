@@ -0,0 +1,79 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ */
+public class MarketDataReplayTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void convertAndReplay() throws Exception {
+        Path csv = folder.getRoot().toPath().resolve("capture.csv");
+        Path events = folder.getRoot().toPath().resolve("events.bin");
+        Files.write(csv, Arrays.asList(
+                "timestamp,action,orderId,instrument,side,price,quantity",
+                "1000000,add,1,XBT,buy,100,10",
+                "2000000,add,2,XBT,buy,100,25",
+                "# comment",
+                "3000000,add,3,XRP,sell,200,5",
+                "4000000,modify,1,,,,30",
+                "",
+                "5000000,delete,2,,,,"));
+        assertEquals(5, MarketDataReplay.convertCsv(csv, events));
+        assertEquals(5 * MarketDataReplay.EVENT_SIZE, Files.size(events));
+
+        for (double speed : new double[]{0, 1}) {
+            MarketDataReplay replay = new MarketDataReplay(new OrderBookManager());
+            long start = System.nanoTime();
+            assertEquals(5, replay.replay(events, speed));
+            if (speed == 1) {
+                assertTrue(System.nanoTime() - start >= 4000000); // paced at recorded timestamps
+            }
+
+            // instruments are numbered in order of first appearance
+            OrderBookManager orderBookManager = replay.getOrderBookManager();
+            assertEquals(1, orderBookManager.getOrderNumAtLevel(0, Side.buy, 100));
+            assertEquals(30, orderBookManager.getTotalQuantityAtLevel(0, Side.buy, 100));
+            assertEquals(5, orderBookManager.getTotalQuantityAtLevel(1, Side.sell, 200));
+
+            assertEquals(5, replay.getEvents());
+            assertEquals(3, replay.getAddLatencies().getCount());
+            assertEquals(1, replay.getModifyLatencies().getCount());
+            assertEquals(1, replay.getDeleteLatencies().getCount());
+            assertTrue(replay.getEventsPerSecond() > 0);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedCsv() throws Exception {
+        Path csv = folder.getRoot().toPath().resolve("capture.csv");
+        Files.write(csv, Arrays.asList("1000000,add,1,XBT,buy,100"));
+        MarketDataReplay.convertCsv(csv, folder.getRoot().toPath().resolve("events.bin"));
+    }
+
+    @Test
+    public void unknownActionOrSide() throws Exception {
+        Path csv = folder.getRoot().toPath().resolve("capture.csv");
+        Path events = folder.getRoot().toPath().resolve("events.bin");
+        for (String line : new String[]{"1000000,task,1,XBT,buy,100,10", "1000000,add,1,XBT,Sell,100,10",
+                "1000000,add,1,XBT,,100,10", "1000000,delete,1,,bid,,"}) {
+            Files.write(csv, Arrays.asList("1000000,add,2,XBT,sell,100,10", line));
+            try {
+                MarketDataReplay.convertCsv(csv, events);
+                fail(line);
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith(csv + ":2: "));
+            }
+        }
+    }
+}
@@ -27,16 +27,15 @@ public class OrderBookManagerTest {
         orderBookManager.addOrder(sellOrder1);
         orderBookManager.addOrder(sellOrder2);
 
-        //confirm that these orders have been added to the orderId->instrument map
-        Map<String, String> expectedInstrumentByOrderIdMap = new HashMap<>();
-
-        expectedInstrumentByOrderIdMap.put(buyOrder1.getOrderId(), buyOrder1.getInstrument());
-        expectedInstrumentByOrderIdMap.put(buyOrder2.getOrderId(), buyOrder2.getInstrument());
-        expectedInstrumentByOrderIdMap.put(sellOrder1.getOrderId(), sellOrder1.getInstrument());
-        expectedInstrumentByOrderIdMap.put(sellOrder2.getOrderId(), sellOrder2.getInstrument());
-
-        Map<String, String> actuallInstrumentByOrderIdMap = orderBookManager.getInstrumentByOrderIdMap();
-        assertEquals(expectedInstrumentByOrderIdMap, actuallInstrumentByOrderIdMap);//confirm they have the same contents
+        //confirm that these orders have been added to the order id index, along with the book they rest in
+        Map<String, RestingOrder> actualRestingOrderByOrderIdMap = orderBookManager.getRestingOrderByOrderIdMap();
+        assertEquals(4, actualRestingOrderByOrderIdMap.size());
+        for (Order order : Arrays.asList(buyOrder1, buyOrder2, sellOrder1, sellOrder2)) {
+            RestingOrder restingOrder = actualRestingOrderByOrderIdMap.get(order.getOrderId());
+            assertSame(order, restingOrder.getOrder());
+            assertSame(orderBookManager.getOrderBookByInstrumentMap().get(order.getInstrument()),
+                    restingOrder.getOrderBook());
+        }
 
         // check that orders are kept in the order that they are added
         List<Order> expectedList = Arrays.asList(buyOrder1, buyOrder2);
@@ -112,10 +111,11 @@ public class OrderBookManagerTest {
         orderBookManager.deleteOrder("buyOrder1"); //located in price level 100 of XBT bids
         orderBookManager.deleteOrder("sellOrder1"); //located in price level 200 of xrp asks
 
-        //confirm that it has been removed from the instrumentByOrderIdMap
-        Map<String, String> actualInstrumentbyOrderIdMap = orderBookManager.getInstrumentByOrderIdMap();
-        assertFalse(actualInstrumentbyOrderIdMap.containsValue(buyOrder1));
-        assertFalse(actualInstrumentbyOrderIdMap.containsValue(sellOrder1));
+        //confirm that it has been removed from the order id index
+        Map<String, RestingOrder> actualRestingOrderByOrderIdMap = orderBookManager.getRestingOrderByOrderIdMap();
+        assertFalse(actualRestingOrderByOrderIdMap.containsKey(buyOrder1.getOrderId()));
+        assertFalse(actualRestingOrderByOrderIdMap.containsKey(sellOrder1.getOrderId()));
+        assertTrue(actualRestingOrderByOrderIdMap.containsKey(buyOrder2.getOrderId()));
 
         //confirm that the orderBook no longer has this order
         long level = 100; // level for buyOrder1
@@ -311,4 +311,237 @@ public class OrderBookManagerTest {
         assertEquals(emptyList, orderBookManager.getOrdersAtLevel("XRP", Side.buy, 500));
         assertEquals(emptyList, orderBookManager.getOrdersAtLevel("XRP", Side.sell, 200));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void numericIds() throws Exception {
+        orderBookManager = new OrderBookManager();
+
+        //add orders identified by numbers
+        orderBookManager.addOrder(1, 7, Side.buy, 100, 10);
+        orderBookManager.addOrder(2, 7, Side.buy, 100, 25);
+        orderBookManager.addOrder(3, 7, Side.sell, 110, 30);
+        orderBookManager.addOrder(4, 8, Side.sell, 200, 40);
+
+        assertEquals(100, orderBookManager.getBestPrice(7, Side.buy));
+        assertEquals(110, orderBookManager.getBestPrice(7, Side.sell));
+        assertEquals(2, orderBookManager.getOrderNumAtLevel(7, Side.buy, 100));
+        assertEquals(35, orderBookManager.getTotalQuantityAtLevel(7, Side.buy, 100));
+        assertEquals(8000, orderBookManager.getTotalVolumeAtLevel(8, Side.sell, 200));
+
+        //increase order 1, it moves behind order 2
+        orderBookManager.modifyOrder(1, 20);
+        List<Order> orders = orderBookManager.getOrdersAtLevel(7, Side.buy, 100);
+        assertEquals(2, orders.get(0).getId());
+        assertEquals(1, orders.get(1).getId());
+        assertEquals(7, orders.get(1).getInstrumentId());
+
+        //numeric ids do not clash with String ids
+        orderBookManager.addOrder(new Order("1", "7", Side.buy, 500, 5));
+        assertEquals(100, orderBookManager.getBestPrice(7, Side.buy));
+        assertEquals(500, orderBookManager.getBestPrice("7", Side.buy));
+
+        //deleting the only order of instrument 8 stops tracking its book
+        orderBookManager.deleteOrder(4);
+        assertNull(orderBookManager.getOrderBookByInstrumentIdMap().get(8));
+        assertEquals(-1, orderBookManager.getBestPrice(8, Side.sell));
+        orderBookManager.deleteOrder(4); // does nothing, the order no longer exists
+        assertEquals(3, orderBookManager.getRestingOrderByIdMap().size());
+        assertEquals(1, orderBookManager.getRestingOrderByOrderIdMap().size());
+    }
+
+    @Test
+    public void pooled() throws Exception {
+        orderBookManager = new OrderBookManager(1, 64, true);
+        OrderBookPools pools = orderBookManager.getPools();
+
+        //add and delete an order, every object it needed goes back to its pool
+        orderBookManager.addOrder(1, 7, Side.buy, 100, 10);
+        Order order = orderBookManager.getOrdersAtLevel(7, Side.buy, 100).get(0);
+        OrderBook orderBook = orderBookManager.getOrderBookByInstrumentIdMap().get(7);
+        orderBookManager.deleteOrder(1);
+        assertEquals(1, pools.getOrders().size());
+        assertEquals(1, pools.getRestingOrders().size());
+        assertEquals(1, pools.getOrderLists().size());
+        assertEquals(1, orderBookManager.getOrderBookPool().size());
+
+        //the next order reuses them
+        orderBookManager.addOrder(2, 8, Side.sell, 200, 20);
+        assertSame(order, orderBookManager.getOrdersAtLevel(8, Side.sell, 200).get(0));
+        assertSame(orderBook, orderBookManager.getOrderBookByInstrumentIdMap().get(8));
+        assertEquals(0, pools.getOrders().size());
+        assertEquals(0, pools.getRestingOrders().size());
+        assertEquals(0, pools.getOrderLists().size());
+        assertEquals(0, orderBookManager.getOrderBookPool().size());
+
+        //the recycled objects hold the new order's state only
+        assertEquals(2, order.getId());
+        assertEquals(20, orderBookManager.getTotalQuantityAtLevel(8, Side.sell, 200));
+        assertEquals(-1, orderBookManager.getBestPrice(8, Side.buy));
+
+        //Orders passed in by the caller are never recycled
+        Order callerOrder = new Order("callerOrder", "XBT", Side.buy, 100, 10);
+        orderBookManager.addOrder(callerOrder);
+        orderBookManager.deleteOrder("callerOrder");
+        assertEquals(0, pools.getOrders().size());
+        assertEquals("callerOrder", callerOrder.getOrderId());
+    }
+
+    @Test
+    public void matchOrders() throws Exception {
+        orderBookManager = new OrderBookManager(1, 64, true);
+        long[] filled = new long[1];
+        orderBookManager.setFillListener((aggressor, resting, price, quantity) -> filled[0] += quantity);
+
+        orderBookManager.addOrder(1, 7, Side.sell, 100, 10);
+        orderBookManager.addOrder(2, 7, Side.sell, 101, 10);
+
+        //the buy order fills both sell orders, nothing rests and the book is no longer tracked
+        orderBookManager.addOrder(3, 7, Side.buy, 101, 20);
+        assertEquals(20, filled[0]);
+        assertNull(orderBookManager.getOrderBookByInstrumentIdMap().get(7));
+        assertEquals(0, orderBookManager.getRestingOrderByIdMap().size());
+
+        //all 3 orders went back to the pool
+        assertEquals(3, orderBookManager.getPools().getOrders().size());
+        assertEquals(1, orderBookManager.getOrderBookPool().size());
+    }
+
+    @Test
+    public void levelUpdates() throws Exception {
+        orderBookManager = new OrderBookManager();
+        List<String> updates = new ArrayList<>();
+        orderBookManager.setLevelUpdateListener(update -> updates.add(update.getInstrument() + " " + update.getSide()
+                + " " + update.getPrice() + " " + update.getQuantity() + "/" + update.getOrderCount() + " "
+                + update.getAction()));
+
+        orderBookManager.addOrder(new Order("buyOrder1", "XBT", Side.buy, 100, 10));
+        orderBookManager.addOrder(new Order("buyOrder2", "XBT", Side.buy, 100, 25));
+        orderBookManager.modifyOrder("buyOrder1", 5);
+        orderBookManager.deleteOrder("buyOrder2");
+        orderBookManager.deleteOrder("buyOrder1");
+        assertEquals(Arrays.asList(
+                "XBT buy 100 10/1 added",
+                "XBT buy 100 35/2 changed",
+                "XBT buy 100 30/2 changed",
+                "XBT buy 100 5/1 changed",
+                "XBT buy 100 0/0 removed"), updates);
+
+        //fills publish one update per level swept, then the residual level
+        updates.clear();
+        orderBookManager.setFillListener((aggressor, resting, price, quantity) -> {
+        });
+        orderBookManager.addOrder(new Order("sellOrder1", "XBT", Side.sell, 100, 10));
+        orderBookManager.addOrder(new Order("sellOrder2", "XBT", Side.sell, 100, 10));
+        orderBookManager.addOrder(new Order("sellOrder3", "XBT", Side.sell, 101, 10));
+        updates.clear();
+        orderBookManager.addOrder(new Order("buyOrder3", "XBT", Side.buy, 102, 25));
+        assertEquals(Arrays.asList(
+                "XBT sell 100 0/0 removed",
+                "XBT sell 101 5/1 changed"), updates);
+    }
+
+    @Test
+    public void applyBatch() throws Exception {
+        // applying the batch gives the same books as applying the commands one by one
+        OrderBookManager oneByOne = new OrderBookManager();
+        for (Command command : batch()) {
+            command.applyTo(oneByOne);
+        }
+        for (boolean pooled : new boolean[]{false, true}) {
+            orderBookManager = new OrderBookManager(0, 0, pooled);
+            List<String> updates = new ArrayList<>();
+            orderBookManager.setLevelUpdateListener(update -> updates.add(update.getSide() + " " + update.getPrice()
+                    + " " + update.getQuantity() + "/" + update.getOrderCount() + " " + update.getAction()));
+            orderBookManager.applyBatch(batch()); // new orders, since modifying an order changes it
+
+            assertEquals(oneByOne.getOrderBookByInstrumentMap(), orderBookManager.getOrderBookByInstrumentMap());
+            assertFalse(orderBookManager.getOrderBookByInstrumentMap().containsKey("XRP")); // emptied book is dropped
+            assertEquals(oneByOne.getOrderBookByInstrumentIdMap().get(7),
+                    orderBookManager.getOrderBookByInstrumentIdMap().get(7));
+            assertEquals(Arrays.asList("buyOrder2", "buyOrder3", "buyOrder1", "buyOrder5"),
+                    orderIds(orderBookManager.getOrdersAtLevel("XBT", Side.buy, 100)));
+            assertEquals(5, orderBookManager.getRestingOrderByOrderIdMap().size());
+            assertEquals(1, orderBookManager.getRestingOrderByIdMap().size());
+
+            // one update per group of adds to the same level
+            assertEquals(Arrays.asList(
+                    "buy 100 40/3 added",
+                    "buy 99 5/1 added",
+                    "sell 100 10/1 added",
+                    "sell 200 30/2 added",
+                    "buy 100 60/3 changed",
+                    "sell 200 20/1 changed",
+                    "buy 100 61/4 changed",
+                    "sell 100 0/0 removed"), updates);
+        }
+    }
+
+    @Test
+    public void metrics() throws Exception {
+        orderBookManager = new OrderBookManager();
+        orderBookManager.addOrder(new Order("buyOrder1", "XBT", Side.buy, 100, 10)); // not recorded yet
+        OrderBookMetrics metrics = new OrderBookMetrics();
+        orderBookManager.setMetrics(metrics);
+
+        orderBookManager.addOrder(new Order("buyOrder2", "XBT", Side.buy, 99, 10));
+        orderBookManager.addOrder(1, 7, Side.sell, 200, 5);
+        orderBookManager.modifyOrder("buyOrder1", 20);
+        orderBookManager.modifyOrder("buyOrder1", 5);
+        orderBookManager.modifyOrder(1, 1);
+        orderBookManager.modifyOrder("unknown", 1); // not recorded, nothing was modified
+        orderBookManager.getBestPrice("XBT", Side.buy);
+        orderBookManager.getOrderNumAtLevel(7, Side.sell, 200);
+        orderBookManager.getTotalQuantityAtLevel("XBT", Side.buy, 100);
+        orderBookManager.getTotalVolumeAtLevel("XBT", Side.buy, 100);
+        orderBookManager.getOrdersAtLevel("XBT", Side.buy, 100);
+        orderBookManager.getDepth("XBT", Side.buy, 1, new long[1], new long[1], new int[1]);
+        orderBookManager.deleteOrder("buyOrder2");
+        orderBookManager.deleteOrder(1);
+
+        assertEquals(2, metrics.getLatencies(MeasuredOperation.add).getCount());
+        assertEquals(1, metrics.getLatencies(MeasuredOperation.modifyUp).getCount());
+        assertEquals(2, metrics.getLatencies(MeasuredOperation.modifyDown).getCount());
+        assertEquals(2, metrics.getLatencies(MeasuredOperation.delete).getCount());
+        for (MeasuredOperation query : Arrays.asList(MeasuredOperation.getBestPrice,
+                MeasuredOperation.getOrderNumAtLevel, MeasuredOperation.getTotalQuantityAtLevel,
+                MeasuredOperation.getTotalVolumeAtLevel, MeasuredOperation.getOrdersAtLevel,
+                MeasuredOperation.getDepth)) {
+            assertEquals(1, metrics.getLatencies(query).snapshot().getCount());
+        }
+        // levels 99 (XBT) and 200 (7) were created then removed, book 7 was created then removed
+        assertEquals(2, metrics.getLevelsCreated());
+        assertEquals(2, metrics.getLevelsRemoved());
+        assertEquals(1, metrics.getBooksCreated());
+        assertEquals(1, metrics.getBooksRemoved());
+
+        // nothing is recorded once metrics are removed
+        orderBookManager.setMetrics(null);
+        orderBookManager.deleteOrder("buyOrder1");
+        assertEquals(2, metrics.getLatencies(MeasuredOperation.delete).getCount());
+        assertEquals(2, metrics.getLevelsRemoved());
+    }
+
+    private static Command[] batch() {
+        return new Command[]{
+                new Command().add(new Order("buyOrder1", "XBT", Side.buy, 100, 10)),
+                new Command().add(new Order("buyOrder2", "XBT", Side.buy, 100, 25)),
+                new Command().add(new Order("buyOrder3", "XBT", Side.buy, 100, 5)),
+                new Command().add(new Order("buyOrder4", "XBT", Side.buy, 99, 5)),
+                new Command().add(new Order("sellOrder1", "XRP", Side.sell, 100, 10)),
+                new Command().add(1, 7, Side.sell, 200, 10),
+                new Command().add(2, 7, Side.sell, 200, 20),
+                new Command().modify("XBT", "buyOrder1", 30),
+                new Command().delete(7, 1),
+                new Command().add(new Order("buyOrder5", "XBT", Side.buy, 100, 1)),
+                new Command().delete("XRP", "sellOrder1"),
+        };
+    }
+
+    private static List<String> orderIds(List<Order> orders) {
+        List<String> orderIds = new ArrayList<>();
+        for (Order order : orders) {
+            orderIds.add(order.getOrderId());
+        }
+        return orderIds;
+    }
+}
@@ -1,5 +1,6 @@
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -29,11 +30,13 @@ public class OrderBookTest {
         assertFalse(orderBook.getBids().isEmpty());
         assertFalse(orderBook.getAsks().isEmpty());
 
-        //check that it was registered in the priceByIdMap and sideByIdMap
-        assertTrue(orderBook.getPriceByOrderIdMap().get(buyOrder.getOrderId()) == buyOrder.getPrice());
-        assertTrue(orderBook.getSideByOrderIdMap().get(buyOrder.getOrderId()) == buyOrder.getSide());
-        assertTrue(orderBook.getPriceByOrderIdMap().get(sellOrder.getOrderId()) == sellOrder.getPrice());
-        assertTrue(orderBook.getSideByOrderIdMap().get(sellOrder.getOrderId()) == sellOrder.getSide());
+        //check that it was registered in the order id index, with the level it rests in
+        assertSame(buyOrder, orderBook.getRestingOrder(buyOrder.getOrderId()).getOrder());
+        assertSame(sellOrder, orderBook.getRestingOrder(sellOrder.getOrderId()).getOrder());
+        assertSame(orderBook.getBids().get(buyOrder.getPrice()),
+                orderBook.getRestingOrder(buyOrder.getOrderId()).getOrderList());
+        assertSame(orderBook.getAsks().get(sellOrder.getPrice()),
+                orderBook.getRestingOrder(sellOrder.getOrderId()).getOrderList());
 
         // check that orders were added to the correct TreeMap
         assertFalse(orderBook.getBids().containsKey(sellOrder.getPrice())); // bids map should not contain this key
@@ -110,9 +113,8 @@ public class OrderBookTest {
         //delete buyOrder2
         orderBook.deleteOrder("buyOrder2");
 
-        //check that it is no longer in the priceByIdMap and sellByIdMap
-        assertNull(orderBook.getPriceByOrderIdMap().get(buyOrder2.getOrderId())); // no value for key
-        assertNull(orderBook.getSideByOrderIdMap().get(buyOrder2.getOrderId()));
+        //check that it is no longer in the order id index
+        assertNull(orderBook.getRestingOrder(buyOrder2.getOrderId())); // no value for key
 
         //check it is no longer in orderList for this price level
         assertFalse(orderBook.getBids().get(buyOrder2.getPrice()).getOrders().contains(buyOrder2));
@@ -380,4 +382,88 @@ public class OrderBookTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void matchOrders() throws Exception {
+        orderBook = new OrderBook();
+        List<String> fills = new ArrayList<>();
+        orderBook.setFillListener((aggressor, resting, price, quantity) ->
+                fills.add(aggressor.getOrderId() + "/" + resting.getOrderId() + "@" + price + "x" + quantity));
+
+        // create resting sell orders on 2 levels
+        Order sellOrder1 = new Order("sellOrder1", "VOD.L", Side.sell, 100, 10);
+        Order sellOrder2 = new Order("sellOrder2", "VOD.L", Side.sell, 100, 20);
+        Order sellOrder3 = new Order("sellOrder3", "VOD.L", Side.sell, 105, 30);
+        Order sellOrder4 = new Order("sellOrder4", "VOD.L", Side.sell, 110, 40);
+        orderBook.addOrder(sellOrder1);
+        orderBook.addOrder(sellOrder2);
+        orderBook.addOrder(sellOrder3);
+        orderBook.addOrder(sellOrder4);
+
+        //a buy order that does not cross simply rests
+        Order buyOrder1 = new Order("buyOrder1", "VOD.L", Side.buy, 99, 5);
+        assertNotNull(orderBook.addOrder(buyOrder1));
+        assertTrue(fills.isEmpty());
+
+        //a buy order crossing 2 levels sweeps them best price first, in order of arrival
+        Order buyOrder2 = new Order("buyOrder2", "VOD.L", Side.buy, 105, 50);
+        assertNull(orderBook.addOrder(buyOrder2)); // completely filled
+        assertEquals(Arrays.asList("buyOrder2/sellOrder1@100x10", "buyOrder2/sellOrder2@100x20",
+                "buyOrder2/sellOrder3@105x20"), fills);
+        assertEquals(-1, orderBook.getTotalQuantityAtLevel(Side.sell, 100)); // level fully consumed
+        assertEquals(10, orderBook.getTotalQuantityAtLevel(Side.sell, 105)); // partially filled, stays at the front
+        assertEquals(105, orderBook.getBestPrice(Side.sell));
+        assertEquals(99, orderBook.getBestPrice(Side.buy)); // nothing left of buyOrder2 to rest
+        assertNull(orderBook.getRestingOrder("sellOrder1")); // filled orders leave the order id index
+        assertNull(orderBook.getRestingOrder("buyOrder2"));
+
+        //a sell order crossing the bids fills completely and does not rest
+        fills.clear();
+        Order sellOrder5 = new Order("sellOrder5", "VOD.L", Side.sell, 90, 3);
+        assertNull(orderBook.addOrder(sellOrder5));
+        assertEquals(Arrays.asList("sellOrder5/buyOrder1@99x3"), fills);
+        assertEquals(2, orderBook.getTotalQuantityAtLevel(Side.buy, 99));
+        assertEquals(0, sellOrder5.getQuantity());
+
+        //a residual rests at its limit price
+        fills.clear();
+        Order buyOrder3 = new Order("buyOrder3", "VOD.L", Side.buy, 107, 15);
+        orderBook.addOrder(buyOrder3);
+        assertEquals(Arrays.asList("buyOrder3/sellOrder3@105x10"), fills);
+        assertEquals(107, orderBook.getBestPrice(Side.buy));
+        assertEquals(5, orderBook.getTotalQuantityAtLevel(Side.buy, 107));
+        assertEquals(110, orderBook.getBestPrice(Side.sell));
+    }
+
+    @Test
+    public void getDepth() throws Exception {
+        long[] prices = new long[3];
+        long[] quantities = new long[3];
+        int[] counts = new int[3];
+
+        //both engines return the same depth
+        for (OrderBook orderBook : Arrays.asList(new OrderBook(), new OrderBook(1, 16))) {
+            //confirm that an empty side has no depth
+            assertEquals(0, orderBook.getDepth(Side.buy, 3, prices, quantities, counts));
+
+            orderBook.addOrder(new Order("buyOrder1", "VOD.L", Side.buy, 100, 10));
+            orderBook.addOrder(new Order("buyOrder2", "VOD.L", Side.buy, 100, 15));
+            orderBook.addOrder(new Order("buyOrder3", "VOD.L", Side.buy, 102, 20));
+            orderBook.addOrder(new Order("buyOrder4", "VOD.L", Side.buy, 97, 30));
+            orderBook.addOrder(new Order("buyOrder5", "VOD.L", Side.buy, 90, 40));
+            orderBook.addOrder(new Order("sellOrder1", "VOD.L", Side.sell, 105, 50));
+
+            //only the best 3 levels are copied, best first
+            assertEquals(3, orderBook.getDepth(Side.buy, 3, prices, quantities, counts));
+            assertArrayEquals(new long[]{102, 100, 97}, prices);
+            assertArrayEquals(new long[]{20, 25, 30}, quantities);
+            assertArrayEquals(new int[]{1, 2, 1}, counts);
+
+            //fewer levels than requested
+            assertEquals(1, orderBook.getDepth(Side.sell, 3, prices, quantities, counts));
+            assertEquals(105, prices[0]);
+            assertEquals(50, quantities[0]);
+            assertEquals(1, counts[0]);
+        }
+    }
+
+}
@@ -1,6 +1,7 @@
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import static org.junit.Assert.*;
 
@@ -144,4 +145,47 @@ public class OrderListTest {
         assertEquals(expectedTotalTradeableVolumeAfterChange, orderList.getTotalTradeableVolume()); //(expected,actual)
     }
 
-}
\ No newline at end of file
+    @Test
+    public void modifyAndDeleteKeepFifoOrder() throws Exception {
+        orderList = new OrderList();
+
+        //create orders and add them to orderList
+        Order order1 = new Order("order1", "VOD.L", Side.buy, 100, 10);
+        Order order2 = new Order("order2", "VOD.L", Side.buy, 100, 20);
+        Order order3 = new Order("order3", "VOD.L", Side.buy, 100, 30);
+        Order order4 = new Order("order4", "VOD.L", Side.buy, 100, 40);
+        orderList.addOrder(order1);
+        orderList.addOrder(order2);
+        orderList.addOrder(order3);
+        orderList.addOrder(order4);
+
+        //delete from the middle, then from the front
+        orderList.deleteOrder(new String("order3")); // ids are matched by value, not by reference
+        orderList.deleteOrder("order1");
+        assertEquals(Arrays.asList(order2, order4), orderList.getOrders());
+        assertEquals(2, orderList.getNumberOfOrders());
+
+        //increase order2, it moves behind order4
+        orderList.modifyOrder("order2", 25);
+        assertEquals(Arrays.asList(order4, order2), orderList.getOrders());
+
+        //decrease order4, it keeps its position at the front
+        orderList.modifyOrder("order4", 5);
+        assertEquals(Arrays.asList(order4, order2), orderList.getOrders());
+        assertEquals(30, orderList.getTotalTradeableQuantity());
+        assertEquals(3000, orderList.getTotalTradeableVolume());
+
+        //the head and tail handles follow the queue
+        assertEquals(order4, orderList.getHead().getOrder());
+        assertEquals(order2, orderList.getTail().getOrder());
+        assertSame(orderList, orderList.getRestingOrder("order2").getOrderList());
+
+        //delete the back, then the last remaining order
+        orderList.deleteOrder("order2");
+        orderList.deleteOrder("order4");
+        assertNull(orderList.getHead());
+        assertNull(orderList.getTail());
+        assertEquals(0, orderList.getNumberOfOrders());
+    }
+
+}
@@ -0,0 +1,168 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ */
+public class PriceLadderTest {
+    private PriceLadder priceLadder;
+
+    @Test
+    public void bestPrice() throws Exception {
+        priceLadder = new PriceLadder(Side.buy, 5, 16);
+
+        //check that the best price is -1 when there are no levels
+        assertEquals(-1, priceLadder.getBestPrice());
+
+        priceLadder.put(100, new OrderList());
+        priceLadder.put(110, new OrderList());
+        priceLadder.put(95, new OrderList());
+        assertEquals(110, priceLadder.getBestPrice()); // highest price is best for bids
+
+        //removing the best level moves the best price to the next level
+        priceLadder.remove(110);
+        assertEquals(100, priceLadder.getBestPrice());
+        priceLadder.remove(100);
+        priceLadder.remove(95);
+        assertEquals(-1, priceLadder.getBestPrice());
+        assertTrue(priceLadder.isEmpty());
+
+        priceLadder = new PriceLadder(Side.sell, 5, 16);
+        priceLadder.put(100, new OrderList());
+        priceLadder.put(95, new OrderList());
+        assertEquals(95, priceLadder.getBestPrice()); // lowest price is best for asks
+    }
+
+    @Test
+    public void getAndRemove() throws Exception {
+        priceLadder = new PriceLadder(Side.sell, 1, 8);
+        OrderList orderList = new OrderList();
+        priceLadder.put(1000, orderList);
+
+        assertSame(orderList, priceLadder.get(1000));
+        assertNull(priceLadder.get(1001));
+        assertNull(priceLadder.get(-5)); // far outside the ladder
+        assertEquals(1, priceLadder.size());
+
+        assertSame(orderList, priceLadder.remove(1000));
+        assertNull(priceLadder.remove(1000)); // already removed
+        assertEquals(0, priceLadder.size());
+    }
+
+    @Test
+    public void recenter() throws Exception {
+        priceLadder = new PriceLadder(Side.buy, 1, 4);
+        OrderList level1 = new OrderList();
+        OrderList level2 = new OrderList();
+        OrderList level3 = new OrderList();
+
+        //levels drift away from the initial band, the ladder follows and grows
+        priceLadder.put(100, level1);
+        priceLadder.put(103, level2);
+        priceLadder.put(150, level3);
+        assertTrue(priceLadder.getCapacity() >= 51);
+
+        //levels survive re-centring
+        assertSame(level1, priceLadder.get(100));
+        assertSame(level2, priceLadder.get(103));
+        assertSame(level3, priceLadder.get(150));
+        assertEquals(150, priceLadder.getBestPrice());
+        assertEquals(3, priceLadder.size());
+    }
+
+    @Test
+    public void getNextPrice() throws Exception {
+        priceLadder = new PriceLadder(Side.buy, 1, 32);
+        priceLadder.put(100, new OrderList());
+        priceLadder.put(98, new OrderList());
+        priceLadder.put(90, new OrderList());
+
+        //walk the levels in order of priority
+        assertEquals(98, priceLadder.getNextPrice(100));
+        assertEquals(90, priceLadder.getNextPrice(98));
+        assertEquals(-1, priceLadder.getNextPrice(90));
+
+        //the copy is sorted the same way as a TreeMap backed side
+        TreeMap<Long, OrderList> levels = priceLadder.asTreeMap();
+        assertEquals(Arrays.asList(100L, 98L, 90L), Arrays.asList(levels.keySet().toArray()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void priceOffTick() throws Exception {
+        priceLadder = new PriceLadder(Side.buy, 5, 16);
+        priceLadder.put(101, new OrderList());
+    }
+
+    @Test
+    public void orderBookRejectsPriceOffTick() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager(5, 16, true);
+        orderBookManager.getPools().getOrders().preallocate(4);
+        orderBookManager.getPools().getOrderLists().preallocate(4);
+        orderBookManager.addOrder(1, 7, Side.buy, 100, 10);
+        int orderLists = orderBookManager.getPools().getOrderLists().size();
+        int orders = orderBookManager.getPools().getOrders().size();
+        try {
+            orderBookManager.addOrder(2, 7, Side.buy, 101, 10);
+            fail("price off tick");
+        } catch (IllegalArgumentException e) {
+            // rejected before a level is taken from the pool
+        }
+        assertEquals(orderLists, orderBookManager.getPools().getOrderLists().size());
+        assertEquals(orders, orderBookManager.getPools().getOrders().size()); // the order went back to its pool
+        assertNull(orderBookManager.getRestingOrderByIdMap().get(2));
+        assertEquals(1, orderBookManager.getOrderBookByInstrumentIdMap().get(7).getBids().size());
+
+        // the book created for a rejected order is released
+        orderBookManager.getOrderBookPool().preallocate(1);
+        int orderBooks = orderBookManager.getOrderBookPool().size();
+        for (int i = 0; i < 2; i++) {
+            try {
+                if (i == 0) {
+                    orderBookManager.addOrder(3, 8, Side.buy, 7, 10);
+                } else {
+                    orderBookManager.addStopOrder(3, 8, Side.buy, 7, 10, 5);
+                }
+                fail("price off tick");
+            } catch (IllegalArgumentException e) {
+                // rejected by the new book
+            }
+            assertEquals(1, orderBookManager.getOrderBookByInstrumentIdMap().size());
+            assertEquals(orderBooks, orderBookManager.getOrderBookPool().size());
+        }
+    }
+
+    @Test
+    public void ladderBackedOrderBook() throws Exception {
+        OrderBook orderBook = new OrderBook(1, 8);
+        Order buyOrder1 = new Order("buyOrder1", "VOD.L", Side.buy, 100, 10);
+        Order buyOrder2 = new Order("buyOrder2", "VOD.L", Side.buy, 101, 20);
+        Order sellOrder1 = new Order("sellOrder1", "VOD.L", Side.sell, 105, 30);
+        Order sellOrder2 = new Order("sellOrder2", "VOD.L", Side.sell, 300, 40);
+
+        orderBook.addOrder(buyOrder1);
+        orderBook.addOrder(buyOrder2);
+        orderBook.addOrder(sellOrder1);
+        orderBook.addOrder(sellOrder2);
+
+        //confirm that it behaves like a TreeMap backed book
+        assertEquals(101, orderBook.getBestPrice(Side.buy));
+        assertEquals(105, orderBook.getBestPrice(Side.sell));
+        assertEquals(40, orderBook.getTotalQuantityAtLevel(Side.sell, 300));
+        assertEquals(Arrays.asList(buyOrder1), orderBook.getOrdersAtLevel(Side.buy, 100));
+
+        orderBook.deleteOrder("sellOrder1");
+        assertEquals(300, orderBook.getBestPrice(Side.sell));
+        orderBook.modifyOrder("buyOrder2", 5);
+        assertEquals(5, orderBook.getTotalQuantityAtLevel(Side.buy, 101));
+
+        OrderBook treeMapOrderBook = new OrderBook();
+        treeMapOrderBook.addOrder(buyOrder1);
+        treeMapOrderBook.addOrder(buyOrder2);
+        treeMapOrderBook.addOrder(sellOrder2);
+        assertEquals(treeMapOrderBook, orderBook);
+    }
+}
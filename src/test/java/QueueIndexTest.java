@@ -0,0 +1,96 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ */
+public class QueueIndexTest {
+
+    @Test
+    public void queuePosition() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager();
+        orderBookManager.setQueueIndexEnabled(true);
+        orderBookManager.addOrder(new Order("buyOrder1", "XBT", Side.buy, 100, 10));
+        orderBookManager.addOrder(new Order("buyOrder2", "XBT", Side.buy, 100, 5));
+        orderBookManager.addOrder(new Order("buyOrder3", "XBT", Side.buy, 100, 7));
+        orderBookManager.addOrder(new Order("buyOrder4", "XBT", Side.buy, 99, 1));
+
+        assertEquals(0, orderBookManager.getQueuePosition("buyOrder1"));
+        assertEquals(0, orderBookManager.getQuantityAhead("buyOrder1"));
+        assertEquals(2, orderBookManager.getQueuePosition("buyOrder3"));
+        assertEquals(15, orderBookManager.getQuantityAhead("buyOrder3"));
+        assertEquals(0, orderBookManager.getQueuePosition("buyOrder4")); // alone at its level
+        assertEquals(-1, orderBookManager.getQueuePosition("unknown"));
+        assertEquals(-1, orderBookManager.getQuantityAhead(42));
+
+        orderBookManager.modifyOrder("buyOrder1", 4); // reduced in place
+        assertEquals(9, orderBookManager.getQuantityAhead("buyOrder3"));
+        orderBookManager.modifyOrder("buyOrder1", 6); // moved to the back
+        assertEquals(2, orderBookManager.getQueuePosition("buyOrder1"));
+        assertEquals(12, orderBookManager.getQuantityAhead("buyOrder1"));
+        assertEquals(0, orderBookManager.getQueuePosition("buyOrder2"));
+        orderBookManager.deleteOrder("buyOrder2");
+        assertEquals(7, orderBookManager.getQuantityAhead("buyOrder1"));
+
+        orderBookManager.addOrder(1, 7, Side.sell, 50, 3);
+        orderBookManager.addOrder(2, 7, Side.sell, 50, 4);
+        // books created after queue indexing was enabled are indexed too
+        assertTrue(orderBookManager.getOrderBookByInstrumentIdMap().get(7).isQueueIndexed());
+        assertTrue(orderBookManager.getRestingOrderByIdMap().get(2).getOrderList().isQueueIndexed());
+        assertEquals(1, orderBookManager.getQueuePosition(2));
+        assertEquals(3, orderBookManager.getQuantityAhead(2));
+    }
+
+    @Test
+    public void matchesWalkingTheQueue() throws Exception {
+        matchesWalkingTheQueue(new OrderBookManager(), new OrderBookManager());
+        matchesWalkingTheQueue(new OrderBookManager(1, 16, true), new OrderBookManager(1, 16, true));
+    }
+
+    /**
+     * Applies the same random orders to a queue indexed manager and to one that is not, over a few long queues so
+     * that their slots run out and get renumbered, and compares their answers
+     */
+    private static void matchesWalkingTheQueue(OrderBookManager indexed, OrderBookManager walked) {
+        indexed.addOrder(-1, 1, Side.buy, 100, 1); // indexed once the level exists
+        walked.addOrder(-1, 1, Side.buy, 100, 1);
+        indexed.setQueueIndexEnabled(true);
+        Random random = new Random(42);
+        List<Long> resting = new ArrayList<>();
+        for (long id = 0; id < 50_000; id++) {
+            int action = random.nextInt(10);
+            if (action < 5 || resting.isEmpty()) {
+                long price = 98 + random.nextInt(3);
+                long quantity = 1 + random.nextInt(20);
+                indexed.addOrder(id, 1, Side.buy, price, quantity);
+                walked.addOrder(id, 1, Side.buy, price, quantity);
+                resting.add(id);
+            } else {
+                int index = random.nextInt(resting.size());
+                long restingId = resting.get(index);
+                if (action < 8) {
+                    long quantity = 1 + random.nextInt(20);
+                    indexed.modifyOrder(restingId, quantity);
+                    walked.modifyOrder(restingId, quantity);
+                } else {
+                    indexed.deleteOrder(restingId);
+                    walked.deleteOrder(restingId);
+                    resting.set(index, resting.get(resting.size() - 1));
+                    resting.remove(resting.size() - 1);
+                }
+            }
+            if (id % 50 == 0) {
+                for (int i = 0; i < 5 && i < resting.size(); i++) {
+                    long restingId = resting.get(random.nextInt(resting.size()));
+                    assertEquals(walked.getQueuePosition(restingId), indexed.getQueuePosition(restingId));
+                    assertEquals(walked.getQuantityAhead(restingId), indexed.getQuantityAhead(restingId));
+                }
+            }
+        }
+    }
+}
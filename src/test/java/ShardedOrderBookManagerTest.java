@@ -0,0 +1,78 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ */
+public class ShardedOrderBookManagerTest {
+
+    @Test
+    public void concurrentProducers() throws Exception {
+        final int producers = 4;
+        final int ordersPerProducer = 1000;
+        String[] instruments = {"XBT", "XRP", "ETH", "LTC", "ADA"};
+
+        try (ShardedOrderBookManager manager = new ShardedOrderBookManager(3, 64)) {
+            // each producer adds orders over every instrument, then deletes every other one
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                final int producer = p;
+                threads.add(new Thread(() -> {
+                    for (int i = 0; i < ordersPerProducer; i++) {
+                        String instrument = instruments[i % instruments.length];
+                        manager.addOrder(new Order("p" + producer + "-" + i, instrument, Side.buy, 100 + producer, 10));
+                        manager.addOrder(producer * ordersPerProducer + i, i % instruments.length, Side.sell, 200, 5);
+                    }
+                    for (int i = 0; i < ordersPerProducer; i += 2) {
+                        manager.deleteOrder(instruments[i % instruments.length], "p" + producer + "-" + i);
+                        manager.modifyOrder(i % instruments.length, producer * ordersPerProducer + i, 1);
+                    }
+                }));
+            }
+            for (Thread thread : threads) thread.start();
+            for (Thread thread : threads) thread.join();
+            manager.sync();
+
+            // every instrument lives in exactly one shard, and holds what was sent to it
+            long totalQuantity = 0;
+            for (String instrument : instruments) {
+                totalQuantity += manager.query(instrument,
+                        orderBookManager -> orderBookManager.getTotalQuantityAtLevel(instrument, Side.buy, 100)
+                                + orderBookManager.getTotalQuantityAtLevel(instrument, Side.buy, 101)
+                                + orderBookManager.getTotalQuantityAtLevel(instrument, Side.buy, 102)
+                                + orderBookManager.getTotalQuantityAtLevel(instrument, Side.buy, 103)).get();
+                assertEquals(103L, (long) manager.getBestPrice(instrument, Side.buy).get());
+            }
+            assertEquals(producers * ordersPerProducer / 2 * 10, totalQuantity); // half the buys were deleted
+
+            long sellQuantity = 0;
+            for (int instrumentId = 0; instrumentId < instruments.length; instrumentId++) {
+                final int id = instrumentId;
+                sellQuantity += manager.query(id,
+                        orderBookManager -> orderBookManager.getTotalQuantityAtLevel(id, Side.sell, 200)).get();
+            }
+            // half the sells were reduced from 5 to 1
+            assertEquals(producers * ordersPerProducer / 2 * (5 + 1), sellQuantity);
+            assertEquals(0, manager.getFailedCommandCount());
+        }
+    }
+
+    @Test
+    public void failingCommandDoesNotStopShard() throws Exception {
+        try (ShardedOrderBookManager manager = new ShardedOrderBookManager(1, 8)) {
+            manager.forEachShard(orderBookManager -> {
+                throw new IllegalStateException("boom");
+            });
+            manager.addOrder(new Order("buyOrder1", "XBT", Side.buy, 100, 10));
+            manager.sync();
+
+            // the shard survived the failing task and applied the next command
+            assertEquals(1, manager.getFailedCommandCount());
+            assertEquals(100L, (long) manager.getBestPrice("XBT", Side.buy).get());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ */
+public class SnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeAndRead() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager();
+        for (int i = 0; i < 100; i++) {
+            orderBookManager.addOrder(new Order("buyOrder" + i, "XBT", Side.buy, 100 - i % 5, 10 + i));
+            orderBookManager.addOrder(new Order("sellOrder" + i, "XRP", Side.sell, 200 + i % 7, 1));
+            orderBookManager.addOrder(i, 7, i % 2 == 0 ? Side.buy : Side.sell, i % 2 == 0 ? 50 : 60, 5);
+        }
+        orderBookManager.modifyOrder("buyOrder0", 1000); // moves to the back of its level
+        Path file = folder.getRoot().toPath().resolve("books.snapshot");
+        assertEquals(300, Snapshot.write(orderBookManager, file));
+
+        for (boolean pooled : new boolean[]{false, true}) {
+            OrderBookManager restored = new OrderBookManager(0, 0, pooled);
+            assertEquals(0, Snapshot.read(file, restored)); // no journal
+
+            // same levels, same orders in the same order, same totals
+            assertEquals(orderBookManager.getOrderBookByInstrumentMap(), restored.getOrderBookByInstrumentMap());
+            assertEquals(orderBookManager.getOrderBookByInstrumentIdMap().get(7),
+                    restored.getOrderBookByInstrumentIdMap().get(7));
+            assertEquals("buyOrder0", restored.getOrdersAtLevel("XBT", Side.buy, 100).get(19).getOrderId());
+
+            // the id indexes are rebuilt, so restored orders can be modified and deleted
+            assertEquals(200, restored.getRestingOrderByOrderIdMap().size());
+            assertEquals(100, restored.getRestingOrderByIdMap().size());
+            restored.deleteOrder(0);
+            restored.modifyOrder("sellOrder3", 7);
+            assertEquals(49, restored.getOrderNumAtLevel(7, Side.buy, 50));
+            assertEquals(14 - 1 + 7, restored.getTotalQuantityAtLevel("XRP", Side.sell, 203));
+        }
+    }
+
+    @Test
+    public void restartFromSnapshotAndJournal() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("journal");
+        Path file = folder.getRoot().toPath().resolve("books.snapshot");
+        OrderBookManager orderBookManager = new OrderBookManager(1, 64);
+        try (Journal journal = new Journal(directory, 4096, FsyncPolicy.none, 0)) {
+            orderBookManager.setJournal(journal);
+            for (int i = 0; i < 50; i++) {
+                orderBookManager.addOrder(new Order("buyOrder" + i, "XBT", Side.buy, 100 - i % 3, 10));
+            }
+            Snapshot.write(orderBookManager, file);
+
+            // operations after the snapshot are only in the journal
+            orderBookManager.deleteOrder("buyOrder1");
+            orderBookManager.addOrder(new Order("sellOrder1", "XBT", Side.sell, 150, 10));
+        }
+
+        OrderBookManager restarted = new OrderBookManager(1, 64);
+        long position = Snapshot.read(file, restarted);
+        try (Journal journal = new Journal(directory, 4096, FsyncPolicy.none, 0)) {
+            // only what came after the snapshot, after whether the manager matched
+            assertEquals(1 + 2, journal.replay(restarted, position));
+        }
+        assertEquals(orderBookManager.getOrderBookByInstrumentMap(), restarted.getOrderBookByInstrumentMap());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void readIntoNonEmptyManager() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("books.snapshot");
+        OrderBookManager orderBookManager = new OrderBookManager();
+        orderBookManager.addOrder(new Order("buyOrder1", "XBT", Side.buy, 100, 10));
+        Snapshot.write(orderBookManager, file);
+        Snapshot.read(file, orderBookManager);
+    }
+
+    @Test
+    public void rejectsIdsTooLongToWrite() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("books.snapshot");
+        OrderBookManager orderBookManager = new OrderBookManager();
+        orderBookManager.addOrder(new Order("buyOrder1", "XBT", Side.buy, 100, 10));
+        Snapshot.write(orderBookManager, file);
+        StringBuilder id = new StringBuilder();
+        for (int i = 0; i <= Short.MAX_VALUE; i++) {
+            id.append('x');
+        }
+        orderBookManager.addOrder(new Order(id.toString(), "XBT", Side.buy, 100, 10));
+        try {
+            Snapshot.write(orderBookManager, file);
+            fail("id too long");
+        } catch (IllegalArgumentException e) {
+            // the previous snapshot is left intact
+        }
+        OrderBookManager restored = new OrderBookManager();
+        Snapshot.read(file, restored);
+        assertEquals(1, restored.getOrderNumAtLevel("XBT", Side.buy, 100));
+    }
+}
@@ -0,0 +1,205 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ */
+public class StopOrderIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void triggersOnBestPrice() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager();
+        orderBookManager.addOrder(new Order("ask1", "XBT", Side.sell, 105, 10));
+        orderBookManager.addStopOrder(new Order("buyStop", "XBT", Side.buy, 104, 5), 106);
+        orderBookManager.addStopOrder(new Order("sellStop", "XBT", Side.sell, 98, 3), 99);
+        OrderBook orderBook = orderBookManager.getOrderBookByInstrumentMap().get("XBT");
+        assertEquals(2, orderBook.getStopOrderCount()); // ask below 106, no bids at all
+        assertEquals(-1, orderBookManager.getBestPrice("XBT", Side.buy));
+
+        orderBookManager.addOrder(new Order("ask2", "XBT", Side.sell, 107, 10));
+        assertEquals(2, orderBook.getStopOrderCount()); // best ask unchanged
+        orderBookManager.deleteOrder("ask1"); // best ask rises to 107
+        assertEquals(1, orderBook.getStopOrderCount());
+        assertEquals(104, orderBookManager.getBestPrice("XBT", Side.buy));
+        assertEquals(5, orderBookManager.getTotalQuantityAtLevel("XBT", Side.buy, 104));
+
+        orderBookManager.addOrder(new Order("bid1", "XBT", Side.buy, 99, 1));
+        assertEquals(1, orderBook.getStopOrderCount()); // best bid still 104
+        orderBookManager.deleteOrder("buyStop"); // best bid falls to 99
+        assertEquals(0, orderBook.getStopOrderCount());
+        assertEquals(98, orderBookManager.getBestPrice("XBT", Side.sell));
+
+        orderBookManager.addStopOrder(new Order("buyStop2", "XBT", Side.buy, 90, 1), 200);
+        assertTrue(orderBookManager.cancelStopOrder("XBT", "buyStop2"));
+        assertFalse(orderBookManager.cancelStopOrder("XBT", "buyStop2"));
+        assertFalse(orderBookManager.cancelStopOrder("ETH", "buyStop2"));
+        orderBookManager.addStopOrder(new Order("buyStop3", "XBT", Side.buy, 90, 1), 98); // already triggered
+        assertEquals(1, orderBookManager.getTotalQuantityAtLevel("XBT", Side.buy, 90));
+    }
+
+    @Test
+    public void booksWithStopOrdersAreKept() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager(1, 16, true);
+        orderBookManager.addStopOrder(1, 7, Side.sell, 50, 3, 40);
+        assertNotNull(orderBookManager.getOrderBookByInstrumentIdMap().get(7)); // holds a stop and no level
+        orderBookManager.addOrder(2, 7, Side.buy, 45, 1);
+        orderBookManager.deleteOrder(2);
+        assertEquals(1, orderBookManager.getOrderBookByInstrumentIdMap().get(7).getStopOrderCount());
+        assertTrue(orderBookManager.cancelStopOrder(7, 1));
+        assertNull(orderBookManager.getOrderBookByInstrumentIdMap().get(7)); // released with its last stop
+    }
+
+    @Test
+    public void triggersInOrderOfTriggerPriceAndArrival() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager();
+        for (int i = 0; i < 100_000; i++) {
+            orderBookManager.addStopOrder(i, 1, Side.buy, 10, 1, 1000 + i); // far from being triggered
+        }
+        orderBookManager.addStopOrder(100_000, 1, Side.buy, 20, 1, 500);
+        orderBookManager.addStopOrder(100_001, 1, Side.buy, 20, 1, 400);
+        orderBookManager.addStopOrder(100_002, 1, Side.buy, 20, 1, 500);
+        orderBookManager.addStopOrder(100_003, 1, Side.buy, 20, 1, 400);
+        orderBookManager.cancelStopOrder(1, 100_003);
+
+        orderBookManager.addOrder(-1, 1, Side.sell, 600, 1); // triggers the three stops below 600
+        OrderBook orderBook = orderBookManager.getOrderBookByInstrumentIdMap().get(1);
+        assertEquals(100_000, orderBook.getStopOrderCount());
+        List<Long> ids = new ArrayList<>();
+        for (Order order : orderBookManager.getOrdersAtLevel(1, Side.buy, 20)) {
+            ids.add(order.getId());
+        }
+        assertEquals(3, ids.size());
+        assertEquals(100_001L, (long) ids.get(0));
+        assertEquals(100_000L, (long) ids.get(1));
+        assertEquals(100_002L, (long) ids.get(2));
+
+        orderBookManager.modifyOrder(-1, 1); // moves the order to the back, the best ask stays 600
+        orderBookManager.addOrder(-2, 1, Side.sell, 1005, 1);
+        orderBookManager.deleteOrder(-1); // best ask rises to 1005
+        assertEquals(100_000 - 6, orderBook.getStopOrderCount());
+        assertEquals(6, orderBookManager.getOrderNumAtLevel(1, Side.buy, 10));
+    }
+
+    @Test
+    public void triggeredOrdersTriggerFurtherStops() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager();
+        List<Long> fills = new ArrayList<>();
+        orderBookManager.setFillListener((incoming, resting, price, quantity) -> fills.add(price));
+        orderBookManager.addOrder(new Order("ask1", "XBT", Side.sell, 100, 1));
+        orderBookManager.addOrder(new Order("ask2", "XBT", Side.sell, 101, 1));
+        orderBookManager.addOrder(new Order("ask3", "XBT", Side.sell, 110, 10));
+        orderBookManager.addStopOrder(new Order("buyStop1", "XBT", Side.buy, 101, 1), 101);
+        orderBookManager.addStopOrder(new Order("buyStop2", "XBT", Side.buy, 110, 2), 110);
+
+        orderBookManager.addOrder(new Order("buy1", "XBT", Side.buy, 100, 1)); // takes ask1, best ask rises to 101
+        assertEquals(3, fills.size());
+        assertEquals(100, (long) fills.get(0));
+        assertEquals(101, (long) fills.get(1)); // buyStop1, triggered by 101
+        assertEquals(110, (long) fills.get(2)); // buyStop2, triggered by buyStop1 taking ask2
+        assertEquals(8, orderBookManager.getTotalQuantityAtLevel("XBT", Side.sell, 110));
+        assertEquals(0, orderBookManager.getOrderBookByInstrumentMap().get("XBT").getStopOrderCount());
+    }
+
+    @Test
+    public void rejectsStopsOffTickWhenAdded() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager(5, 16);
+        orderBookManager.addOrder(1, 7, Side.sell, 100, 1);
+        try {
+            orderBookManager.addStopOrder(2, 7, Side.buy, 103, 1, 110);
+            fail("a stop limit price off the tick size should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        OrderBook orderBook = orderBookManager.getOrderBookByInstrumentIdMap().get(7);
+        assertEquals(0, orderBook.getStopOrderCount());
+
+        orderBookManager.addStopOrder(3, 7, Side.buy, 105, 1, 110);
+        orderBookManager.addOrder(4, 7, Side.sell, 115, 1);
+        orderBookManager.deleteOrder(1); // best ask rises to 115, triggering stop 3
+        assertEquals(0, orderBook.getStopOrderCount());
+        assertEquals(105, orderBookManager.getBestPrice(7, Side.buy));
+    }
+
+    @Test
+    public void triggersStopsTooFarToDepthIndex() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager();
+        orderBookManager.setDepthIndexEnabled(true);
+        orderBookManager.addOrder(new Order("bid1", "XBT", Side.buy, 100, 1));
+        orderBookManager.addOrder(new Order("ask1", "XBT", Side.sell, 200, 1));
+        long far = 100 + 2L * DepthIndex.MAX_CAPACITY; // too far from bid1 to be depth indexed
+        orderBookManager.addStopOrder(new Order("buyStop1", "XBT", Side.buy, far, 1), 300);
+        orderBookManager.addStopOrder(new Order("buyStop2", "XBT", Side.buy, 150, 1), 300);
+        orderBookManager.addOrder(new Order("ask2", "XBT", Side.sell, far + 1, 1));
+        orderBookManager.deleteOrder("ask1"); // best ask rises, triggering both stops
+        OrderBook orderBook = orderBookManager.getOrderBookByInstrumentMap().get("XBT");
+        assertEquals(0, orderBook.getStopOrderCount());
+        assertFalse(orderBook.isDepthIndexed()); // dropped for buyStop1
+        assertEquals(far, orderBookManager.getBestPrice("XBT", Side.buy));
+        assertEquals(1, orderBookManager.getTotalQuantityAtLevel("XBT", Side.buy, 150));
+        assertEquals(2, orderBookManager.getCumulativeQuantity("XBT", Side.buy, 150));
+    }
+
+    @Test
+    public void stopOrdersSurviveRestarts() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("journal");
+        Path file = folder.getRoot().toPath().resolve("books.snapshot");
+        OrderBookManager orderBookManager = new OrderBookManager();
+        orderBookManager.setFillListener((incoming, resting, price, quantity) -> {
+        });
+        try (Journal journal = new Journal(directory, 4096, FsyncPolicy.none, 0)) {
+            orderBookManager.setJournal(journal);
+            orderBookManager.addOrder(new Order("ask1", "XBT", Side.sell, 100, 5));
+            orderBookManager.addOrder(new Order("ask2", "XBT", Side.sell, 102, 5));
+            orderBookManager.addStopOrder(new Order("buyStop1", "XBT", Side.buy, 102, 2), 101);
+            orderBookManager.addStopOrder(new Order("buyStop2", "XBT", Side.buy, 99, 1), 101);
+            orderBookManager.addStopOrder(new Order("buyStop3", "XBT", Side.buy, 98, 1), 105);
+            orderBookManager.addStopOrder(new Order("buyStop4", "XBT", Side.buy, 97, 1), 102);
+            orderBookManager.cancelStopOrder("XBT", "buyStop4");
+            orderBookManager.addStopOrder(1, 7, Side.sell, 40, 3, 45);
+            orderBookManager.addStopOrder(2, 7, Side.sell, 41, 3, 44);
+            orderBookManager.addOrder(3, 7, Side.buy, 50, 1);
+            Snapshot.write(orderBookManager, file);
+
+            orderBookManager.addOrder(new Order("buy1", "XBT", Side.buy, 100, 5)); // triggers buyStop1 and 2
+            orderBookManager.deleteOrder("buyStop2"); // the order it turned into
+            orderBookManager.addOrder(4, 7, Side.buy, 45, 1);
+            orderBookManager.deleteOrder(3); // best bid falls to 45, triggering stop 1
+        }
+        assertEquals(3, orderBookManager.getTotalQuantityAtLevel("XBT", Side.sell, 102));
+        assertEquals(1, orderBookManager.getOrderBookByInstrumentMap().get("XBT").getStopOrderCount());
+        assertEquals(2, orderBookManager.getTotalQuantityAtLevel(7, Side.sell, 40)); // traded 1 with order 4
+
+        OrderBookManager replayed = new OrderBookManager();
+        try (Journal journal = new Journal(directory, 4096, FsyncPolicy.none, 0)) {
+            journal.replay(replayed);
+        }
+        OrderBookManager restored = new OrderBookManager(0, 0, true);
+        long position = Snapshot.read(file, restored);
+        assertEquals(3, restored.getOrderBookByInstrumentMap().get("XBT").getStopOrderCount());
+        assertEquals(2, restored.getOrderBookByInstrumentIdMap().get(7).getStopOrderCount());
+        try (Journal journal = new Journal(directory, 4096, FsyncPolicy.none, 0)) {
+            journal.replay(restored, position);
+        }
+        for (OrderBookManager restarted : new OrderBookManager[]{replayed, restored}) {
+            assertEquals(orderBookManager.getOrderBookByInstrumentMap(), restarted.getOrderBookByInstrumentMap());
+            assertEquals(orderBookManager.getOrderBookByInstrumentIdMap().get(7),
+                    restarted.getOrderBookByInstrumentIdMap().get(7));
+            assertEquals(orderBookManager.getRestingOrderByOrderIdMap().keySet(),
+                    restarted.getRestingOrderByOrderIdMap().keySet());
+            OrderBook orderBook = restarted.getOrderBookByInstrumentMap().get("XBT");
+            assertEquals(1, orderBook.getStopOrderCount());
+            assertEquals(1, restarted.getOrderBookByInstrumentIdMap().get(7).getStopOrderCount());
+            assertTrue(restarted.cancelStopOrder("XBT", "buyStop3"));
+            assertFalse(restarted.cancelStopOrder("XBT", "buyStop4"));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ */
+public class TimerWheelTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void expiresOrders() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager();
+        orderBookManager.setTimerWheel(new TimerWheel(10, 1000));
+        Order order1 = new Order("buyOrder1", "XBT", Side.buy, 100, 10);
+        order1.setExpiryTime(1105);
+        orderBookManager.addOrder(order1);
+        orderBookManager.addOrder(new Order("buyOrder2", "XBT", Side.buy, 100, 5)); // good till cancelled
+        orderBookManager.addOrder(1, 7, Side.sell, 50, 3, 5000);
+        orderBookManager.addOrder(2, 7, Side.sell, 50, 3, 1050);
+        orderBookManager.deleteOrder(2); // cancelled before it expires
+        assertEquals(2, orderBookManager.getTimerWheel().size());
+
+        assertEquals(0, orderBookManager.tick(1100)); // never before the expiry time
+        assertEquals(1, orderBookManager.tick(1110));
+        assertNull(orderBookManager.getRestingOrderByOrderIdMap().get("buyOrder1"));
+        assertEquals(5, orderBookManager.getTotalQuantityAtLevel("XBT", Side.buy, 100));
+        assertEquals(0, orderBookManager.tick(4999));
+        assertEquals(1, orderBookManager.tick(100_000));
+        assertNull(orderBookManager.getOrderBookByInstrumentIdMap().get(7)); // the book went with its last order
+        assertEquals(0, orderBookManager.getTimerWheel().size());
+    }
+
+    @Test
+    public void filledOrdersNoLongerExpire() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager(1, 64, true);
+        orderBookManager.setFillListener((incoming, resting, price, quantity) -> {
+        });
+        orderBookManager.setTimerWheel(new TimerWheel(1, 0));
+        orderBookManager.addOrder(1, 7, Side.sell, 50, 3, 10);
+        orderBookManager.addOrder(2, 7, Side.buy, 50, 3, 10); // fills order 1 and does not rest
+        assertEquals(0, orderBookManager.getTimerWheel().size());
+        assertEquals(0, orderBookManager.tick(20));
+        orderBookManager.addOrder(3, 7, Side.sell, 50, 3); // recycles the nodes and orders of 1 and 2
+        assertEquals(0, orderBookManager.tick(30));
+        assertEquals(3, orderBookManager.getTotalQuantityAtLevel(7, Side.sell, 50));
+    }
+
+    @Test
+    public void existingOrdersAreScheduled() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager();
+        orderBookManager.addOrder(1, 7, Side.sell, 50, 3, 10);
+        assertEquals(0, orderBookManager.tick(20)); // no TimerWheel yet
+        orderBookManager.setTimerWheel(new TimerWheel(1, 0));
+        assertEquals(1, orderBookManager.tick(20));
+    }
+
+    @Test
+    public void matchesExpiryTimes() throws Exception {
+        // orders expiring up to well beyond the range of the wheel, checked against their expiry times
+        OrderBookManager orderBookManager = new OrderBookManager();
+        TimerWheel timerWheel = new TimerWheel(1, 0);
+        orderBookManager.setTimerWheel(timerWheel);
+        Random random = new Random(42);
+        Map<Long, Long> expiryTimes = new HashMap<>();
+        long now = 0;
+        for (long id = 0; id < 10_000; id++) {
+            long horizon = 1L << random.nextInt(28);
+            long expiryTime = now + 1 + (long) (random.nextDouble() * horizon);
+            orderBookManager.addOrder(id, 1, Side.buy, 100, 1, expiryTime);
+            expiryTimes.put(id, expiryTime);
+            if (random.nextInt(4) == 0) {
+                now += random.nextInt(1 << random.nextInt(20));
+                int expected = 0;
+                for (Map.Entry<Long, Long> entry : expiryTimes.entrySet()) {
+                    if (entry.getValue() <= now) {
+                        expected++;
+                    }
+                }
+                assertEquals(expected, orderBookManager.tick(now));
+                long current = now;
+                expiryTimes.values().removeIf(time -> time <= current);
+                assertEquals(expiryTimes.size(), timerWheel.size());
+                for (long restingId : expiryTimes.keySet()) {
+                    assertNotNull(orderBookManager.getRestingOrderByIdMap().get(restingId));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void expiryTimesSurviveRestarts() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("journal");
+        Path file = folder.getRoot().toPath().resolve("books.snapshot");
+        OrderBookManager orderBookManager = new OrderBookManager();
+        try (Journal journal = new Journal(directory, 4096, FsyncPolicy.none, 0)) {
+            orderBookManager.setJournal(journal);
+            Order order1 = new Order("buyOrder1", "XBT", Side.buy, 100, 10);
+            order1.setExpiryTime(500);
+            orderBookManager.addOrder(order1);
+            orderBookManager.addOrder(1, 7, Side.sell, 50, 3, 300);
+            Snapshot.write(orderBookManager, file);
+            orderBookManager.applyBatch(new Command[]{
+                    new Command().add(2, 7, Side.sell, 50, 4, 200),
+                    new Command().add(3, 7, Side.sell, 51, 4), // never expires
+            });
+        }
+
+        OrderBookManager replayed = new OrderBookManager();
+        replayed.setTimerWheel(new TimerWheel(10, 0));
+        try (Journal journal = new Journal(directory, 4096, FsyncPolicy.none, 0)) {
+            journal.replay(replayed);
+        }
+        OrderBookManager restored = new OrderBookManager(0, 0, true);
+        restored.setTimerWheel(new TimerWheel(10, 0));
+        long position = Snapshot.read(file, restored);
+        try (Journal journal = new Journal(directory, 4096, FsyncPolicy.none, 0)) {
+            journal.replay(restored, position);
+        }
+        for (OrderBookManager restarted : new OrderBookManager[]{replayed, restored}) {
+            assertEquals(3, restarted.getTimerWheel().size());
+            assertEquals(1, restarted.tick(200)); // order 2
+            assertEquals(1, restarted.tick(300)); // order 1
+            assertEquals(1, restarted.tick(500)); // buyOrder1
+            assertEquals(0, restarted.tick(100_000));
+            assertNull(restarted.getOrderBookByInstrumentMap().get("XBT"));
+            assertEquals(4, restarted.getTotalQuantityAtLevel(7, Side.sell, 51));
+        }
+    }
+
+    @Test
+    public void commandsCarryExpiryTimes() throws Exception {
+        Command command = new Command().add(1, 7, Side.buy, 100, 10, 1000);
+        Command copy = new Command();
+        copy.copyFrom(command);
+        assertEquals(1000, copy.getExpiryTime());
+        assertEquals(0, copy.add(1, 7, Side.buy, 100, 10).getExpiryTime()); // reset by the next add
+
+        OrderBookManager orderBookManager = new OrderBookManager();
+        orderBookManager.setTimerWheel(new TimerWheel(1, 0));
+        command.applyTo(orderBookManager);
+        assertEquals(1, orderBookManager.getTimerWheel().size());
+        assertEquals(1, orderBookManager.tick(1000));
+    }
+}
@@ -0,0 +1,90 @@
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by ioluwayo. email: ioluwayo@gmail.com
+ */
+public class TopOfBookTest {
+
+    @Test
+    public void publishesBestLevels() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager();
+        orderBookManager.addOrder(new Order("buyOrder1", "XBT", Side.buy, 100, 10)); // before enabling
+        orderBookManager.setTopOfBookEnabled(true);
+        TopOfBook topOfBook = orderBookManager.getTopOfBook("XBT");
+        Quote quote = new Quote();
+        topOfBook.read(quote);
+        assertEquals(100, quote.getBidPrice());
+        assertEquals(10, quote.getBidQuantity());
+        assertEquals(-1, quote.getAskPrice());
+
+        orderBookManager.addOrder(new Order("buyOrder2", "XBT", Side.buy, 100, 5));
+        orderBookManager.addOrder(new Order("sellOrder1", "XBT", Side.sell, 102, 7));
+        long sequence = topOfBook.getSequence();
+        orderBookManager.addOrder(new Order("buyOrder3", "XBT", Side.buy, 99, 1)); // behind the best bid
+        assertEquals(sequence, topOfBook.getSequence()); // nothing published
+        assertTrue(topOfBook.tryRead(quote));
+        assertEquals(15, quote.getBidQuantity());
+        assertEquals(2, quote.getBidOrderCount());
+        assertEquals(102, quote.getAskPrice());
+        assertEquals(7, quote.getAskQuantity());
+
+        // removing the best level makes the next one the best
+        orderBookManager.deleteOrder("buyOrder1");
+        orderBookManager.deleteOrder("buyOrder2");
+        topOfBook.read(quote);
+        assertEquals(99, quote.getBidPrice());
+        assertEquals(1, quote.getBidQuantity());
+
+        // the same TopOfBook follows the instrument after its book is emptied and created again
+        orderBookManager.deleteOrder("buyOrder3");
+        orderBookManager.deleteOrder("sellOrder1");
+        assertTrue(orderBookManager.getOrderBookByInstrumentMap().isEmpty());
+        assertEquals(-1, topOfBook.getBestPrice(Side.buy));
+        orderBookManager.addOrder(new Order("sellOrder2", "XBT", Side.sell, 101, 3));
+        assertSame(topOfBook, orderBookManager.getTopOfBook("XBT"));
+        assertEquals(101, topOfBook.getBestPrice(Side.sell));
+
+        orderBookManager.addOrder(1, 7, Side.buy, 50, 2);
+        assertEquals(50, orderBookManager.getTopOfBook(7).getBestPrice(Side.buy));
+    }
+
+    @Test
+    public void consistentReadsWhileMutated() throws Exception {
+        OrderBookManager orderBookManager = new OrderBookManager(1, 64);
+        orderBookManager.setTopOfBookEnabled(true);
+        orderBookManager.addOrder(new Order("sellOrder", "XBT", Side.sell, 1000, 10));
+        TopOfBook topOfBook = orderBookManager.getTopOfBook("XBT");
+
+        // every order has a quantity of 10 and bids stay below the ask, so every consistent quote satisfies both
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> torn = new AtomicReference<>();
+        AtomicLong reads = new AtomicLong();
+        Thread reader = new Thread(() -> {
+            Quote quote = new Quote();
+            while (!done.get() && torn.get() == null) {
+                topOfBook.read(quote);
+                if (quote.getBidQuantity() != 10 * quote.getBidOrderCount() || quote.getBidPrice() >= 1000) {
+                    torn.set(quote.toString());
+                }
+                reads.incrementAndGet();
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 200_000; i++) {
+            orderBookManager.addOrder(new Order("buyOrder" + i, "XBT", Side.buy, 900 + i % 50, 10));
+            if (i >= 100) {
+                orderBookManager.deleteOrder("buyOrder" + (i - 100));
+            }
+        }
+        done.set(true);
+        reader.join();
+        assertNull(torn.get());
+        assertTrue(reads.get() > 0);
+    }
+}